@@ -28,7 +28,9 @@ else
 fi
 
 echo "Step 4: Seed Nutrition Data"
-echo "This may take a while..."
+echo "Loads with LOAD DATA LOCAL INFILE when the server has local_infile=ON, otherwise with batched inserts"
+# the database was just recreated, so an interrupted import's journal no longer applies
+rm -f "$(pwd)/local-data/nutrition-import.journal"
 mvn clean compile exec:java -Dexec.mainClass="csv.LoadNutritionDataService" -e
 if [ $? -eq 0 ]; then
   echo "Database nutrition data seeded successfully!"
@@ -0,0 +1,43 @@
+package csv;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * The type a CSV column is decoded to before it is sent to the database.
+ * Empty values of every type except TEXT are decoded to null.
+ */
+public enum CSVColumnType {
+    // kept as a String
+    TEXT,
+    // an Integer
+    INT,
+    // a Long
+    BIGINT,
+    // a Double
+    DOUBLE,
+    // a BigDecimal, for exact values such as money
+    DECIMAL,
+    // a java.sql.Date, written as yyyy-MM-dd
+    DATE;
+
+    /**
+     * Decodes a value read as text (used when a file is read with commons-csv).
+     *
+     * @param text The text of the value.
+     * @return The value as this type, or null if it is empty and this type is not TEXT.
+     * @throws IllegalArgumentException Thrown if the text is not a value of this type.
+     */
+    public Object decode(String text) {
+        if (this == TEXT) return text;
+        if (text.isEmpty()) return null;
+        return switch (this) {
+            case INT -> Integer.valueOf(text);
+            case BIGINT -> Long.valueOf(text);
+            case DOUBLE -> Double.valueOf(text);
+            case DECIMAL -> new BigDecimal(text);
+            case DATE -> java.sql.Date.valueOf(LocalDate.parse(text));
+            case TEXT -> text;
+        };
+    }
+}
@@ -0,0 +1,541 @@
+package csv;
+
+import data.DatabaseException;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Imports several CSV files at once, starting each table as soon as the tables it references are loaded.
+ * Tables that do not depend on each other load concurrently, each on its own connection from the driver's pool.
+ * Large files are split into chunks of rows that also load concurrently.
+ * <p>
+ * Each chunk is committed on its own, so a failure can leave part of a table imported; the failure is thrown once
+ * every table that could still load has finished, and the tables depending on the failed one are not started.
+ * With an {@link ImportCheckpointJournal}, each committed chunk is recorded, and running the import again skips
+ * the rows already committed (seeking straight past the committed start of each file) instead of failing on their
+ * duplicate keys. A chunk can commit just before a failure without being recorded, so when an import resumes, the
+ * chunks the journal does not record are upserted rather than bulk loaded, and a chunk that did commit is applied
+ * again without failing. The journal is cleared once every table has loaded.
+ * <p>
+ * ex. new CSVImportScheduler(importer, 4)
+ * .table("food_groups", "food_groups.csv")
+ * .table("foods", "foods.csv", "food_groups")
+ * .run();
+ */
+public class CSVImportScheduler {
+    /**
+     * The number of rows per chunk unless another size is given.
+     */
+    public static final int DEFAULT_CHUNK_ROWS = 50_000;
+
+    /**
+     * The importer each chunk is bulk loaded with.
+     */
+    private final ICSVImportService importer;
+    /**
+     * The maximum number of chunks loading at once.
+     */
+    private final int parallelism;
+    /**
+     * The maximum number of rows in each chunk.
+     */
+    private final int chunkRows;
+    /**
+     * The CSV parser for the files to import.
+     */
+    private final CSVFormat parser;
+    /**
+     * The tables to import, by collection name, in the order they were added.
+     */
+    private final Map<String, Table> tables = new LinkedHashMap<>();
+    /**
+     * The listeners told each time a chunk is committed.
+     */
+    private final List<ImportProgressListener> progressListeners = new CopyOnWriteArrayList<>();
+    /**
+     * The journal recording the committed chunks, or null if the import always starts from the first row.
+     */
+    private ImportCheckpointJournal journal;
+    /**
+     * Whether the run is resuming an import that stopped part way through, so its chunks are upserted.
+     */
+    private volatile boolean resuming;
+
+    /**
+     * A table to import.
+     *
+     * @param collectionName The collection to import the file into.
+     * @param filePath       The path of the CSV file to import.
+     * @param dependencies   The collections that must be imported first (ex. the tables its foreign keys reference).
+     */
+    private record Table(String collectionName, String filePath, List<String> dependencies) {
+    }
+
+    /**
+     * A file that has been split into chunks.
+     *
+     * @param startNanos  The time the table started importing.
+     * @param rows        The number of rows split into chunks to load.
+     * @param resumedRows The number of rows skipped because an earlier run committed them.
+     * @param chunkLoads  The loads of the chunks, which may still be running.
+     */
+    private record SplitFile(long startNanos, long rows, long resumedRows, List<CompletableFuture<Void>> chunkLoads) {
+    }
+
+    /**
+     * A chunk file being written.
+     */
+    private static final class PendingChunk {
+        /**
+         * The chunk file.
+         */
+        private final Path file;
+        /**
+         * The printer writing the chunk file.
+         */
+        private final CSVPrinter printer;
+        /**
+         * The number of the chunk's first row in the original file.
+         */
+        private final long firstRow;
+        /**
+         * The offset of the chunk's first row in the original file, in bytes.
+         */
+        private final long startByte;
+        /**
+         * The number of rows written to the chunk.
+         */
+        private long rows;
+
+        /**
+         * @param file      The chunk file.
+         * @param printer   The printer writing the chunk file.
+         * @param firstRow  The number of the chunk's first row in the original file.
+         * @param startByte The offset of the chunk's first row in the original file, in bytes.
+         */
+        private PendingChunk(Path file, CSVPrinter printer, long firstRow, long startByte) {
+            this.file = file;
+            this.printer = printer;
+            this.firstRow = firstRow;
+            this.startByte = startByte;
+        }
+    }
+
+    /**
+     * Adds up the chunks committed during a run and reports the totals to the progress listeners.
+     */
+    private final class ProgressTracker {
+        /**
+         * The time the run started.
+         */
+        private final long startNanos = System.nanoTime();
+        /**
+         * The number of bytes of the files to commit in the run.
+         */
+        private long totalBytes;
+        /**
+         * The number of rows committed so far.
+         */
+        private long rows;
+        /**
+         * The number of bytes of the files committed so far.
+         */
+        private long bytes;
+
+        /**
+         * @param totalBytes The number of bytes of the files to commit in the run.
+         */
+        private ProgressTracker(long totalBytes) {
+            this.totalBytes = totalBytes;
+        }
+
+        /**
+         * Removes bytes that are not part of any row (the header of a file) from the bytes to commit.
+         *
+         * @param bytes The number of bytes that will not be committed.
+         */
+        private synchronized void exclude(long bytes) {
+            totalBytes -= bytes;
+        }
+
+        /**
+         * Adds a committed chunk and reports the new totals, one chunk at a time.
+         *
+         * @param checkpoint The committed chunk.
+         */
+        private synchronized void committed(ImportCheckpoint checkpoint) {
+            rows += checkpoint.rows();
+            bytes += checkpoint.bytes();
+            ImportProgress progress = new ImportProgress(checkpoint.collectionName(), rows, bytes, totalBytes,
+                    Duration.ofNanos(System.nanoTime() - startNanos));
+            progressListeners.forEach(listener -> listener.progress(progress));
+        }
+    }
+
+    /**
+     * @param importer    The importer each chunk is bulk loaded with.
+     * @param parallelism The maximum number of chunks loading at once (at most the size of the connection pool).
+     */
+    public CSVImportScheduler(ICSVImportService importer, int parallelism) {
+        this(importer, parallelism, DEFAULT_CHUNK_ROWS);
+    }
+
+    /**
+     * @param importer    The importer each chunk is bulk loaded with.
+     * @param parallelism The maximum number of chunks loading at once (at most the size of the connection pool).
+     * @param chunkRows   The maximum number of rows in each chunk.
+     */
+    public CSVImportScheduler(ICSVImportService importer, int parallelism, int chunkRows) {
+        if (parallelism < 1) throw new IllegalArgumentException("At least one import must run at a time.");
+        if (chunkRows < 1) throw new IllegalArgumentException("Chunks must hold at least one row.");
+        this.importer = importer;
+        this.parallelism = parallelism;
+        this.chunkRows = chunkRows;
+        parser = CSVFormat.DEFAULT.builder()
+                .setHeader()
+                .setSkipHeaderRecord(true)
+                .build();
+    }
+
+    /**
+     * Adds a table to the import.
+     *
+     * @param collectionName The collection to import the file into.
+     * @param filePath       The path of the CSV file to import; its header names the columns.
+     * @param dependencies   The collections that must be imported first (ex. the tables its foreign keys reference),
+     *                       which must also be added to the import.
+     * @return The scheduler, so tables can be chained.
+     */
+    public CSVImportScheduler table(String collectionName, String filePath, String... dependencies) {
+        if (tables.containsKey(collectionName)) {
+            throw new IllegalArgumentException(collectionName + " is already part of the import.");
+        }
+        tables.put(collectionName, new Table(collectionName, filePath, List.of(dependencies)));
+        return this;
+    }
+
+    /**
+     * Records the committed chunks in a journal, so running the import again after a failure resumes after them.
+     *
+     * @param journal The journal to record the chunks in and resume from.
+     * @return The scheduler, so settings can be chained.
+     */
+    public CSVImportScheduler journal(ImportCheckpointJournal journal) {
+        this.journal = journal;
+        return this;
+    }
+
+    /**
+     * Reports the rows and bytes committed, their rates, and the time left each time a chunk is committed.
+     *
+     * @param listener The listener to report the progress to.
+     * @return The scheduler, so settings can be chained.
+     */
+    public CSVImportScheduler progressListener(ImportProgressListener listener) {
+        progressListeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Imports every table, waiting until they have all finished.
+     *
+     * @return How long each table took, in the order the tables were added.
+     * @throws DatabaseException     Thrown if a chunk cannot be loaded into the database.
+     * @throws IOException           Thrown if a CSV file cannot be read or split.
+     * @throws IllegalStateException Thrown if the dependencies are circular or refer to a table not in the import.
+     */
+    public List<TableImportStatistics> run() throws DatabaseException, IOException {
+        List<Table> order = dependencyOrder();
+        resuming = journal != null && journal.begin();
+        ProgressTracker progress = new ProgressTracker(bytesToImport());
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "csv-import-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Map<String, CompletableFuture<TableImportStatistics>> imports = new LinkedHashMap<>();
+            for (Table table : order) {
+                CompletableFuture<?>[] dependencies = table.dependencies().stream()
+                        .map(imports::get)
+                        .toArray(CompletableFuture[]::new);
+                imports.put(table.collectionName(), CompletableFuture.allOf(dependencies)
+                        .thenApplyAsync(ignored -> split(table, progress, executor), executor)
+                        .thenCompose(split -> CompletableFuture.allOf(split.chunkLoads().toArray(CompletableFuture[]::new))
+                                .thenApply(ignored -> new TableImportStatistics(
+                                        table.collectionName(),
+                                        split.rows(),
+                                        split.resumedRows(),
+                                        split.chunkLoads().size(),
+                                        Duration.ofNanos(System.nanoTime() - split.startNanos())))));
+            }
+            try {
+                // waits for every import, including the ones that do not depend on a failed table
+                CompletableFuture.allOf(imports.values().toArray(CompletableFuture[]::new)).join();
+            } catch (CompletionException e) {
+                throw rethrow(e);
+            }
+            if (journal != null) journal.clear();
+            return tables.keySet().stream().map(name -> imports.get(name).join()).toList();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return The tables ordered so every table comes after the tables it depends on.
+     */
+    private List<Table> dependencyOrder() {
+        List<Table> order = new ArrayList<>();
+        Set<String> visited = new HashSet<>();
+        for (Table table : tables.values()) {
+            visit(table, visited, new HashSet<>(), order);
+        }
+        return order;
+    }
+
+    /**
+     * Adds a table to the order after the tables it depends on (depth-first).
+     *
+     * @param table    The table to add.
+     * @param visited  The tables already in the order.
+     * @param visiting The tables whose dependencies are being added, used to detect circular dependencies.
+     * @param order    The order being built.
+     */
+    private void visit(Table table, Set<String> visited, Set<String> visiting, List<Table> order) {
+        if (visited.contains(table.collectionName())) return;
+        if (!visiting.add(table.collectionName())) {
+            throw new IllegalStateException("The import of " + table.collectionName() + " depends on itself.");
+        }
+        for (String dependency : table.dependencies()) {
+            Table dependencyTable = tables.get(dependency);
+            if (dependencyTable == null) {
+                throw new IllegalStateException("%s depends on %s, which is not part of the import."
+                        .formatted(table.collectionName(), dependency));
+            }
+            visit(dependencyTable, visited, visiting, order);
+        }
+        visiting.remove(table.collectionName());
+        visited.add(table.collectionName());
+        order.add(table);
+    }
+
+    /**
+     * @return The number of bytes of the files that are not yet committed according to the journal.
+     * @throws IOException Thrown if the size of a file cannot be read.
+     */
+    private long bytesToImport() throws IOException {
+        long bytes = 0;
+        for (Table table : tables.values()) {
+            Path file = Path.of(table.filePath());
+            // a missing file fails when its table is split, so the tables that do not depend on it still load
+            if (!Files.exists(file)) continue;
+            bytes += Files.size(file);
+            if (journal == null) continue;
+            for (ImportCheckpoint checkpoint : journal.committedChunks(table.collectionName(),
+                    ImportCheckpointJournal.fingerprint(file))) {
+                bytes -= checkpoint.bytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Splits a CSV file into chunk files of at most chunkRows rows, starting the load of each chunk as soon as it
+     * is written, so splitting the rest of the file overlaps with loading. Rows the journal records as committed
+     * are skipped, and chunks never span them, so every chunk is a contiguous range of rows that can be journaled.
+     *
+     * @param table    The table to split the file of.
+     * @param progress The tracker the committed chunks are reported to.
+     * @param executor The executor the chunks are loaded on.
+     * @return The number of rows in the file and the loads of its chunks.
+     */
+    private SplitFile split(Table table, ProgressTracker progress, ExecutorService executor) {
+        long startNanos = System.nanoTime();
+        List<CompletableFuture<Void>> chunkLoads = new ArrayList<>();
+        long rows = 0;
+        long resumedRows = 0;
+        Path file = Path.of(table.filePath());
+        try {
+            String fingerprint = ImportCheckpointJournal.fingerprint(file);
+            // committed chunks by first row, to skip the ones after the resume point
+            NavigableMap<Long, ImportCheckpoint> committed = new TreeMap<>();
+            ImportCheckpoint resumePoint = null;
+            if (journal != null) {
+                journal.committedChunks(table.collectionName(), fingerprint)
+                        .forEach(checkpoint -> committed.put(checkpoint.firstRow(), checkpoint));
+                resumePoint = journal.resumePoint(table.collectionName(), fingerprint);
+            }
+            long rowOffset = resumePoint == null ? 0 : resumePoint.lastRow();
+            long byteOffset = resumePoint == null ? 0 : resumePoint.endByte();
+            resumedRows += rowOffset;
+            List<String> headerNames;
+            try (CSVParser header = open(file, 0, null)) {
+                headerNames = header.getHeaderNames();
+                Iterator<CSVRecord> firstRecord = header.iterator();
+                progress.exclude(firstRecord.hasNext() ? firstRecord.next().getBytePosition() : Files.size(file));
+            }
+            CSVFormat chunkFormat = CSVFormat.DEFAULT.builder()
+                    .setHeader(headerNames.toArray(String[]::new))
+                    .build();
+            PendingChunk chunk = null;
+            try (CSVParser records = open(file, byteOffset, resumePoint == null ? null : headerNames)) {
+                for (CSVRecord record : records) {
+                    long row = rowOffset + record.getRecordNumber();
+                    long position = byteOffset + record.getBytePosition();
+                    Map.Entry<Long, ImportCheckpoint> checkpoint = committed.floorEntry(row);
+                    boolean isCommitted = checkpoint != null && row <= checkpoint.getValue().lastRow();
+                    if (chunk != null && (chunk.rows == chunkRows || isCommitted)) {
+                        chunkLoads.add(finishChunk(table, fingerprint, chunk, position, progress, executor));
+                        chunk = null;
+                    }
+                    if (isCommitted) {
+                        resumedRows++;
+                        continue;
+                    }
+                    if (chunk == null) {
+                        Path chunkFile = Files.createTempFile(table.collectionName() + "-", ".csv");
+                        chunk = new PendingChunk(chunkFile,
+                                new CSVPrinter(Files.newBufferedWriter(chunkFile), chunkFormat), row, position);
+                    }
+                    chunk.printer.printRecord(record);
+                    chunk.rows++;
+                    rows++;
+                }
+                if (chunk != null) {
+                    chunkLoads.add(finishChunk(table, fingerprint, chunk, Files.size(file), progress, executor));
+                    chunk = null;
+                }
+            } finally {
+                if (chunk != null) {
+                    // splitting failed part way through a chunk, which is never loaded
+                    chunk.printer.close();
+                    Files.deleteIfExists(chunk.file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new SplitFile(startNanos, rows, resumedRows, chunkLoads);
+    }
+
+    /**
+     * Opens a CSV file at an offset, tracking the byte position of each record.
+     *
+     * @param file        The CSV file.
+     * @param byteOffset  The offset of the first row to read, in bytes, or 0 to read the header first.
+     * @param headerNames The names of the columns when reading from the middle of the file, or null at its start.
+     * @return A parser of the rows from the offset on; its record numbers and byte positions start at the offset.
+     * @throws IOException Thrown if the file cannot be opened.
+     */
+    private CSVParser open(Path file, long byteOffset, List<String> headerNames) throws IOException {
+        FileChannel channel = FileChannel.open(file);
+        try {
+            CSVFormat format = headerNames == null ? parser : parser.builder()
+                    .setHeader(headerNames.toArray(String[]::new))
+                    .setSkipHeaderRecord(false)
+                    .build();
+            return CSVParser.builder()
+                    .setInputStream(Channels.newInputStream(channel.position(byteOffset)))
+                    .setCharset(StandardCharsets.UTF_8)
+                    .setFormat(format)
+                    .setTrackBytes(true)
+                    .get();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Closes a chunk file and starts loading it.
+     *
+     * @param table       The table the chunk belongs to.
+     * @param fingerprint The fingerprint of the file the chunk was split from.
+     * @param chunk       The chunk to load.
+     * @param endByte     The offset just past the chunk's last row in the original file, in bytes.
+     * @param progress    The tracker to report the chunk to once it is committed.
+     * @param executor    The executor to load the chunk on.
+     * @return The load of the chunk.
+     * @throws IOException Thrown if the chunk file cannot be written.
+     */
+    private CompletableFuture<Void> finishChunk(Table table, String fingerprint, PendingChunk chunk, long endByte,
+                                                ProgressTracker progress, ExecutorService executor) throws IOException {
+        chunk.printer.close();
+        ImportCheckpoint checkpoint = new ImportCheckpoint(table.collectionName(), fingerprint,
+                chunk.firstRow, chunk.firstRow + chunk.rows - 1, chunk.startByte, endByte);
+        return loadChunk(checkpoint, chunk.file, progress, executor);
+    }
+
+    /**
+     * Starts loading a chunk file, recording it in the journal and deleting it once it has been loaded.
+     * When resuming, the chunk is upserted, since the stopped import may have committed it without recording it.
+     *
+     * @param checkpoint The rows of the original file the chunk holds.
+     * @param chunkFile  The chunk file to load.
+     * @param progress   The tracker to report the chunk to once it is committed.
+     * @param executor   The executor to load the chunk on.
+     * @return The load of the chunk.
+     */
+    private CompletableFuture<Void> loadChunk(ImportCheckpoint checkpoint, Path chunkFile, ProgressTracker progress,
+                                              ExecutorService executor) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                // a chunk the stopped import committed without recording it is upserted over the rows it left
+                if (resuming) {
+                    importer.upsertLoad(chunkFile.toString(), checkpoint.collectionName());
+                } else {
+                    importer.bulkLoad(chunkFile.toString(), checkpoint.collectionName());
+                }
+                if (journal != null) journal.commit(checkpoint);
+                progress.committed(checkpoint);
+            } catch (DatabaseException e) {
+                throw new CompletionException(e);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                try {
+                    Files.deleteIfExists(chunkFile);
+                } catch (IOException e) {
+                    chunkFile.toFile().deleteOnExit();
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * Throws the exception that made an import fail, unwrapped from the exceptions the futures added around it.
+     *
+     * @param e The exception thrown while waiting for the imports.
+     * @return Nothing; the method always throws, but returns an exception so callers can write "throw rethrow(e)".
+     */
+    private static RuntimeException rethrow(CompletionException e) throws DatabaseException, IOException {
+        Throwable cause = e;
+        while (cause instanceof CompletionException && cause.getCause() != null) cause = cause.getCause();
+        if (cause instanceof UncheckedIOException unchecked) throw unchecked.getCause();
+        if (cause instanceof DatabaseException databaseException) throw databaseException;
+        if (cause instanceof IOException ioException) throw ioException;
+        if (cause instanceof RuntimeException runtimeException) throw runtimeException;
+        if (cause instanceof Error error) throw error;
+        throw new IllegalStateException(cause);
+    }
+}
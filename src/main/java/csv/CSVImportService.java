@@ -1,17 +1,48 @@
 package csv;
 
 import data.*;
+import data.Record;
 import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVRecord;
+import org.apache.commons.csv.CSVParser;
 
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /**
  * Defines a job that imports the CSV files.
  */
 public class CSVImportService implements ICSVImportService {
+    /**
+     * The number of rows per insert when a bulk load falls back to inserts.
+     * The driver still splits batches that would exceed the database's limit on parameters per statement.
+     */
+    public static final int BULK_BATCH_SIZE = 10_000;
+
+    /**
+     * The collection holding a hash of every row imported incrementally, by collection and row key.
+     */
+    public static final String ROW_HASHES_COLLECTION = "import_row_hashes";
+
+    /**
+     * The number of keys per DELETE when an incremental import deletes rows that are no longer in a file.
+     */
+    private static final int DELETE_CHUNK_SIZE = 1_000;
+
+    /**
+     * Separates the values of a composite row key and the fields hashed for a row.
+     * A control character, so it never appears in the values of a CSV file.
+     */
+    private static final char VALUE_SEPARATOR = '\u001F';
+
     /**
      * The database driver to use to import the CSVs.
      */
@@ -22,11 +53,98 @@ public class CSVImportService implements ICSVImportService {
      */
     private final CSVFormat parser;
 
+    /**
+     * The number of rows to insert per round trip to the database.
+     */
+    private final int batchSize;
+
+    /**
+     * The types of the columns of each collection's files, by collection name.
+     */
+    private final Map<String, CSVSchema> schemas = new HashMap<>();
+
+    /**
+     * The listeners told about every collection an incremental import changed.
+     */
+    private final List<Consumer<ChangeSummary>> changeListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Work to perform on the records of a CSV file.
+     *
+     * @param <T> The type of the result.
+     */
+    @FunctionalInterface
+    private interface RecordsCallback<T> {
+        T apply(List<String> headerNames, Iterable<IRecord> records) throws DatabaseException, IOException;
+    }
+
+    /**
+     * The changes an incremental import is applying to one collection.
+     */
+    private static final class CollectionChanges {
+        /**
+         * The collection the file is imported into.
+         */
+        private final String collectionName;
+        /**
+         * The types and primary key of the file's columns.
+         */
+        private final CSVSchema schema;
+        /**
+         * The hashes of the rows imported before, by row key. Keys are removed as the file's rows are read,
+         * so the keys left once the file has been read are the rows to delete.
+         */
+        private final Map<String, String> previousHashes;
+        /**
+         * The number of rows that were not in the collection before.
+         */
+        private long inserted;
+        /**
+         * The number of rows whose values changed.
+         */
+        private long updated;
+        /**
+         * The number of rows that were deleted.
+         */
+        private long deleted;
+        /**
+         * The number of rows that did not change.
+         */
+        private long unchanged;
+
+        /**
+         * @param collectionName The collection the file is imported into.
+         * @param schema         The types and primary key of the file's columns.
+         * @param previousHashes The hashes of the rows imported before, by row key.
+         */
+        private CollectionChanges(String collectionName, CSVSchema schema, Map<String, String> previousHashes) {
+            this.collectionName = collectionName;
+            this.schema = schema;
+            this.previousHashes = previousHashes;
+        }
+
+        /**
+         * @return What changed in the collection.
+         */
+        private ChangeSummary summary() {
+            return new ChangeSummary(collectionName, inserted, updated, deleted, unchanged);
+        }
+    }
+
     /**
      * @param driver The database driver to use to import the CSVs.
      */
     public CSVImportService(IDatabaseDriver driver) {
+        this(driver, InsertBatchQuery.DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param driver    The database driver to use to import the CSVs.
+     * @param batchSize The number of rows to insert per round trip to the database.
+     */
+    public CSVImportService(IDatabaseDriver driver, int batchSize) {
         this.driver = driver;
+        this.batchSize = batchSize;
         parser = CSVFormat.DEFAULT.builder()
                 .setHeader()
                 .setSkipHeaderRecord(true)
@@ -35,6 +153,8 @@ public class CSVImportService implements ICSVImportService {
 
     /**
      * Imports the CSV files into the database.
+     * Rows are inserted in batches, so each batch costs a single round trip,
+     * and the whole file is committed once, so a failure never leaves a partially imported file.
      *
      * @param filePath       The path of the CSV file to import.
      * @param collectionName The database collection to insert the values into.
@@ -42,11 +162,305 @@ public class CSVImportService implements ICSVImportService {
      * @throws IOException       Thrown if an error occurs while reading the CSV file.
      */
     public void load(String filePath, String collectionName) throws DatabaseException, IOException {
-        Reader reader = new FileReader(filePath);
-        Iterable<CSVRecord> records = parser.parse(reader);
-        for (CSVRecord record : records) {
-            IRecord csvRecordAdapter = new CSVRecordAdapter(record);
-            driver.execute(new InsertQuery(collectionName, csvRecordAdapter));
+        insertInBatches(filePath, collectionName, batchSize, false);
+    }
+
+    /**
+     * Streams the CSV file to the database through {@link IBulkLoader} if the driver supports it,
+     * reading one row at a time. Otherwise, inserts it in batches of
+     * {@link #BULK_BATCH_SIZE} rows in a single transaction.
+     *
+     * @param filePath       The path of the CSV file to import; its header names the columns.
+     * @param collectionName The database collection to insert the values into.
+     * @throws DatabaseException Thrown if an error occurs while inserting a value into the database.
+     * @throws IOException       Thrown if an error occurs while reading the CSV file.
+     */
+    public void bulkLoad(String filePath, String collectionName) throws DatabaseException, IOException {
+        if (!(driver instanceof IBulkLoader loader) || !loader.isBulkLoadAvailable()) {
+            insertInBatches(filePath, collectionName, Math.max(batchSize, BULK_BATCH_SIZE), false);
+            return;
+        }
+        readRecords(filePath, collectionName, (headerNames, records) ->
+                loader.bulkLoad(collectionName, headerNames, records));
+    }
+
+    /**
+     * Upserts the rows in batches of {@link #BULK_BATCH_SIZE} rows in a single transaction.
+     */
+    @Override
+    public void upsertLoad(String filePath, String collectionName) throws DatabaseException, IOException {
+        insertInBatches(filePath, collectionName, Math.max(batchSize, BULK_BATCH_SIZE), true);
+    }
+
+    /**
+     * Decodes the values of a collection's files to the types in the schema instead of sending them as strings.
+     *
+     * @param collectionName The collection the files are imported into.
+     * @param schema         The types of the columns of the files.
+     * @return The import service, so schemas can be chained.
+     */
+    public CSVImportService schema(String collectionName, CSVSchema schema) {
+        schemas.put(collectionName, schema);
+        return this;
+    }
+
+    /**
+     * Applies the differences between CSV files and what was imported from them before.
+     * A SHA-256 hash of every row is kept in {@link #ROW_HASHES_COLLECTION}, so only rows whose hash changed are
+     * upserted, and rows whose key is no longer in a file are deleted, in reverse dependency order so no foreign key
+     * is broken. Files loaded with {@link #load} or {@link #bulkLoad} have no hashes, so the first incremental import
+     * after them upserts every row.
+     *
+     * @param filePathsByCollection The CSV file of each collection, with collections in dependency order.
+     * @return What changed in each collection, in the same order.
+     * @throws DatabaseException     Thrown if an error occurs while writing to the database.
+     * @throws IOException           Thrown if an error occurs while reading a CSV file.
+     * @throws IllegalStateException Thrown if a collection's schema has no primary key.
+     */
+    public List<ChangeSummary> incrementalLoad(SequencedMap<String, String> filePathsByCollection)
+            throws DatabaseException, IOException {
+        for (String collectionName : filePathsByCollection.keySet()) {
+            if (schemaOf(collectionName).getPrimaryKey().isEmpty()) {
+                throw new IllegalStateException("The schema of " + collectionName + " has no primary key");
+            }
+        }
+        List<ChangeSummary> summaries;
+        try {
+            summaries = driver.runInTransaction(transaction -> {
+                List<CollectionChanges> changes = new ArrayList<>();
+                for (Map.Entry<String, String> file : filePathsByCollection.entrySet()) {
+                    changes.add(upsertChangedRows(transaction, file.getValue(), file.getKey()));
+                }
+                for (CollectionChanges collection : changes.reversed()) deleteRemovedRows(transaction, collection);
+                return changes.stream().map(CollectionChanges::summary).toList();
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        for (ChangeSummary summary : summaries) {
+            if (summary.hasChanges()) changeListeners.forEach(listener -> listener.accept(summary));
+        }
+        return summaries;
+    }
+
+    /**
+     * Registers a listener told about every collection an incremental import changed, once the changes are committed.
+     *
+     * @param listener The listener to notify.
+     */
+    public void addChangeListener(Consumer<ChangeSummary> listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Upserts the rows of a file that are new or changed since the last incremental import, with their hashes.
+     *
+     * @param transaction    The driver of the import's transaction.
+     * @param filePath       The path of the CSV file to import.
+     * @param collectionName The database collection the file is imported into.
+     * @return The changes to the collection, with the keys of the rows to delete.
+     * @throws DatabaseException    Thrown if an error occurs while writing to the database.
+     * @throws UncheckedIOException Thrown if an error occurs while reading the CSV file.
+     */
+    private CollectionChanges upsertChangedRows(IDatabaseDriver transaction, String filePath, String collectionName)
+            throws DatabaseException {
+        Map<String, String> previousHashes = new HashMap<>();
+        SelectQuery hashesQuery = new SelectQuery(ROW_HASHES_COLLECTION)
+                .columns("row_key", "row_hash")
+                .filter("collection_name", Comparison.EQUAL, collectionName);
+        for (IRecord hash : transaction.execute(hashesQuery)) {
+            previousHashes.put((String) hash.getValue("row_key"), (String) hash.getValue("row_hash"));
+        }
+        CollectionChanges changes = new CollectionChanges(collectionName, schemaOf(collectionName), previousHashes);
+        try {
+            readRecords(filePath, collectionName, (headerNames, records) -> {
+                MessageDigest digest = sha256();
+                InsertBatchQuery rows = upsert(collectionName);
+                InsertBatchQuery hashes = upsert(ROW_HASHES_COLLECTION);
+                for (IRecord record : records) {
+                    String rowKey = rowKey(changes.schema, record);
+                    String rowHash = rowHash(digest, headerNames, record);
+                    String previousHash = previousHashes.remove(rowKey);
+                    if (rowHash.equals(previousHash)) {
+                        changes.unchanged++;
+                        continue;
+                    }
+                    if (previousHash == null) changes.inserted++;
+                    else changes.updated++;
+                    rows.add(record);
+                    hashes.add(new Record(Map.of(
+                            "collection_name", collectionName, "row_key", rowKey, "row_hash", rowHash)));
+                    if (rows.getRecords().size() == batchSize) {
+                        transaction.execute(rows);
+                        transaction.execute(hashes);
+                        rows = upsert(collectionName);
+                        hashes = upsert(ROW_HASHES_COLLECTION);
+                    }
+                }
+                if (!rows.getRecords().isEmpty()) {
+                    transaction.execute(rows);
+                    transaction.execute(hashes);
+                }
+                return null;
+            });
+        } catch (IOException e) {
+            // runInTransaction callbacks may only throw DatabaseException, so this is unwrapped by incrementalLoad
+            throw new UncheckedIOException(e);
+        }
+        return changes;
+    }
+
+    /**
+     * Deletes the rows that were imported before but are no longer in the collection's file, with their hashes.
+     * Single column keys are deleted in chunks of {@link #DELETE_CHUNK_SIZE}, composite keys one row at a time.
+     *
+     * @param transaction The driver of the import's transaction.
+     * @param changes     The changes to the collection, with the keys of the rows to delete.
+     * @throws DatabaseException Thrown if an error occurs while deleting from the database.
+     */
+    private static void deleteRemovedRows(IDatabaseDriver transaction, CollectionChanges changes)
+            throws DatabaseException {
+        List<String> keyColumns = changes.schema.getPrimaryKey();
+        List<String> rowKeys = new ArrayList<>(changes.previousHashes.keySet());
+        for (int start = 0; start < rowKeys.size(); start += DELETE_CHUNK_SIZE) {
+            List<String> chunk = rowKeys.subList(start, Math.min(start + DELETE_CHUNK_SIZE, rowKeys.size()));
+            if (keyColumns.size() == 1) {
+                CSVColumnType type = changes.schema.typeOf(keyColumns.getFirst());
+                transaction.execute(new DeleteQuery(changes.collectionName)
+                        .filter(keyColumns.getFirst(), Comparison.IN, chunk.stream().map(type::decode).toList()));
+            } else {
+                for (String rowKey : chunk) {
+                    String[] values = rowKey.split(String.valueOf(VALUE_SEPARATOR), -1);
+                    DeleteQuery delete = new DeleteQuery(changes.collectionName);
+                    for (int i = 0; i < keyColumns.size(); i++) {
+                        String column = keyColumns.get(i);
+                        delete.filter(column, Comparison.EQUAL, changes.schema.typeOf(column).decode(values[i]));
+                    }
+                    transaction.execute(delete);
+                }
+            }
+            transaction.execute(new DeleteQuery(ROW_HASHES_COLLECTION)
+                    .filter("collection_name", Comparison.EQUAL, changes.collectionName)
+                    .filter("row_key", Comparison.IN, chunk));
+        }
+        changes.deleted = rowKeys.size();
+    }
+
+    /**
+     * @param collectionName The collection to upsert into.
+     * @return An empty upsert batch of the import's batch size.
+     */
+    private InsertBatchQuery upsert(String collectionName) {
+        return new InsertBatchQuery(collectionName).batchSize(batchSize).updateOnDuplicateKey();
+    }
+
+    /**
+     * @param schema The schema naming the key columns.
+     * @param record A row of the file.
+     * @return The values of the row's key columns, joined by {@link #VALUE_SEPARATOR}.
+     */
+    private static String rowKey(CSVSchema schema, IRecord record) {
+        StringJoiner key = new StringJoiner(String.valueOf(VALUE_SEPARATOR));
+        for (String column : schema.getPrimaryKey()) key.add(String.valueOf(record.getValue(column)));
+        return key.toString();
+    }
+
+    /**
+     * @param digest      The digest to hash with, reset after use.
+     * @param headerNames The columns of the file, so adding or renaming a column changes every row's hash.
+     * @param record      A row of the file.
+     * @return The SHA-256 hash of the row's columns and values, in hexadecimal.
+     */
+    private static String rowHash(MessageDigest digest, List<String> headerNames, IRecord record) {
+        StringBuilder row = new StringBuilder();
+        for (String column : headerNames) {
+            Object value = record.getValue(column);
+            // \0 tells a null value apart from the text "null"
+            row.append(column).append('=').append(value == null ? "\0" : value).append(VALUE_SEPARATOR);
+        }
+        return HexFormat.of().formatHex(digest.digest(row.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * @return A SHA-256 digest.
+     */
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param collectionName The collection the files are imported into.
+     * @return The collection's schema, or an empty schema (every column TEXT) if it has none.
+     */
+    private CSVSchema schemaOf(String collectionName) {
+        return schemas.getOrDefault(collectionName, new CSVSchema());
+    }
+
+    /**
+     * Inserts the rows of a CSV file in batches, committing the whole file once.
+     *
+     * @param filePath       The path of the CSV file to import.
+     * @param collectionName The database collection to insert the values into.
+     * @param batchSize      The number of rows to insert per round trip to the database.
+     * @param upsert         Whether rows whose primary key is already in the collection are updated.
+     * @throws DatabaseException Thrown if an error occurs while inserting a value into the database.
+     * @throws IOException       Thrown if an error occurs while reading the CSV file.
+     */
+    private void insertInBatches(String filePath, String collectionName, int batchSize, boolean upsert)
+            throws DatabaseException, IOException {
+        readRecords(filePath, collectionName, (headerNames, records) -> driver.runInTransaction(transaction -> {
+            InsertBatchQuery batch = newBatch(collectionName, batchSize, upsert);
+            for (IRecord record : records) {
+                batch.add(record);
+                if (batch.getRecords().size() == batchSize) {
+                    transaction.execute(batch);
+                    batch = newBatch(collectionName, batchSize, upsert);
+                }
+            }
+            transaction.execute(batch);
+            return null;
+        }));
+    }
+
+    /**
+     * @param collectionName The collection to insert into.
+     * @param batchSize      The number of rows to insert per round trip to the database.
+     * @param upsert         Whether rows whose primary key is already in the collection are updated.
+     * @return An empty batch.
+     */
+    private static InsertBatchQuery newBatch(String collectionName, int batchSize, boolean upsert) {
+        InsertBatchQuery batch = new InsertBatchQuery(collectionName).batchSize(batchSize);
+        return upsert ? batch.updateOnDuplicateKey() : batch;
+    }
+
+    /**
+     * Reads the records of a CSV file with {@link MappedCSVReader}, or with commons-csv if the file has quoting
+     * the mapped reader does not handle. Either way, values are decoded with the collection's schema.
+     *
+     * @param filePath       The path of the CSV file to read.
+     * @param collectionName The collection the file is imported into.
+     * @param callback       The work to perform on the records.
+     * @param <T>            The type of the result of the work.
+     * @return The result of the work.
+     * @throws DatabaseException Thrown if the work fails.
+     * @throws IOException       Thrown if an error occurs while reading the CSV file.
+     */
+    private <T> T readRecords(String filePath, String collectionName, RecordsCallback<T> callback)
+            throws DatabaseException, IOException {
+        CSVSchema schema = schemaOf(collectionName);
+        MappedCSVReader mappedReader = MappedCSVReader.open(Path.of(filePath), schema);
+        if (mappedReader != null) return callback.apply(mappedReader.getHeaderNames(), mappedReader);
+        try (Reader reader = new FileReader(filePath); CSVParser records = parser.parse(reader)) {
+            return callback.apply(records.getHeaderNames(),
+                    () -> records.stream().map(record -> (IRecord) new CSVRecordAdapter(record, schema)).iterator());
+        } catch (UncheckedIOException e) {
+            // reading the next row failed part way through the file, after the transaction was rolled back
+            throw e.getCause();
         }
     }
 
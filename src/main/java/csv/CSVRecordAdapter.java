@@ -14,21 +14,37 @@ public class CSVRecordAdapter implements IRecord {
      * The CSVRecord to adapt.
      */
     private final CSVRecord csvRecord;
+    /**
+     * The types the values are decoded to.
+     */
+    private final CSVSchema schema;
 
     /**
      * @param csvRecord The CSVRecord to adapt.
      */
     protected CSVRecordAdapter(CSVRecord csvRecord) {
+        this(csvRecord, new CSVSchema());
+    }
+
+    /**
+     * @param csvRecord The CSVRecord to adapt.
+     * @param schema    The types the values are decoded to.
+     */
+    protected CSVRecordAdapter(CSVRecord csvRecord, CSVSchema schema) {
         this.csvRecord = csvRecord;
+        this.schema = schema;
     }
 
     @Override
     public Object getValue(String field) {
-        return csvRecord.get(field);
+        return schema.typeOf(field).decode(csvRecord.get(field));
     }
 
+    /**
+     * The header is shared by every record of the file, so no map is built per record.
+     */
     @Override
     public Collection<String> fieldNames() {
-        return csvRecord.toMap().keySet();
+        return csvRecord.getParser().getHeaderNames();
     }
 }
@@ -0,0 +1,66 @@
+package csv;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The types of the columns of a CSV file, so values reach the database already decoded instead of as strings.
+ * Columns that are not given a type are read as TEXT.
+ * <p>
+ * ex. new CSVSchema().column("food_id", CSVColumnType.INT).column("nutrient_value", CSVColumnType.DOUBLE)
+ */
+public class CSVSchema {
+    /**
+     * The types of the columns, by column name.
+     */
+    private final Map<String, CSVColumnType> columnTypes = new HashMap<>();
+    /**
+     * The columns that identify a row, used by incremental imports to match rows to the ones already imported.
+     */
+    private List<String> primaryKey = List.of();
+
+    /**
+     * Sets the type of a column.
+     *
+     * @param columnName The name of the column in the header of the file.
+     * @param type       The type to decode the column's values to.
+     * @return The schema, so columns can be chained.
+     */
+    public CSVSchema column(String columnName, CSVColumnType type) {
+        columnTypes.put(columnName, type);
+        return this;
+    }
+
+    /**
+     * Sets the columns that identify a row, which incremental imports need (ex. food_id and nutrient_id for
+     * nutrient_amounts). They should match the primary key of the collection.
+     *
+     * @param columnNames The names of the key columns in the header of the file.
+     * @return The schema, so columns can be chained.
+     */
+    public CSVSchema primaryKey(String... columnNames) {
+        primaryKey = List.of(columnNames);
+        return this;
+    }
+
+    /**
+     * @return The columns that identify a row, or an empty list if they have not been set.
+     */
+    public List<String> getPrimaryKey() {
+        return primaryKey;
+    }
+
+    /**
+     * @param columnName The name of the column in the header of the file.
+     * @return The type the column's values are decoded to.
+     */
+    public CSVColumnType typeOf(String columnName) {
+        return columnTypes.getOrDefault(columnName, CSVColumnType.TEXT);
+    }
+
+    @Override
+    public String toString() {
+        return "CSVSchema(columnTypes: %s, primaryKey: %s)".formatted(columnTypes, primaryKey);
+    }
+}
@@ -0,0 +1,57 @@
+package csv;
+
+import data.DatabaseException;
+import data.IDatabaseDriver;
+import data.IRecord;
+import data.InsertBatchQuery;
+import data.Record;
+import data.SelectQuery;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The version of the nutrition data in a database, which changes every time the nutrition CSVs are imported.
+ * Versions are random rather than counted, so two databases loaded separately (ex. MySQL and the offline database)
+ * never share a version, and a snapshot of one is never served for the other.
+ */
+public class CatalogueVersion {
+    /**
+     * The table holding the version in its only row.
+     */
+    public static final String TABLE_NAME = "catalogue_version";
+    /**
+     * The id of the row holding the version.
+     */
+    private static final int ROW_ID = 1;
+
+    private CatalogueVersion() {
+    }
+
+    /**
+     * @param driver The driver of the database to read the version of.
+     * @return The version of the database's nutrition data.
+     * @throws DatabaseException Thrown if the version cannot be read (ex. the migration creating it was not applied).
+     */
+    public static long read(IDatabaseDriver driver) throws DatabaseException {
+        List<IRecord> records = driver.execute(new SelectQuery(TABLE_NAME).columns("version"));
+        if (records.isEmpty()) throw new DatabaseException("The catalogue version has not been set.");
+        return ((Number) records.getFirst().getValue("version")).longValue();
+    }
+
+    /**
+     * Gives the database's nutrition data a new version, after an import changed it.
+     *
+     * @param driver The driver of the database whose nutrition data changed.
+     * @return The new version.
+     * @throws DatabaseException Thrown if the version cannot be written.
+     */
+    public static long bump(IDatabaseDriver driver) throws DatabaseException {
+        long version = ThreadLocalRandom.current().nextLong();
+        driver.execute(new InsertBatchQuery(TABLE_NAME)
+                .add(new Record(Map.of("id", ROW_ID, "version", version)))
+                .updateOnDuplicateKey());
+        return version;
+    }
+}
@@ -0,0 +1,32 @@
+package csv;
+
+/**
+ * What an incremental import changed in one collection, published so caches of the collection can be invalidated
+ * only when it actually changed.
+ *
+ * @param collectionName The collection the CSV file was imported into.
+ * @param inserted       The number of rows that were not in the collection before.
+ * @param updated        The number of rows whose values changed.
+ * @param deleted        The number of rows that are no longer in the file and were deleted.
+ * @param unchanged      The number of rows that were not sent to the database because they did not change.
+ */
+public record ChangeSummary(
+        String collectionName,
+        long inserted,
+        long updated,
+        long deleted,
+        long unchanged
+) {
+    /**
+     * @return True if any row of the collection was inserted, updated or deleted.
+     */
+    public boolean hasChanges() {
+        return inserted + updated + deleted > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "%s: %d inserted, %d updated, %d deleted, %d unchanged"
+                .formatted(collectionName, inserted, updated, deleted, unchanged);
+    }
+}
@@ -3,7 +3,68 @@ package csv;
 import data.DatabaseException;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.SequencedMap;
+import java.util.function.Consumer;
 
 public interface ICSVImportService {
     void load(String filePath, String collectionName) throws DatabaseException, IOException;
+
+    /**
+     * Imports a large CSV file as fast as the database allows, streaming it in a single bulk load when the database
+     * supports one and falling back to large batched inserts when it does not. Like {@link #load(String, String)},
+     * a failure never leaves a partially imported file.
+     *
+     * @param filePath       The path of the CSV file to import; its header names the columns.
+     * @param collectionName The database collection to insert the values into.
+     * @throws DatabaseException Thrown if an error occurs while inserting a value into the database.
+     * @throws IOException       Thrown if an error occurs while reading the CSV file.
+     */
+    void bulkLoad(String filePath, String collectionName) throws DatabaseException, IOException;
+
+    /**
+     * Imports a CSV file in batched upserts: rows whose primary key is already in the collection are updated instead
+     * of failing on the duplicate key, so loading the same rows again (ex. a chunk an interrupted import committed
+     * but did not record) leaves the collection as it was. Like {@link #load(String, String)}, a failure never
+     * leaves a partially imported file.
+     *
+     * @param filePath       The path of the CSV file to import; its header names the columns.
+     * @param collectionName The database collection to upsert the values into, which must have a primary key.
+     * @throws DatabaseException Thrown if an error occurs while upserting a value into the database.
+     * @throws IOException       Thrown if an error occurs while reading the CSV file.
+     */
+    void upsertLoad(String filePath, String collectionName) throws DatabaseException, IOException;
+
+    /**
+     * Sets the types the values of a collection's files are decoded to before they are sent to the database.
+     * Columns without a type are sent as text.
+     *
+     * @param collectionName The collection the files are imported into.
+     * @param schema         The types of the columns of the files.
+     * @return The import service, so schemas can be chained.
+     */
+    ICSVImportService schema(String collectionName, CSVSchema schema);
+
+    /**
+     * Applies the differences between CSV files and what was imported from them before, instead of reimporting them.
+     * Only rows that are new or changed are written, and rows that are no longer in a file are deleted.
+     * Every file is applied in one transaction, so the collections never reflect a mix of old and new files.
+     * Each collection's schema must have a primary key.
+     *
+     * @param filePathsByCollection The CSV file of each collection, with collections in dependency order
+     *                              (a collection after the collections its foreign keys reference).
+     * @return What changed in each collection, in the same order.
+     * @throws DatabaseException Thrown if an error occurs while writing to the database.
+     * @throws IOException       Thrown if an error occurs while reading a CSV file.
+     */
+    List<ChangeSummary> incrementalLoad(SequencedMap<String, String> filePathsByCollection)
+            throws DatabaseException, IOException;
+
+    /**
+     * Registers a listener told about every collection an incremental import changed, once the changes are committed
+     * (ex. to invalidate the collection in a query cache).
+     *
+     * @param listener The listener to notify.
+     */
+    void addChangeListener(Consumer<ChangeSummary> listener);
 }
@@ -0,0 +1,36 @@
+package csv;
+
+/**
+ * A chunk of a CSV file whose rows have been committed to the database, as recorded in an
+ * {@link ImportCheckpointJournal}.
+ *
+ * @param collectionName  The collection the file is imported into.
+ * @param fileFingerprint The size and modification time of the file, so a checkpoint is never applied to a
+ *                        file that changed since.
+ * @param firstRow        The number of the chunk's first row, counting the rows after the header from 1.
+ * @param lastRow         The number of the chunk's last row.
+ * @param startByte       The offset of the chunk's first row in the file, in bytes.
+ * @param endByte         The offset just past the chunk's last row, in bytes.
+ */
+public record ImportCheckpoint(
+        String collectionName,
+        String fileFingerprint,
+        long firstRow,
+        long lastRow,
+        long startByte,
+        long endByte
+) {
+    /**
+     * @return The number of rows in the chunk.
+     */
+    public long rows() {
+        return lastRow - firstRow + 1;
+    }
+
+    /**
+     * @return The number of bytes of the file the chunk's rows take up.
+     */
+    public long bytes() {
+        return endByte - startByte;
+    }
+}
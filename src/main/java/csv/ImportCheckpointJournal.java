@@ -0,0 +1,174 @@
+package csv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An append-only file recording the chunks of each CSV file that have been committed to the database,
+ * so an import that dies part way through resumes after the rows it already committed instead of starting
+ * again (and failing on the duplicate keys of the rows it already loaded).
+ * <p>
+ * Each committed chunk is one line: the collection, the file's fingerprint, the first and last row, and the start
+ * and end byte offsets of the rows in the file. Lines are flushed to disk before the next chunk is recorded.
+ * A line cut short by a crash is dropped when the journal is opened again. A chunk committed just before a crash,
+ * but not yet recorded, is loaded again on resume; {@link #begin()} tells the import it is resuming, so it loads the
+ * unrecorded chunks with upserts that leave the rows already committed as they are.
+ * <p>
+ * The journal describes one database: delete it (or call {@link #clear()}) when the database is recreated.
+ */
+public class ImportCheckpointJournal {
+    /**
+     * Separates the fields of a line of the journal.
+     */
+    private static final String FIELD_SEPARATOR = "\t";
+
+    /**
+     * The path of the journal file.
+     */
+    private final Path path;
+
+    /**
+     * The chunks recorded in the journal, in the order they were committed.
+     */
+    private final List<ImportCheckpoint> checkpoints = new ArrayList<>();
+
+    /**
+     * Opens a journal, reading the chunks already recorded in it.
+     *
+     * @param path The path of the journal file, which is created when the first chunk is recorded.
+     * @throws IOException Thrown if the journal exists but cannot be read.
+     */
+    public ImportCheckpointJournal(Path path) throws IOException {
+        this.path = path;
+        if (!Files.exists(path)) return;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            String contents = Files.readString(path, StandardCharsets.UTF_8);
+            int end = contents.lastIndexOf('\n') + 1;
+            if (end < contents.length()) {
+                // the last line was cut short by a crash, so the next line must not be appended to it
+                channel.truncate(contents.substring(0, end).getBytes(StandardCharsets.UTF_8).length);
+            }
+            for (String line : contents.substring(0, end).split("\n")) {
+                if (!line.isEmpty()) checkpoints.add(parse(line));
+            }
+        }
+    }
+
+    /**
+     * Marks the start of an import, creating the journal file if it does not exist. The file is deleted by
+     * {@link #clear()} once an import finishes, so a file that already exists was left by an import that stopped.
+     *
+     * @return True if an earlier import stopped part way through, so chunks it committed without recording them
+     * may already be in the database.
+     * @throws IOException Thrown if the journal file cannot be created.
+     */
+    public synchronized boolean begin() throws IOException {
+        if (Files.exists(path)) return true;
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        return false;
+    }
+
+    /**
+     * @param file A CSV file.
+     * @return A fingerprint of the file's size and modification time, which changes if the file is replaced.
+     * @throws IOException Thrown if the file's attributes cannot be read.
+     */
+    public static String fingerprint(Path file) throws IOException {
+        return Files.size(file) + ":" + Files.getLastModifiedTime(file).toMillis();
+    }
+
+    /**
+     * Records that a chunk has been committed, flushing the journal to disk before returning.
+     *
+     * @param checkpoint The committed chunk.
+     * @throws IOException Thrown if the journal cannot be written.
+     */
+    public synchronized void commit(ImportCheckpoint checkpoint) throws IOException {
+        String line = String.join(FIELD_SEPARATOR,
+                checkpoint.collectionName(),
+                checkpoint.fileFingerprint(),
+                Long.toString(checkpoint.firstRow()),
+                Long.toString(checkpoint.lastRow()),
+                Long.toString(checkpoint.startByte()),
+                Long.toString(checkpoint.endByte())) + "\n";
+        if (path.getParent() != null) Files.createDirectories(path.getParent());
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) channel.write(buffer);
+            channel.force(false);
+        }
+        checkpoints.add(checkpoint);
+    }
+
+    /**
+     * @param collectionName  The collection the file is imported into.
+     * @param fileFingerprint The current fingerprint of the file.
+     * @return The committed chunks of the file, ordered by their first row.
+     */
+    public synchronized List<ImportCheckpoint> committedChunks(String collectionName, String fileFingerprint) {
+        return checkpoints.stream()
+                .filter(checkpoint -> checkpoint.collectionName().equals(collectionName)
+                        && checkpoint.fileFingerprint().equals(fileFingerprint))
+                .sorted(Comparator.comparingLong(ImportCheckpoint::firstRow))
+                .toList();
+    }
+
+    /**
+     * Finds where an import of the file can resume: the end of the rows committed from the start of the file
+     * without a gap. Chunks that load concurrently may also have committed after the gap;
+     * see {@link #committedChunks}.
+     *
+     * @param collectionName  The collection the file is imported into.
+     * @param fileFingerprint The current fingerprint of the file.
+     * @return The committed rows from the first row on, as one checkpoint, or null if the first row is not committed.
+     */
+    public synchronized ImportCheckpoint resumePoint(String collectionName, String fileFingerprint) {
+        ImportCheckpoint resumePoint = null;
+        for (ImportCheckpoint checkpoint : committedChunks(collectionName, fileFingerprint)) {
+            long nextRow = resumePoint == null ? 1 : resumePoint.lastRow() + 1;
+            if (checkpoint.firstRow() != nextRow) break;
+            resumePoint = new ImportCheckpoint(collectionName, fileFingerprint, 1, checkpoint.lastRow(),
+                    resumePoint == null ? checkpoint.startByte() : resumePoint.startByte(), checkpoint.endByte());
+        }
+        return resumePoint;
+    }
+
+    /**
+     * Forgets every chunk and deletes the journal file, once an import has finished or the database is recreated.
+     *
+     * @throws IOException Thrown if the journal file cannot be deleted.
+     */
+    public synchronized void clear() throws IOException {
+        checkpoints.clear();
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * @param line A line of the journal.
+     * @return The chunk the line records.
+     * @throws IOException Thrown if the line is not a chunk, meaning the file is not a journal.
+     */
+    private ImportCheckpoint parse(String line) throws IOException {
+        String[] fields = line.split(FIELD_SEPARATOR);
+        try {
+            if (fields.length != 6) throw new NumberFormatException("expected 6 fields");
+            return new ImportCheckpoint(fields[0], fields[1],
+                    Long.parseLong(fields[2]), Long.parseLong(fields[3]),
+                    Long.parseLong(fields[4]), Long.parseLong(fields[5]));
+        } catch (NumberFormatException e) {
+            throw new IOException("%s is not an import journal (invalid line \"%s\")".formatted(path, line), e);
+        }
+    }
+}
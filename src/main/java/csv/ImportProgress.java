@@ -0,0 +1,65 @@
+package csv;
+
+import java.time.Duration;
+
+/**
+ * How far an import has come, as reported to an {@link ImportProgressListener} each time a chunk is committed.
+ * Rows and bytes committed before the import resumed are not counted, so the rates are those of this run.
+ *
+ * @param collectionName The collection of the chunk that was just committed.
+ * @param rows           The number of rows committed so far, across every table.
+ * @param bytes          The number of bytes of the files committed so far.
+ * @param totalBytes     The number of bytes of the files to commit in this run.
+ * @param elapsed        The time since the import started.
+ */
+public record ImportProgress(
+        String collectionName,
+        long rows,
+        long bytes,
+        long totalBytes,
+        Duration elapsed
+) {
+    /**
+     * @return The number of rows committed per second.
+     */
+    public double rowsPerSecond() {
+        return rows * 1_000_000_000.0 / Math.max(1, elapsed.toNanos());
+    }
+
+    /**
+     * @return The number of bytes of the files committed per second.
+     */
+    public double bytesPerSecond() {
+        return bytes * 1_000_000_000.0 / Math.max(1, elapsed.toNanos());
+    }
+
+    /**
+     * @return The fraction of the import that is done, between 0 and 1.
+     */
+    public double fractionDone() {
+        return totalBytes == 0 ? 1 : Math.min(1, (double) bytes / totalBytes);
+    }
+
+    /**
+     * Estimates the time left assuming the rest of the files load at the rate seen so far.
+     *
+     * @return The estimated time left, or null if nothing has been committed yet to estimate the rate from.
+     */
+    public Duration eta() {
+        if (bytes == 0) return null;
+        long remainingBytes = Math.max(0, totalBytes - bytes);
+        return Duration.ofNanos((long) (remainingBytes / bytesPerSecond() * 1_000_000_000.0));
+    }
+
+    @Override
+    public String toString() {
+        Duration eta = eta();
+        return "%s: %.1f%%, %d rows, %.0f rows/s, %.1f MB/s, ETA %s".formatted(
+                collectionName,
+                fractionDone() * 100,
+                rows,
+                rowsPerSecond(),
+                bytesPerSecond() / 1_000_000,
+                eta == null ? "unknown" : eta.toSeconds() + " s");
+    }
+}
@@ -0,0 +1,14 @@
+package csv;
+
+/**
+ * Receives the progress of an import, so a command line or UI can show it.
+ */
+@FunctionalInterface
+public interface ImportProgressListener {
+    /**
+     * Called each time a chunk of rows is committed. Calls come from the import's threads, but never two at once.
+     *
+     * @param progress How far the import has come.
+     */
+    void progress(ImportProgress progress);
+}
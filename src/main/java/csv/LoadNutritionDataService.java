@@ -1,19 +1,197 @@
 package csv;
 
 import data.DatabaseException;
+import data.IDatabaseDriver;
+import data.Migration;
+import data.MigrationRunner;
 import data.MySQLConfig;
 import data.MySQLDriver;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.SequencedMap;
+import java.util.function.Consumer;
 
 public class LoadNutritionDataService {
+    /**
+     * The directory holding the nutrition CSVs.
+     */
+    private static final Path NUTRITION_DATA_DIRECTORY = Path.of("src/main/java/csv/nutrition_data");
+
+    /**
+     * The directory holding the schema migrations, which create the tables the imports keep their state in.
+     */
+    private static final String MIGRATIONS_DIRECTORY = "src/main/java/data/migrations";
+
+    /**
+     * The journal of the chunks committed by the command line import. It is kept outside target, since "mvn clean"
+     * (run when the app is started) would otherwise delete it between a failed import and the rerun resuming it.
+     * reset-database.sh deletes it along with recreating the database.
+     */
+    private static final Path JOURNAL_PATH = Path.of("local-data", "nutrition-import.journal");
+
+    /**
+     * Imports the nutrition CSVs, or with --incremental, applies only what changed in them since the last refresh.
+     * An import that died part way through resumes after the rows it committed. Either way, the schema migrations
+     * are applied first, and the nutrition data is compiled into a {@link NutritionSnapshot} for the app to map
+     * at startup. With --snapshot, only the snapshot is compiled.
+     *
+     * @param args Command line args (--incremental to refresh instead of loading, --snapshot to skip the import).
+     * @throws IOException       Thrown if an error occurs while reading a CSV file.
+     * @throws DatabaseException Thrown if an error occurs while writing to the database.
+     */
     public static void main(String[] args) throws IOException, DatabaseException {
-        CSVImportService csvImporter = new CSVImportService(new MySQLDriver(MySQLConfig.instance()));
-        csvImporter.load("src/main/java/csv/nutrition_data/nutrients.csv", "nutrients");
-        csvImporter.load("src/main/java/csv/nutrition_data/measures.csv", "measures");
-        csvImporter.load("src/main/java/csv/nutrition_data/food_groups.csv", "food_groups");
-        csvImporter.load("src/main/java/csv/nutrition_data/foods.csv", "foods");
-        csvImporter.load("src/main/java/csv/nutrition_data/conversion_factors.csv", "conversion_factors");
-        csvImporter.load("src/main/java/csv/nutrition_data/nutrient_amounts.csv", "nutrient_amounts");
+        MySQLDriver driver = new MySQLDriver(MySQLConfig.instance());
+        for (Migration migration : new MigrationRunner(driver, Path.of(MIGRATIONS_DIRECTORY)).migrate()) {
+            System.out.println("Applied schema migration " + migration);
+        }
+        List<String> options = List.of(args);
+        if (options.contains("--incremental")) {
+            for (ChangeSummary summary : refresh(driver)) System.out.println(summary);
+        } else if (!options.contains("--snapshot")) {
+            ImportCheckpointJournal journal = new ImportCheckpointJournal(JOURNAL_PATH);
+            for (TableImportStatistics statistics : load(driver, journal, System.out::println)) {
+                System.out.println(statistics);
+            }
+        }
+        long version = NutritionSnapshot.compile(driver, NutritionSnapshot.DEFAULT_PATH);
+        System.out.printf("Compiled catalogue version %d to %s%n", version, NutritionSnapshot.DEFAULT_PATH);
+    }
+
+    /**
+     * Imports every nutrition CSV. Each table starts as soon as the tables its foreign keys reference are loaded,
+     * so independent tables load concurrently, and each file is bulk loaded, so even the full nutrient file loads
+     * in seconds. Ids and amounts are decoded to numbers as the files are read, following the column types in
+     * create-database.sql.
+     *
+     * The import gives the nutrition data a new {@link CatalogueVersion}, so snapshots of the old data are not used.
+     *
+     * @param driver The driver of the database to load the CSVs into.
+     * @return How long each table took to import.
+     * @throws DatabaseException Thrown if an error occurs while inserting a value into the database.
+     * @throws IOException       Thrown if an error occurs while reading a CSV file.
+     */
+    public static List<TableImportStatistics> load(IDatabaseDriver driver) throws IOException, DatabaseException {
+        return load(driver, null, progress -> { });
+    }
+
+    /**
+     * Imports every nutrition CSV as {@link #load(IDatabaseDriver)} does, recording the committed chunks in a
+     * journal so an import that dies part way through resumes after them when it is run again.
+     *
+     * @param driver           The driver of the database to load the CSVs into.
+     * @param journal          The journal to record the committed chunks in, or null to always start from the first row.
+     * @param progressListener The listener told the rows/s, bytes/s and time left each time a chunk is committed.
+     * @return How long each table took to import.
+     * @throws DatabaseException Thrown if an error occurs while inserting a value into the database.
+     * @throws IOException       Thrown if an error occurs while reading a CSV file or the journal.
+     */
+    public static List<TableImportStatistics> load(IDatabaseDriver driver, ImportCheckpointJournal journal,
+                                                   ImportProgressListener progressListener)
+            throws IOException, DatabaseException {
+        return load(driver, NUTRITION_DATA_DIRECTORY, journal, progressListener);
+    }
+
+    /**
+     * Imports the nutrition CSVs in a directory (ex. one written by {@link SyntheticDatasetGenerator}) as
+     * {@link #load(IDatabaseDriver, ImportCheckpointJournal, ImportProgressListener)} does.
+     *
+     * @param driver           The driver of the database to load the CSVs into.
+     * @param directory        The directory holding a CSV named after each nutrition table.
+     * @param journal          The journal to record the committed chunks in, or null to always start from the first row.
+     * @param progressListener The listener told the rows/s, bytes/s and time left each time a chunk is committed.
+     * @return How long each table took to import.
+     * @throws DatabaseException Thrown if an error occurs while inserting a value into the database.
+     * @throws IOException       Thrown if an error occurs while reading a CSV file or the journal.
+     */
+    public static List<TableImportStatistics> load(IDatabaseDriver driver, Path directory,
+                                                   ImportCheckpointJournal journal,
+                                                   ImportProgressListener progressListener)
+            throws IOException, DatabaseException {
+        CSVImportService csvImporter = new CSVImportService(driver);
+        registerSchemas(csvImporter);
+        List<TableImportStatistics> statistics = new CSVImportScheduler(csvImporter, importParallelism())
+                .journal(journal)
+                .progressListener(progressListener)
+                .table("nutrients", csvPath(directory, "nutrients"))
+                .table("measures", csvPath(directory, "measures"))
+                .table("food_groups", csvPath(directory, "food_groups"))
+                .table("foods", csvPath(directory, "foods"), "food_groups")
+                .table("conversion_factors", csvPath(directory, "conversion_factors"), "foods", "measures")
+                .table("nutrient_amounts", csvPath(directory, "nutrient_amounts"), "foods", "nutrients")
+                .run();
+        CatalogueVersion.bump(driver);
+        return statistics;
+    }
+
+    /**
+     * Applies the changes in the nutrition CSVs since they were last refreshed, in one transaction:
+     * new and changed rows are upserted and rows removed from a file are deleted, so a small update to the files
+     * does not reimport them. If anything changed, the nutrition data gets a new {@link CatalogueVersion}.
+     *
+     * @param driver          The driver of the database to apply the CSVs to.
+     * @param changeListeners Listeners told which tables changed once the changes are committed (ex. a query cache).
+     * @return What changed in each table.
+     * @throws DatabaseException Thrown if an error occurs while writing to the database.
+     * @throws IOException       Thrown if an error occurs while reading a CSV file.
+     */
+    @SafeVarargs
+    public static List<ChangeSummary> refresh(IDatabaseDriver driver, Consumer<ChangeSummary>... changeListeners)
+            throws IOException, DatabaseException {
+        CSVImportService csvImporter = new CSVImportService(driver);
+        for (Consumer<ChangeSummary> listener : changeListeners) csvImporter.addChangeListener(listener);
+        registerSchemas(csvImporter);
+        // referenced tables come first, so their new rows exist before the rows referencing them
+        SequencedMap<String, String> files = new LinkedHashMap<>();
+        for (String table : List.of("nutrients", "measures", "food_groups", "foods", "conversion_factors", "nutrient_amounts")) {
+            files.put(table, csvPath(NUTRITION_DATA_DIRECTORY, table));
+        }
+        List<ChangeSummary> summaries = csvImporter.incrementalLoad(files);
+        if (summaries.stream().anyMatch(ChangeSummary::hasChanges)) CatalogueVersion.bump(driver);
+        return summaries;
+    }
+
+    /**
+     * @return The number of tables to import at once; each concurrent load holds a pooled connection.
+     */
+    static int importParallelism() {
+        return Math.min(Runtime.getRuntime().availableProcessors(), MySQLConfig.instance().getMaxPoolSize());
+    }
+
+    /**
+     * @param directory The directory holding the CSVs.
+     * @param table     The table a CSV is imported into.
+     * @return The path of the table's CSV in the directory.
+     */
+    static String csvPath(Path directory, String table) {
+        return directory.resolve(table + ".csv").toString();
+    }
+
+    /**
+     * Sets the column types and primary key of every nutrition CSV, following create-database.sql.
+     *
+     * @param csvImporter The importer to register the schemas with.
+     */
+    private static void registerSchemas(ICSVImportService csvImporter) {
+        csvImporter
+                .schema("nutrients", new CSVSchema().column("id", CSVColumnType.INT).primaryKey("id"))
+                .schema("measures", new CSVSchema().column("id", CSVColumnType.INT).primaryKey("id"))
+                .schema("food_groups", new CSVSchema().column("id", CSVColumnType.INT).primaryKey("id"))
+                .schema("foods", new CSVSchema()
+                        .column("id", CSVColumnType.INT)
+                        .column("food_group_id", CSVColumnType.INT)
+                        .primaryKey("id"))
+                .schema("conversion_factors", new CSVSchema()
+                        .column("food_id", CSVColumnType.INT)
+                        .column("measure_id", CSVColumnType.INT)
+                        .column("conversion_factor_value", CSVColumnType.DOUBLE)
+                        .primaryKey("food_id", "measure_id"))
+                .schema("nutrient_amounts", new CSVSchema()
+                        .column("food_id", CSVColumnType.INT)
+                        .column("nutrient_id", CSVColumnType.INT)
+                        .column("nutrient_value", CSVColumnType.DOUBLE)
+                        .primaryKey("food_id", "nutrient_id"));
     }
 }
@@ -0,0 +1,437 @@
+package csv;
+
+import data.IRecord;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads a CSV file through a memory mapping instead of a Reader. Rows are tokenized in place, recording where each
+ * field starts and ends in the mapped bytes, and each field is decoded straight to its type in the schema,
+ * so numbers and dates never become Strings.
+ * <p>
+ * The reader handles unquoted fields and quoted fields without quotes inside them, which covers the nutrition files.
+ * Files with other quoting (ex. a doubled quote inside a quoted field) are left to commons-csv:
+ * {@link #open(Path, CSVSchema)} returns null for them.
+ */
+public class MappedCSVReader implements Iterable<IRecord> {
+    /**
+     * Returned by {@link Cursor#scanRow(int)} when a row has quoting the reader cannot tokenize in place.
+     */
+    private static final int UNSUPPORTED = -1;
+    /**
+     * The largest number of digits parsed exactly as a long when decoding a DOUBLE.
+     */
+    private static final int MAX_FAST_DOUBLE_DIGITS = 15;
+    /**
+     * Powers of ten that are exact as doubles, used to decode DOUBLE values without a String.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * The mapped contents of the file.
+     */
+    private final MappedByteBuffer buffer;
+    /**
+     * The position of the first byte after the header.
+     */
+    private final int dataStart;
+    /**
+     * The column names from the header, in file order.
+     */
+    private final List<String> headerNames;
+    /**
+     * The position of each column in a row, by column name.
+     */
+    private final Map<String, Integer> columnIndexes;
+    /**
+     * The type each column is decoded to, in file order.
+     */
+    private final CSVColumnType[] columnTypes;
+
+    /**
+     * @param buffer      The mapped contents of the file.
+     * @param dataStart   The position of the first byte after the header.
+     * @param headerNames The column names from the header, in file order.
+     * @param schema      The types of the columns.
+     */
+    private MappedCSVReader(MappedByteBuffer buffer, int dataStart, List<String> headerNames, CSVSchema schema) {
+        this.buffer = buffer;
+        this.dataStart = dataStart;
+        this.headerNames = List.copyOf(headerNames);
+        columnIndexes = new HashMap<>();
+        columnTypes = new CSVColumnType[headerNames.size()];
+        for (int i = 0; i < headerNames.size(); i++) {
+            columnIndexes.put(headerNames.get(i), i);
+            columnTypes[i] = schema.typeOf(headerNames.get(i));
+        }
+    }
+
+    /**
+     * Maps a CSV file and checks that every row can be tokenized in place.
+     * The mapping stays valid after this returns and is released when the reader is garbage collected.
+     *
+     * @param file   The CSV file, whose first row is the header.
+     * @param schema The types of the columns.
+     * @return A reader for the file, or null if the file must be read with commons-csv instead
+     * (it has quoting the reader does not handle, rows with a different number of fields than the header,
+     * no header, or is too large to map at once).
+     * @throws IOException Thrown if the file cannot be read.
+     */
+    public static MappedCSVReader open(Path file, CSVSchema schema) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() == 0 || channel.size() > Integer.MAX_VALUE) return null;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int position = startsWithByteOrderMark(buffer) ? 3 : 0;
+
+        Cursor header = new Cursor(buffer, countFieldsUpperBound(buffer, position));
+        int dataStart = header.scanRow(position);
+        if (dataStart == UNSUPPORTED) return null;
+        List<String> headerNames = new ArrayList<>();
+        for (int i = 0; i < header.fieldCount; i++) headerNames.add(header.text(i));
+
+        // a single pass over the file decides whether it can be read in place, before any row is loaded
+        Cursor validator = new Cursor(buffer, headerNames.size());
+        position = validator.skipEmptyLines(dataStart);
+        while (position < buffer.limit()) {
+            position = validator.scanRow(position);
+            if (position == UNSUPPORTED || validator.fieldCount != headerNames.size()) return null;
+            position = validator.skipEmptyLines(position);
+        }
+        return new MappedCSVReader(buffer, dataStart, headerNames, schema);
+    }
+
+    /**
+     * @return The column names from the header, in file order.
+     */
+    public List<String> getHeaderNames() {
+        return headerNames;
+    }
+
+    /**
+     * Every iterator reads the file from the first row after the header.
+     * Decoding errors are thrown as an IllegalArgumentException naming the row and column.
+     */
+    @Override
+    public Iterator<IRecord> iterator() {
+        Cursor cursor = new Cursor(buffer, headerNames.size());
+        return new Iterator<>() {
+            /**
+             * The position of the next row.
+             */
+            private int position = cursor.skipEmptyLines(dataStart);
+            /**
+             * The number of rows read so far, used in error messages.
+             */
+            private long rowNumber;
+
+            @Override
+            public boolean hasNext() {
+                return position < buffer.limit();
+            }
+
+            @Override
+            public IRecord next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                position = cursor.skipEmptyLines(cursor.scanRow(position));
+                rowNumber++;
+                Object[] values = new Object[columnTypes.length];
+                for (int i = 0; i < values.length; i++) {
+                    try {
+                        values[i] = cursor.decode(i, columnTypes[i]);
+                    } catch (IllegalArgumentException | ArithmeticException | DateTimeException e) {
+                        throw new IllegalArgumentException("Invalid %s in row %d, column %s: %s"
+                                .formatted(columnTypes[i], rowNumber, headerNames.get(i), cursor.text(i)), e);
+                    }
+                }
+                return new MappedCSVRecord(values);
+            }
+        };
+    }
+
+    /**
+     * A row of the file, with its values already decoded.
+     * The field names and their positions are shared by every row of the file.
+     */
+    private final class MappedCSVRecord implements IRecord {
+        /**
+         * The decoded values, in file order.
+         */
+        private final Object[] values;
+
+        /**
+         * @param values The decoded values, in file order.
+         */
+        private MappedCSVRecord(Object[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public Object getValue(String field) {
+            Integer index = columnIndexes.get(field);
+            return index == null ? null : values[index];
+        }
+
+        @Override
+        public Collection<String> fieldNames() {
+            return headerNames;
+        }
+
+        @Override
+        public String toString() {
+            return "MappedCSVRecord(%s)".formatted(Arrays.toString(values));
+        }
+    }
+
+    /**
+     * Tokenizes rows of the mapped file, recording the bounds of each field of the current row.
+     */
+    private static final class Cursor {
+        /**
+         * The mapped contents of the file.
+         */
+        private final MappedByteBuffer buffer;
+        /**
+         * The position of the first byte of each field of the current row.
+         */
+        private final int[] starts;
+        /**
+         * The position after the last byte of each field of the current row.
+         */
+        private final int[] ends;
+        /**
+         * The number of fields in the current row.
+         */
+        private int fieldCount;
+        /**
+         * Reused to copy a field's bytes out of the mapping when decoding it.
+         */
+        private byte[] scratch = new byte[64];
+
+        /**
+         * @param buffer    The mapped contents of the file.
+         * @param maxFields The largest number of fields a row may have.
+         */
+        private Cursor(MappedByteBuffer buffer, int maxFields) {
+            this.buffer = buffer;
+            starts = new int[maxFields];
+            ends = new int[maxFields];
+        }
+
+        /**
+         * Records the bounds of the fields of the row starting at a position.
+         *
+         * @param position The position of the first byte of the row.
+         * @return The position after the row's line ending, or UNSUPPORTED if the row has more fields than expected
+         * or quoting that cannot be tokenized in place.
+         */
+        private int scanRow(int position) {
+            int limit = buffer.limit();
+            fieldCount = 0;
+            while (true) {
+                if (fieldCount == starts.length) return UNSUPPORTED;
+                int start = position;
+                int end;
+                if (position < limit && buffer.get(position) == '"') {
+                    int close = position + 1;
+                    while (close < limit && buffer.get(close) != '"') close++;
+                    if (close >= limit) return UNSUPPORTED;
+                    start = position + 1;
+                    end = close;
+                    position = close + 1;
+                    if (position < limit && !isDelimiter(buffer.get(position))) return UNSUPPORTED;
+                } else {
+                    while (position < limit && !isDelimiter(buffer.get(position))) {
+                        if (buffer.get(position) == '"') return UNSUPPORTED;
+                        position++;
+                    }
+                    end = position;
+                }
+                starts[fieldCount] = start;
+                ends[fieldCount] = end;
+                fieldCount++;
+                if (position >= limit) return limit;
+                if (buffer.get(position) == ',') {
+                    position++;
+                    continue;
+                }
+                if (buffer.get(position) == '\r') position++;
+                if (position < limit && buffer.get(position) == '\n') position++;
+                return position;
+            }
+        }
+
+        /**
+         * @param position A position at the start of a line.
+         * @return The position of the next line that is not empty (commons-csv skips empty lines too).
+         */
+        private int skipEmptyLines(int position) {
+            while (position < buffer.limit() && (buffer.get(position) == '\n' || buffer.get(position) == '\r')) {
+                position++;
+            }
+            return position;
+        }
+
+        /**
+         * Decodes a field of the current row.
+         *
+         * @param field The index of the field.
+         * @param type  The type to decode the field to.
+         * @return The decoded value, or null if the field is empty and the type is not TEXT.
+         */
+        private Object decode(int field, CSVColumnType type) {
+            int start = starts[field];
+            int end = ends[field];
+            if (type == CSVColumnType.TEXT) return text(field);
+            if (start == end) return null;
+            return switch (type) {
+                case INT -> {
+                    long value = parseLong(start, end);
+                    if (value != (int) value) throw new NumberFormatException("Out of range for INT");
+                    yield (int) value;
+                }
+                case BIGINT -> parseLong(start, end);
+                case DOUBLE -> parseDouble(field);
+                case DECIMAL -> new BigDecimal(chars(start, end));
+                case DATE -> parseDate(field);
+                case TEXT -> text(field);
+            };
+        }
+
+        /**
+         * @param field The index of a field of the current row.
+         * @return The field as a String.
+         */
+        private String text(int field) {
+            int length = copy(starts[field], ends[field]);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Parses an integer from the mapped bytes, with an optional sign.
+         */
+        private long parseLong(int start, int end) {
+            boolean negative = buffer.get(start) == '-';
+            int position = negative || buffer.get(start) == '+' ? start + 1 : start;
+            if (position == end) throw new NumberFormatException("No digits");
+            long value = 0;
+            for (; position < end; position++) {
+                int digit = buffer.get(position) - '0';
+                if (digit < 0 || digit > 9) throw new NumberFormatException("Not a digit");
+                value = Math.addExact(Math.multiplyExact(value, 10), digit);
+            }
+            return negative ? -value : value;
+        }
+
+        /**
+         * Parses a decimal number from the mapped bytes. Numbers with at most 15 digits and no exponent are exact
+         * as a long divided by a power of ten, which rounds correctly; others go through Double.parseDouble.
+         */
+        private double parseDouble(int field) {
+            int start = starts[field];
+            int end = ends[field];
+            boolean negative = buffer.get(start) == '-';
+            int position = negative || buffer.get(start) == '+' ? start + 1 : start;
+            long mantissa = 0;
+            int digits = 0;
+            int scale = -1;
+            for (; position < end; position++) {
+                byte b = buffer.get(position);
+                if (b == '.' && scale < 0) {
+                    scale = 0;
+                } else if (b >= '0' && b <= '9' && digits < MAX_FAST_DOUBLE_DIGITS) {
+                    mantissa = mantissa * 10 + (b - '0');
+                    digits++;
+                    if (scale >= 0) scale++;
+                } else {
+                    return Double.parseDouble(text(field));
+                }
+            }
+            if (digits == 0) return Double.parseDouble(text(field));
+            double value = scale > 0 ? mantissa / POWERS_OF_TEN[scale] : mantissa;
+            return negative ? -value : value;
+        }
+
+        /**
+         * Parses a yyyy-MM-dd date from the mapped bytes, or through LocalDate.parse if it has another form.
+         */
+        private java.sql.Date parseDate(int field) {
+            int start = starts[field];
+            if (ends[field] - start != 10 || buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-') {
+                return java.sql.Date.valueOf(LocalDate.parse(text(field)));
+            }
+            return java.sql.Date.valueOf(LocalDate.of(
+                    (int) parseLong(start, start + 4),
+                    (int) parseLong(start + 5, start + 7),
+                    (int) parseLong(start + 8, start + 10)));
+        }
+
+        /**
+         * @return The bytes between two positions as characters (numbers are ASCII).
+         */
+        private char[] chars(int start, int end) {
+            char[] chars = new char[end - start];
+            for (int i = 0; i < chars.length; i++) chars[i] = (char) buffer.get(start + i);
+            return chars;
+        }
+
+        /**
+         * Copies the bytes between two positions to the scratch array, growing it if needed.
+         *
+         * @return The number of bytes copied.
+         */
+        private int copy(int start, int end) {
+            int length = end - start;
+            if (scratch.length < length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            buffer.get(start, scratch, 0, length);
+            return length;
+        }
+
+        /**
+         * @return True if the byte ends a field.
+         */
+        private static boolean isDelimiter(byte b) {
+            return b == ',' || b == '\n' || b == '\r';
+        }
+    }
+
+    /**
+     * @return True if the file starts with a UTF-8 byte order mark.
+     */
+    private static boolean startsWithByteOrderMark(MappedByteBuffer buffer) {
+        return buffer.limit() >= 3
+                && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB && buffer.get(2) == (byte) 0xBF;
+    }
+
+    /**
+     * @return An upper bound on the number of fields in the line starting at a position
+     * (its commas plus one, counting commas inside quotes too).
+     */
+    private static int countFieldsUpperBound(MappedByteBuffer buffer, int position) {
+        int fields = 1;
+        for (; position < buffer.limit() && buffer.get(position) != '\n'; position++) {
+            if (buffer.get(position) == ',') fields++;
+        }
+        return fields;
+    }
+}
@@ -0,0 +1,580 @@
+package csv;
+
+import data.DatabaseException;
+import data.IDatabaseDriver;
+import data.IRecord;
+import data.SelectQuery;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * A binary snapshot of the nutrition reference data (food groups, nutrients, foods, nutrient amounts and measures),
+ * compiled after each import and memory-mapped when the app starts, so the food catalogue is read without
+ * a query for every food.
+ * <p>
+ * The file starts with a fixed header (magic number, format version, the catalogue version it was compiled from,
+ * the number of records in each section and the offset of each section), followed by sections of fixed-width
+ * records and a string table. Strings are stored once in the string table and referenced by their offset.
+ * Foods are sorted by id, so a food is found by binary search, and each food refers to a contiguous range of its
+ * nutrient amounts and measures.
+ */
+public class NutritionSnapshot {
+    /**
+     * Where the nutrition import writes the snapshot and the app reads it from. It is kept outside target, since
+     * the app is started with "mvn clean", which would delete the snapshot before the app could map it.
+     */
+    public static final Path DEFAULT_PATH = Path.of("local-data", "nutrition.snapshot");
+
+    /**
+     * The first bytes of every snapshot ("NUTR").
+     */
+    private static final int MAGIC = 0x4E555452;
+    /**
+     * The version of the file format, changed whenever the layout of the file changes.
+     */
+    private static final int FORMAT_VERSION = 1;
+    /**
+     * The size of the header, in bytes.
+     */
+    private static final int HEADER_SIZE = 64;
+    /**
+     * The size of a food group record: id and name.
+     */
+    private static final int FOOD_GROUP_SIZE = 8;
+    /**
+     * The size of a nutrient record: id, symbol, unit and name.
+     */
+    private static final int NUTRIENT_SIZE = 16;
+    /**
+     * The size of a food record: id, food group id, description, first amount, amount count, first measure and
+     * measure count.
+     */
+    private static final int FOOD_SIZE = 28;
+    /**
+     * The size of a nutrient amount record: nutrient id and value.
+     */
+    private static final int AMOUNT_SIZE = 8;
+    /**
+     * The size of a measure record: measure id, name and conversion factor.
+     */
+    private static final int MEASURE_SIZE = 12;
+    /**
+     * The string reference of a null string.
+     */
+    private static final int NULL_STRING = -1;
+
+    /**
+     * The mapped file.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * The catalogue version the snapshot was compiled from.
+     */
+    private final long catalogueVersion;
+    /**
+     * The number of food groups.
+     */
+    private final int foodGroupCount;
+    /**
+     * The number of nutrients.
+     */
+    private final int nutrientCount;
+    /**
+     * The number of foods.
+     */
+    private final int foodCount;
+    /**
+     * The offset of the food group records.
+     */
+    private final int foodGroupsOffset;
+    /**
+     * The offset of the nutrient records.
+     */
+    private final int nutrientsOffset;
+    /**
+     * The offset of the food records.
+     */
+    private final int foodsOffset;
+    /**
+     * The offset of the nutrient amount records.
+     */
+    private final int amountsOffset;
+    /**
+     * The offset of the measure records.
+     */
+    private final int measuresOffset;
+    /**
+     * The offset of the string table.
+     */
+    private final int stringsOffset;
+
+    /**
+     * @param buffer The contents of the snapshot file.
+     * @throws IOException Thrown if the contents are not a snapshot of this format version.
+     */
+    private NutritionSnapshot(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("The file is not a nutrition snapshot.");
+        }
+        if (buffer.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("The nutrition snapshot has format version %d, not %d."
+                    .formatted(buffer.getInt(4), FORMAT_VERSION));
+        }
+        catalogueVersion = buffer.getLong(8);
+        foodGroupCount = buffer.getInt(16);
+        nutrientCount = buffer.getInt(20);
+        foodCount = buffer.getInt(24);
+        int amountCount = buffer.getInt(28);
+        int measureCount = buffer.getInt(32);
+        foodGroupsOffset = buffer.getInt(36);
+        nutrientsOffset = buffer.getInt(40);
+        foodsOffset = buffer.getInt(44);
+        amountsOffset = buffer.getInt(48);
+        measuresOffset = buffer.getInt(52);
+        stringsOffset = buffer.getInt(56);
+        int stringsLength = buffer.getInt(60);
+        if (measuresOffset + (long) measureCount * MEASURE_SIZE > stringsOffset
+                || amountsOffset + (long) amountCount * AMOUNT_SIZE > measuresOffset
+                || (long) stringsOffset + stringsLength != buffer.limit()) {
+            throw new IOException("The nutrition snapshot is truncated.");
+        }
+    }
+
+    /**
+     * Memory-maps a snapshot file.
+     *
+     * @param path The path of the snapshot.
+     * @return The snapshot.
+     * @throws IOException Thrown if the file cannot be read or is not a snapshot of this format version.
+     */
+    public static NutritionSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new NutritionSnapshot(buffer);
+        }
+    }
+
+    /**
+     * Memory-maps a snapshot file if it was compiled from the nutrition data currently in the database.
+     *
+     * @param path   The path of the snapshot.
+     * @param driver The driver of the database the snapshot must match.
+     * @return The snapshot, or null if there is no snapshot, it cannot be read, or the database's catalogue version
+     * differs (ex. the CSVs were imported again since), in which case the catalogue should be read from the database.
+     */
+    public static NutritionSnapshot openIfCurrent(Path path, IDatabaseDriver driver) {
+        if (!Files.isRegularFile(path)) return null;
+        try {
+            NutritionSnapshot snapshot = open(path);
+            return snapshot.getCatalogueVersion() == CatalogueVersion.read(driver) ? snapshot : null;
+        } catch (IOException | DatabaseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Compiles the nutrition data in the database into a snapshot file, replacing the file only once the snapshot
+     * is complete, so a running app never maps a partly written snapshot.
+     *
+     * @param driver The driver of the database to read the nutrition data from.
+     * @param path   The path of the snapshot to write.
+     * @return The catalogue version the snapshot was compiled from.
+     * @throws DatabaseException Thrown if the nutrition data cannot be read.
+     * @throws IOException       Thrown if the snapshot cannot be written.
+     */
+    public static long compile(IDatabaseDriver driver, Path path) throws DatabaseException, IOException {
+        // read in one transaction, so the version matches the rows even if an import runs at the same time
+        try {
+            return driver.runInTransaction(transaction -> {
+                try {
+                    return compileSnapshot(transaction, path);
+                } catch (IOException e) {
+                    // runInTransaction callbacks may only throw DatabaseException
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Reads the nutrition data and writes the snapshot.
+     *
+     * @param driver The driver of the transaction to read the nutrition data in.
+     * @param path   The path of the snapshot to write.
+     * @return The catalogue version the snapshot was compiled from.
+     * @throws DatabaseException Thrown if the nutrition data cannot be read.
+     * @throws IOException       Thrown if the snapshot cannot be written.
+     */
+    private static long compileSnapshot(IDatabaseDriver driver, Path path) throws DatabaseException, IOException {
+        long version = CatalogueVersion.read(driver);
+        List<IRecord> foodGroups = driver.execute(new SelectQuery("food_groups").sortColumn("id"));
+        List<IRecord> nutrients = driver.execute(new SelectQuery("nutrients").sortColumn("id"));
+        List<IRecord> foods = driver.execute(new SelectQuery("foods").sortColumn("id"));
+        Map<Integer, List<IRecord>> amountsByFood = groupByFood(
+                driver.execute(new SelectQuery("nutrient_amounts")), "nutrient_id");
+        Map<Integer, List<IRecord>> measuresByFood = groupByFood(
+                driver.execute(new SelectQuery("conversion_factors_with_measure_details")), "measure_id");
+        int amountCount = amountsByFood.values().stream().mapToInt(List::size).sum();
+        int measureCount = measuresByFood.values().stream().mapToInt(List::size).sum();
+
+        StringTable strings = new StringTable();
+        int foodGroupsOffset = HEADER_SIZE;
+        int nutrientsOffset = foodGroupsOffset + foodGroups.size() * FOOD_GROUP_SIZE;
+        int foodsOffset = nutrientsOffset + nutrients.size() * NUTRIENT_SIZE;
+        int amountsOffset = foodsOffset + foods.size() * FOOD_SIZE;
+        int measuresOffset = amountsOffset + amountCount * AMOUNT_SIZE;
+        int stringsOffset = measuresOffset + measureCount * MEASURE_SIZE;
+        ByteBuffer records = ByteBuffer.allocate(stringsOffset);
+        records.position(HEADER_SIZE);
+        for (IRecord foodGroup : foodGroups) {
+            records.putInt(foodGroup.getInt("id")).putInt(strings.add(foodGroup.getValue("name")));
+        }
+        for (IRecord nutrient : nutrients) {
+            records.putInt(nutrient.getInt("id"))
+                    .putInt(strings.add(nutrient.getValue("symbol")))
+                    .putInt(strings.add(nutrient.getValue("unit")))
+                    .putInt(strings.add(nutrient.getValue("name")));
+        }
+        int amountIndex = 0;
+        int measureIndex = 0;
+        for (IRecord food : foods) {
+            List<IRecord> amounts = amountsByFood.getOrDefault(food.getInt("id"), List.of());
+            List<IRecord> measures = measuresByFood.getOrDefault(food.getInt("id"), List.of());
+            records.putInt(food.getInt("id"))
+                    .putInt(food.getInt("food_group_id"))
+                    .putInt(strings.add(food.getValue("description")))
+                    .putInt(amountIndex).putInt(amounts.size())
+                    .putInt(measureIndex).putInt(measures.size());
+            for (IRecord amount : amounts) {
+                int offset = amountsOffset + amountIndex++ * AMOUNT_SIZE;
+                records.putInt(offset, amount.getInt("nutrient_id"))
+                        .putFloat(offset + 4, (float) amount.getDouble("nutrient_value"));
+            }
+            for (IRecord measure : measures) {
+                int offset = measuresOffset + measureIndex++ * MEASURE_SIZE;
+                records.putInt(offset, measure.getInt("measure_id"))
+                        .putInt(offset + 4, strings.add(measure.getValue("measure_name")))
+                        .putFloat(offset + 8, (float) measure.getDouble("conversion_factor_value"));
+            }
+        }
+        byte[] stringTable = strings.toByteArray();
+        records.putInt(0, MAGIC)
+                .putInt(4, FORMAT_VERSION)
+                .putLong(8, version)
+                .putInt(16, foodGroups.size())
+                .putInt(20, nutrients.size())
+                .putInt(24, foods.size())
+                .putInt(28, amountCount)
+                .putInt(32, measureCount)
+                .putInt(36, foodGroupsOffset)
+                .putInt(40, nutrientsOffset)
+                .putInt(44, foodsOffset)
+                .putInt(48, amountsOffset)
+                .putInt(52, measuresOffset)
+                .putInt(56, stringsOffset)
+                .putInt(60, stringTable.length);
+
+        Path directory = path.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                ByteBuffer[] contents = {records.clear(), ByteBuffer.wrap(stringTable)};
+                while (contents[1].hasRemaining()) channel.write(contents);
+                channel.force(true);
+            }
+            try {
+                Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return version;
+    }
+
+    /**
+     * @param records   Rows with a food_id column.
+     * @param sortField The column ordering the rows of each food.
+     * @return The rows of each food, by food id, in the order of the sort column.
+     */
+    private static Map<Integer, List<IRecord>> groupByFood(List<IRecord> records, String sortField) {
+        Map<Integer, List<IRecord>> recordsByFood = new HashMap<>();
+        for (IRecord record : records) {
+            recordsByFood.computeIfAbsent(record.getInt("food_id"), id -> new ArrayList<>()).add(record);
+        }
+        for (List<IRecord> foodRecords : recordsByFood.values()) {
+            foodRecords.sort(Comparator.comparingInt(record -> record.getInt(sortField)));
+        }
+        return recordsByFood;
+    }
+
+    /**
+     * The strings of a snapshot being compiled, each stored once as its UTF-8 length and bytes.
+     */
+    private static final class StringTable {
+        /**
+         * The encoded strings.
+         */
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        /**
+         * The offset of each string already in the table.
+         */
+        private final Map<String, Integer> offsets = new HashMap<>();
+
+        /**
+         * @param value The string to add (or null).
+         * @return The offset of the string in the table, or {@link #NULL_STRING} if the value is null.
+         */
+        private int add(Object value) {
+            if (value == null) return NULL_STRING;
+            return offsets.computeIfAbsent(value.toString(), string -> {
+                int offset = bytes.size();
+                byte[] encoded = string.getBytes(StandardCharsets.UTF_8);
+                bytes.writeBytes(ByteBuffer.allocate(4).putInt(encoded.length).array());
+                bytes.writeBytes(encoded);
+                return offset;
+            });
+        }
+
+        /**
+         * @return The encoded table.
+         */
+        private byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * @return The catalogue version the snapshot was compiled from.
+     */
+    public long getCatalogueVersion() {
+        return catalogueVersion;
+    }
+
+    /**
+     * @return The number of food groups.
+     */
+    public int foodGroupCount() {
+        return foodGroupCount;
+    }
+
+    /**
+     * @param index The index of a food group, from 0 to {@link #foodGroupCount()}.
+     * @return The id of the food group.
+     */
+    public int foodGroupId(int index) {
+        return buffer.getInt(foodGroupsOffset + index * FOOD_GROUP_SIZE);
+    }
+
+    /**
+     * @param index The index of a food group.
+     * @return The name of the food group.
+     */
+    public String foodGroupName(int index) {
+        return string(buffer.getInt(foodGroupsOffset + index * FOOD_GROUP_SIZE + 4));
+    }
+
+    /**
+     * @return The number of nutrients.
+     */
+    public int nutrientCount() {
+        return nutrientCount;
+    }
+
+    /**
+     * @param index The index of a nutrient, from 0 to {@link #nutrientCount()}.
+     * @return The id of the nutrient.
+     */
+    public int nutrientId(int index) {
+        return buffer.getInt(nutrientsOffset + index * NUTRIENT_SIZE);
+    }
+
+    /**
+     * @param index The index of a nutrient.
+     * @return The symbol of the nutrient.
+     */
+    public String nutrientSymbol(int index) {
+        return string(buffer.getInt(nutrientsOffset + index * NUTRIENT_SIZE + 4));
+    }
+
+    /**
+     * @param index The index of a nutrient.
+     * @return The unit of the nutrient.
+     */
+    public String nutrientUnit(int index) {
+        return string(buffer.getInt(nutrientsOffset + index * NUTRIENT_SIZE + 8));
+    }
+
+    /**
+     * @param index The index of a nutrient.
+     * @return The name of the nutrient.
+     */
+    public String nutrientName(int index) {
+        return string(buffer.getInt(nutrientsOffset + index * NUTRIENT_SIZE + 12));
+    }
+
+    /**
+     * @return The number of foods.
+     */
+    public int foodCount() {
+        return foodCount;
+    }
+
+    /**
+     * @param foodId The id of a food.
+     * @return The index of the food, or -1 if the snapshot has no food with the id.
+     */
+    public int findFood(int foodId) {
+        int low = 0;
+        int high = foodCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleId = foodId(middle);
+            if (middleId < foodId) low = middle + 1;
+            else if (middleId > foodId) high = middle - 1;
+            else return middle;
+        }
+        return -1;
+    }
+
+    /**
+     * @param index The index of a food, from 0 to {@link #foodCount()}; foods are in ascending id order.
+     * @return The id of the food.
+     */
+    public int foodId(int index) {
+        return buffer.getInt(foodOffset(index));
+    }
+
+    /**
+     * @param index The index of a food.
+     * @return The id of the food's group.
+     */
+    public int foodGroupIdOfFood(int index) {
+        return buffer.getInt(foodOffset(index) + 4);
+    }
+
+    /**
+     * @param index The index of a food.
+     * @return The description of the food.
+     */
+    public String foodDescription(int index) {
+        return string(buffer.getInt(foodOffset(index) + 8));
+    }
+
+    /**
+     * @param index The index of a food.
+     * @return The number of nutrient amounts the food has.
+     */
+    public int amountCount(int index) {
+        return buffer.getInt(foodOffset(index) + 16);
+    }
+
+    /**
+     * @param index       The index of a food.
+     * @param amountIndex The index of one of the food's amounts, from 0 to {@link #amountCount(int)}.
+     * @return The id of the amount's nutrient.
+     */
+    public int amountNutrientId(int index, int amountIndex) {
+        return buffer.getInt(amountOffset(index, amountIndex));
+    }
+
+    /**
+     * @param index       The index of a food.
+     * @param amountIndex The index of one of the food's amounts.
+     * @return The amount of the nutrient in the food.
+     */
+    public float amountValue(int index, int amountIndex) {
+        return buffer.getFloat(amountOffset(index, amountIndex) + 4);
+    }
+
+    /**
+     * @param index The index of a food.
+     * @return The number of measures the food has.
+     */
+    public int measureCount(int index) {
+        return buffer.getInt(foodOffset(index) + 24);
+    }
+
+    /**
+     * @param index        The index of a food.
+     * @param measureIndex The index of one of the food's measures, from 0 to {@link #measureCount(int)}.
+     * @return The id of the measure.
+     */
+    public int measureId(int index, int measureIndex) {
+        return buffer.getInt(measureOffset(index, measureIndex));
+    }
+
+    /**
+     * @param index        The index of a food.
+     * @param measureIndex The index of one of the food's measures.
+     * @return The name of the measure.
+     */
+    public String measureName(int index, int measureIndex) {
+        return string(buffer.getInt(measureOffset(index, measureIndex) + 4));
+    }
+
+    /**
+     * @param index        The index of a food.
+     * @param measureIndex The index of one of the food's measures.
+     * @return The conversion factor of the measure for the food.
+     */
+    public float measureConversionFactor(int index, int measureIndex) {
+        return buffer.getFloat(measureOffset(index, measureIndex) + 8);
+    }
+
+    /**
+     * @param index The index of a food.
+     * @return The offset of the food's record.
+     */
+    private int foodOffset(int index) {
+        return foodsOffset + index * FOOD_SIZE;
+    }
+
+    /**
+     * @param index       The index of a food.
+     * @param amountIndex The index of one of the food's amounts.
+     * @return The offset of the amount's record.
+     */
+    private int amountOffset(int index, int amountIndex) {
+        return amountsOffset + (buffer.getInt(foodOffset(index) + 12) + amountIndex) * AMOUNT_SIZE;
+    }
+
+    /**
+     * @param index        The index of a food.
+     * @param measureIndex The index of one of the food's measures.
+     * @return The offset of the measure's record.
+     */
+    private int measureOffset(int index, int measureIndex) {
+        return measuresOffset + (buffer.getInt(foodOffset(index) + 20) + measureIndex) * MEASURE_SIZE;
+    }
+
+    /**
+     * @param reference The offset of a string in the string table.
+     * @return The string, or null if the reference is {@link #NULL_STRING}.
+     */
+    private String string(int reference) {
+        if (reference == NULL_STRING) return null;
+        int offset = stringsOffset + reference;
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        buffer.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,663 @@
+package csv;
+
+import data.DatabaseException;
+import data.IDatabaseDriver;
+import data.Migration;
+import data.MigrationRunner;
+import data.MySQLConfig;
+import data.MySQLDriver;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.Period;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.SequencedMap;
+
+/**
+ * Writes a production-sized dataset as CSVs shaped like the checked-in nutrition files (the Canadian Nutrient File),
+ * plus profiles, meals and meal_items for a number of users over a number of days, so benchmarks and scaling tests
+ * can run against thousands of foods and years of meals instead of the handful in csv/nutrition_data.
+ * <p>
+ * The output depends only on the seed and the sizes: the same arguments write the same bytes on every machine.
+ * Each table draws from its own generator, so changing the number of users does not change the foods.
+ * <p>
+ * The files load through the normal import path ({@link #load}) into a freshly created database: ids start at 1
+ * (users at {@link #firstUserId}), so they would collide with rows already in the tables.
+ * <p>
+ * ex. new SyntheticDatasetGenerator(42).foods(5000).users(200).days(730).write(Path.of("target/synthetic"))
+ */
+public class SyntheticDatasetGenerator {
+    /**
+     * The format the CSVs are written in, which is the format the nutrition files are read in.
+     */
+    private static final CSVFormat FORMAT = CSVFormat.DEFAULT.builder().setRecordSeparator('\n').build();
+
+    /**
+     * How created_on is written, which is how DATETIME values are written everywhere else (see DateToString).
+     */
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * The nutrients every food has an amount of, with their ids in the Canadian Nutrient File, since the statistics
+     * find the macronutrients and the bulk (water) by name and convert amounts by unit.
+     * Columns: id, symbol, unit, name.
+     */
+    private static final String[][] CORE_NUTRIENTS = {
+            {"203", "PROT", "g", "PROTEIN"},
+            {"204", "FAT", "g", "FAT (TOTAL LIPIDS)"},
+            {"205", "CARB", "g", "CARBOHYDRATE, TOTAL (BY DIFFERENCE)"},
+            {"208", "KCAL", "kCal", "ENERGY (KILOCALORIES)"},
+            {"255", "H2O", "g", "MOISTURE"},
+            {"269", "TSUG", "g", "SUGARS, TOTAL"},
+            {"291", "TDF", "g", "FIBRE, TOTAL DIETARY"},
+            {"301", "CA", "mg", "CALCIUM"},
+            {"307", "NA", "mg", "SODIUM"},
+            {"401", "VITC", "mg", "VITAMIN C"},
+    };
+
+    /**
+     * The id of the first nutrient after the core nutrients, above every id in the Canadian Nutrient File.
+     */
+    private static final int FIRST_GENERATED_NUTRIENT_ID = 1000;
+
+    /**
+     * The units of the generated nutrients, in the proportions of the Canadian Nutrient File (mostly grams).
+     */
+    private static final String[] GENERATED_NUTRIENT_UNITS = {"g", "g", "g", "mg", "mg", "µg"};
+
+    /**
+     * The chance a food has an amount of a generated nutrient; the checked-in foods have amounts of about
+     * half of the nutrients.
+     */
+    private static final double GENERATED_NUTRIENT_DENSITY = 0.55;
+
+    /**
+     * The food groups of the Canadian Nutrient File, with their ids.
+     */
+    private static final String[][] FOOD_GROUPS = {
+            {"1", "Dairy and Egg Products"}, {"2", "Spices and Herbs"}, {"3", "Babyfoods"},
+            {"4", "Fats and Oils"}, {"5", "Poultry Products"}, {"6", "Soups, Sauces and Gravies"},
+            {"7", "Sausages and Luncheon meats"}, {"8", "Breakfast cereals"}, {"9", "Fruits and fruit juices"},
+            {"10", "Pork Products"}, {"11", "Vegetables and Vegetable Products"}, {"12", "Nuts and Seeds"},
+            {"13", "Beef Products"}, {"14", "Beverages"}, {"15", "Finfish and Shellfish Products"},
+            {"16", "Legumes and Legume Products"}, {"17", "Lamb, Veal and Game"}, {"18", "Baked Products"},
+            {"19", "Sweets"}, {"20", "Cereals, Grains and Pasta"}, {"21", "Fast Foods"},
+            {"22", "Mixed Dishes"}, {"25", "Snacks"},
+    };
+
+    /**
+     * The foods descriptions are made from, one list per food group in the order of {@link #FOOD_GROUPS}.
+     */
+    private static final String[][] FOOD_NAMES = {
+            {"Milk", "Cheese", "Yogurt", "Egg", "Cream"},
+            {"Basil", "Pepper", "Cinnamon", "Oregano"},
+            {"Infant formula", "Babyfood, cereal", "Babyfood, fruit"},
+            {"Butter", "Margarine", "Olive oil", "Canola oil"},
+            {"Chicken", "Turkey", "Duck"},
+            {"Soup, tomato", "Soup, chicken noodle", "Gravy, brown", "Sauce, pasta"},
+            {"Ham", "Salami", "Bologna", "Sausage, pork"},
+            {"Cereal, oat rings", "Cereal, bran flakes", "Granola", "Oatmeal"},
+            {"Apple", "Banana", "Orange", "Strawberries", "Orange juice"},
+            {"Pork, loin", "Pork, chop", "Bacon"},
+            {"Broccoli", "Carrots", "Potato", "Spinach", "Tomato"},
+            {"Almonds", "Peanuts", "Sunflower seeds", "Walnuts"},
+            {"Beef, ground", "Beef, steak", "Beef, pot roast"},
+            {"Coffee", "Tea", "Cola", "Chocolate flavour drink"},
+            {"Salmon", "Tuna", "Shrimp", "Cod"},
+            {"Lentils", "Chickpeas", "Black beans", "Tofu"},
+            {"Lamb, leg", "Veal, cutlet", "Venison"},
+            {"Bread, whole wheat", "Bagel", "Muffin", "Croissant"},
+            {"Chocolate, milk", "Candy, hard", "Honey", "Jam"},
+            {"Rice, brown", "Pasta", "Quinoa", "Barley"},
+            {"Hamburger", "Pizza", "French fries", "Chicken nuggets"},
+            {"Chinese dish, chow mein", "Lasagna", "Shepherd's pie", "Chili con carne"},
+            {"Potato chips", "Popcorn", "Pretzels", "Crackers"},
+    };
+
+    /**
+     * The ways foods are prepared, appended to their names.
+     */
+    private static final String[] PREPARATIONS = {
+            "raw", "cooked", "boiled", "roasted", "fried", "baked", "canned", "frozen", "dried", "reduced fat",
+    };
+
+    /**
+     * The measures foods are served in, with their weight in grams.
+     */
+    private static final Object[][] MEASURES = {
+            {"100ml", 100}, {"125ml (1/2 cup)", 125}, {"250ml (1 cup)", 250}, {"15ml (1 tablespoon)", 15},
+            {"5ml (1 teaspoon)", 5}, {"30ml (2 tablespoons)", 30}, {"200ml", 200}, {"1 slice", 30},
+            {"1 piece", 50}, {"1 serving", 150}, {"1 bowl", 300}, {"1 glass", 240}, {"1 cup, chopped", 160},
+            {"1 medium", 120}, {"1 large", 180}, {"1 small", 70}, {"30g", 30}, {"100g", 100},
+    };
+
+    /**
+     * The first names users are named from.
+     */
+    private static final String[] FIRST_NAMES = {
+            "Chris", "Nam", "Jae", "Abdullah", "Amelia", "Noah", "Olivia", "Liam", "Emma", "Aarav", "Sofia", "Mateo",
+            "Chloe", "Wei", "Fatima", "Lucas", "Priya", "Ethan", "Mia", "Omar",
+    };
+
+    /**
+     * The last names users are named from.
+     */
+    private static final String[] LAST_NAMES = {
+            "Smith", "Nguyen", "Kim", "Khan", "Tremblay", "Roy", "Wong", "Singh", "Martin", "Brown", "Li", "Gagnon",
+            "Patel", "Wilson", "Garcia", "Chen",
+    };
+
+    /**
+     * The number of foods each user eats most of their meals from.
+     */
+    private static final int FAVOURITE_FOODS = 25;
+
+    /**
+     * The chance an item of a meal is one of the user's favourite foods rather than any food.
+     */
+    private static final double FAVOURITE_FOOD_CHANCE = 0.7;
+
+    /**
+     * The meals users log each day: the type, the chance of logging it, the earliest and latest time it is
+     * logged at in minutes after midnight, and the fewest and most items it has.
+     *
+     * @param type        The meal type, as it is stored in meals.meal_type.
+     * @param chance      The chance of logging the meal on a day.
+     * @param earliest    The earliest time the meal is logged at, in minutes after midnight.
+     * @param latest      The latest time the meal is logged at, in minutes after midnight.
+     * @param fewestItems The fewest items the meal has.
+     * @param mostItems   The most items the meal has.
+     */
+    private record MealPattern(String type, double chance, int earliest, int latest, int fewestItems, int mostItems) {
+    }
+
+    /**
+     * Breakfast, lunch and dinner at most once a day (as logging a meal allows), and up to two snacks.
+     */
+    private static final List<MealPattern> MEAL_PATTERNS = List.of(
+            new MealPattern("Breakfast", 0.80, 6 * 60, 9 * 60 + 30, 1, 3),
+            new MealPattern("Lunch", 0.85, 11 * 60 + 30, 14 * 60, 2, 4),
+            new MealPattern("Dinner", 0.92, 17 * 60 + 30, 20 * 60 + 30, 2, 5),
+            new MealPattern("Snack", 0.45, 9 * 60 + 30, 22 * 60, 1, 2),
+            new MealPattern("Snack", 0.15, 9 * 60 + 30, 22 * 60, 1, 2)
+    );
+
+    /**
+     * The seed every table's generator is derived from.
+     */
+    private final long seed;
+
+    /**
+     * The number of foods to write.
+     */
+    private int foodCount = 5690;
+
+    /**
+     * The number of nutrients to write, including the core nutrients.
+     */
+    private int nutrientCount = 152;
+
+    /**
+     * The number of users to write.
+     */
+    private int userCount = 100;
+
+    /**
+     * The number of days of meals to write for each user.
+     */
+    private int dayCount = 730;
+
+    /**
+     * The day of the first meals.
+     */
+    private LocalDate startDate = LocalDate.of(2024, 1, 1);
+
+    /**
+     * The id of the first user.
+     */
+    private int firstUserId = 1;
+
+    /**
+     * @param seed The seed the data is generated from; the same seed and sizes always write the same files.
+     */
+    public SyntheticDatasetGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @param foodCount The number of foods to write (5690 by default, the size of the Canadian Nutrient File).
+     * @return The generator, so settings can be chained.
+     */
+    public SyntheticDatasetGenerator foods(int foodCount) {
+        if (foodCount < 1) throw new IllegalArgumentException("At least 1 food must be generated.");
+        this.foodCount = foodCount;
+        return this;
+    }
+
+    /**
+     * @param nutrientCount The number of nutrients to write (152 by default). The first ten are the core nutrients
+     *                      of the Canadian Nutrient File (protein, fat, carbohydrate, energy, ...).
+     * @return The generator, so settings can be chained.
+     */
+    public SyntheticDatasetGenerator nutrients(int nutrientCount) {
+        if (nutrientCount < 1) throw new IllegalArgumentException("At least 1 nutrient must be generated.");
+        this.nutrientCount = nutrientCount;
+        return this;
+    }
+
+    /**
+     * @param userCount The number of users to write profiles and meals for (100 by default).
+     * @return The generator, so settings can be chained.
+     */
+    public SyntheticDatasetGenerator users(int userCount) {
+        if (userCount < 0) throw new IllegalArgumentException("The number of users cannot be negative.");
+        this.userCount = userCount;
+        return this;
+    }
+
+    /**
+     * @param dayCount The number of days of meals to write for each user (730 by default).
+     * @return The generator, so settings can be chained.
+     */
+    public SyntheticDatasetGenerator days(int dayCount) {
+        if (dayCount < 0) throw new IllegalArgumentException("The number of days cannot be negative.");
+        this.dayCount = dayCount;
+        return this;
+    }
+
+    /**
+     * @param startDate The day of the first meals (2024-01-01 by default, so the output does not depend on today).
+     * @return The generator, so settings can be chained.
+     */
+    public SyntheticDatasetGenerator startDate(LocalDate startDate) {
+        this.startDate = startDate;
+        return this;
+    }
+
+    /**
+     * @param firstUserId The id of the first user (1 by default), to load the users next to existing profiles.
+     * @return The generator, so settings can be chained.
+     */
+    public SyntheticDatasetGenerator firstUserId(int firstUserId) {
+        this.firstUserId = firstUserId;
+        return this;
+    }
+
+    /**
+     * Writes a CSV for every nutrition table and for profiles, meals and meal_items, each named after its table.
+     *
+     * @param directory The directory to write the CSVs to, which is created if it does not exist.
+     * @return The number of rows written to each table, in the order the tables are loaded.
+     * @throws IOException Thrown if a CSV cannot be written.
+     */
+    public SequencedMap<String, Long> write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        SequencedMap<String, Long> rowCounts = new LinkedHashMap<>();
+
+        List<String[]> nutrients = generateNutrients();
+        try (CSVPrinter printer = open(directory, "nutrients", "id", "symbol", "unit", "name")) {
+            for (String[] nutrient : nutrients) printer.printRecord((Object[]) nutrient);
+        }
+        rowCounts.put("nutrients", (long) nutrients.size());
+
+        try (CSVPrinter printer = open(directory, "measures", "id", "common_name")) {
+            for (int i = 0; i < MEASURES.length; i++) printer.printRecord(i + 1, MEASURES[i][0]);
+        }
+        rowCounts.put("measures", (long) MEASURES.length);
+
+        try (CSVPrinter printer = open(directory, "food_groups", "id", "name")) {
+            for (String[] foodGroup : FOOD_GROUPS) printer.printRecord((Object[]) foodGroup);
+        }
+        rowCounts.put("food_groups", (long) FOOD_GROUPS.length);
+
+        Random random = random("foods");
+        try (CSVPrinter printer = open(directory, "foods", "id", "food_group_id", "description")) {
+            for (int food = 1; food <= foodCount; food++) {
+                int group = random.nextInt(FOOD_GROUPS.length);
+                String name = FOOD_NAMES[group][random.nextInt(FOOD_NAMES[group].length)];
+                String preparation = PREPARATIONS[random.nextInt(PREPARATIONS.length)];
+                printer.printRecord(food, FOOD_GROUPS[group][0], "%s, %s, variety %d".formatted(name, preparation, food));
+            }
+        }
+        rowCounts.put("foods", (long) foodCount);
+
+        // the measures of each food, which meal items are served in
+        int[][] foodMeasures = new int[foodCount + 1][];
+        random = random("conversion_factors");
+        long conversionFactors = 0;
+        try (CSVPrinter printer = open(directory, "conversion_factors", "food_id", "measure_id", "conversion_factor_value")) {
+            for (int food = 1; food <= foodCount; food++) {
+                foodMeasures[food] = distinct(random, 1 + random.nextInt(4), MEASURES.length);
+                // a measure's weight relative to 100 g, scaled by the food's density
+                double density = 0.5 + random.nextDouble();
+                for (int measure : foodMeasures[food]) {
+                    double factor = (int) MEASURES[measure - 1][1] / 100.0 * density;
+                    printer.printRecord(food, measure, decimal(factor, 5));
+                }
+                conversionFactors += foodMeasures[food].length;
+            }
+        }
+        rowCounts.put("conversion_factors", conversionFactors);
+
+        rowCounts.put("nutrient_amounts", writeNutrientAmounts(directory, nutrients));
+        rowCounts.put("profiles", writeProfiles(directory));
+        writeMeals(directory, foodMeasures, rowCounts);
+        return rowCounts;
+    }
+
+    /**
+     * Imports the CSVs written by {@link #write} through the same scheduler as the nutrition files: the nutrition
+     * tables with {@link LoadNutritionDataService#load(IDatabaseDriver, Path, ImportCheckpointJournal,
+     * ImportProgressListener)}, then profiles, meals and meal_items, each once the table it references is loaded.
+     *
+     * @param driver           The driver of a freshly created database to load the CSVs into.
+     * @param directory        The directory the CSVs were written to.
+     * @param progressListener The listener told the rows/s, bytes/s and time left each time a chunk is committed.
+     * @return How long each table took to import.
+     * @throws DatabaseException Thrown if an error occurs while inserting a value into the database.
+     * @throws IOException       Thrown if an error occurs while reading a CSV file.
+     */
+    public static List<TableImportStatistics> load(IDatabaseDriver driver, Path directory,
+                                                   ImportProgressListener progressListener)
+            throws IOException, DatabaseException {
+        List<TableImportStatistics> statistics =
+                new ArrayList<>(LoadNutritionDataService.load(driver, directory, null, progressListener));
+        CSVImportService csvImporter = new CSVImportService(driver)
+                .schema("profiles", new CSVSchema()
+                        .column("id", CSVColumnType.INT)
+                        .column("age", CSVColumnType.INT)
+                        .column("dob", CSVColumnType.DATE)
+                        .column("height", CSVColumnType.DOUBLE)
+                        .column("weight", CSVColumnType.DOUBLE))
+                .schema("meals", new CSVSchema()
+                        .column("id", CSVColumnType.INT)
+                        .column("user_id", CSVColumnType.INT))
+                .schema("meal_items", new CSVSchema()
+                        .column("id", CSVColumnType.INT)
+                        .column("meal_id", CSVColumnType.INT)
+                        .column("food_id", CSVColumnType.INT)
+                        .column("quantity", CSVColumnType.DOUBLE)
+                        .column("measure_id", CSVColumnType.INT));
+        statistics.addAll(new CSVImportScheduler(csvImporter, LoadNutritionDataService.importParallelism())
+                .progressListener(progressListener)
+                .table("profiles", LoadNutritionDataService.csvPath(directory, "profiles"))
+                .table("meals", LoadNutritionDataService.csvPath(directory, "meals"), "profiles")
+                .table("meal_items", LoadNutritionDataService.csvPath(directory, "meal_items"), "meals")
+                .run());
+        return statistics;
+    }
+
+    /**
+     * Writes a synthetic dataset, and with --load, imports it into the database after applying the schema
+     * migrations. Options are given as --name=value: --seed, --foods, --nutrients, --users, --days, --start
+     * (yyyy-MM-dd), --first-user-id and --output (target/synthetic-dataset by default).
+     *
+     * @param args Command line args.
+     * @throws IOException       Thrown if an error occurs while writing or reading a CSV file.
+     * @throws DatabaseException Thrown if an error occurs while writing to the database.
+     */
+    public static void main(String[] args) throws IOException, DatabaseException {
+        SyntheticDatasetGenerator generator = new SyntheticDatasetGenerator(Long.parseLong(option(args, "seed", "1")))
+                .foods(Integer.parseInt(option(args, "foods", "5690")))
+                .nutrients(Integer.parseInt(option(args, "nutrients", "152")))
+                .users(Integer.parseInt(option(args, "users", "100")))
+                .days(Integer.parseInt(option(args, "days", "730")))
+                .startDate(LocalDate.parse(option(args, "start", "2024-01-01")))
+                .firstUserId(Integer.parseInt(option(args, "first-user-id", "1")));
+        Path directory = Path.of(option(args, "output", "target/synthetic-dataset"));
+        generator.write(directory).forEach((table, rows) -> System.out.printf("Wrote %d rows to %s%n", rows, table));
+        if (!List.of(args).contains("--load")) return;
+
+        MySQLDriver driver = new MySQLDriver(MySQLConfig.instance());
+        for (Migration migration : new MigrationRunner(driver, Path.of("src/main/java/data/migrations")).migrate()) {
+            System.out.println("Applied schema migration " + migration);
+        }
+        for (TableImportStatistics statistics : load(driver, directory, System.out::println)) {
+            System.out.println(statistics);
+        }
+    }
+
+    /**
+     * @param args         Command line args.
+     * @param name         The name of the option.
+     * @param defaultValue The value of the option when it is not given.
+     * @return The value of the option.
+     */
+    private static String option(String[] args, String name, String defaultValue) {
+        String prefix = "--" + name + "=";
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) return arg.substring(prefix.length());
+        }
+        return defaultValue;
+    }
+
+    /**
+     * @return The nutrients to write: the core nutrients, then generated ones. Columns: id, symbol, unit, name.
+     */
+    private List<String[]> generateNutrients() {
+        List<String[]> nutrients = new ArrayList<>();
+        for (int i = 0; i < nutrientCount; i++) {
+            if (i < CORE_NUTRIENTS.length) {
+                nutrients.add(CORE_NUTRIENTS[i]);
+                continue;
+            }
+            int number = i - CORE_NUTRIENTS.length + 1;
+            nutrients.add(new String[]{
+                    Integer.toString(FIRST_GENERATED_NUTRIENT_ID + number - 1),
+                    "SYN" + number,
+                    GENERATED_NUTRIENT_UNITS[number % GENERATED_NUTRIENT_UNITS.length],
+                    "SYNTHETIC NUTRIENT " + number});
+        }
+        return nutrients;
+    }
+
+    /**
+     * Writes the amount of each nutrient in 100 g of each food. The macronutrients and water of a food add up to
+     * at most 100 g and its energy follows from them; other nutrients are log-normally distributed.
+     *
+     * @param directory The directory to write the CSV to.
+     * @param nutrients The nutrients written to the nutrients CSV.
+     * @return The number of rows written.
+     * @throws IOException Thrown if the CSV cannot be written.
+     */
+    private long writeNutrientAmounts(Path directory, List<String[]> nutrients) throws IOException {
+        Random random = random("nutrient_amounts");
+        long rows = 0;
+        try (CSVPrinter printer = open(directory, "nutrient_amounts", "food_id", "nutrient_id", "nutrient_value")) {
+            for (int food = 1; food <= foodCount; food++) {
+                double water = random.nextDouble() * 95;
+                double solids = 100 - water;
+                double protein = solids * random.nextDouble() * 0.5;
+                double fat = (solids - protein) * random.nextDouble() * 0.6;
+                double carbohydrate = (solids - protein - fat) * random.nextDouble();
+                double sugars = carbohydrate * random.nextDouble() * 0.6;
+                double fibre = (carbohydrate - sugars) * random.nextDouble() * 0.4;
+                double[] core = {
+                        protein, fat, carbohydrate, 4 * protein + 9 * fat + 4 * carbohydrate, water, sugars, fibre,
+                        logNormal(random, 60), logNormal(random, 250), logNormal(random, 8),
+                };
+                for (int i = 0; i < nutrients.size(); i++) {
+                    String[] nutrient = nutrients.get(i);
+                    double value;
+                    if (i < CORE_NUTRIENTS.length) {
+                        value = core[i];
+                    } else if (random.nextDouble() < GENERATED_NUTRIENT_DENSITY) {
+                        value = logNormal(random, switch (nutrient[2]) {
+                            case "g" -> 1;
+                            case "mg" -> 20;
+                            default -> 10;
+                        });
+                    } else {
+                        continue;
+                    }
+                    printer.printRecord(food, nutrient[0], decimal(value, 3));
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Writes the users' profiles, with heights and weights drawn by sex, in the unit system each user picked.
+     *
+     * @param directory The directory to write the CSV to.
+     * @return The number of rows written.
+     * @throws IOException Thrown if the CSV cannot be written.
+     */
+    private long writeProfiles(Path directory) throws IOException {
+        Random random = random("profiles");
+        try (CSVPrinter printer = open(directory, "profiles",
+                "id", "full_name", "age", "sex", "dob", "height", "weight", "unit_system")) {
+            for (int user = 0; user < userCount; user++) {
+                String sex = random.nextDouble() < 0.02 ? "OTHER" : random.nextBoolean() ? "FEMALE" : "MALE";
+                boolean female = sex.equals("FEMALE");
+                LocalDate dob = startDate.minusYears(18 + random.nextInt(60)).minusDays(random.nextInt(365));
+                double heightCm = (female ? 162 : 176) + random.nextGaussian() * 7;
+                double weightKg = (female ? 68 : 84) + random.nextGaussian() * 12;
+                boolean metric = random.nextDouble() < 0.8;
+                printer.printRecord(firstUserId + user,
+                        FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)],
+                        Period.between(dob, startDate).getYears(),
+                        sex,
+                        dob,
+                        decimal(metric ? heightCm : heightCm / 30.48, 2),
+                        decimal(metric ? weightKg : weightKg * 2.20462, 1),
+                        metric ? "METRIC" : "IMPERIAL");
+            }
+        }
+        return userCount;
+    }
+
+    /**
+     * Writes the meals each user logged each day and their items, day by day so ids grow with created_on as they
+     * do when meals are logged. Each user eats mostly from a set of favourite foods.
+     *
+     * @param directory    The directory to write the CSVs to.
+     * @param foodMeasures The measures of each food, by food id.
+     * @param rowCounts    The number of rows written to each table, which the meals and items are added to.
+     * @throws IOException Thrown if a CSV cannot be written.
+     */
+    private void writeMeals(Path directory, int[][] foodMeasures, SequencedMap<String, Long> rowCounts)
+            throws IOException {
+        Random random = random("meals");
+        int[][] favourites = new int[userCount][];
+        for (int user = 0; user < userCount; user++) {
+            favourites[user] = distinct(random, Math.min(FAVOURITE_FOODS, foodCount), foodCount);
+        }
+        int mealId = 0;
+        int itemId = 0;
+        try (CSVPrinter meals = open(directory, "meals", "id", "meal_type", "user_id", "created_on");
+             CSVPrinter items = open(directory, "meal_items", "id", "meal_id", "food_id", "quantity", "measure_id")) {
+            for (int day = 0; day < dayCount; day++) {
+                LocalDate date = startDate.plusDays(day);
+                for (int user = 0; user < userCount; user++) {
+                    List<LocalDateTime> times = new ArrayList<>();
+                    List<MealPattern> logged = new ArrayList<>();
+                    for (MealPattern pattern : MEAL_PATTERNS) {
+                        if (random.nextDouble() >= pattern.chance()) continue;
+                        int minute = pattern.earliest() + random.nextInt(pattern.latest() - pattern.earliest());
+                        times.add(date.atTime(LocalTime.MIN.plusMinutes(minute).withSecond(random.nextInt(60))));
+                        logged.add(pattern);
+                    }
+                    List<Integer> order = new ArrayList<>();
+                    for (int i = 0; i < logged.size(); i++) order.add(i);
+                    order.sort(Comparator.comparing(times::get));
+                    for (int i : order) {
+                        MealPattern pattern = logged.get(i);
+                        meals.printRecord(++mealId, pattern.type(), firstUserId + user, times.get(i).format(DATE_TIME_FORMAT));
+                        int itemCount = pattern.fewestItems()
+                                + random.nextInt(pattern.mostItems() - pattern.fewestItems() + 1);
+                        for (int item = 0; item < itemCount; item++) {
+                            int food = random.nextDouble() < FAVOURITE_FOOD_CHANCE
+                                    ? favourites[user][random.nextInt(favourites[user].length)]
+                                    : 1 + random.nextInt(foodCount);
+                            int measure = foodMeasures[food][random.nextInt(foodMeasures[food].length)];
+                            items.printRecord(++itemId, mealId, food, 0.5 * (1 + random.nextInt(6)), measure);
+                        }
+                    }
+                }
+            }
+        }
+        rowCounts.put("meals", (long) mealId);
+        rowCounts.put("meal_items", (long) itemId);
+    }
+
+    /**
+     * @param table The table the generator is for.
+     * @return A generator for the table, derived from the seed and the table's name.
+     */
+    private Random random(String table) {
+        return new Random(seed * 31 + table.hashCode());
+    }
+
+    /**
+     * @param directory   The directory to write the CSV to.
+     * @param table       The table the CSV is for.
+     * @param headerNames The columns of the CSV.
+     * @return A printer writing the table's CSV, with the header already written.
+     * @throws IOException Thrown if the CSV cannot be created.
+     */
+    private static CSVPrinter open(Path directory, String table, String... headerNames) throws IOException {
+        return new CSVPrinter(Files.newBufferedWriter(Path.of(LoadNutritionDataService.csvPath(directory, table))),
+                FORMAT.builder().setHeader(headerNames).build());
+    }
+
+    /**
+     * @param random The generator to draw from.
+     * @param count  The number of ids to draw, at most bound.
+     * @param bound  The largest id.
+     * @return Distinct ids from 1 to bound.
+     */
+    private static int[] distinct(Random random, int count, int bound) {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            int id;
+            boolean repeated;
+            do {
+                id = 1 + random.nextInt(bound);
+                repeated = false;
+                for (int j = 0; j < i; j++) repeated |= ids[j] == id;
+            } while (repeated);
+            ids[i] = id;
+        }
+        return ids;
+    }
+
+    /**
+     * @param random The generator to draw from.
+     * @param median The median of the distribution.
+     * @return A log-normally distributed value, as amounts of micronutrients are.
+     */
+    private static double logNormal(Random random, double median) {
+        return median * Math.exp(random.nextGaussian());
+    }
+
+    /**
+     * @param value The value to write.
+     * @param scale The number of decimal places to keep.
+     * @return The value rounded to the scale, without an exponent or trailing zeros.
+     */
+    private static String decimal(double value, int scale) {
+        return BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString();
+    }
+
+    @Override
+    public String toString() {
+        return "SyntheticDatasetGenerator(seed: %d, foods: %d, nutrients: %d, users: %d, days: %d, startDate: %s)"
+                .formatted(seed, foodCount, nutrientCount, userCount, dayCount, startDate);
+    }
+}
@@ -0,0 +1,35 @@
+package csv;
+
+import java.time.Duration;
+
+/**
+ * How long importing one table took, as reported by {@link CSVImportScheduler}.
+ *
+ * @param collectionName The collection the CSV file was imported into.
+ * @param rows           The number of rows imported.
+ * @param resumedRows    The number of rows skipped because an earlier, interrupted import had committed them.
+ * @param chunks         The number of chunks the file was split into and loaded in parallel.
+ * @param elapsed        The time from starting the table (after the tables it depends on) until its last chunk loaded.
+ */
+public record TableImportStatistics(
+        String collectionName,
+        long rows,
+        long resumedRows,
+        int chunks,
+        Duration elapsed
+) {
+    /**
+     * @return The number of rows imported per second.
+     */
+    public double rowsPerSecond() {
+        long nanos = Math.max(1, elapsed.toNanos());
+        return rows * 1_000_000_000.0 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        String resumed = resumedRows == 0 ? "" : " (%d already imported)".formatted(resumedRows);
+        return "%s: %d rows%s in %d chunk(s), %d ms, %.0f rows/s"
+                .formatted(collectionName, rows, resumed, chunks, elapsed.toMillis(), rowsPerSecond());
+    }
+}
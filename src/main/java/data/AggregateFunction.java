@@ -0,0 +1,17 @@
+package data;
+
+/**
+ * A function summarizing the values of a field across the records of a group.
+ */
+public enum AggregateFunction {
+    // the number of records, or of non-null values when a field is given
+    COUNT,
+    // the number of different non-null values
+    COUNT_DISTINCT,
+    // the total of the non-null values (null if there are none)
+    SUM,
+    // the smallest non-null value
+    MIN,
+    // the largest non-null value
+    MAX
+}
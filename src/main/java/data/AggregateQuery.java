@@ -0,0 +1,193 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Represents a query summarizing the records of a collection, so the database returns a few values
+ * instead of every record.
+ * Each returned record holds the values of the groupings followed by the aggregates, named by their aliases.
+ * Without groupings, exactly one record is returned (with a count of 0 if nothing matches the filters).
+ * ex. new AggregateQuery("meals").groupByDate("created_on", "day").count("meals").filter("user_id", Comparison.EQUAL, 1);
+ */
+public class AggregateQuery extends Query {
+    /**
+     * The filters applied to the query controlling which records are summarized.
+     */
+    private final List<QueryFilter> filters;
+
+    /**
+     * The expressions the records are grouped by.
+     */
+    private final List<QueryGrouping> groupings;
+
+    /**
+     * The values computed for each group.
+     */
+    private final List<QueryAggregate> aggregates;
+
+    /**
+     * The maximum number of groups to return.
+     */
+    private Integer limit;
+
+    /**
+     * The alias of the grouping or aggregate to sort by.
+     */
+    private String sortColumn;
+
+    /**
+     * The order to sort by.
+     */
+    private SortOrder sortOrder;
+
+    /**
+     * @param collectionName The name of the database collection to summarize.
+     */
+    public AggregateQuery(String collectionName) {
+        super(collectionName);
+        filters = new ArrayList<>();
+        groupings = new ArrayList<>();
+        aggregates = new ArrayList<>();
+    }
+
+    /**
+     * Counts the records in each group.
+     *
+     * @param alias The name of the count in the returned records.
+     * @return The same query instance after adding the count to it.
+     */
+    public AggregateQuery count(String alias) {
+        return aggregate(AggregateFunction.COUNT, null, alias);
+    }
+
+    /**
+     * Computes a value for each group.
+     *
+     * @param function The function summarizing the field.
+     * @param field    The field to summarize (null to count every record).
+     * @param alias    The name of the computed value in the returned records.
+     * @return The same query instance after adding the aggregate to it.
+     */
+    public AggregateQuery aggregate(AggregateFunction function, String field, String alias) {
+        aggregates.add(new QueryAggregate(function, field, alias));
+        return this;
+    }
+
+    /**
+     * Groups the records by the value of a field, which is returned under the field's name.
+     *
+     * @param field The field to group by.
+     * @return The same query instance after adding the grouping to it.
+     */
+    public AggregateQuery groupBy(String field) {
+        groupings.add(new QueryGrouping(field, GroupingFunction.VALUE, field));
+        return this;
+    }
+
+    /**
+     * Groups the records by the day of a date or datetime field, which is returned as a java.sql.Date.
+     *
+     * @param field The date or datetime field to group by.
+     * @param alias The name of the day in the returned records.
+     * @return The same query instance after adding the grouping to it.
+     */
+    public AggregateQuery groupByDate(String field, String alias) {
+        groupings.add(new QueryGrouping(field, GroupingFunction.DATE, alias));
+        return this;
+    }
+
+    /**
+     * Adds a filter to the query specifying which records to summarize.
+     *
+     * @param field      The field to filter on.
+     * @param comparison The comparison to perform using the field and value as operands.
+     * @param value      The value to compare the field to.
+     * @return The same query instance after adding a filter to it.
+     */
+    public AggregateQuery filter(String field, Comparison comparison, Object value) {
+        filters.add(new QueryFilter(field, comparison, value));
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of groups to return.
+     *
+     * @param limit The maximum number of groups to return.
+     * @return The same query instance after setting the limit.
+     */
+    public AggregateQuery limit(Integer limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Sets the grouping or aggregate to sort by.
+     *
+     * @param sortColumn The alias of the grouping or aggregate to sort by.
+     * @return The same query instance after setting the sort column.
+     */
+    public AggregateQuery sortColumn(String sortColumn) {
+        this.sortColumn = sortColumn;
+        return this;
+    }
+
+    /**
+     * Sets the order to sort by.
+     *
+     * @param sortOrder The order to sort by.
+     * @return The same query instance after setting the sort order.
+     */
+    public AggregateQuery sortOrder(SortOrder sortOrder) {
+        this.sortOrder = sortOrder;
+        return this;
+    }
+
+    /**
+     * @return The list of filters applied to the query.
+     */
+    protected List<QueryFilter> getFilters() {
+        return filters;
+    }
+
+    /**
+     * @return The expressions the records are grouped by.
+     */
+    public List<QueryGrouping> getGroupings() {
+        return groupings;
+    }
+
+    /**
+     * @return The values computed for each group.
+     */
+    public List<QueryAggregate> getAggregates() {
+        return aggregates;
+    }
+
+    /**
+     * @return The maximum number of groups to return.
+     */
+    public Integer getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return The alias of the grouping or aggregate to sort by.
+     */
+    public String getSortColumn() {
+        return sortColumn;
+    }
+
+    /**
+     * @return The order to sort by.
+     */
+    public SortOrder getSortOrder() {
+        return sortOrder;
+    }
+
+    @Override
+    public String toString() {
+        return "AggregateQuery(collectionName: %s, groupings: %s, aggregates: %s, filters: %s, limit: %s, sortColumn: %s, sortOrder: %s)"
+                .formatted(getCollectionName(), groupings, aggregates, filters, limit, sortColumn, sortOrder);
+    }
+}
@@ -0,0 +1,126 @@
+package data;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs the operations of a blocking driver on virtual threads.
+ * A virtual thread is cheap to block, so every operation gets its own thread,
+ * but at most maxConcurrency queries run at once so waiting queries do not pile up in the connection pool.
+ */
+public class AsyncDatabaseDriver implements IAsyncDatabaseDriver {
+    /**
+     * The blocking driver that runs the queries.
+     */
+    private final IDatabaseDriver driver;
+    /**
+     * Starts a new virtual thread for each operation.
+     */
+    private final ExecutorService executor;
+    /**
+     * Limits the number of queries running at once.
+     */
+    private final Semaphore permits;
+
+    /**
+     * @param driver         The blocking driver that runs the queries.
+     * @param maxConcurrency The maximum number of queries to run at once (usually the size of the connection pool).
+     */
+    public AsyncDatabaseDriver(IDatabaseDriver driver, int maxConcurrency) {
+        if (maxConcurrency < 1) throw new IllegalArgumentException("At least 1 query must be allowed to run at once.");
+        this.driver = driver;
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        permits = new Semaphore(maxConcurrency, true);
+    }
+
+    @Override
+    public CompletableFuture<List<Long>> execute(InsertQuery query) {
+        return runQuery(() -> driver.execute(query));
+    }
+
+    @Override
+    public CompletableFuture<List<Long>> execute(InsertBatchQuery query) {
+        return runQuery(() -> driver.execute(query));
+    }
+
+    @Override
+    public CompletableFuture<Void> execute(DeleteQuery query) {
+        return runQuery(() -> {
+            driver.execute(query);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> execute(UpdateQuery query) {
+        return runQuery(() -> {
+            driver.execute(query);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<IRecord>> execute(SelectQuery query) {
+        return runQuery(() -> driver.execute(query));
+    }
+
+    @Override
+    public CompletableFuture<List<IRecord>> execute(AggregateQuery query) {
+        return runQuery(() -> driver.execute(query));
+    }
+
+    @Override
+    public CompletableFuture<Page> page(SelectQuery query, int pageSize) {
+        return runQuery(() -> driver.page(query, pageSize));
+    }
+
+    /**
+     * Tasks do not take a query permit, since they may start and wait for queries of their own;
+     * the connection pool still bounds how many of their queries run at once.
+     */
+    @Override
+    public <T> CompletableFuture<T> submit(DatabaseTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(task.call());
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Stops accepting new operations. Operations already started are allowed to finish.
+     */
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Runs a single query on its own virtual thread once a query permit is available.
+     *
+     * @param query The query to run.
+     * @param <T>   The type of the result of the query.
+     * @return A future that completes with the result of the query.
+     */
+    private <T> CompletableFuture<T> runQuery(DatabaseTask<T> query) {
+        return submit(() -> {
+            permits.acquire();
+            try {
+                return query.call();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncDatabaseDriver(%s)".formatted(driver);
+    }
+}
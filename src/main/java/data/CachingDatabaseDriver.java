@@ -0,0 +1,450 @@
+package data;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Caches the results of select queries on collections that rarely change, such as the nutrition reference tables.
+ * Only collections registered with {@link #cacheCollection(String, Duration, String...)} are cached,
+ * and a query is only cached if every collection it reads (including joins) is registered.
+ * Results expire after the shortest time to live of their collections, the least recently used results
+ * are evicted once the cache is full, and any insert, update or delete on a collection
+ * removes every cached result that read it.
+ */
+public class CachingDatabaseDriver extends DatabaseDriverDecorator {
+    /**
+     * Identifies a select query. Filters are normalized so equivalent queries share a cache entry.
+     *
+     * @param collectionName The collection the query selects from.
+     * @param joins          The collections joined to the query.
+     * @param columns        The columns returned by the query.
+     * @param filters        The normalized filters of the query, in sorted order.
+     * @param sortColumn     The column the results are sorted by.
+     * @param sortOrder      The order the results are sorted in.
+     * @param limit          The maximum number of results.
+     * @param keyColumn      The unique column ordering results with the same sort value.
+     * @param after          The normalized page position the results start after.
+     */
+    private record CacheKey(
+            String collectionName,
+            List<QueryJoin> joins,
+            List<String> columns,
+            List<String> filters,
+            String sortColumn,
+            SortOrder sortOrder,
+            Integer limit,
+            String keyColumn,
+            String after
+    ) {
+    }
+
+    /**
+     * A cached result.
+     *
+     * @param records        The records returned by the query.
+     * @param collections    The collections whose changes invalidate the result.
+     * @param expiresAt      The time (in milliseconds since the epoch) the result expires.
+     * @param estimatedBytes The approximate number of bytes used by the records.
+     */
+    private record CacheEntry(List<IRecord> records, Set<String> collections, long expiresAt, long estimatedBytes) {
+    }
+
+    /**
+     * How the results of a collection are cached.
+     *
+     * @param timeToLive        How long results stay cached.
+     * @param sourceCollections Other collections whose changes invalidate the results (for views).
+     */
+    private record CachePolicy(Duration timeToLive, Set<String> sourceCollections) {
+    }
+
+    /**
+     * The maximum number of results to keep cached.
+     */
+    private final int maxEntries;
+    /**
+     * Returns the current time in milliseconds since the epoch.
+     */
+    private final LongSupplier clock;
+    /**
+     * How each registered collection is cached, keyed by collection name.
+     */
+    private final Map<String, CachePolicy> policies;
+    /**
+     * The cached results, least recently used first.
+     */
+    private final LinkedHashMap<CacheKey, CacheEntry> cache;
+    /**
+     * The keys of the cached results that read each collection, so a write can invalidate them.
+     */
+    private final Map<String, Set<CacheKey>> keysByCollection;
+    /**
+     * The number of writes made to each collection, used to avoid caching a result read while a write happened.
+     */
+    private final Map<String, Long> writeCounts;
+    /**
+     * Hit rate, eviction and memory statistics for the cache.
+     */
+    private final QueryCacheStatistics statistics;
+    /**
+     * The collections written by the transaction running on the current thread, or null outside a transaction.
+     */
+    private final ThreadLocal<Set<String>> transactionWrites = new ThreadLocal<>();
+
+    /**
+     * @param delegate   The driver to send queries to when results are not cached.
+     * @param maxEntries The maximum number of results to keep cached.
+     */
+    public CachingDatabaseDriver(IDatabaseDriver delegate, int maxEntries) {
+        this(delegate, maxEntries, System::currentTimeMillis);
+    }
+
+    /**
+     * @param delegate   The driver to send queries to when results are not cached.
+     * @param maxEntries The maximum number of results to keep cached.
+     * @param clock      Returns the current time in milliseconds since the epoch.
+     */
+    CachingDatabaseDriver(IDatabaseDriver delegate, int maxEntries, LongSupplier clock) {
+        super(delegate);
+        if (maxEntries < 1) throw new IllegalArgumentException("The cache must hold at least 1 entry.");
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+        policies = new HashMap<>();
+        cache = new LinkedHashMap<>(16, 0.75f, true);
+        keysByCollection = new HashMap<>();
+        writeCounts = new HashMap<>();
+        statistics = new QueryCacheStatistics();
+    }
+
+    /**
+     * Caches select results for a collection.
+     *
+     * @param collectionName    The collection to cache.
+     * @param timeToLive        How long results stay cached.
+     * @param sourceCollections For views, the collections the view reads, so writes to them invalidate its results.
+     * @return The same driver instance after registering the collection.
+     */
+    public synchronized CachingDatabaseDriver cacheCollection(String collectionName, Duration timeToLive,
+                                                              String... sourceCollections) {
+        policies.put(collectionName, new CachePolicy(timeToLive, Set.of(sourceCollections)));
+        return this;
+    }
+
+    /**
+     * Returns cached results when possible, otherwise runs the query and caches the results.
+     */
+    @Override
+    public List<IRecord> execute(SelectQuery query) throws DatabaseException {
+        List<String> collections = collectionsRead(query);
+        Duration timeToLive;
+        Set<String> dependencies = new HashSet<>(collections);
+        Map<String, Long> writeCountsBefore = new HashMap<>();
+        CacheKey key = keyFor(query);
+        synchronized (this) {
+            timeToLive = timeToLive(collections);
+        }
+        if (timeToLive == null) return delegate.execute(query);
+        synchronized (this) {
+            CacheEntry entry = cache.get(key);
+            if (entry != null && entry.expiresAt() > clock.getAsLong()) {
+                statistics.recordHit();
+                return new ArrayList<>(entry.records());
+            }
+            if (entry != null) {
+                removeEntry(key);
+                statistics.recordInvalidation();
+            }
+            statistics.recordMiss();
+            for (String collection : collections) dependencies.addAll(policies.get(collection).sourceCollections());
+            for (String collection : dependencies) writeCountsBefore.put(collection, writeCount(collection));
+        }
+        List<IRecord> records = delegate.execute(query);
+        synchronized (this) {
+            // a write while the query ran may not be reflected in the results, so they are not safe to cache
+            boolean written = dependencies.stream()
+                    .anyMatch(collection -> writeCount(collection) != writeCountsBefore.get(collection));
+            if (!written) {
+                putEntry(key, new CacheEntry(
+                        List.copyOf(records), dependencies, clock.getAsLong() + timeToLive.toMillis(), estimateBytes(records)));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Cached collections are small reference tables, so their results are read through the cache in full
+     * rather than streamed. Other queries are streamed by the wrapped driver.
+     */
+    @Override
+    public Stream<IRecord> stream(SelectQuery query) throws DatabaseException {
+        boolean cached;
+        synchronized (this) {
+            cached = timeToLive(collectionsRead(query)) != null;
+        }
+        return cached ? execute(query).stream() : delegate.stream(query);
+    }
+
+    @Override
+    public List<Long> execute(InsertQuery query) throws DatabaseException {
+        try {
+            return delegate.execute(query);
+        } finally {
+            recordWrite(query.getCollectionName());
+        }
+    }
+
+    @Override
+    public List<Long> execute(InsertBatchQuery query) throws DatabaseException {
+        try {
+            return delegate.execute(query);
+        } finally {
+            recordWrite(query.getCollectionName());
+        }
+    }
+
+    @Override
+    public void execute(UpdateQuery query) throws DatabaseException {
+        try {
+            delegate.execute(query);
+        } finally {
+            recordWrite(query.getCollectionName());
+        }
+    }
+
+    @Override
+    public void execute(DeleteQuery query) throws DatabaseException {
+        try {
+            delegate.execute(query);
+        } finally {
+            recordWrite(query.getCollectionName());
+        }
+    }
+
+    /**
+     * Results read during a transaction may include its uncommitted writes,
+     * so every collection the transaction wrote is invalidated again once it commits or rolls back.
+     */
+    @Override
+    public <T> T runInTransaction(TransactionCallback<T> callback) throws DatabaseException {
+        if (transactionWrites.get() != null) return callback.run(this);
+        Set<String> written = new HashSet<>();
+        transactionWrites.set(written);
+        try {
+            return super.runInTransaction(callback);
+        } finally {
+            transactionWrites.remove();
+            for (String collection : written) invalidate(collection);
+        }
+    }
+
+    /**
+     * A schema change can alter what any collection or view returns, so every cached result is removed.
+     */
+    @Override
+    public void executeSchemaChange(String statement) throws DatabaseException {
+        try {
+            super.executeSchemaChange(statement);
+        } finally {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * Removes every cached result that read the collection.
+     *
+     * @param collectionName The collection that changed.
+     */
+    public synchronized void invalidate(String collectionName) {
+        writeCounts.merge(collectionName, 1L, Long::sum);
+        Set<CacheKey> keys = keysByCollection.remove(collectionName);
+        if (keys == null) return;
+        for (CacheKey key : keys) {
+            if (removeEntry(key)) statistics.recordInvalidation();
+        }
+    }
+
+    /**
+     * Removes every cached result.
+     */
+    public synchronized void invalidateAll() {
+        for (CacheKey key : List.copyOf(cache.keySet())) {
+            removeEntry(key);
+            statistics.recordInvalidation();
+        }
+    }
+
+    /**
+     * @return Hit rate, eviction and memory statistics for the cache.
+     */
+    public QueryCacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Invalidates a collection after a write, remembering it if the write is part of a transaction.
+     *
+     * @param collectionName The collection that was written.
+     */
+    private void recordWrite(String collectionName) {
+        invalidate(collectionName);
+        Set<String> written = transactionWrites.get();
+        if (written != null) written.add(collectionName);
+    }
+
+    /**
+     * @param collections The collections read by a query.
+     * @return The shortest time to live of the collections, or null if any of them is not cached.
+     */
+    private Duration timeToLive(List<String> collections) {
+        Duration timeToLive = null;
+        for (String collection : collections) {
+            CachePolicy policy = policies.get(collection);
+            if (policy == null) return null;
+            if (timeToLive == null || policy.timeToLive().compareTo(timeToLive) < 0) timeToLive = policy.timeToLive();
+        }
+        return timeToLive;
+    }
+
+    /**
+     * @param collectionName A collection name.
+     * @return The number of writes made to the collection through this driver.
+     */
+    private long writeCount(String collectionName) {
+        return writeCounts.getOrDefault(collectionName, 0L);
+    }
+
+    /**
+     * Adds a result to the cache, evicting the least recently used results if the cache is full.
+     *
+     * @param key   The key of the query.
+     * @param entry The result to cache.
+     */
+    private void putEntry(CacheKey key, CacheEntry entry) {
+        removeEntry(key);
+        cache.put(key, entry);
+        for (String collection : entry.collections()) {
+            keysByCollection.computeIfAbsent(collection, name -> new HashSet<>()).add(key);
+        }
+        statistics.recordSizeChange(1, entry.records().size(), entry.estimatedBytes());
+        Iterator<Map.Entry<CacheKey, CacheEntry>> leastRecentlyUsed = cache.entrySet().iterator();
+        while (cache.size() > maxEntries && leastRecentlyUsed.hasNext()) {
+            Map.Entry<CacheKey, CacheEntry> evicted = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            forgetEntry(evicted.getKey(), evicted.getValue());
+            statistics.recordEviction();
+        }
+    }
+
+    /**
+     * Removes a result from the cache.
+     *
+     * @param key The key of the query.
+     * @return True if a result was cached for the key, else false.
+     */
+    private boolean removeEntry(CacheKey key) {
+        CacheEntry entry = cache.remove(key);
+        if (entry == null) return false;
+        forgetEntry(key, entry);
+        return true;
+    }
+
+    /**
+     * Removes a result that is no longer in the cache from the collection index and memory statistics.
+     *
+     * @param key   The key of the query.
+     * @param entry The removed result.
+     */
+    private void forgetEntry(CacheKey key, CacheEntry entry) {
+        for (String collection : entry.collections()) {
+            Set<CacheKey> keys = keysByCollection.get(collection);
+            if (keys == null) continue;
+            keys.remove(key);
+            if (keys.isEmpty()) keysByCollection.remove(collection);
+        }
+        statistics.recordSizeChange(-1, -entry.records().size(), -entry.estimatedBytes());
+    }
+
+    /**
+     * @param query A select query.
+     * @return The collection the query selects from followed by the collections it joins.
+     */
+    private static List<String> collectionsRead(SelectQuery query) {
+        List<String> collections = new ArrayList<>();
+        collections.add(query.getCollectionName());
+        for (QueryJoin join : query.getJoins()) collections.add(join.collectionName());
+        return collections;
+    }
+
+    /**
+     * Builds the cache key for a query. Filters are combined with AND, so their order does not matter,
+     * and the values of IN / NOT IN filters are deduplicated and sorted.
+     *
+     * @param query A select query.
+     * @return The cache key for the query.
+     */
+    private static CacheKey keyFor(SelectQuery query) {
+        List<String> filters = new ArrayList<>();
+        for (QueryFilter filter : query.getFilters()) {
+            String value = filter.hasCollectionValue()
+                    ? ((Collection<?>) filter.value()).stream().map(CachingDatabaseDriver::normalize).distinct().sorted().toList().toString()
+                    : normalize(filter.value());
+            filters.add("%s %s %s".formatted(filter.field(), filter.comparison(), value));
+        }
+        filters.sort(null);
+        return new CacheKey(
+                query.getCollectionName(),
+                List.copyOf(query.getJoins()),
+                List.copyOf(query.getColumns()),
+                filters,
+                query.getSortColumn(),
+                query.getSortOrder(),
+                query.getLimit(),
+                query.getKeyColumn(),
+                query.getAfter() == null ? null
+                        : normalize(query.getAfter().sortValue()) + "," + normalize(query.getAfter().keyValue())
+        );
+    }
+
+    /**
+     * @param value A filter value.
+     * @return The value with its type, so values that print the same but compare differently have different keys.
+     */
+    private static String normalize(Object value) {
+        return value == null ? "null" : value.getClass().getSimpleName() + ":" + value;
+    }
+
+    /**
+     * Roughly estimates the memory used by records, counting object headers, references and string contents.
+     *
+     * @param records The records to estimate.
+     * @return The approximate number of bytes used by the records.
+     */
+    private static long estimateBytes(List<IRecord> records) {
+        long bytes = 16L + 8L * records.size();
+        for (IRecord record : records) {
+            bytes += 32;
+            for (String field : record.fieldNames()) {
+                Object value = record.getValue(field);
+                bytes += 8;
+                if (value instanceof String string) bytes += 40 + 2L * string.length();
+                else if (value != null) bytes += 24;
+            }
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "CachingDatabaseDriver(%s)".formatted(delegate);
+    }
+}
@@ -10,5 +10,8 @@ public enum Comparison {
     LESS_THAN,
     GREATER_EQUAL,
     LESS_EQUAL,
-    FUZZY_SEARCH
+    FUZZY_SEARCH,
+    // the value must be a collection for IN and NOT_IN
+    IN,
+    NOT_IN
 }
@@ -0,0 +1,22 @@
+package data;
+
+import java.util.List;
+
+/**
+ * A query compiled to parameterized SQL.
+ * Queries with the same shape (collection, fields and comparisons) compile to the same SQL text,
+ * so the prepared statement can be reused with different parameters.
+ *
+ * @param sql                 The SQL text with a ? placeholder for each parameter.
+ * @param parameters          The values to bind to the placeholders, in order.
+ * @param returnGeneratedKeys True if the statement must be prepared so the keys generated by an insert can be read.
+ */
+record CompiledQuery(String sql, List<Object> parameters, boolean returnGeneratedKeys) {
+    /**
+     * @param sql        The SQL text with a ? placeholder for each parameter.
+     * @param parameters The values to bind to the placeholders, in order.
+     */
+    CompiledQuery(String sql, List<Object> parameters) {
+        this(sql, parameters, false);
+    }
+}
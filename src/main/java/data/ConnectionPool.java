@@ -0,0 +1,288 @@
+package data;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded pool of database connections that can be shared safely between threads.
+ * Connections are validated when borrowed, idle connections above the minimum size are evicted in the background,
+ * and callers waiting longer than the acquire timeout for a connection receive a DatabaseException.
+ */
+public class ConnectionPool {
+    /**
+     * Opens new connections to the database when the pool needs to grow.
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        /**
+         * @return A new connection to the database.
+         * @throws SQLException Thrown if the connection cannot be established.
+         */
+        Connection create() throws SQLException;
+    }
+
+    /**
+     * Opens new connections to the database.
+     */
+    private final ConnectionFactory factory;
+    /**
+     * The number of connections the pool keeps open even when they are idle.
+     */
+    private final int minSize;
+    /**
+     * The maximum number of connections the pool may have open at once.
+     */
+    private final int maxSize;
+    /**
+     * How long to wait for a connection to become available before giving up.
+     */
+    private final long acquireTimeoutMillis;
+    /**
+     * How long a connection may sit idle before it is closed (while the pool is above its minimum size).
+     */
+    private final long idleTimeoutMillis;
+    /**
+     * How long to wait for the database to respond when validating a connection.
+     */
+    private final int validationTimeoutSeconds;
+    /**
+     * The maximum number of prepared statements each connection keeps open.
+     */
+    private final int statementCacheSize;
+    /**
+     * Hit and miss counts for the prepared statement caches of every connection in the pool.
+     */
+    private final StatementCacheStatistics statementCacheStatistics;
+    /**
+     * One permit per connection that may be handed out, so at most maxSize connections are ever in use.
+     */
+    private final Semaphore permits;
+    /**
+     * Idle connections, most recently used first.
+     */
+    private final Deque<PooledConnection> idleConnections;
+    /**
+     * Periodically closes connections that have been idle for too long.
+     */
+    private final ScheduledExecutorService evictor;
+    /**
+     * The number of connections currently open (idle or in use).
+     */
+    private int openConnections;
+    /**
+     * True once the pool has been closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Creates the pool and eagerly opens the minimum number of connections.
+     *
+     * @param factory                  Opens new connections to the database.
+     * @param minSize                  The number of connections to keep open even when they are idle.
+     * @param maxSize                  The maximum number of connections that may be open at once.
+     * @param acquireTimeoutMillis     How long to wait for a connection before giving up.
+     * @param idleTimeoutMillis        How long a connection may sit idle before it is closed.
+     * @param validationTimeoutSeconds How long to wait for the database when validating a connection.
+     * @param statementCacheSize       The maximum number of prepared statements each connection keeps open.
+     * @throws DatabaseException Thrown if the initial connections cannot be established.
+     */
+    public ConnectionPool(
+            ConnectionFactory factory,
+            int minSize,
+            int maxSize,
+            long acquireTimeoutMillis,
+            long idleTimeoutMillis,
+            int validationTimeoutSeconds,
+            int statementCacheSize
+    ) throws DatabaseException {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException(
+                    "Invalid pool size (min: %d, max: %d).".formatted(minSize, maxSize));
+        }
+        this.factory = factory;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        statementCacheStatistics = new StatementCacheStatistics();
+        permits = new Semaphore(maxSize, true);
+        idleConnections = new ArrayDeque<>();
+        for (int i = 0; i < minSize; i++) {
+            idleConnections.addLast(openConnection());
+        }
+        evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "delta-connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long evictionIntervalMillis = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleAtFixedRate(
+                this::evictIdleConnections, evictionIntervalMillis, evictionIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool, waiting up to the acquire timeout for one to become available.
+     * The connection must be returned with {@link #release(PooledConnection)} once the caller is done with it.
+     *
+     * @return A validated connection.
+     * @throws DatabaseException Thrown if no connection becomes available in time or a new one cannot be opened.
+     */
+    PooledConnection borrow() throws DatabaseException {
+        if (closed) throw new DatabaseException("The connection pool has been closed.");
+        try {
+            if (!permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new DatabaseException(
+                        "Timed out after %d ms waiting for a database connection.".formatted(acquireTimeoutMillis));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Interrupted while waiting for a database connection.");
+        }
+        try {
+            PooledConnection pooledConnection;
+            while ((pooledConnection = pollIdleConnection()) != null) {
+                if (pooledConnection.isValid(validationTimeoutSeconds)) return pooledConnection;
+                discard(pooledConnection);
+            }
+            return openConnection();
+        } catch (DatabaseException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a borrowed connection to the pool.
+     *
+     * @param pooledConnection The connection to return.
+     */
+    void release(PooledConnection pooledConnection) {
+        try {
+            if (closed) {
+                discard(pooledConnection);
+                return;
+            }
+            pooledConnection.touch();
+            synchronized (this) {
+                idleConnections.addFirst(pooledConnection);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes every idle connection and stops the background eviction.
+     * Connections that are in use are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        synchronized (this) {
+            for (PooledConnection pooledConnection : idleConnections) {
+                pooledConnection.close();
+                openConnections--;
+            }
+            idleConnections.clear();
+        }
+    }
+
+    /**
+     * @return The number of connections currently open (idle or in use).
+     */
+    public synchronized int getOpenConnections() {
+        return openConnections;
+    }
+
+    /**
+     * @return The number of open connections not currently in use.
+     */
+    public synchronized int getIdleConnections() {
+        return idleConnections.size();
+    }
+
+    /**
+     * @return The maximum number of connections the pool may have open at once.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return Hit and miss counts for the prepared statement caches of every connection in the pool.
+     */
+    public StatementCacheStatistics getStatementCacheStatistics() {
+        return statementCacheStatistics;
+    }
+
+    /**
+     * Closes connections that have been idle longer than the idle timeout, keeping at least the minimum pool size.
+     * The least recently used connections are at the back of the queue, so they are evicted first.
+     */
+    private void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Iterator<PooledConnection> leastRecentlyUsed = idleConnections.descendingIterator();
+            while (leastRecentlyUsed.hasNext() && openConnections > minSize) {
+                PooledConnection pooledConnection = leastRecentlyUsed.next();
+                if (now - pooledConnection.lastUsedAt() < idleTimeoutMillis) break;
+                leastRecentlyUsed.remove();
+                pooledConnection.close();
+                openConnections--;
+            }
+        }
+    }
+
+    /**
+     * @return The most recently used idle connection, or null if there are none.
+     */
+    private synchronized PooledConnection pollIdleConnection() {
+        return idleConnections.pollFirst();
+    }
+
+    /**
+     * Opens a new connection and counts it against the pool.
+     *
+     * @return The new connection.
+     * @throws DatabaseException Thrown if the connection cannot be established.
+     */
+    private PooledConnection openConnection() throws DatabaseException {
+        try {
+            PooledConnection pooledConnection = new PooledConnection(
+                    factory.create(), statementCacheSize, statementCacheStatistics);
+            synchronized (this) {
+                openConnections++;
+            }
+            return pooledConnection;
+        } catch (SQLException e) {
+            throw new DatabaseException("Failed to connect to the database:\n" + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes a connection and removes it from the pool.
+     *
+     * @param pooledConnection The connection to discard.
+     */
+    private void discard(PooledConnection pooledConnection) {
+        pooledConnection.close();
+        synchronized (this) {
+            openConnections--;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool(open: %d, idle: %d, max: %d)"
+                .formatted(getOpenConnections(), getIdleConnections(), maxSize);
+    }
+}
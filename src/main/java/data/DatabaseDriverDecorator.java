@@ -0,0 +1,93 @@
+package data;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Base class for drivers that add behaviour around another driver (decorator pattern).
+ * Every operation is forwarded to the wrapped driver, so subclasses only override the operations they change.
+ */
+public abstract class DatabaseDriverDecorator implements IDatabaseDriver {
+    /**
+     * The driver the operations are forwarded to.
+     */
+    protected final IDatabaseDriver delegate;
+
+    /**
+     * @param delegate The driver the operations are forwarded to.
+     */
+    protected DatabaseDriverDecorator(IDatabaseDriver delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return The driver the operations are forwarded to.
+     */
+    public IDatabaseDriver getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public IDatabaseConfig config() {
+        return delegate.config();
+    }
+
+    @Override
+    public List<Long> execute(InsertQuery query) throws DatabaseException {
+        return delegate.execute(query);
+    }
+
+    @Override
+    public List<Long> execute(InsertBatchQuery query) throws DatabaseException {
+        return delegate.execute(query);
+    }
+
+    @Override
+    public void execute(DeleteQuery query) throws DatabaseException {
+        delegate.execute(query);
+    }
+
+    @Override
+    public void execute(UpdateQuery query) throws DatabaseException {
+        delegate.execute(query);
+    }
+
+    @Override
+    public List<IRecord> execute(SelectQuery query) throws DatabaseException {
+        return delegate.execute(query);
+    }
+
+    @Override
+    public List<IRecord> execute(AggregateQuery query) throws DatabaseException {
+        return delegate.execute(query);
+    }
+
+    @Override
+    public Stream<IRecord> stream(SelectQuery query) throws DatabaseException {
+        return delegate.stream(query);
+    }
+
+    @Override
+    public void executeSchemaChange(String statement) throws DatabaseException {
+        delegate.executeSchemaChange(statement);
+    }
+
+    @Override
+    public String explain(SelectQuery query) throws DatabaseException {
+        return delegate.explain(query);
+    }
+
+    /**
+     * The callback is given this decorator rather than the wrapped driver, so queries in the transaction
+     * still pass through the decorator.
+     */
+    @Override
+    public <T> T runInTransaction(TransactionCallback<T> callback) throws DatabaseException {
+        return delegate.runInTransaction(driver -> callback.run(this));
+    }
+
+    @Override
+    public long reserveIds(String collectionName, int count) throws DatabaseException {
+        return delegate.reserveIds(collectionName, count);
+    }
+}
@@ -0,0 +1,41 @@
+package data;
+
+/**
+ * The address of a database server, such as the primary or one of its read replicas.
+ *
+ * @param hostName   The name of the host the server runs on.
+ * @param portNumber The port the server listens on.
+ */
+public record DatabaseHost(
+        String hostName,
+        int portNumber
+) {
+    /**
+     * The port MySQL listens on unless told otherwise.
+     */
+    public static final int DEFAULT_PORT = 3306;
+
+    /**
+     * Parses an address written as "host" or "host:port".
+     *
+     * @param address The address to parse.
+     * @return The host the address refers to, on the default port if it has none.
+     * @throws IllegalArgumentException Thrown if the address is blank or its port is not a number.
+     */
+    public static DatabaseHost parse(String address) {
+        String trimmed = address.trim();
+        if (trimmed.isEmpty()) throw new IllegalArgumentException("A database host cannot be blank.");
+        int separator = trimmed.lastIndexOf(':');
+        if (separator < 0) return new DatabaseHost(trimmed, DEFAULT_PORT);
+        try {
+            return new DatabaseHost(trimmed.substring(0, separator), Integer.parseInt(trimmed.substring(separator + 1)));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid port in database host: " + address, e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return hostName + ":" + portNumber;
+    }
+}
@@ -0,0 +1,11 @@
+package data;
+
+/**
+ * How the value of a field is turned into the group a record belongs to.
+ */
+public enum GroupingFunction {
+    // records with the same value are grouped together
+    VALUE,
+    // records on the same day are grouped together, ignoring the time of day
+    DATE
+}
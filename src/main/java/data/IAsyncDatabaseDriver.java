@@ -0,0 +1,92 @@
+package data;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Runs database operations without blocking the calling thread, such as the Swing event dispatch thread.
+ * Each operation returns a future that completes with its result, or completes exceptionally with the
+ * DatabaseException (wrapped in a CompletionException when joined) if the operation fails.
+ * Independent operations can be started together and run concurrently.
+ */
+public interface IAsyncDatabaseDriver {
+    /**
+     * A unit of blocking database work, such as a call to a service that runs several queries.
+     *
+     * @param <T> The type of the result of the work.
+     */
+    @FunctionalInterface
+    interface DatabaseTask<T> {
+        /**
+         * @return The result of the work.
+         * @throws Exception Thrown if the work fails.
+         */
+        T call() throws Exception;
+    }
+
+    /**
+     * Executes a query to insert a record in the database.
+     *
+     * @param query The query to execute.
+     * @return A future that completes once the record is inserted, with its generated key if it was requested.
+     */
+    CompletableFuture<List<Long>> execute(InsertQuery query);
+
+    /**
+     * Executes a query to insert many records in the database.
+     *
+     * @param query The query to execute.
+     * @return A future that completes once the records are inserted, with their generated keys if they were requested.
+     */
+    CompletableFuture<List<Long>> execute(InsertBatchQuery query);
+
+    /**
+     * Executes a query to delete a record from the database.
+     *
+     * @param query The query to execute.
+     * @return A future that completes once the record is deleted.
+     */
+    CompletableFuture<Void> execute(DeleteQuery query);
+
+    /**
+     * Executes a query to update a record in the database.
+     *
+     * @param query The query to execute.
+     * @return A future that completes once the record is updated.
+     */
+    CompletableFuture<Void> execute(UpdateQuery query);
+
+    /**
+     * Executes a query to retrieve records from a database.
+     *
+     * @param query The query to execute.
+     * @return A future that completes with a list of database records.
+     */
+    CompletableFuture<List<IRecord>> execute(SelectQuery query);
+
+    /**
+     * Executes a query summarizing records in the database.
+     *
+     * @param query The query to execute.
+     * @return A future that completes with one record per group.
+     */
+    CompletableFuture<List<IRecord>> execute(AggregateQuery query);
+
+    /**
+     * Reads one page of the records of a query (see {@link IDatabaseDriver#page(SelectQuery, int)}).
+     *
+     * @param query    The query to read a page of.
+     * @param pageSize The maximum number of records on the page.
+     * @return A future that completes with the page of records and the token for the next page.
+     */
+    CompletableFuture<Page> page(SelectQuery query, int pageSize);
+
+    /**
+     * Runs blocking database work in the background, such as a service call.
+     *
+     * @param task The work to run.
+     * @param <T>  The type of the result of the work.
+     * @return A future that completes with the result of the work, or exceptionally with the exception it threw.
+     */
+    <T> CompletableFuture<T> submit(DatabaseTask<T> task);
+}
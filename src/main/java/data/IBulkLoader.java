@@ -0,0 +1,29 @@
+package data;
+
+import java.util.List;
+
+/**
+ * Implemented by drivers that can stream a large number of records into a collection much faster
+ * than inserting them, such as with MySQL's LOAD DATA statement.
+ * Callers fall back to batched inserts when the driver is not a bulk loader or bulk loading is unavailable.
+ */
+public interface IBulkLoader {
+    /**
+     * @return True if the database accepts bulk loads, false if it must be loaded with inserts instead.
+     */
+    boolean isBulkLoadAvailable();
+
+    /**
+     * Loads records into a collection as a single unit, so a failure never leaves part of them loaded.
+     * The records are read as they are sent, so they do not need to fit in memory.
+     * Any row the database cannot store exactly (ex. a duplicate key or a value it had to truncate) fails the load.
+     *
+     * @param collectionName The collection to load the records into.
+     * @param columnNames    The fields of the records to load, which must be columns of the collection.
+     * @param records        The records to load.
+     * @return The number of records loaded.
+     * @throws DatabaseException Thrown if the records cannot be loaded.
+     */
+    long bulkLoad(String collectionName, List<String> columnNames, Iterable<? extends IRecord> records)
+            throws DatabaseException;
+}
@@ -1,6 +1,7 @@
 package data;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Defines that operation a database driver needs to implement.
@@ -17,8 +18,18 @@ public interface IDatabaseDriver {
      * Executes a query to insert a record in the database.
      *
      * @param query The query to execute.
+     * @return The key generated for the record if the query requested it with returnGeneratedKeys, else an empty list.
      */
-    void execute(InsertQuery query) throws DatabaseException;
+    List<Long> execute(InsertQuery query) throws DatabaseException;
+
+    /**
+     * Executes a query to insert many records in the database, grouping rows to limit the number of round trips.
+     *
+     * @param query The query to execute.
+     * @return The keys generated for the records, in order, if the query requested them with returnGeneratedKeys,
+     * else an empty list.
+     */
+    List<Long> execute(InsertBatchQuery query) throws DatabaseException;
 
     /**
      * Executes a query to delete a record from the database.
@@ -41,4 +52,95 @@ public interface IDatabaseDriver {
      * @return A list of database records.
      */
     List<IRecord> execute(SelectQuery query) throws DatabaseException;
+
+    /**
+     * Executes a query summarizing records in the database, so only the summarized values are transferred.
+     *
+     * @param query The query to execute.
+     * @return One record per group, holding the values of the groupings followed by the aggregates.
+     */
+    List<IRecord> execute(AggregateQuery query) throws DatabaseException;
+
+    /**
+     * Executes a query to retrieve records from a database, reading them lazily as the stream is consumed
+     * so large results can be processed in constant memory.
+     * The stream holds database resources until it is closed, so it must be used in a try-with-resources block.
+     * Errors raised while reading the stream are thrown as an UncheckedDatabaseException.
+     *
+     * @param query The query to execute.
+     * @return A stream of database records that must be closed after use.
+     */
+    Stream<IRecord> stream(SelectQuery query) throws DatabaseException;
+
+    /**
+     * Reads one page of the records of a query. The query must have a sort column, and should have a unique
+     * key column unless the sort column is unique. Both must be among the query's columns if it restricts them.
+     * The next page is read by passing the returned token to {@link SelectQuery#after(String)} on a query with
+     * the same filters and sort order. Each page seeks past the previous one, so it costs the same however deep it is.
+     *
+     * @param query    The query to read a page of, which is given a limit of one more than the page size.
+     * @param pageSize The maximum number of records on the page, at least 1.
+     * @return The page of records and the token for the next page.
+     * @throws DatabaseException Thrown if an error occurs while executing the query.
+     */
+    default Page page(SelectQuery query, int pageSize) throws DatabaseException {
+        if (pageSize < 1) throw new IllegalArgumentException("A page must hold at least 1 record.");
+        if (query.getSortColumn() == null) throw new IllegalArgumentException("Paged queries need a sort column.");
+        // reading one extra record tells whether there is a next page without reading an empty one
+        List<IRecord> records = execute(query.limit(pageSize + 1));
+        if (records.size() <= pageSize) return new Page(records, null);
+        records = List.copyOf(records.subList(0, pageSize));
+        IRecord last = records.getLast();
+        String keyColumn = query.getKeyColumn();
+        PageToken next = new PageToken(query.getSortColumn(), last.getValue(query.getSortColumn()),
+                keyColumn, keyColumn == null ? null : last.getValue(keyColumn));
+        return new Page(records, next.encode());
+    }
+
+    /**
+     * Describes how the database would run a select query, such as which indexes it would use.
+     * Drivers that cannot describe their plans return a message saying so.
+     *
+     * @param query The query to describe.
+     * @return The plan for the query as plain text.
+     * @throws DatabaseException Thrown if the plan cannot be read.
+     */
+    default String explain(SelectQuery query) throws DatabaseException {
+        return "No plan is available from " + getClass().getSimpleName();
+    }
+
+    /**
+     * Runs a single SQL statement that changes the schema (ex. CREATE INDEX or ALTER TABLE),
+     * which the query types cannot express. Schema changes are used by {@link MigrationRunner}.
+     * MySQL commits schema changes immediately, so they run outside any transaction.
+     *
+     * @param statement The SQL statement to run.
+     * @throws DatabaseException Thrown if the statement is not supported or fails.
+     */
+    void executeSchemaChange(String statement) throws DatabaseException;
+
+    /**
+     * Runs several queries as a single transaction, so they are committed together or not at all.
+     * Queries executed through the driver passed to the callback (on the same thread) share one connection
+     * and are committed once when the callback returns. If the callback throws, every query is rolled back.
+     * Calling this method from inside a transaction joins the outer transaction.
+     *
+     * @param callback The work to run in the transaction.
+     * @param <T>      The type of the result of the work.
+     * @return The result returned by the callback.
+     * @throws DatabaseException Thrown if a query fails or the transaction cannot be committed.
+     */
+    <T> T runInTransaction(TransactionCallback<T> callback) throws DatabaseException;
+
+    /**
+     * Reserves a block of consecutive ids for a collection, so records can be given ids before they are inserted.
+     * Reservations are permanent (even if the caller's transaction rolls back), so no id is ever handed out twice.
+     * A collection that uses reserved ids should not also rely on ids generated by the database.
+     *
+     * @param collectionName The collection the ids are for.
+     * @param count          The number of ids to reserve.
+     * @return The first id of the block; the block contains every id from it up to (but not including) it + count.
+     * @throws DatabaseException Thrown if the ids cannot be reserved.
+     */
+    long reserveIds(String collectionName, int count) throws DatabaseException;
 }
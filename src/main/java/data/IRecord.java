@@ -16,4 +16,24 @@ public interface IRecord {
      * @return A collection of unordered field names.
      */
     Collection<String> fieldNames();
+
+    /**
+     * Reads a numeric field as a primitive int.
+     *
+     * @param field The field to get the value for (must not be null).
+     * @return The value of the specified field as an int.
+     */
+    default int getInt(String field) {
+        return ((Number) getValue(field)).intValue();
+    }
+
+    /**
+     * Reads a numeric field as a primitive double.
+     *
+     * @param field The field to get the value for (must not be null).
+     * @return The value of the specified field as a double.
+     */
+    default double getDouble(String field) {
+        return ((Number) getValue(field)).doubleValue();
+    }
 }
@@ -0,0 +1,94 @@
+package data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Hands out ids for new records without a round trip per id (hi/lo allocation).
+ * Ids are reserved from the database in blocks, and ids within a block are handed out from memory,
+ * so a record's id is known before it is inserted and child records can reference it in the same batch.
+ * Ids left unused in a block when the app exits are skipped, so ids are unique but may have gaps.
+ */
+public class IdAllocator {
+    /**
+     * The number of ids reserved per round trip when no block size is specified.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 50;
+
+    /**
+     * A block of reserved ids.
+     */
+    private static class Block {
+        /**
+         * The next id to hand out.
+         */
+        private long next;
+        /**
+         * The first id after the end of the block.
+         */
+        private long end;
+    }
+
+    /**
+     * The driver used to reserve blocks of ids.
+     */
+    private final IDatabaseDriver driver;
+    /**
+     * The number of ids to reserve per round trip.
+     */
+    private final int blockSize;
+    /**
+     * The current block of ids for each collection.
+     */
+    private final Map<String, Block> blocks;
+
+    /**
+     * @param driver The driver used to reserve blocks of ids.
+     */
+    public IdAllocator(IDatabaseDriver driver) {
+        this(driver, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param driver    The driver used to reserve blocks of ids.
+     * @param blockSize The number of ids to reserve per round trip.
+     */
+    public IdAllocator(IDatabaseDriver driver, int blockSize) {
+        if (blockSize < 1) throw new IllegalArgumentException("The block size must be at least 1.");
+        this.driver = driver;
+        this.blockSize = blockSize;
+        blocks = new HashMap<>();
+    }
+
+    /**
+     * Returns an unused id for a collection, reserving a new block from the database if the current one is used up.
+     *
+     * @param collectionName The collection the id is for.
+     * @return An id no other caller will receive.
+     * @throws DatabaseException Thrown if a new block of ids cannot be reserved.
+     */
+    public synchronized long nextId(String collectionName) throws DatabaseException {
+        Block block = blocks.computeIfAbsent(collectionName, name -> new Block());
+        if (block.next == block.end) {
+            block.next = driver.reserveIds(collectionName, blockSize);
+            block.end = block.next + blockSize;
+        }
+        return block.next++;
+    }
+
+    /**
+     * Returns an unused id for a collection whose ids are stored as INT.
+     *
+     * @param collectionName The collection the id is for.
+     * @return An id no other caller will receive.
+     * @throws DatabaseException Thrown if a new block of ids cannot be reserved.
+     */
+    public int nextIntId(String collectionName) throws DatabaseException {
+        return Math.toIntExact(nextId(collectionName));
+    }
+
+    @Override
+    public String toString() {
+        return "IdAllocator(blockSize: %d)".formatted(blockSize);
+    }
+}
@@ -0,0 +1,462 @@
+package data;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * A database driver that keeps every collection in memory, for running the app and the tests without MySQL.
+ * Collections and views are created by running the same SQL scripts used to set up MySQL (see {@link #runScript}),
+ * and queries return the same records, with the same Java types, as the MySQL driver.
+ * <p>
+ * Each collection has a hash index on the leading column of its primary key and on each foreign key,
+ * and a sorted index on each DATE / DATETIME column, so lookups by id and date range queries do not scan.
+ * More indexes can be added with {@link #hashIndex} and {@link #rangeIndex}.
+ * <p>
+ * Reads run concurrently. Writes, and transactions as a whole, hold an exclusive lock,
+ * so transactions are serializable. Nothing is persisted when the app exits.
+ */
+public class InMemoryDriver implements IDatabaseDriver {
+    /**
+     * Work that changes the collections, recording how to undo each change.
+     *
+     * @param <T> The type of the result.
+     */
+    @FunctionalInterface
+    private interface WriteOperation<T> {
+        T apply(Deque<Runnable> undoLog) throws DatabaseException;
+    }
+
+    /**
+     * The configuration mapping classes to collections.
+     */
+    private final IDatabaseConfig config;
+    /**
+     * The collections keyed by name.
+     */
+    private final Map<String, InMemoryTable> tables;
+    /**
+     * The views keyed by name.
+     */
+    private final Map<String, InMemoryView> views;
+    /**
+     * Shared by reads, and held exclusively by writes and transactions.
+     */
+    private final ReadWriteLock lock;
+    /**
+     * The changes made by the transaction running on the current thread (most recent first),
+     * or null if the thread is not in a transaction.
+     */
+    private final ThreadLocal<Deque<Runnable>> transactionUndoLog;
+    /**
+     * The next id to reserve for each collection that has reserved ids (see {@link #reserveIds}).
+     */
+    private final Map<String, Long> idSequences;
+
+    /**
+     * Creates a driver with no collections.
+     *
+     * @param config The configuration mapping classes to collections.
+     */
+    public InMemoryDriver(IDatabaseConfig config) {
+        this.config = config;
+        tables = new ConcurrentHashMap<>();
+        views = new ConcurrentHashMap<>();
+        lock = new ReentrantReadWriteLock();
+        transactionUndoLog = new ThreadLocal<>();
+        idSequences = new HashMap<>();
+    }
+
+    /**
+     * Runs a SQL script, such as create-database.sql or seed-database.sql.
+     * Supports CREATE / DROP TABLE, CREATE VIEW (a SELECT with joins), INSERT and DROP DATABASE;
+     * statements that only apply to a server (ex. USE) are ignored.
+     *
+     * @param filePath The path of the script.
+     * @return This driver, so scripts can be chained.
+     * @throws DatabaseException Thrown if a statement is not supported or fails.
+     * @throws IOException       Thrown if the script cannot be read.
+     */
+    public InMemoryDriver runScript(String filePath) throws DatabaseException, IOException {
+        String script = Files.readString(Path.of(filePath));
+        SqlScriptLoader.run(this, script);
+        return this;
+    }
+
+    /**
+     * Adds a hash index on a column, which answers EQUAL and IN filters and joins on the column without a scan.
+     *
+     * @param collectionName The collection to index.
+     * @param column         The column to index.
+     * @return This driver, so indexes can be chained.
+     * @throws DatabaseException Thrown if the collection or column does not exist.
+     */
+    public InMemoryDriver hashIndex(String collectionName, String column) throws DatabaseException {
+        return write(undoLog -> {
+            findWritableTable(collectionName).addHashIndex(column);
+            return this;
+        });
+    }
+
+    /**
+     * Adds a sorted index on a column, which answers range filters on the column without a scan.
+     *
+     * @param collectionName The collection to index.
+     * @param column         The column to index.
+     * @return This driver, so indexes can be chained.
+     * @throws DatabaseException Thrown if the collection or column does not exist.
+     */
+    public InMemoryDriver rangeIndex(String collectionName, String column) throws DatabaseException {
+        return write(undoLog -> {
+            findWritableTable(collectionName).addRangeIndex(column);
+            return this;
+        });
+    }
+
+    @Override
+    public IDatabaseConfig config() {
+        return config;
+    }
+
+    @Override
+    public List<Long> execute(InsertQuery query) throws DatabaseException {
+        return write(undoLog -> {
+            InMemoryTable table = findWritableTable(query.getCollectionName());
+            Object[] row = insert(table, query.getRecord(), undoLog);
+            return query.isReturningGeneratedKeys() ? generatedKeys(table, List.<Object[]>of(row)) : List.of();
+        });
+    }
+
+    /**
+     * Inserts every record in the batch atomically (the batch size only matters for MySQL's round trips).
+     * In an upsert, records whose primary key is already used update that row instead.
+     */
+    @Override
+    public List<Long> execute(InsertBatchQuery query) throws DatabaseException {
+        return write(undoLog -> {
+            InMemoryTable table = findWritableTable(query.getCollectionName());
+            List<Object[]> rows = new ArrayList<>(query.getRecords().size());
+            for (IRecord record : query.getRecords()) {
+                Object[] existing = query.isUpdatingOnDuplicateKey() ? table.findByPrimaryKey(record) : null;
+                if (existing == null) {
+                    rows.add(insert(table, record, undoLog));
+                } else {
+                    Object[] previous = table.update(existing, record);
+                    undoLog.push(() -> restore(table, existing, previous));
+                    rows.add(existing);
+                }
+            }
+            return query.isReturningGeneratedKeys() ? generatedKeys(table, rows) : List.of();
+        });
+    }
+
+    @Override
+    public void execute(DeleteQuery query) throws DatabaseException {
+        write(undoLog -> {
+            InMemoryTable table = findWritableTable(query.getCollectionName());
+            for (Object[] row : InMemoryQueryEvaluator.matchingRows(table, query.getFilters())) {
+                table.remove(row);
+                undoLog.push(() -> restore(table, row));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void execute(UpdateQuery query) throws DatabaseException {
+        write(undoLog -> {
+            InMemoryTable table = findWritableTable(query.getCollectionName());
+            List<QueryFilter> byId = List.of(new QueryFilter("id", Comparison.EQUAL, query.getRecord().getValue("id")));
+            for (Object[] row : InMemoryQueryEvaluator.matchingRows(table, byId)) {
+                Object[] previous = table.update(row, query.getRecord());
+                undoLog.push(() -> restore(table, row, previous));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<IRecord> execute(SelectQuery query) throws DatabaseException {
+        lock.readLock().lock();
+        try {
+            return InMemoryQueryEvaluator.select(query, this);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Schema changes are run by the script loader, which understands the statements the SQL scripts use
+     * and CREATE INDEX (as hash indexes on each column).
+     */
+    @Override
+    public void executeSchemaChange(String statement) throws DatabaseException {
+        SqlScriptLoader.run(this, statement);
+    }
+
+    @Override
+    public List<IRecord> execute(AggregateQuery query) throws DatabaseException {
+        lock.readLock().lock();
+        try {
+            return InMemoryQueryEvaluator.aggregate(query, this);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Describes which index (if any) narrows down the rows of the queried collection, and how joins are looked up.
+     */
+    @Override
+    public String explain(SelectQuery query) throws DatabaseException {
+        lock.readLock().lock();
+        try {
+            return InMemoryQueryEvaluator.explain(query, this);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The records are already in memory, so the stream reads from a snapshot of the results.
+     */
+    @Override
+    public Stream<IRecord> stream(SelectQuery query) throws DatabaseException {
+        return execute(query).stream();
+    }
+
+    /**
+     * Holds the write lock for the whole transaction, and undoes every change in reverse order if the callback throws.
+     */
+    @Override
+    public <T> T runInTransaction(TransactionCallback<T> callback) throws DatabaseException {
+        // a nested transaction joins the outer one
+        if (transactionUndoLog.get() != null) return callback.run(this);
+        lock.writeLock().lock();
+        Deque<Runnable> undoLog = new ArrayDeque<>();
+        transactionUndoLog.set(undoLog);
+        try {
+            return callback.run(this);
+        } catch (Throwable e) {
+            // an Error rolls back the unit of work too, as it does on MySQL
+            undo(undoLog);
+            throw e;
+        } finally {
+            transactionUndoLog.remove();
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reservations are kept in memory, starting after the largest id in the collection.
+     */
+    @Override
+    public long reserveIds(String collectionName, int count) throws DatabaseException {
+        if (count < 1) throw new DatabaseException("At least one id must be reserved.");
+        lock.readLock().lock();
+        try {
+            synchronized (idSequences) {
+                Long next = idSequences.get(collectionName);
+                if (next == null) next = findTable(collectionName).maxValue("id") + 1;
+                idSequences.put(collectionName, next + count);
+                return next;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @param collectionName The name of a collection or view.
+     * @return The collection, or the current rows of the view.
+     * @throws DatabaseException Thrown if there is no such collection or view.
+     */
+    InMemoryTable findTable(String collectionName) throws DatabaseException {
+        InMemoryTable table = tables.get(collectionName);
+        if (table != null) return table;
+        InMemoryView view = views.get(collectionName);
+        if (view != null) return view.evaluate(this);
+        throw new DatabaseException("Table '%s' doesn't exist".formatted(collectionName));
+    }
+
+    /**
+     * @param collectionName The name of a collection or view.
+     * @return True if a collection or view has the name.
+     */
+    boolean exists(String collectionName) {
+        return tables.containsKey(collectionName) || views.containsKey(collectionName);
+    }
+
+    /**
+     * Adds a collection, replacing any collection or view with the same name.
+     *
+     * @param table The collection to add.
+     * @throws DatabaseException Thrown if the collection cannot be added.
+     */
+    void createTable(InMemoryTable table) throws DatabaseException {
+        write(undoLog -> {
+            views.remove(table.getName());
+            tables.put(table.getName(), table);
+            return null;
+        });
+    }
+
+    /**
+     * Adds a view, replacing any collection or view with the same name.
+     *
+     * @param view The view to add.
+     * @throws DatabaseException Thrown if the view cannot be added.
+     */
+    void createView(InMemoryView view) throws DatabaseException {
+        write(undoLog -> {
+            for (String source : view.getSourceCollections()) findTable(source);
+            tables.remove(view.getName());
+            views.put(view.getName(), view);
+            return null;
+        });
+    }
+
+    /**
+     * Removes a collection or view if it exists.
+     *
+     * @param collectionName The collection or view to remove.
+     * @throws DatabaseException Thrown if the collection cannot be removed.
+     */
+    void drop(String collectionName) throws DatabaseException {
+        write(undoLog -> {
+            tables.remove(collectionName);
+            views.remove(collectionName);
+            return null;
+        });
+    }
+
+    /**
+     * Removes every collection and view.
+     *
+     * @throws DatabaseException Thrown if the collections cannot be removed.
+     */
+    void dropAll() throws DatabaseException {
+        write(undoLog -> {
+            tables.clear();
+            views.clear();
+            synchronized (idSequences) {
+                idSequences.clear();
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Runs a write atomically: it holds the write lock (unless the thread's transaction already holds it),
+     * and undoes its own changes if it fails part way through. Inside a transaction, the changes are added to the
+     * transaction's undo log so they are rolled back with it.
+     *
+     * @param operation The write to run.
+     * @param <T>       The type of the result.
+     * @return The result of the write.
+     * @throws DatabaseException Thrown if the write fails.
+     */
+    private <T> T write(WriteOperation<T> operation) throws DatabaseException {
+        Deque<Runnable> transaction = transactionUndoLog.get();
+        if (transaction == null) lock.writeLock().lock();
+        Deque<Runnable> undoLog = new ArrayDeque<>();
+        try {
+            T result = operation.apply(undoLog);
+            if (transaction != null) {
+                // keep the most recent change first
+                for (Iterator<Runnable> changes = undoLog.descendingIterator(); changes.hasNext(); ) {
+                    transaction.push(changes.next());
+                }
+            }
+            return result;
+        } catch (DatabaseException | RuntimeException e) {
+            undo(undoLog);
+            throw e;
+        } finally {
+            if (transaction == null) lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param collectionName The name of a collection.
+     * @return The collection.
+     * @throws DatabaseException Thrown if there is no such collection, including if the name is a view.
+     */
+    private InMemoryTable findWritableTable(String collectionName) throws DatabaseException {
+        InMemoryTable table = tables.get(collectionName);
+        if (table != null) return table;
+        if (views.containsKey(collectionName)) {
+            throw new DatabaseException("The view '%s' cannot be written to".formatted(collectionName));
+        }
+        throw new DatabaseException("Table '%s' doesn't exist".formatted(collectionName));
+    }
+
+    /**
+     * Inserts a record, recording how to undo the insert.
+     */
+    private static Object[] insert(InMemoryTable table, IRecord record, Deque<Runnable> undoLog)
+            throws DatabaseException {
+        Object[] row = table.insert(record);
+        undoLog.push(() -> table.remove(row));
+        return row;
+    }
+
+    /**
+     * @param table The collection the rows were inserted into.
+     * @param rows  The inserted rows.
+     * @return The generated primary key of each row, or an empty list if the collection does not generate keys.
+     */
+    private static List<Long> generatedKeys(InMemoryTable table, List<Object[]> rows) {
+        if (!table.isAutoIncrement()) return List.of();
+        List<Long> keys = new ArrayList<>(rows.size());
+        for (Object[] row : rows) keys.add(((Number) table.primaryKeyValue(row)).longValue());
+        return keys;
+    }
+
+    /**
+     * Adds a deleted row back to its collection while undoing a delete.
+     */
+    private static void restore(InMemoryTable table, Object[] row) {
+        try {
+            table.add(row);
+        } catch (DatabaseException e) {
+            // changes are undone in reverse order, so the row's key is free again
+            throw new IllegalStateException("Could not undo the delete of a row.", e);
+        }
+    }
+
+    /**
+     * Puts back the previous values of a row while undoing an update.
+     */
+    private static void restore(InMemoryTable table, Object[] row, Object[] previous) {
+        try {
+            table.replace(row, previous);
+        } catch (DatabaseException e) {
+            // changes are undone in reverse order, so the row's previous key is free again
+            throw new IllegalStateException("Could not undo the update of a row.", e);
+        }
+    }
+
+    /**
+     * Undoes changes, most recent first.
+     */
+    private static void undo(Deque<Runnable> undoLog) {
+        while (!undoLog.isEmpty()) undoLog.pop().run();
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryDriver(tables: %s, views: %s)".formatted(tables.keySet(), views.keySet());
+    }
+}
@@ -0,0 +1,691 @@
+package data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Evaluates queries against the collections of an {@link InMemoryDriver} with the same results MySQL gives,
+ * including joins with qualified "collection.column" field names.
+ * The rows of the queried collection are narrowed down with an index when a filter allows it,
+ * then joined, filtered, sorted, limited and projected in that order.
+ */
+class InMemoryQueryEvaluator {
+    /**
+     * A collection taking part in a query, and the position of its first column in the combined rows.
+     *
+     * @param table  The collection.
+     * @param offset The position of the collection's first column in the combined rows.
+     */
+    private record Source(InMemoryTable table, int offset) {
+        /**
+         * @param index A position in the combined rows.
+         * @return True if the position holds one of the collection's columns.
+         */
+        boolean contains(int index) {
+            return index >= offset && index < offset + table.getSchema().size();
+        }
+    }
+
+    /**
+     * A filter resolved against the combined rows of a query.
+     *
+     * @param column     The position of the filtered field in the combined rows.
+     * @param comparison The comparison to apply.
+     * @param value      The value converted to the column's type (a set of comparison keys for IN / NOT_IN,
+     *                   and lower case text for FUZZY_SEARCH).
+     */
+    private record BoundFilter(int column, Comparison comparison, Object value) {
+    }
+
+    /**
+     * The rows of the queried collection that could match the filters, and how they were found.
+     *
+     * @param rows        The rows that could match.
+     * @param description How the rows were found (ex. "hash index on user_id").
+     */
+    private record Access(Collection<Object[]> rows, String description) {
+    }
+
+    /**
+     * Computes one aggregate over the rows of a group, skipping null values like MySQL.
+     */
+    private static final class Accumulator {
+        /**
+         * The function being computed.
+         */
+        private final AggregateFunction function;
+        /**
+         * The position of the summarized column, or -1 to count every row.
+         */
+        private final int column;
+        /**
+         * The type of the summarized column (null when counting every row).
+         */
+        private final InMemoryTable.ColumnType type;
+        /**
+         * The number of rows (or non-null values) seen.
+         */
+        private long count;
+        /**
+         * The comparison keys of the values seen, for COUNT_DISTINCT.
+         */
+        private final Set<Object> distinct = new HashSet<>();
+        /**
+         * The running total of whole number columns, which MySQL sums as DECIMAL.
+         */
+        private BigDecimal decimalSum = BigDecimal.ZERO;
+        /**
+         * The running total of floating point columns, which MySQL sums as DOUBLE.
+         */
+        private double doubleSum;
+        /**
+         * The smallest or largest value seen, for MIN and MAX.
+         */
+        private Object extreme;
+
+        /**
+         * @param function The function to compute.
+         * @param column   The position of the summarized column, or -1 to count every row.
+         * @param type     The type of the summarized column (null when counting every row).
+         */
+        private Accumulator(AggregateFunction function, int column, InMemoryTable.ColumnType type) {
+            this.function = function;
+            this.column = column;
+            this.type = type;
+        }
+
+        /**
+         * @param row A row of the group.
+         */
+        private void add(Object[] row) {
+            if (column < 0) {
+                count++;
+                return;
+            }
+            Object value = row[column];
+            if (value == null) return;
+            count++;
+            switch (function) {
+                case COUNT -> {
+                }
+                case COUNT_DISTINCT -> distinct.add(InMemoryTable.comparisonKey(value));
+                case SUM -> {
+                    if (isWholeNumber()) {
+                        decimalSum = decimalSum.add(BigDecimal.valueOf(((Number) value).longValue()));
+                    } else {
+                        doubleSum += ((Number) value).doubleValue();
+                    }
+                }
+                case MIN -> {
+                    if (extreme == null || InMemoryTable.compare(value, extreme) < 0) extreme = value;
+                }
+                case MAX -> {
+                    if (extreme == null || InMemoryTable.compare(value, extreme) > 0) extreme = value;
+                }
+            }
+        }
+
+        /**
+         * @return The value of the aggregate for the rows added.
+         */
+        private Object result() {
+            return switch (function) {
+                case COUNT -> count;
+                case COUNT_DISTINCT -> (long) distinct.size();
+                case SUM -> count == 0 ? null : isWholeNumber() ? decimalSum : (Object) doubleSum;
+                case MIN, MAX -> extreme;
+            };
+        }
+
+        /**
+         * @return True if the summarized column holds whole numbers.
+         */
+        private boolean isWholeNumber() {
+            return type == InMemoryTable.ColumnType.INT || type == InMemoryTable.ColumnType.BIGINT;
+        }
+    }
+
+    /**
+     * Prevent instantiation since the class only contains static helpers.
+     */
+    private InMemoryQueryEvaluator() {
+    }
+
+    /**
+     * @param query  The query to evaluate.
+     * @param driver The driver holding the collections.
+     * @return The matching records, which all share one schema.
+     * @throws DatabaseException Thrown if the query refers to an unknown collection or field.
+     */
+    static List<IRecord> select(SelectQuery query, InMemoryDriver driver) throws DatabaseException {
+        List<Source> sources = sources(query, driver);
+        InMemoryTable table = sources.getFirst().table();
+        List<BoundFilter> filters = bind(filtersOf(query), sources);
+        List<Object[]> rows = new ArrayList<>(candidates(table, filters).rows());
+        for (int i = 0; i < query.getJoins().size(); i++) {
+            rows = join(rows, query.getJoins().get(i), sources, i + 1);
+        }
+        rows.removeIf(row -> !matchesAll(row, filters));
+        // the bound added by filtersOf keeps the last record's sort value, so ties are settled by the key column
+        if (query.getAfter() != null) rows.removeIf(notAfter(query, sources));
+        if (query.getSortColumn() != null) {
+            int sortColumn = resolve(query.getSortColumn(), sources);
+            Comparator<Object[]> comparator = Comparator.comparing(
+                    row -> row[sortColumn],
+                    Comparator.nullsFirst(InMemoryTable::compare)
+            );
+            if (query.getKeyColumn() != null) {
+                int keyColumn = resolve(query.getKeyColumn(), sources);
+                comparator = comparator.thenComparing(row -> row[keyColumn], Comparator.nullsFirst(InMemoryTable::compare));
+            }
+            rows.sort(query.getSortOrder() == SortOrder.DESCENDING ? comparator.reversed() : comparator);
+        }
+        if (query.getLimit() != null && rows.size() > query.getLimit()) {
+            rows = rows.subList(0, query.getLimit());
+        }
+        return project(query, sources, rows);
+    }
+
+    /**
+     * Groups the matching rows of the queried collection and computes each aggregate per group,
+     * returning the same types MySQL does (COUNT as Long, SUM of whole numbers as BigDecimal and DATE() as java.sql.Date).
+     *
+     * @param query  The query to evaluate.
+     * @param driver The driver holding the collections.
+     * @return One record per group, which all share one schema.
+     * @throws DatabaseException Thrown if the query refers to an unknown collection or field.
+     */
+    static List<IRecord> aggregate(AggregateQuery query, InMemoryDriver driver) throws DatabaseException {
+        InMemoryTable table = driver.findTable(query.getCollectionName());
+        List<Source> sources = List.of(new Source(table, 0));
+        List<BoundFilter> filters = bind(query.getFilters(), sources);
+        List<Object[]> rows = new ArrayList<>(candidates(table, filters).rows());
+        rows.removeIf(row -> !matchesAll(row, filters));
+
+        int[] groupColumns = new int[query.getGroupings().size()];
+        for (int i = 0; i < groupColumns.length; i++) groupColumns[i] = resolve(query.getGroupings().get(i).field(), sources);
+        int[] aggregateColumns = new int[query.getAggregates().size()];
+        for (int i = 0; i < aggregateColumns.length; i++) {
+            String field = query.getAggregates().get(i).field();
+            aggregateColumns[i] = field == null ? -1 : resolve(field, sources);
+        }
+        // groups are keyed by comparison keys, so text groups ignore case like MySQL's default collation
+        Map<List<Object>, Object[]> groupValues = new LinkedHashMap<>();
+        Map<List<Object>, Accumulator[]> groups = new HashMap<>();
+        for (Object[] row : rows) {
+            Object[] values = new Object[groupColumns.length];
+            List<Object> key = new ArrayList<>(groupColumns.length);
+            for (int i = 0; i < groupColumns.length; i++) {
+                values[i] = groupValue(row[groupColumns[i]], query.getGroupings().get(i).function());
+                key.add(InMemoryTable.comparisonKey(values[i]));
+            }
+            groupValues.putIfAbsent(key, values);
+            Accumulator[] accumulators = groups.computeIfAbsent(key,
+                    ignored -> accumulators(query, table, aggregateColumns));
+            for (Accumulator accumulator : accumulators) accumulator.add(row);
+        }
+        // without groupings, MySQL returns one row even when nothing matches
+        if (groupColumns.length == 0 && groups.isEmpty()) {
+            groupValues.put(List.of(), new Object[0]);
+            groups.put(List.of(), accumulators(query, table, aggregateColumns));
+        }
+
+        List<String> fieldNames = new ArrayList<>();
+        for (QueryGrouping grouping : query.getGroupings()) fieldNames.add(grouping.alias());
+        for (QueryAggregate aggregate : query.getAggregates()) fieldNames.add(aggregate.alias());
+        RecordSchema schema = new RecordSchema(fieldNames);
+        List<Object[]> results = new ArrayList<>(groups.size());
+        for (Map.Entry<List<Object>, Object[]> group : groupValues.entrySet()) {
+            Object[] result = Arrays.copyOf(group.getValue(), fieldNames.size());
+            Accumulator[] accumulators = groups.get(group.getKey());
+            for (int i = 0; i < accumulators.length; i++) result[groupColumns.length + i] = accumulators[i].result();
+            results.add(result);
+        }
+        if (query.getSortColumn() != null) {
+            int sortColumn = schema.indexOf(query.getSortColumn());
+            if (sortColumn < 0) throw new DatabaseException("Unknown column '%s'".formatted(query.getSortColumn()));
+            Comparator<Object[]> comparator = Comparator.comparing(
+                    result -> result[sortColumn],
+                    Comparator.nullsFirst(InMemoryTable::compare)
+            );
+            results.sort(query.getSortOrder() == SortOrder.DESCENDING ? comparator.reversed() : comparator);
+        }
+        if (query.getLimit() != null && results.size() > query.getLimit()) {
+            results = results.subList(0, query.getLimit());
+        }
+        List<IRecord> records = new ArrayList<>(results.size());
+        for (Object[] result : results) records.add(new RowRecord(schema, result));
+        return records;
+    }
+
+    /**
+     * @param value    The value of a grouped field.
+     * @param function How the value is turned into a group.
+     * @return The value of the group.
+     */
+    private static Object groupValue(Object value, GroupingFunction function) {
+        if (function == GroupingFunction.VALUE || value == null) return value;
+        if (value instanceof java.time.LocalDateTime dateTime) return java.sql.Date.valueOf(dateTime.toLocalDate());
+        return value;
+    }
+
+    /**
+     * @return A new accumulator for each aggregate of the query.
+     */
+    private static Accumulator[] accumulators(AggregateQuery query, InMemoryTable table, int[] aggregateColumns) {
+        Accumulator[] accumulators = new Accumulator[aggregateColumns.length];
+        for (int i = 0; i < accumulators.length; i++) {
+            int column = aggregateColumns[i];
+            accumulators[i] = new Accumulator(query.getAggregates().get(i).function(), column,
+                    column < 0 ? null : table.getColumnType(column));
+        }
+        return accumulators;
+    }
+
+    /**
+     * Describes how a select query is evaluated: how the rows of the queried collection are found,
+     * and how each joined collection is looked up.
+     *
+     * @param query  The query to describe.
+     * @param driver The driver holding the collections.
+     * @return The plan for the query, one line per collection.
+     * @throws DatabaseException Thrown if the query refers to an unknown collection or field.
+     */
+    static String explain(SelectQuery query, InMemoryDriver driver) throws DatabaseException {
+        List<Source> sources = sources(query, driver);
+        InMemoryTable table = sources.getFirst().table();
+        Access access = candidates(table, bind(filtersOf(query), sources));
+        List<String> lines = new ArrayList<>();
+        lines.add("%s: %s, %d of %d rows examined".formatted(
+                table.getName(), access.description(), access.rows().size(), table.rows().size()));
+        for (int i = 0; i < query.getJoins().size(); i++) {
+            QueryJoin join = query.getJoins().get(i);
+            InMemoryTable joinedTable = sources.get(i + 1).table();
+            int column = find(join.rightField(), List.of(new Source(joinedTable, 0)));
+            if (column < 0) column = resolve(join.leftField(), List.of(new Source(joinedTable, 0)));
+            lines.add("%s: %s join using %s".formatted(joinedTable.getName(), join.type(),
+                    joinedTable.hasHashIndex(column)
+                            ? "hash index on " + columnName(joinedTable, column)
+                            : "temporary hash table on " + columnName(joinedTable, column)));
+        }
+        return String.join("\n", lines);
+    }
+
+    /**
+     * @param query A select query.
+     * @return The filters of the query, plus a bound on the sort column if the query starts after a page position,
+     * which lets a sorted index on the sort column skip the earlier pages.
+     */
+    private static List<QueryFilter> filtersOf(SelectQuery query) {
+        if (query.getAfter() == null) return query.getFilters();
+        List<QueryFilter> filters = new ArrayList<>(query.getFilters());
+        PageToken after = query.getAfter();
+        filters.add(new QueryFilter(after.sortColumn(),
+                query.getSortOrder() == SortOrder.DESCENDING ? Comparison.LESS_EQUAL : Comparison.GREATER_EQUAL,
+                after.sortValue()));
+        return filters;
+    }
+
+    /**
+     * @param query   A select query starting after a page position.
+     * @param sources The collections taking part in the query.
+     * @return A test for rows that have the last record's sort value but do not come after it.
+     * @throws DatabaseException Thrown if the sort or key column is unknown.
+     */
+    private static Predicate<Object[]> notAfter(SelectQuery query, List<Source> sources) throws DatabaseException {
+        PageToken after = query.getAfter();
+        BoundFilter sameSortValue = bind(
+                List.of(new QueryFilter(after.sortColumn(), Comparison.EQUAL, after.sortValue())), sources).getFirst();
+        if (after.keyColumn() == null) return row -> matches(row, sameSortValue);
+        Comparison beyond = query.getSortOrder() == SortOrder.DESCENDING ? Comparison.LESS_THAN : Comparison.GREATER_THAN;
+        BoundFilter keyBeyond = bind(
+                List.of(new QueryFilter(after.keyColumn(), beyond, after.keyValue())), sources).getFirst();
+        return row -> matches(row, sameSortValue) && !matches(row, keyBeyond);
+    }
+
+    /**
+     * @param query  A select query.
+     * @param driver The driver holding the collections.
+     * @return The queried collection followed by each joined collection, with the offsets of their columns.
+     * @throws DatabaseException Thrown if a collection does not exist.
+     */
+    private static List<Source> sources(SelectQuery query, InMemoryDriver driver) throws DatabaseException {
+        List<Source> sources = new ArrayList<>();
+        int width = 0;
+        List<String> collectionNames = new ArrayList<>();
+        collectionNames.add(query.getCollectionName());
+        for (QueryJoin join : query.getJoins()) collectionNames.add(join.collectionName());
+        for (String collectionName : collectionNames) {
+            InMemoryTable table = driver.findTable(collectionName);
+            sources.add(new Source(table, width));
+            width += table.getSchema().size();
+        }
+        return sources;
+    }
+
+    /**
+     * Finds the rows of a collection matching a set of filters, such as the rows to delete.
+     *
+     * @param table   The collection to search.
+     * @param filters The filters the rows must match.
+     * @return The matching stored rows (a copy of the list, so the collection can be modified while iterating it).
+     * @throws DatabaseException Thrown if a filter refers to an unknown field.
+     */
+    static List<Object[]> matchingRows(InMemoryTable table, List<QueryFilter> filters) throws DatabaseException {
+        List<BoundFilter> boundFilters = bind(filters, List.of(new Source(table, 0)));
+        List<Object[]> rows = new ArrayList<>(candidates(table, boundFilters).rows());
+        rows.removeIf(row -> !matchesAll(row, boundFilters));
+        return rows;
+    }
+
+    /**
+     * Narrows down the rows of the queried collection using the most selective index a filter can use.
+     * The result may still include rows that do not match every filter.
+     *
+     * @param table   The queried collection.
+     * @param filters The filters of the query.
+     * @return The rows that could match the filters, and how they were found.
+     */
+    private static Access candidates(InMemoryTable table, List<BoundFilter> filters) {
+        int width = table.getSchema().size();
+        Access best = new Access(table.rows(), "full scan");
+        // an index is preferred over a full scan that examines as many rows
+        // equality lookups
+        for (BoundFilter filter : filters) {
+            if (filter.column() >= width || !table.hasHashIndex(filter.column())) continue;
+            Collection<Object[]> rows;
+            if (filter.comparison() == Comparison.EQUAL) {
+                rows = filter.value() == null ? List.of() : table.lookup(filter.column(), filter.value());
+            } else if (filter.comparison() == Comparison.IN) {
+                rows = new ArrayList<>();
+                for (Object value : (Set<?>) filter.value()) {
+                    if (value != null) rows.addAll(table.lookup(filter.column(), value));
+                }
+            } else {
+                continue;
+            }
+            if (rows.size() <= best.rows().size()) best = new Access(rows, "hash index on " + columnName(table, filter.column()));
+        }
+        // range lookups, combining the bounds of every filter on the same column (ex. created_on >= a AND <= b)
+        Map<Integer, List<BoundFilter>> rangeFilters = new HashMap<>();
+        for (BoundFilter filter : filters) {
+            if (filter.column() < width && table.hasRangeIndex(filter.column()) && isRange(filter.comparison())) {
+                rangeFilters.computeIfAbsent(filter.column(), column -> new ArrayList<>()).add(filter);
+            }
+        }
+        for (Map.Entry<Integer, List<BoundFilter>> entry : rangeFilters.entrySet()) {
+            Collection<Object[]> rows = rangeCandidates(table, entry.getKey(), entry.getValue());
+            if (rows.size() <= best.rows().size()) best = new Access(rows, "range index on " + columnName(table, entry.getKey()));
+        }
+        return best;
+    }
+
+    /**
+     * @param table   The queried collection.
+     * @param column  The position of a column with a sorted index.
+     * @param filters The range filters on the column.
+     * @return The rows within the tightest bounds of the filters.
+     */
+    private static Collection<Object[]> rangeCandidates(InMemoryTable table, int column, List<BoundFilter> filters) {
+        Object lower = null;
+        Object upper = null;
+        boolean lowerInclusive = true;
+        boolean upperInclusive = true;
+        for (BoundFilter filter : filters) {
+            // nothing compares true to null
+            if (filter.value() == null) return List.of();
+            boolean inclusive = filter.comparison() == Comparison.GREATER_EQUAL
+                    || filter.comparison() == Comparison.LESS_EQUAL;
+            if (filter.comparison() == Comparison.GREATER_THAN || filter.comparison() == Comparison.GREATER_EQUAL) {
+                int order = lower == null ? 1 : InMemoryTable.compare(filter.value(), lower);
+                if (order > 0 || (order == 0 && !inclusive)) {
+                    lower = filter.value();
+                    lowerInclusive = inclusive;
+                }
+            } else {
+                int order = upper == null ? -1 : InMemoryTable.compare(filter.value(), upper);
+                if (order < 0 || (order == 0 && !inclusive)) {
+                    upper = filter.value();
+                    upperInclusive = inclusive;
+                }
+            }
+        }
+        return table.lookupRange(column, lower, lowerInclusive, upper, upperInclusive);
+    }
+
+    /**
+     * Joins each row with the matching rows of the joined collection, using its hash index on the join field
+     * if it has one and building a temporary hash table otherwise.
+     *
+     * @param rows         The combined rows so far.
+     * @param join         The join to apply.
+     * @param sources      The collections taking part in the query.
+     * @param joinedSource The position of the joined collection in the sources.
+     * @return The joined rows.
+     * @throws DatabaseException Thrown if the join refers to an unknown field.
+     */
+    private static List<Object[]> join(List<Object[]> rows, QueryJoin join, List<Source> sources, int joinedSource)
+            throws DatabaseException {
+        Source joined = sources.get(joinedSource);
+        List<Source> earlier = sources.subList(0, joinedSource);
+        // the join condition may name the joined collection's field on either side
+        int joinedIndex = find(join.rightField(), List.of(joined));
+        int leftIndex = find(join.leftField(), earlier);
+        if (joinedIndex < 0 || leftIndex < 0) {
+            joinedIndex = resolve(join.leftField(), List.of(joined));
+            leftIndex = resolve(join.rightField(), earlier);
+        }
+        InMemoryTable table = joined.table();
+        int column = joinedIndex - joined.offset();
+        InMemoryTable.ColumnType type = table.getColumnType(column);
+        Map<Object, List<Object[]>> hashed = table.hasHashIndex(column) ? null : hash(table, column);
+        int width = joined.offset() + table.getSchema().size();
+        List<Object[]> joinedRows = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Object key = type.coerce(row[leftIndex]);
+            Collection<Object[]> matches;
+            if (key == null) {
+                matches = List.of();
+            } else if (hashed == null) {
+                matches = table.lookup(column, key);
+            } else {
+                matches = hashed.getOrDefault(InMemoryTable.comparisonKey(key), List.of());
+            }
+            if (matches.isEmpty() && join.type() == JoinType.LEFT) {
+                // the joined collection's fields are null when nothing matches
+                joinedRows.add(Arrays.copyOf(row, width));
+            }
+            for (Object[] match : matches) {
+                Object[] combined = Arrays.copyOf(row, width);
+                System.arraycopy(match, 0, combined, joined.offset(), match.length);
+                joinedRows.add(combined);
+            }
+        }
+        return joinedRows;
+    }
+
+    /**
+     * @param table  The collection to hash.
+     * @param column The position of the column to hash on.
+     * @return The rows of the collection keyed by the comparison key of the column (rows with null are left out).
+     */
+    private static Map<Object, List<Object[]>> hash(InMemoryTable table, int column) {
+        Map<Object, List<Object[]>> hashed = new HashMap<>();
+        for (Object[] row : table.rows()) {
+            if (row[column] == null) continue;
+            hashed.computeIfAbsent(InMemoryTable.comparisonKey(row[column]), key -> new ArrayList<>()).add(row);
+        }
+        return hashed;
+    }
+
+    /**
+     * Copies the selected fields of each row into records that share one schema.
+     * Like the MySQL driver, fields are qualified with their collection name when the query has joins.
+     *
+     * @param query   The query being evaluated.
+     * @param sources The collections taking part in the query.
+     * @param rows    The combined rows to project.
+     * @return The records.
+     * @throws DatabaseException Thrown if a selected column is unknown.
+     */
+    private static List<IRecord> project(SelectQuery query, List<Source> sources, List<Object[]> rows)
+            throws DatabaseException {
+        List<Integer> columns = new ArrayList<>();
+        if (query.getColumns().isEmpty()) {
+            int width = 0;
+            for (Source source : sources) width += source.table().getSchema().size();
+            for (int i = 0; i < width; i++) columns.add(i);
+        } else {
+            for (String column : query.getColumns()) columns.add(resolve(column, sources));
+        }
+        List<String> fieldNames = new ArrayList<>(columns.size());
+        for (int column : columns) {
+            Source source = sourceOf(column, sources);
+            String columnName = columnName(source.table(), column - source.offset());
+            fieldNames.add(query.hasJoins() ? source.table().getName() + "." + columnName : columnName);
+        }
+        RecordSchema schema = new RecordSchema(fieldNames);
+        List<IRecord> records = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Object[] values = new Object[columns.size()];
+            for (int i = 0; i < values.length; i++) values[i] = row[columns.get(i)];
+            records.add(new RowRecord(schema, values));
+        }
+        return records;
+    }
+
+    /**
+     * Resolves each filter's field and converts its value to the field's column type.
+     *
+     * @param filters The filters to bind.
+     * @param sources The collections taking part in the query.
+     * @return The bound filters.
+     * @throws DatabaseException Thrown if a filter refers to an unknown field or its value cannot be converted.
+     */
+    private static List<BoundFilter> bind(List<QueryFilter> filters, List<Source> sources) throws DatabaseException {
+        List<BoundFilter> boundFilters = new ArrayList<>(filters.size());
+        for (QueryFilter filter : filters) {
+            int column = resolve(filter.field(), sources);
+            Source source = sourceOf(column, sources);
+            InMemoryTable.ColumnType type = source.table().getColumnType(column - source.offset());
+            Object value;
+            if (filter.comparison() == Comparison.FUZZY_SEARCH) {
+                value = String.valueOf(InMemoryTable.comparisonKey(String.valueOf(filter.value())));
+            } else if (filter.hasCollectionValue()) {
+                Set<Object> values = new HashSet<>();
+                for (Object element : (Collection<?>) filter.value()) {
+                    values.add(InMemoryTable.comparisonKey(type.coerce(element)));
+                }
+                value = values;
+            } else {
+                value = type.coerce(filter.value());
+            }
+            boundFilters.add(new BoundFilter(column, filter.comparison(), value));
+        }
+        return boundFilters;
+    }
+
+    /**
+     * @return True if the row matches every filter.
+     */
+    private static boolean matchesAll(Object[] row, List<BoundFilter> filters) {
+        for (BoundFilter filter : filters) {
+            if (!matches(row, filter)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Applies a filter with SQL semantics, where nothing compares true to null.
+     *
+     * @param row    The combined row.
+     * @param filter The filter to apply.
+     * @return True if the row matches the filter.
+     */
+    private static boolean matches(Object[] row, BoundFilter filter) {
+        Object stored = row[filter.column()];
+        Object value = filter.value();
+        if (stored == null || value == null) return false;
+        return switch (filter.comparison()) {
+            case EQUAL -> InMemoryTable.compare(stored, value) == 0;
+            case NOT_EQUAL -> InMemoryTable.compare(stored, value) != 0;
+            case GREATER_THAN -> InMemoryTable.compare(stored, value) > 0;
+            case LESS_THAN -> InMemoryTable.compare(stored, value) < 0;
+            case GREATER_EQUAL -> InMemoryTable.compare(stored, value) >= 0;
+            case LESS_EQUAL -> InMemoryTable.compare(stored, value) <= 0;
+            case FUZZY_SEARCH -> String.valueOf(InMemoryTable.comparisonKey(stored.toString())).contains((String) value);
+            case IN -> ((Set<?>) value).contains(InMemoryTable.comparisonKey(stored));
+            // a null in the list makes NOT IN unknown for every row
+            case NOT_IN -> !((Set<?>) value).contains(null)
+                    && !((Set<?>) value).contains(InMemoryTable.comparisonKey(stored));
+        };
+    }
+
+    /**
+     * @return True if the comparison is a bound that a sorted index can answer.
+     */
+    private static boolean isRange(Comparison comparison) {
+        return comparison == Comparison.GREATER_THAN || comparison == Comparison.GREATER_EQUAL
+                || comparison == Comparison.LESS_THAN || comparison == Comparison.LESS_EQUAL;
+    }
+
+    /**
+     * @param field   A field name, optionally qualified with its collection name (ex. "foods.id").
+     * @param sources The collections to look in.
+     * @return The position of the field in the combined rows.
+     * @throws DatabaseException Thrown if none of the collections has the field.
+     */
+    private static int resolve(String field, List<Source> sources) throws DatabaseException {
+        int index = find(field, sources);
+        if (index < 0) throw new DatabaseException("Unknown column '%s'".formatted(field));
+        return index;
+    }
+
+    /**
+     * @param field   A field name, optionally qualified with its collection name (ex. "foods.id").
+     * @param sources The collections to look in.
+     * @return The position of the field in the combined rows, or -1 if none of the collections has the field.
+     */
+    private static int find(String field, List<Source> sources) {
+        int separator = field.indexOf('.');
+        String collectionName = separator < 0 ? null : field.substring(0, separator);
+        String columnName = field.substring(separator + 1);
+        for (Source source : sources) {
+            if (collectionName != null && !collectionName.equals(source.table().getName())) continue;
+            int index = source.table().getSchema().indexOf(columnName);
+            if (index >= 0) return source.offset() + index;
+        }
+        return -1;
+    }
+
+    /**
+     * @param table  A collection.
+     * @param column The position of one of its columns.
+     * @return The name of the column.
+     */
+    private static String columnName(InMemoryTable table, int column) {
+        return List.copyOf(table.getSchema().fieldNames()).get(column);
+    }
+
+    /**
+     * @param index   A position in the combined rows.
+     * @param sources The collections taking part in the query.
+     * @return The collection whose column is at the position.
+     */
+    private static Source sourceOf(int index, List<Source> sources) {
+        for (Source source : sources) {
+            if (source.contains(index)) return source;
+        }
+        throw new IndexOutOfBoundsException(index);
+    }
+}
@@ -0,0 +1,543 @@
+package data;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A collection held in memory by the {@link InMemoryDriver}.
+ * Rows are stored as arrays of values in column order. Values are converted to their column's type when they are
+ * written, so they are read back as the same Java types the MySQL driver returns (ex. DATETIME as LocalDateTime).
+ * Hash indexes answer equality and IN lookups, and sorted indexes answer range lookups.
+ * Like MySQL's default collation, text compares without regard to case, so indexes are keyed by
+ * {@link #comparisonKey(Object)} rather than the stored value.
+ */
+class InMemoryTable {
+    /**
+     * The column types understood by the in-memory driver, and the Java type each one is stored as.
+     */
+    enum ColumnType {
+        INT,
+        BIGINT,
+        FLOAT,
+        DOUBLE,
+        VARCHAR,
+        DATE,
+        DATETIME;
+
+        /**
+         * The format MySQL uses for DATETIME literals.
+         */
+        private static final DateTimeFormatter DATETIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+        /**
+         * @param sqlType The type name used in a CREATE TABLE statement (ex. "VARCHAR").
+         * @return The matching column type.
+         * @throws DatabaseException Thrown if the type is not supported.
+         */
+        static ColumnType fromSql(String sqlType) throws DatabaseException {
+            return switch (sqlType.toUpperCase()) {
+                case "INT", "INTEGER", "SMALLINT", "TINYINT", "MEDIUMINT" -> INT;
+                case "BIGINT" -> BIGINT;
+                case "FLOAT" -> FLOAT;
+                case "DOUBLE", "DECIMAL", "NUMERIC", "REAL" -> DOUBLE;
+                case "VARCHAR", "CHAR", "TEXT" -> VARCHAR;
+                case "DATE" -> DATE;
+                case "DATETIME", "TIMESTAMP" -> DATETIME;
+                default -> throw new DatabaseException("Unsupported column type: " + sqlType);
+            };
+        }
+
+        /**
+         * Converts a value to the Java type stored for this column type,
+         * accepting the same representations MySQL accepts (ex. numbers and dates as strings).
+         *
+         * @param value The value to convert.
+         * @return The converted value, or null if the value is null.
+         * @throws DatabaseException Thrown if the value cannot be converted.
+         */
+        Object coerce(Object value) throws DatabaseException {
+            if (value == null) return null;
+            try {
+                return switch (this) {
+                    case INT -> value instanceof Number number ? number.intValue() : Integer.valueOf(numeric(value));
+                    case BIGINT -> value instanceof Number number ? number.longValue() : Long.valueOf(numeric(value));
+                    case FLOAT -> value instanceof Number number ? number.floatValue() : Float.valueOf(numeric(value));
+                    case DOUBLE -> value instanceof Number number ? number.doubleValue() : Double.valueOf(numeric(value));
+                    case VARCHAR -> value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+                    case DATE -> toDate(value);
+                    case DATETIME -> toDateTime(value);
+                };
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new DatabaseException("Incorrect %s value: '%s'".formatted(this, value));
+            }
+        }
+
+        /**
+         * @param value A value that should hold a number.
+         * @return The value as trimmed text, with whole numbers written as decimals (ex. "5.0") truncated.
+         */
+        private static String numeric(Object value) {
+            String text = value.toString().trim();
+            return text.endsWith(".0") ? text.substring(0, text.length() - 2) : text;
+        }
+
+        /**
+         * @param value A value that should hold a date.
+         * @return The value as a java.sql.Date, which is what JDBC returns for DATE columns.
+         */
+        private static java.sql.Date toDate(Object value) {
+            if (value instanceof java.sql.Date date) return date;
+            if (value instanceof LocalDate date) return java.sql.Date.valueOf(date);
+            if (value instanceof LocalDateTime dateTime) return java.sql.Date.valueOf(dateTime.toLocalDate());
+            if (value instanceof java.util.Date date) return new java.sql.Date(date.getTime());
+            String text = value.toString().trim();
+            return java.sql.Date.valueOf(LocalDate.parse(text.length() > 10 ? text.substring(0, 10) : text));
+        }
+
+        /**
+         * @param value A value that should hold a date and time.
+         * @return The value as a LocalDateTime, which is what the MySQL connector returns for DATETIME columns.
+         */
+        private static LocalDateTime toDateTime(Object value) {
+            if (value instanceof LocalDateTime dateTime) return dateTime;
+            if (value instanceof LocalDate date) return date.atStartOfDay();
+            if (value instanceof Timestamp timestamp) return timestamp.toLocalDateTime();
+            if (value instanceof java.sql.Date date) return date.toLocalDate().atStartOfDay();
+            if (value instanceof java.util.Date date) return new Timestamp(date.getTime()).toLocalDateTime();
+            String text = value.toString().trim();
+            return text.length() == 10 ? LocalDate.parse(text).atStartOfDay() : LocalDateTime.parse(text, DATETIME_FORMAT);
+        }
+    }
+
+    /**
+     * The name of the collection.
+     */
+    private final String name;
+    /**
+     * The column names in the order their values are stored.
+     */
+    private final RecordSchema schema;
+    /**
+     * The type of each column, in the same order as the schema.
+     */
+    private final List<ColumnType> columnTypes;
+    /**
+     * The positions of the primary key columns (empty if the collection has no primary key).
+     */
+    private final int[] primaryKeyColumns;
+    /**
+     * True if the (single column) primary key is generated when a row is inserted without one.
+     */
+    private final boolean autoIncrement;
+    /**
+     * The next value handed out for an auto increment primary key.
+     */
+    private long nextAutoIncrementValue;
+    /**
+     * Every row in the collection, in insertion order (arrays compare by identity, so each row is its own key).
+     */
+    private final Set<Object[]> rows;
+    /**
+     * Maps each primary key to its row, which is used to reject duplicate keys.
+     */
+    private final Map<List<Object>, Object[]> rowsByPrimaryKey;
+    /**
+     * Hash indexes keyed by column position, mapping each value to the rows with that value.
+     */
+    private final Map<Integer, Map<Object, Set<Object[]>>> hashIndexes;
+    /**
+     * Sorted indexes keyed by column position, mapping each non-null value to the rows with that value.
+     */
+    private final Map<Integer, NavigableMap<Object, Set<Object[]>>> rangeIndexes;
+    /**
+     * Incremented on every write, so views built from the collection know when they are out of date.
+     */
+    private long version;
+
+    /**
+     * @param name          The name of the collection.
+     * @param columnNames   The column names in the order their values are stored.
+     * @param columnTypes   The type of each column.
+     * @param primaryKey    The names of the primary key columns (empty if the collection has no primary key).
+     * @param autoIncrement True if the (single column) primary key is generated when a row is inserted without one.
+     * @throws DatabaseException Thrown if a primary key column is not one of the columns.
+     */
+    InMemoryTable(String name, List<String> columnNames, List<ColumnType> columnTypes, List<String> primaryKey,
+                  boolean autoIncrement) throws DatabaseException {
+        this.name = name;
+        this.schema = new RecordSchema(columnNames);
+        this.columnTypes = List.copyOf(columnTypes);
+        this.autoIncrement = autoIncrement && primaryKey.size() == 1;
+        nextAutoIncrementValue = 1;
+        rows = Collections.newSetFromMap(new LinkedHashMap<>());
+        rowsByPrimaryKey = new HashMap<>();
+        hashIndexes = new HashMap<>();
+        rangeIndexes = new HashMap<>();
+        primaryKeyColumns = new int[primaryKey.size()];
+        for (int i = 0; i < primaryKey.size(); i++) {
+            primaryKeyColumns[i] = columnIndex(primaryKey.get(i));
+        }
+        // the leading primary key column is the most common lookup (ex. by id, or by food_id for nutrient amounts)
+        if (primaryKeyColumns.length > 0) addHashIndex(primaryKey.getFirst());
+    }
+
+    /**
+     * @return The name of the collection.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return The column names in the order their values are stored.
+     */
+    RecordSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * @param column The position of the column.
+     * @return The type of the column.
+     */
+    ColumnType getColumnType(int column) {
+        return columnTypes.get(column);
+    }
+
+    /**
+     * @return True if the (single column) primary key is generated when a row is inserted without one.
+     */
+    boolean isAutoIncrement() {
+        return autoIncrement;
+    }
+
+    /**
+     * @return A number that changes every time the collection is written to.
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return Every row in the collection. The rows must not be modified.
+     */
+    Collection<Object[]> rows() {
+        return Collections.unmodifiableSet(rows);
+    }
+
+    /**
+     * @param column The name of the column.
+     * @return The position of the column.
+     * @throws DatabaseException Thrown if the collection has no such column.
+     */
+    int columnIndex(String column) throws DatabaseException {
+        int index = schema.indexOf(column);
+        if (index < 0) throw new DatabaseException("Unknown column '%s' in '%s'".formatted(column, name));
+        return index;
+    }
+
+    /**
+     * @return The value of the (single column) primary key of a row, or null if the collection has no such key.
+     */
+    Object primaryKeyValue(Object[] row) {
+        return primaryKeyColumns.length == 1 ? row[primaryKeyColumns[0]] : null;
+    }
+
+    /**
+     * @return The largest value in a numeric column, or 0 if the collection is empty.
+     * @throws DatabaseException Thrown if the collection has no such column.
+     */
+    long maxValue(String column) throws DatabaseException {
+        int index = columnIndex(column);
+        long max = 0;
+        for (Object[] row : rows) {
+            if (row[index] instanceof Number number) max = Math.max(max, number.longValue());
+        }
+        return max;
+    }
+
+    /**
+     * Adds a hash index on a column, which answers EQUAL and IN filters and join lookups without a scan.
+     *
+     * @param column The name of the column to index.
+     * @throws DatabaseException Thrown if the collection has no such column.
+     */
+    void addHashIndex(String column) throws DatabaseException {
+        int index = columnIndex(column);
+        if (hashIndexes.containsKey(index)) return;
+        Map<Object, Set<Object[]>> hashIndex = new HashMap<>();
+        for (Object[] row : rows) indexRow(hashIndex, row[index], row);
+        hashIndexes.put(index, hashIndex);
+    }
+
+    /**
+     * Adds a sorted index on a column, which answers range filters (ex. created_on between two dates) without a scan.
+     *
+     * @param column The name of the column to index.
+     * @throws DatabaseException Thrown if the collection has no such column.
+     */
+    void addRangeIndex(String column) throws DatabaseException {
+        int index = columnIndex(column);
+        if (rangeIndexes.containsKey(index)) return;
+        NavigableMap<Object, Set<Object[]>> rangeIndex = new TreeMap<>();
+        for (Object[] row : rows) {
+            if (row[index] != null) indexRow(rangeIndex, row[index], row);
+        }
+        rangeIndexes.put(index, rangeIndex);
+    }
+
+    /**
+     * @param column The position of the column.
+     * @return True if the column has a hash index.
+     */
+    boolean hasHashIndex(int column) {
+        return hashIndexes.containsKey(column);
+    }
+
+    /**
+     * @param column The position of the column.
+     * @return True if the column has a sorted index.
+     */
+    boolean hasRangeIndex(int column) {
+        return rangeIndexes.containsKey(column);
+    }
+
+    /**
+     * Finds the rows with a value in a hash indexed column.
+     *
+     * @param column The position of the column, which must have a hash index.
+     * @param value  The value to look up, already converted to the column's type.
+     * @return The rows with the value (in insertion order).
+     */
+    Collection<Object[]> lookup(int column, Object value) {
+        return hashIndexes.get(column).getOrDefault(comparisonKey(value), Set.of());
+    }
+
+    /**
+     * Finds the rows with a value within a range in a column with a sorted index.
+     *
+     * @param column         The position of the column, which must have a sorted index.
+     * @param lower          The lower bound (already converted to the column's type), or null if there is none.
+     * @param lowerInclusive True if rows equal to the lower bound are included.
+     * @param upper          The upper bound (already converted to the column's type), or null if there is none.
+     * @param upperInclusive True if rows equal to the upper bound are included.
+     * @return The rows within the range, ordered by the column's value.
+     */
+    Collection<Object[]> lookupRange(int column, Object lower, boolean lowerInclusive,
+                                     Object upper, boolean upperInclusive) {
+        NavigableMap<Object, Set<Object[]>> range = rangeIndexes.get(column);
+        lower = comparisonKey(lower);
+        upper = comparisonKey(upper);
+        if (lower != null && upper != null) {
+            if (compare(lower, upper) > 0) return List.of();
+            range = range.subMap(lower, lowerInclusive, upper, upperInclusive);
+        } else if (lower != null) {
+            range = range.tailMap(lower, lowerInclusive);
+        } else if (upper != null) {
+            range = range.headMap(upper, upperInclusive);
+        }
+        List<Object[]> matches = new ArrayList<>();
+        for (Set<Object[]> rowsWithValue : range.values()) matches.addAll(rowsWithValue);
+        return matches;
+    }
+
+    /**
+     * Converts the fields of a record to the column types and adds the record as a new row.
+     * Columns the record does not have are null, and a missing auto increment key is generated.
+     *
+     * @param record The record to insert.
+     * @return The stored row.
+     * @throws DatabaseException Thrown if the record has an unknown field, a value cannot be converted,
+     *                           or the primary key is already used.
+     */
+    Object[] insert(IRecord record) throws DatabaseException {
+        Object[] row = new Object[schema.size()];
+        for (String field : record.fieldNames()) {
+            int index = columnIndex(field);
+            row[index] = columnTypes.get(index).coerce(record.getValue(field));
+        }
+        if (autoIncrement) {
+            int keyColumn = primaryKeyColumns[0];
+            if (row[keyColumn] == null) {
+                row[keyColumn] = columnTypes.get(keyColumn).coerce(nextAutoIncrementValue);
+            }
+            // like MySQL, an explicit key moves the counter past it
+            nextAutoIncrementValue = Math.max(nextAutoIncrementValue, ((Number) row[keyColumn]).longValue() + 1);
+        }
+        add(row);
+        return row;
+    }
+
+    /**
+     * Finds the row with the same primary key as a record.
+     *
+     * @param record A record with values for the primary key columns.
+     * @return The stored row, or null if no row has the record's key or the collection has no primary key.
+     * @throws DatabaseException Thrown if the record has an unknown field or a value cannot be converted.
+     */
+    Object[] findByPrimaryKey(IRecord record) throws DatabaseException {
+        if (primaryKeyColumns.length == 0) return null;
+        Object[] values = new Object[schema.size()];
+        for (String field : record.fieldNames()) {
+            int index = columnIndex(field);
+            values[index] = columnTypes.get(index).coerce(record.getValue(field));
+        }
+        return rowsByPrimaryKey.get(primaryKey(values));
+    }
+
+    /**
+     * Adds a row whose values are already converted to the column types.
+     *
+     * @param row The row to add.
+     * @throws DatabaseException Thrown if the primary key is already used.
+     */
+    void add(Object[] row) throws DatabaseException {
+        List<Object> key = primaryKey(row);
+        if (key != null && rowsByPrimaryKey.containsKey(key)) {
+            throw new DatabaseException("Duplicate entry '%s' for key '%s.PRIMARY'".formatted(
+                    key.stream().map(String::valueOf).reduce((a, b) -> a + "-" + b).orElse(""), name));
+        }
+        if (key != null) rowsByPrimaryKey.put(key, row);
+        rows.add(row);
+        index(row);
+        version++;
+    }
+
+    /**
+     * Removes a row.
+     *
+     * @param row The stored row to remove.
+     */
+    void remove(Object[] row) {
+        if (!rows.remove(row)) return;
+        unindex(row);
+        List<Object> key = primaryKey(row);
+        if (key != null) rowsByPrimaryKey.remove(key);
+        version++;
+    }
+
+    /**
+     * Sets the fields of a record on a row, converting them to the column types.
+     *
+     * @param row    The stored row to update.
+     * @param record The fields to set.
+     * @return A copy of the row's values before the update, which can be passed to {@link #replace} to undo it.
+     * @throws DatabaseException Thrown if the record has an unknown field, a value cannot be converted,
+     *                           or the new primary key is already used.
+     */
+    Object[] update(Object[] row, IRecord record) throws DatabaseException {
+        Object[] values = row.clone();
+        for (String field : record.fieldNames()) {
+            int index = columnIndex(field);
+            values[index] = columnTypes.get(index).coerce(record.getValue(field));
+        }
+        return replace(row, values);
+    }
+
+    /**
+     * Replaces all the values of a row, keeping its identity (and its position in insertion order).
+     *
+     * @param row    The stored row to update.
+     * @param values The new values, already converted to the column types.
+     * @return A copy of the row's values before the update.
+     * @throws DatabaseException Thrown if the new primary key is already used by another row.
+     */
+    Object[] replace(Object[] row, Object[] values) throws DatabaseException {
+        Object[] previous = row.clone();
+        List<Object> previousKey = primaryKey(previous);
+        List<Object> newKey = primaryKey(values);
+        if (newKey != null && !newKey.equals(previousKey) && rowsByPrimaryKey.containsKey(newKey)) {
+            throw new DatabaseException("Duplicate entry '%s' for key '%s.PRIMARY'".formatted(newKey, name));
+        }
+        unindex(row);
+        if (previousKey != null) rowsByPrimaryKey.remove(previousKey);
+        System.arraycopy(values, 0, row, 0, row.length);
+        if (newKey != null) rowsByPrimaryKey.put(newKey, row);
+        index(row);
+        version++;
+        return previous;
+    }
+
+    /**
+     * @param row The row to get the primary key of.
+     * @return The primary key values, or null if the collection has no primary key.
+     */
+    private List<Object> primaryKey(Object[] row) {
+        if (primaryKeyColumns.length == 0) return null;
+        Object[] key = new Object[primaryKeyColumns.length];
+        for (int i = 0; i < key.length; i++) key[i] = comparisonKey(row[primaryKeyColumns[i]]);
+        return Arrays.asList(key);
+    }
+
+    /**
+     * Adds a row to every index.
+     */
+    private void index(Object[] row) {
+        hashIndexes.forEach((column, hashIndex) -> indexRow(hashIndex, row[column], row));
+        rangeIndexes.forEach((column, rangeIndex) -> {
+            if (row[column] != null) indexRow(rangeIndex, row[column], row);
+        });
+    }
+
+    /**
+     * Removes a row from every index.
+     */
+    private void unindex(Object[] row) {
+        hashIndexes.forEach((column, hashIndex) -> unindexRow(hashIndex, row[column], row));
+        rangeIndexes.forEach((column, rangeIndex) -> unindexRow(rangeIndex, row[column], row));
+    }
+
+    /**
+     * Adds a row to the entry for its value in an index.
+     */
+    private static void indexRow(Map<Object, Set<Object[]>> index, Object value, Object[] row) {
+        index.computeIfAbsent(comparisonKey(value), key -> Collections.newSetFromMap(new LinkedHashMap<>())).add(row);
+    }
+
+    /**
+     * Removes a row from the entry for its value in an index, dropping the entry once it is empty.
+     */
+    private static void unindexRow(Map<Object, Set<Object[]>> index, Object value, Object[] row) {
+        if (value == null && index instanceof NavigableMap) return;
+        Set<Object[]> rowsWithValue = index.get(comparisonKey(value));
+        if (rowsWithValue == null) return;
+        rowsWithValue.remove(row);
+        if (rowsWithValue.isEmpty()) index.remove(comparisonKey(value));
+    }
+
+    /**
+     * @param value A stored value (or a value converted to a column's type).
+     * @return The key the value is indexed and compared by, which folds text to lower case.
+     */
+    static Object comparisonKey(Object value) {
+        return value instanceof String text ? text.toLowerCase(Locale.ROOT) : value;
+    }
+
+    /**
+     * Compares two non-null values of the same column type, ignoring case for text.
+     */
+    @SuppressWarnings("unchecked")
+    static int compare(Object left, Object right) {
+        return ((Comparable<Object>) comparisonKey(left)).compareTo(comparisonKey(right));
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryTable(name: %s, rows: %d)".formatted(name, rows.size());
+    }
+}
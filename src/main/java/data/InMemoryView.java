@@ -0,0 +1,115 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A view held by the {@link InMemoryDriver}, defined by a select query over other collections.
+ * The view is only evaluated when it is queried, and the result is kept until one of its collections is written to,
+ * so repeated reads of a view over reference data cost the same as reading a collection.
+ */
+class InMemoryView {
+    /**
+     * The name of the view.
+     */
+    private final String name;
+    /**
+     * The query the view selects its rows with.
+     */
+    private final SelectQuery definition;
+    /**
+     * The names of the view's columns.
+     */
+    private final List<String> columnNames;
+    /**
+     * The qualified field ("collection.column") each of the view's columns is selected from.
+     */
+    private final List<String> sourceFields;
+    /**
+     * The collections the view selects from.
+     */
+    private final List<String> sourceCollections;
+    /**
+     * The rows of the view as of the last time it was queried, or null if it has not been queried yet.
+     */
+    private InMemoryTable rows;
+    /**
+     * The version of each source collection when the rows were evaluated.
+     */
+    private long[] sourceVersions;
+
+    /**
+     * @param name         The name of the view.
+     * @param definition   The query the view selects its rows with, whose columns are the source fields.
+     * @param columnNames  The names of the view's columns.
+     * @param sourceFields The qualified field ("collection.column") each of the view's columns is selected from.
+     */
+    InMemoryView(String name, SelectQuery definition, List<String> columnNames, List<String> sourceFields) {
+        this.name = name;
+        this.definition = definition;
+        this.columnNames = List.copyOf(columnNames);
+        this.sourceFields = List.copyOf(sourceFields);
+        sourceCollections = new ArrayList<>();
+        sourceCollections.add(definition.getCollectionName());
+        for (QueryJoin join : definition.getJoins()) sourceCollections.add(join.collectionName());
+    }
+
+    /**
+     * @return The name of the view.
+     */
+    String getName() {
+        return name;
+    }
+
+    /**
+     * @return The collections the view selects from.
+     */
+    List<String> getSourceCollections() {
+        return sourceCollections;
+    }
+
+    /**
+     * Returns the rows of the view, evaluating it again if a source collection changed since it was last evaluated.
+     * Columns keep the type of the field they are selected from, and columns selected from a hash indexed field
+     * are hash indexed in the view as well.
+     *
+     * @param driver The driver holding the source collections.
+     * @return The rows of the view as a collection that can be queried.
+     * @throws DatabaseException Thrown if the definition refers to an unknown collection or field.
+     */
+    synchronized InMemoryTable evaluate(InMemoryDriver driver) throws DatabaseException {
+        long[] versions = new long[sourceCollections.size()];
+        for (int i = 0; i < versions.length; i++) versions[i] = driver.findTable(sourceCollections.get(i)).getVersion();
+        if (rows != null && Arrays.equals(versions, sourceVersions)) return rows;
+
+        List<InMemoryTable.ColumnType> columnTypes = new ArrayList<>();
+        List<String> indexedColumns = new ArrayList<>();
+        for (int i = 0; i < sourceFields.size(); i++) {
+            String[] parts = sourceFields.get(i).split("\\.", 2);
+            InMemoryTable source = driver.findTable(parts[0]);
+            int column = source.columnIndex(parts[1]);
+            columnTypes.add(source.getColumnType(column));
+            if (source.hasHashIndex(column)) indexedColumns.add(columnNames.get(i));
+        }
+        InMemoryTable evaluated = new InMemoryTable(name, columnNames, columnTypes, List.of(), false);
+        for (String column : indexedColumns) evaluated.addHashIndex(column);
+        for (IRecord record : InMemoryQueryEvaluator.select(definition, driver)) {
+            Object[] row = new Object[columnNames.size()];
+            for (int i = 0; i < row.length; i++) {
+                // without joins the selected fields come back unqualified
+                String field = definition.hasJoins() ? sourceFields.get(i) : sourceFields.get(i).split("\\.", 2)[1];
+                row[i] = record.getValue(field);
+            }
+            evaluated.add(row);
+        }
+        rows = evaluated;
+        sourceVersions = versions;
+        return rows;
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryView(name: %s, definition: %s)".formatted(name, definition);
+    }
+}
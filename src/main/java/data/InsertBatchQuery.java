@@ -0,0 +1,131 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Represents a query to insert many records into the same collection using as few round trips as possible.
+ * Every record in the batch must have the same fields.
+ * The records are sent in groups of at most batchSize rows and each group is committed once.
+ */
+public class InsertBatchQuery extends Query {
+    /**
+     * The number of rows sent per statement when no batch size is specified.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    /**
+     * The records to persist in the database.
+     */
+    private final List<IRecord> records;
+    /**
+     * The maximum number of rows to send in a single statement.
+     */
+    private int batchSize;
+    /**
+     * True if the driver should return the keys the database generates for the records.
+     */
+    private boolean returnGeneratedKeys;
+    /**
+     * True if a record whose primary key is already used should update that row instead of failing.
+     */
+    private boolean updateOnDuplicateKey;
+
+    /**
+     * @param collectionName The name of the database collection to insert the records into.
+     */
+    public InsertBatchQuery(String collectionName) {
+        super(collectionName);
+        records = new ArrayList<>();
+        batchSize = DEFAULT_BATCH_SIZE;
+    }
+
+    /**
+     * @param collectionName The name of the database collection to insert the records into.
+     * @param records        The records to persist in the database.
+     */
+    public InsertBatchQuery(String collectionName, Collection<? extends IRecord> records) {
+        this(collectionName);
+        this.records.addAll(records);
+    }
+
+    /**
+     * Adds a record to the batch.
+     *
+     * @param record The record to persist in the database.
+     * @return The same query instance after adding the record to it.
+     */
+    public InsertBatchQuery add(IRecord record) {
+        records.add(record);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of rows to send in a single statement.
+     *
+     * @param batchSize The maximum number of rows to send in a single statement.
+     * @return The same query instance after setting the batch size.
+     */
+    public InsertBatchQuery batchSize(int batchSize) {
+        if (batchSize < 1) throw new IllegalArgumentException("The batch size must be at least 1.");
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Requests the keys the database generates for the records (such as AUTO_INCREMENT ids),
+     * so the caller does not have to query for them after the insert.
+     *
+     * @return The same query instance after requesting the generated keys.
+     */
+    public InsertBatchQuery returnGeneratedKeys() {
+        returnGeneratedKeys = true;
+        return this;
+    }
+
+    /**
+     * Makes the batch an upsert: a record whose primary key (or other unique key) is already used updates
+     * that row with the record's fields instead of failing, like MySQL's INSERT ... ON DUPLICATE KEY UPDATE.
+     *
+     * @return The same query instance after making it an upsert.
+     */
+    public InsertBatchQuery updateOnDuplicateKey() {
+        updateOnDuplicateKey = true;
+        return this;
+    }
+
+    /**
+     * @return True if a record whose primary key is already used should update that row instead of failing.
+     */
+    public boolean isUpdatingOnDuplicateKey() {
+        return updateOnDuplicateKey;
+    }
+
+    /**
+     * @return True if the driver should return the keys the database generates for the records.
+     */
+    public boolean isReturningGeneratedKeys() {
+        return returnGeneratedKeys;
+    }
+
+    /**
+     * @return The records to persist in the database.
+     */
+    public List<IRecord> getRecords() {
+        return records;
+    }
+
+    /**
+     * @return The maximum number of rows to send in a single statement.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public String toString() {
+        return "InsertBatchQuery(collectionName: %s, records: %d, batchSize: %d, updateOnDuplicateKey: %b)"
+                .formatted(getCollectionName(), records.size(), batchSize, updateOnDuplicateKey);
+    }
+}
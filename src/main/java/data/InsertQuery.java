@@ -8,6 +8,10 @@ public class InsertQuery extends Query {
      * The instance to persist in the database.
      */
     private final IRecord record;
+    /**
+     * True if the driver should return the key the database generates for the record.
+     */
+    private boolean returnGeneratedKeys;
 
     /**
      * @param collectionName The name of the database collection to insert the record into.
@@ -18,6 +22,24 @@ public class InsertQuery extends Query {
         this.record = record;
     }
 
+    /**
+     * Requests the key the database generates for the record (such as an AUTO_INCREMENT id),
+     * so the caller does not have to query for it after the insert.
+     *
+     * @return The same query instance after requesting the generated key.
+     */
+    public InsertQuery returnGeneratedKeys() {
+        returnGeneratedKeys = true;
+        return this;
+    }
+
+    /**
+     * @return True if the driver should return the key the database generates for the record.
+     */
+    public boolean isReturningGeneratedKeys() {
+        return returnGeneratedKeys;
+    }
+
     /**
      * @return Returns the record to insert in the database.
      */
@@ -0,0 +1,470 @@
+package data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Records how long each query takes, grouped by query shape, so slow call sites can be found.
+ * A shape is the operation, collection, joins and filtered fields of a query without its values
+ * (ex. "SELECT meals WHERE created_on GREATER_EQUAL, created_on LESS_EQUAL, user_id EQUAL"),
+ * so every execution of the same call site is counted together. Each shape has a call count, an error count, a row count and a latency histogram.
+ * <p>
+ * Queries slower than the slow query threshold are also kept in a slow query log (the most recent
+ * {@link #SLOW_QUERY_LOG_SIZE}), together with the database's plan for the query, which is read once per shape.
+ * Statistics can be read with {@link #getStatistics()} or written to a file periodically
+ * with {@link #startPeriodicDump(Path, Duration)}.
+ */
+public class InstrumentedDatabaseDriver extends DatabaseDriverDecorator {
+    /**
+     * The number of slow queries kept in the slow query log.
+     */
+    public static final int SLOW_QUERY_LOG_SIZE = 100;
+
+    /**
+     * The statistics being recorded for one query shape.
+     */
+    private static class ShapeRecorder {
+        /**
+         * The latencies of the queries with the shape.
+         */
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        /**
+         * The number of queries with the shape that failed.
+         */
+        private final LongAdder errors = new LongAdder();
+        /**
+         * The number of records returned or written by queries with the shape.
+         */
+        private final LongAdder rows = new LongAdder();
+    }
+
+    /**
+     * Queries that take at least this long are added to the slow query log.
+     */
+    private final Duration slowQueryThreshold;
+    /**
+     * Returns the current time in nanoseconds (only differences between values are meaningful).
+     */
+    private final LongSupplier nanoClock;
+    /**
+     * The statistics recorded for each query shape.
+     */
+    private final Map<String, ShapeRecorder> recorders;
+    /**
+     * The most recent slow queries, oldest first.
+     */
+    private final Deque<SlowQuery> slowQueries;
+    /**
+     * The plan read for each shape of slow select query, so the plan is only read once per shape.
+     */
+    private final Map<String, String> plans;
+    /**
+     * The number of slow queries seen since the driver was created or reset.
+     */
+    private final AtomicLong slowQueryCount;
+    /**
+     * Runs the periodic dump, or null if it has never been started.
+     */
+    private ScheduledExecutorService dumpExecutor;
+    /**
+     * The scheduled periodic dump, or null if it is not running.
+     */
+    private ScheduledFuture<?> dumpTask;
+
+    /**
+     * @param delegate           The driver to send queries to.
+     * @param slowQueryThreshold Queries that take at least this long are added to the slow query log.
+     */
+    public InstrumentedDatabaseDriver(IDatabaseDriver delegate, Duration slowQueryThreshold) {
+        this(delegate, slowQueryThreshold, System::nanoTime);
+    }
+
+    /**
+     * @param delegate           The driver to send queries to.
+     * @param slowQueryThreshold Queries that take at least this long are added to the slow query log.
+     * @param nanoClock          Returns the current time in nanoseconds.
+     */
+    InstrumentedDatabaseDriver(IDatabaseDriver delegate, Duration slowQueryThreshold, LongSupplier nanoClock) {
+        super(delegate);
+        this.slowQueryThreshold = slowQueryThreshold;
+        this.nanoClock = nanoClock;
+        recorders = new ConcurrentHashMap<>();
+        slowQueries = new ArrayDeque<>();
+        plans = new ConcurrentHashMap<>();
+        slowQueryCount = new AtomicLong();
+    }
+
+    @Override
+    public List<Long> execute(InsertQuery query) throws DatabaseException {
+        long start = nanoClock.getAsLong();
+        try {
+            List<Long> keys = delegate.execute(query);
+            record("INSERT " + query.getCollectionName(), query, start, 1, false);
+            return keys;
+        } catch (DatabaseException | RuntimeException e) {
+            record("INSERT " + query.getCollectionName(), query, start, 0, true);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Long> execute(InsertBatchQuery query) throws DatabaseException {
+        String shape = (query.isUpdatingOnDuplicateKey() ? "UPSERT BATCH " : "INSERT BATCH ")
+                + query.getCollectionName();
+        long start = nanoClock.getAsLong();
+        try {
+            List<Long> keys = delegate.execute(query);
+            record(shape, query, start, query.getRecords().size(), false);
+            return keys;
+        } catch (DatabaseException | RuntimeException e) {
+            record(shape, query, start, 0, true);
+            throw e;
+        }
+    }
+
+    @Override
+    public void execute(DeleteQuery query) throws DatabaseException {
+        String shape = "DELETE " + query.getCollectionName() + whereShape(query.getFilters());
+        long start = nanoClock.getAsLong();
+        try {
+            delegate.execute(query);
+            record(shape, query, start, 0, false);
+        } catch (DatabaseException | RuntimeException e) {
+            record(shape, query, start, 0, true);
+            throw e;
+        }
+    }
+
+    @Override
+    public void execute(UpdateQuery query) throws DatabaseException {
+        String shape = "UPDATE " + query.getCollectionName();
+        long start = nanoClock.getAsLong();
+        try {
+            delegate.execute(query);
+            record(shape, query, start, 1, false);
+        } catch (DatabaseException | RuntimeException e) {
+            record(shape, query, start, 0, true);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<IRecord> execute(SelectQuery query) throws DatabaseException {
+        String shape = shapeOf(query);
+        long start = nanoClock.getAsLong();
+        try {
+            List<IRecord> records = delegate.execute(query);
+            recordSelect(shape, query, start, records.size(), false);
+            return records;
+        } catch (DatabaseException | RuntimeException e) {
+            recordSelect(shape, query, start, 0, true);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<IRecord> execute(AggregateQuery query) throws DatabaseException {
+        String shape = shapeOf(query);
+        long start = nanoClock.getAsLong();
+        try {
+            List<IRecord> records = delegate.execute(query);
+            record(shape, query, start, records.size(), false);
+            return records;
+        } catch (DatabaseException | RuntimeException e) {
+            record(shape, query, start, 0, true);
+            throw e;
+        }
+    }
+
+    /**
+     * A stream is timed from when it is opened until it is closed, and counts the records that were read.
+     */
+    @Override
+    public Stream<IRecord> stream(SelectQuery query) throws DatabaseException {
+        String shape = "STREAM " + shapeOf(query);
+        long start = nanoClock.getAsLong();
+        Stream<IRecord> stream;
+        try {
+            stream = delegate.stream(query);
+        } catch (DatabaseException | RuntimeException e) {
+            recordSelect(shape, query, start, 0, true);
+            throw e;
+        }
+        LongAdder rows = new LongAdder();
+        return stream
+                .peek(record -> rows.increment())
+                .onClose(() -> recordSelect(shape, query, start, rows.sum(), false));
+    }
+
+    @Override
+    public long reserveIds(String collectionName, int count) throws DatabaseException {
+        String shape = "RESERVE IDS " + collectionName;
+        long start = nanoClock.getAsLong();
+        try {
+            long firstId = delegate.reserveIds(collectionName, count);
+            record(shape, shape, start, 0, false);
+            return firstId;
+        } catch (DatabaseException | RuntimeException e) {
+            record(shape, shape, start, 0, true);
+            throw e;
+        }
+    }
+
+    /**
+     * @return A snapshot of the statistics for every query shape, the shapes with the most total time first.
+     */
+    public List<QueryShapeStatistics> getStatistics() {
+        List<QueryShapeStatistics> statistics = new ArrayList<>();
+        recorders.forEach((shape, recorder) -> statistics.add(new QueryShapeStatistics(
+                shape,
+                recorder.latencies.getCount(),
+                recorder.errors.sum(),
+                recorder.rows.sum(),
+                recorder.latencies.getTotal(),
+                recorder.latencies.getPercentile(0.50),
+                recorder.latencies.getPercentile(0.95),
+                recorder.latencies.getPercentile(0.99),
+                recorder.latencies.getMax()
+        )));
+        statistics.sort(Comparator.comparing(QueryShapeStatistics::total).reversed());
+        return statistics;
+    }
+
+    /**
+     * @return The most recent slow queries, oldest first.
+     */
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return List.copyOf(slowQueries);
+        }
+    }
+
+    /**
+     * Clears every statistic and the slow query log.
+     */
+    public void reset() {
+        recorders.clear();
+        plans.clear();
+        slowQueryCount.set(0);
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    /**
+     * @return A plain text report of the statistics for every query shape, followed by the slow query log.
+     */
+    public String formatReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("Query statistics at %s (slow query threshold: %d ms)%n"
+                .formatted(Instant.now(), slowQueryThreshold.toMillis()));
+        report.append("%10s %8s %10s %12s %10s %10s %10s %10s  %s%n"
+                .formatted("count", "errors", "rows", "total ms", "p50 ms", "p95 ms", "p99 ms", "max ms", "shape"));
+        for (QueryShapeStatistics statistics : getStatistics()) {
+            report.append("%10d %8d %10d %12.1f %10.2f %10.2f %10.2f %10.2f  %s%n".formatted(
+                    statistics.count(), statistics.errors(), statistics.rows(), millis(statistics.total()),
+                    millis(statistics.p50()), millis(statistics.p95()), millis(statistics.p99()),
+                    millis(statistics.max()), statistics.shape()));
+        }
+        List<SlowQuery> slow = getSlowQueries();
+        report.append("%nSlow queries (%d total, latest %d shown)%n".formatted(slowQueryCount.get(), slow.size()));
+        for (SlowQuery slowQuery : slow) {
+            report.append("%s  %.2f ms  %s%n".formatted(
+                    slowQuery.finishedAt(), millis(slowQuery.latency()), slowQuery.query()));
+            if (slowQuery.plan() != null) report.append(slowQuery.plan().indent(4));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Writes the report to a file, replacing the previous report in one step so readers never see a partial file.
+     *
+     * @param file The file to write.
+     * @throws IOException Thrown if the file cannot be written.
+     */
+    public void dump(Path file) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            Files.writeString(temporary, formatReport());
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Writes the report to a file at a fixed interval on a background thread, replacing any earlier periodic dump.
+     *
+     * @param file     The file to write.
+     * @param interval How often to write the file.
+     */
+    public synchronized void startPeriodicDump(Path file, Duration interval) {
+        stopPeriodicDump();
+        if (dumpExecutor == null) {
+            dumpExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "query-statistics-dump");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        dumpTask = dumpExecutor.scheduleAtFixedRate(() -> {
+            try {
+                dump(file);
+            } catch (IOException | UncheckedIOException e) {
+                // keep dumping; the file may become writable again
+                System.out.println("Could not write query statistics to " + file + ": " + e.getMessage());
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic dump, if it is running.
+     */
+    public synchronized void stopPeriodicDump() {
+        if (dumpTask != null) dumpTask.cancel(false);
+        dumpTask = null;
+    }
+
+    /**
+     * Stops the periodic dump and its background thread.
+     */
+    public synchronized void close() {
+        stopPeriodicDump();
+        if (dumpExecutor != null) dumpExecutor.shutdown();
+        dumpExecutor = null;
+    }
+
+    /**
+     * Records a select, reading the plan for its shape if it was slow and the plan has not been read yet.
+     */
+    private void recordSelect(String shape, SelectQuery query, long start, long rows, boolean failed) {
+        Duration latency = record(shape, query, start, rows, failed);
+        if (latency.compareTo(slowQueryThreshold) < 0) return;
+        String plan = plans.get(shape);
+        if (plan == null) {
+            try {
+                plan = delegate.explain(query);
+            } catch (DatabaseException | RuntimeException e) {
+                plan = "The plan could not be read: " + e.getMessage();
+            }
+            plans.put(shape, plan);
+        }
+        logSlowQuery(shape, query, latency, plan);
+    }
+
+    /**
+     * Records the latency and row count of a query against its shape, and logs writes that were slow.
+     *
+     * @return The latency of the query.
+     */
+    private Duration record(String shape, Object query, long start, long rows, boolean failed) {
+        Duration latency = Duration.ofNanos(nanoClock.getAsLong() - start);
+        ShapeRecorder recorder = recorders.computeIfAbsent(shape, key -> new ShapeRecorder());
+        recorder.latencies.record(latency);
+        recorder.rows.add(rows);
+        if (failed) recorder.errors.increment();
+        if (!(query instanceof SelectQuery) && latency.compareTo(slowQueryThreshold) >= 0) {
+            logSlowQuery(shape, query, latency, null);
+        }
+        return latency;
+    }
+
+    /**
+     * Adds a query to the slow query log, dropping the oldest entry once the log is full.
+     */
+    private void logSlowQuery(String shape, Object query, Duration latency, String plan) {
+        slowQueryCount.incrementAndGet();
+        synchronized (slowQueries) {
+            if (slowQueries.size() == SLOW_QUERY_LOG_SIZE) slowQueries.removeFirst();
+            slowQueries.addLast(new SlowQuery(shape, query.toString(), latency, Instant.now(), plan));
+        }
+    }
+
+    /**
+     * @param query The query to describe.
+     * @return The shape of a select query: its collection, joins, filtered fields, page position, sort columns and limit.
+     */
+    static String shapeOf(SelectQuery query) {
+        StringBuilder shape = new StringBuilder("SELECT ").append(query.getCollectionName());
+        for (QueryJoin join : query.getJoins()) {
+            shape.append(' ').append(join.type()).append(" JOIN ").append(join.collectionName());
+        }
+        shape.append(whereShape(query.getFilters()));
+        if (query.getAfter() != null) shape.append(" AFTER");
+        if (query.getSortColumn() != null) shape.append(" ORDER BY ").append(query.getSortColumn());
+        if (query.getKeyColumn() != null) shape.append(", ").append(query.getKeyColumn());
+        if (query.getLimit() != null) shape.append(" LIMIT");
+        return shape.toString();
+    }
+
+    /**
+     * @param query The query to describe.
+     * @return The shape of an aggregate query: its collection, aggregates, filtered fields, groupings, sort column and limit.
+     */
+    static String shapeOf(AggregateQuery query) {
+        List<String> aggregates = new ArrayList<>();
+        for (QueryAggregate aggregate : query.getAggregates()) {
+            aggregates.add("%s(%s)".formatted(aggregate.function(), aggregate.field() == null ? "*" : aggregate.field()));
+        }
+        StringBuilder shape = new StringBuilder("AGGREGATE ").append(query.getCollectionName())
+                .append(' ').append(String.join(", ", aggregates))
+                .append(whereShape(query.getFilters()));
+        if (!query.getGroupings().isEmpty()) {
+            List<String> groupings = new ArrayList<>();
+            for (QueryGrouping grouping : query.getGroupings()) {
+                groupings.add(grouping.function() == GroupingFunction.DATE
+                        ? "DATE(%s)".formatted(grouping.field())
+                        : grouping.field());
+            }
+            shape.append(" GROUP BY ").append(String.join(", ", groupings));
+        }
+        if (query.getSortColumn() != null) shape.append(" ORDER BY ").append(query.getSortColumn());
+        if (query.getLimit() != null) shape.append(" LIMIT");
+        return shape.toString();
+    }
+
+    /**
+     * @param filters The filters of a query.
+     * @return The filtered fields and comparisons in sorted order, so equivalent queries have the same shape.
+     */
+    private static String whereShape(List<QueryFilter> filters) {
+        if (filters.isEmpty()) return "";
+        List<String> conditions = new ArrayList<>(filters.size());
+        for (QueryFilter filter : filters) conditions.add(filter.field() + " " + filter.comparison());
+        conditions.sort(null);
+        return " WHERE " + String.join(", ", conditions);
+    }
+
+    /**
+     * @return The duration in fractional milliseconds.
+     */
+    private static double millis(Duration duration) {
+        return duration.toNanos() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return "InstrumentedDatabaseDriver(shapes: %d, slowQueries: %d)".formatted(recorders.size(), slowQueryCount.get());
+    }
+}
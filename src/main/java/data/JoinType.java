@@ -0,0 +1,11 @@
+package data;
+
+/**
+ * The type of join to use when combining records from two collections.
+ */
+public enum JoinType {
+    // only rows with a match in both collections
+    INNER,
+    // every row of the left collection, with nulls where there is no match in the joined collection
+    LEFT
+}
@@ -0,0 +1,116 @@
+package data;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts latencies in log-linear buckets, so percentiles can be read in constant memory however many are recorded.
+ * Each power of two (in microseconds) is split into 8 buckets, so a percentile is at most 12.5% above the true value.
+ * Recording is lock free and safe to call from many threads.
+ */
+class LatencyHistogram {
+    /**
+     * The number of bits of each latency used to pick a bucket within its power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+    /**
+     * The number of buckets per power of two.
+     */
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /**
+     * Enough buckets for any non-negative long.
+     */
+    private static final int BUCKET_COUNT = bucketIndex(Long.MAX_VALUE) + 1;
+
+    /**
+     * The number of latencies recorded in each bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    /**
+     * The number of latencies recorded.
+     */
+    private final LongAdder count = new LongAdder();
+    /**
+     * The sum of every latency recorded, in microseconds.
+     */
+    private final LongAdder totalMicros = new LongAdder();
+    /**
+     * The largest latency recorded, in microseconds.
+     */
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    /**
+     * @param latency The latency to record.
+     */
+    void record(Duration latency) {
+        long micros = Math.max(0, latency.toNanos() / 1_000);
+        counts.incrementAndGet(bucketIndex(micros));
+        count.increment();
+        totalMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    /**
+     * @return The number of latencies recorded.
+     */
+    long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return The sum of every latency recorded.
+     */
+    Duration getTotal() {
+        return Duration.ofNanos(totalMicros.sum() * 1_000);
+    }
+
+    /**
+     * @return The largest latency recorded.
+     */
+    Duration getMax() {
+        return Duration.ofNanos(maxMicros.get() * 1_000);
+    }
+
+    /**
+     * @param percentile The percentile to read, between 0 and 1 (ex. 0.95).
+     * @return The latency that the given fraction of recorded latencies are at or below (0 if none were recorded).
+     */
+    Duration getPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) return Duration.ZERO;
+        long target = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Duration.ofNanos(Math.min(bucketUpperBound(i), maxMicros.get()) * 1_000);
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * @param micros A latency in microseconds.
+     * @return The bucket the latency is counted in. Latencies below 8 microseconds each have their own bucket.
+     */
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param index A bucket.
+     * @return The largest latency (in microseconds) counted in the bucket.
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lowerBound = (SUB_BUCKETS + index % SUB_BUCKETS) * width;
+        return lowerBound + width - 1;
+    }
+}
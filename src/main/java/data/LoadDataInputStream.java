@@ -0,0 +1,130 @@
+package data;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Encodes records in the default text format of MySQL's LOAD DATA statement (tab separated fields,
+ * newline terminated rows, backslash escapes and \N for null), one row at a time as the stream is read,
+ * so a file of any size is sent to the database in constant memory.
+ */
+class LoadDataInputStream extends InputStream {
+    /**
+     * The records still to encode.
+     */
+    private final Iterator<? extends IRecord> records;
+    /**
+     * The fields to encode, in the order of the columns in the LOAD DATA statement.
+     */
+    private final List<String> columnNames;
+    /**
+     * The encoded row being read.
+     */
+    private byte[] row = new byte[0];
+    /**
+     * The position of the next byte to read in the row.
+     */
+    private int position;
+    /**
+     * The number of rows encoded so far.
+     */
+    private long rowCount;
+
+    /**
+     * @param records     The records to encode.
+     * @param columnNames The fields to encode, in the order of the columns in the LOAD DATA statement.
+     */
+    LoadDataInputStream(Iterator<? extends IRecord> records, List<String> columnNames) {
+        this.records = records;
+        this.columnNames = columnNames;
+    }
+
+    /**
+     * Errors reading the records (ex. a CSV row that cannot be parsed) are thrown as the IOException that caused them.
+     */
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) return 0;
+        int read = 0;
+        while (read < length && nextRowIfNeeded()) {
+            int count = Math.min(length - read, row.length - position);
+            System.arraycopy(row, position, buffer, offset + read, count);
+            position += count;
+            read += count;
+        }
+        return read == 0 ? -1 : read;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return nextRowIfNeeded() ? row[position++] & 0xFF : -1;
+    }
+
+    /**
+     * @return The number of rows encoded so far.
+     */
+    long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Encodes the next record once the current row has been read.
+     *
+     * @return True if there are bytes left to read.
+     */
+    private boolean nextRowIfNeeded() throws IOException {
+        if (position < row.length) return true;
+        try {
+            if (!records.hasNext()) return false;
+            row = encode(records.next());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        position = 0;
+        rowCount++;
+        return true;
+    }
+
+    /**
+     * @param record The record to encode.
+     * @return The record as one line of the LOAD DATA format.
+     */
+    private byte[] encode(IRecord record) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < columnNames.size(); i++) {
+            if (i > 0) line.append('\t');
+            appendValue(line, record.getValue(columnNames.get(i)));
+        }
+        return line.append('\n').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends a value, escaping the characters that separate fields and rows.
+     */
+    private static void appendValue(StringBuilder line, Object value) {
+        switch (value) {
+            case null -> line.append("\\N");
+            case Boolean flag -> line.append(flag ? '1' : '0');
+            case BigDecimal decimal -> line.append(decimal.toPlainString());
+            default -> {
+                String text = value.toString();
+                for (int i = 0; i < text.length(); i++) {
+                    char c = text.charAt(i);
+                    switch (c) {
+                        case '\\' -> line.append("\\\\");
+                        case '\t' -> line.append("\\t");
+                        case '\n' -> line.append("\\n");
+                        case '\r' -> line.append("\\r");
+                        case '\0' -> line.append("\\0");
+                        default -> line.append(c);
+                    }
+                }
+            }
+        }
+    }
+}
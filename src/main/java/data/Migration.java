@@ -0,0 +1,22 @@
+package data;
+
+/**
+ * A versioned change to the database schema, read from a file named V{version}__{description}.sql
+ * (ex. V1__index_meals_by_user_and_date.sql).
+ *
+ * @param version     The version the migration brings the schema to. Migrations are applied in version order.
+ * @param description What the migration does, taken from its file name.
+ * @param script      The SQL statements of the migration.
+ * @param checksum    The SHA-256 hash of the script, used to detect a migration edited after it was applied.
+ */
+public record Migration(
+        int version,
+        String description,
+        String script,
+        String checksum
+) {
+    @Override
+    public String toString() {
+        return "V%d (%s)".formatted(version, description);
+    }
+}
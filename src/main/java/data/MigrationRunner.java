@@ -0,0 +1,167 @@
+package data;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Brings the database schema up to date by applying versioned migration scripts, so schema changes
+ * (such as new indexes) can be shipped to a live database without resetting it.
+ * <p>
+ * Applied migrations are recorded in the schema_version collection along with the checksum of their script.
+ * Each time the runner starts, the scripts of applied migrations are checked against their checksums,
+ * so an edited migration is reported instead of silently leaving databases with different schemas.
+ * Changes to the schema belong in a new migration.
+ * <p>
+ * MySQL commits every schema change immediately, so a migration that fails part way is not rolled back.
+ * Migrations should hold one change each (or be safe to finish by hand) for that reason.
+ * ex. new MigrationRunner(driver, Path.of("src/main/java/data/migrations")).migrate();
+ */
+public class MigrationRunner {
+    /**
+     * The collection recording the applied migrations.
+     */
+    public static final String SCHEMA_VERSION_TABLE = "schema_version";
+    /**
+     * Creates the schema_version collection if it does not exist yet.
+     */
+    private static final String CREATE_SCHEMA_VERSION_TABLE = """
+            CREATE TABLE IF NOT EXISTS schema_version
+            (
+                version      INT PRIMARY KEY,
+                description  VARCHAR(255) NOT NULL,
+                checksum     CHAR(64)     NOT NULL,
+                applied_on   DATETIME     NOT NULL,
+                execution_ms BIGINT       NOT NULL
+            )""";
+    /**
+     * Matches the file name of a migration, capturing its version and description.
+     */
+    private static final Pattern MIGRATION_FILE = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+
+    /**
+     * The driver to apply the migrations with.
+     */
+    private final IDatabaseDriver driver;
+    /**
+     * The directory holding the migration scripts.
+     */
+    private final Path directory;
+
+    /**
+     * @param driver    The driver to apply the migrations with.
+     * @param directory The directory holding the migration scripts.
+     */
+    public MigrationRunner(IDatabaseDriver driver, Path directory) {
+        this.driver = driver;
+        this.directory = directory;
+    }
+
+    /**
+     * Applies every migration that has not been applied yet, in version order.
+     *
+     * @return The migrations that were applied (empty if the schema was already up to date).
+     * @throws DatabaseException Thrown if an applied migration was changed, or a migration fails.
+     * @throws IOException       Thrown if the migration scripts cannot be read.
+     */
+    public List<Migration> migrate() throws DatabaseException, IOException {
+        List<Migration> pending = pending();
+        for (Migration migration : pending) {
+            long start = System.nanoTime();
+            for (String statement : SqlScriptLoader.splitStatements(migration.script())) {
+                try {
+                    driver.executeSchemaChange(statement);
+                } catch (DatabaseException e) {
+                    throw new DatabaseException("Migration %s failed, and its earlier statements were not rolled back:\n%s"
+                            .formatted(migration, e.getMessage()));
+                }
+            }
+            driver.execute(new InsertQuery(SCHEMA_VERSION_TABLE, new Record(Map.of(
+                    "version", migration.version(),
+                    "description", migration.description(),
+                    "checksum", migration.checksum(),
+                    "applied_on", LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS),
+                    "execution_ms", (System.nanoTime() - start) / 1_000_000
+            ))));
+        }
+        return pending;
+    }
+
+    /**
+     * Checks the applied migrations against their scripts and lists the ones still to apply.
+     *
+     * @return The migrations that have not been applied, in version order.
+     * @throws DatabaseException Thrown if an applied migration was changed or the schema_version collection cannot be read.
+     * @throws IOException       Thrown if the migration scripts cannot be read.
+     */
+    public List<Migration> pending() throws DatabaseException, IOException {
+        driver.executeSchemaChange(CREATE_SCHEMA_VERSION_TABLE);
+        Map<Integer, String> appliedChecksums = new HashMap<>();
+        for (IRecord record : driver.execute(new SelectQuery(SCHEMA_VERSION_TABLE).columns("version", "checksum"))) {
+            appliedChecksums.put(((Number) record.getValue("version")).intValue(), (String) record.getValue("checksum"));
+        }
+        List<Migration> pending = new ArrayList<>();
+        for (Migration migration : load()) {
+            String appliedChecksum = appliedChecksums.get(migration.version());
+            if (appliedChecksum == null) {
+                pending.add(migration);
+            } else if (!appliedChecksum.equals(migration.checksum())) {
+                throw new DatabaseException(("Migration %s was changed after it was applied. "
+                        + "Restore the original script and add the change as a new migration.").formatted(migration));
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * @return Every migration in the directory, in version order.
+     * @throws DatabaseException Thrown if two migrations have the same version.
+     * @throws IOException       Thrown if the directory cannot be read.
+     */
+    private List<Migration> load() throws DatabaseException, IOException {
+        TreeMap<Integer, Migration> migrations = new TreeMap<>();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.sorted().toList()) {
+                Matcher name = MIGRATION_FILE.matcher(file.getFileName().toString());
+                if (!name.matches()) continue;
+                // line endings are normalized so a checkout on another platform has the same checksum
+                String script = Files.readString(file).replace("\r\n", "\n");
+                Migration migration = new Migration(
+                        Integer.parseInt(name.group(1)), name.group(2).replace('_', ' '), script, checksum(script));
+                Migration duplicate = migrations.put(migration.version(), migration);
+                if (duplicate != null) {
+                    throw new DatabaseException("Migrations %s and %s have the same version.".formatted(duplicate, migration));
+                }
+            }
+        }
+        return List.copyOf(migrations.values());
+    }
+
+    /**
+     * @param script The text of a migration script.
+     * @return The hex encoded SHA-256 hash of the script.
+     */
+    static String checksum(String script) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(script.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
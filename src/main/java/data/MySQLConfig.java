@@ -2,7 +2,9 @@ package data;
 
 import shared.AppBackend;
 
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -39,11 +41,60 @@ public class MySQLConfig implements IDatabaseConfig {
      * ex. {"User" -> "users"}
      */
     private final Map<String, String> tableNames;
+    /**
+     * The number of connections the pool keeps open even when they are idle.
+     */
+    private final int minPoolSize;
+    /**
+     * The maximum number of connections the pool may have open at once.
+     */
+    private final int maxPoolSize;
+    /**
+     * How long (in milliseconds) to wait for a pooled connection before giving up.
+     */
+    private final long acquireTimeoutMillis;
+    /**
+     * How long (in milliseconds) a connection may sit idle before it is closed.
+     */
+    private final long idleTimeoutMillis;
+    /**
+     * How long (in seconds) to wait for the database to respond when validating a borrowed connection.
+     */
+    private final int validationTimeoutSeconds;
+    /**
+     * The maximum number of prepared statements each pooled connection keeps open.
+     */
+    private final int statementCacheSize;
+    /**
+     * Queries that take at least this long (in milliseconds) are added to the slow query log.
+     */
+    private final long slowQueryThresholdMillis;
+    /**
+     * The file query statistics are periodically written to, or null if they are not written to a file.
+     */
+    private final String statisticsFile;
+    /**
+     * How often (in seconds) query statistics are written to the statistics file.
+     */
+    private final int statisticsDumpIntervalSeconds;
+    /**
+     * The read replicas selects are spread across, or an empty list if every query goes to the primary.
+     */
+    private final List<DatabaseHost> replicaHosts;
+    /**
+     * How often (in milliseconds) replicas are checked, so failed ones are skipped and recovered ones are used again.
+     */
+    private final int replicaHealthCheckIntervalMillis;
+    /**
+     * How long (in milliseconds) after a write reads go to the primary, so they see the write
+     * even if the replicas have not caught up yet.
+     */
+    private final int readYourWritesWindowMillis;
 
     /**
      * @return Returns the MySQL instance representing the MySQL configuration for the app.
      */
-    public static MySQLConfig instance() {
+    public static synchronized MySQLConfig instance() {
         if (instance == null) {
             instance = new MySQLConfig();
         }
@@ -62,6 +113,24 @@ public class MySQLConfig implements IDatabaseConfig {
         databaseName = "delta_database";
         serviceAccount = "delta-service-account";
         serviceAccountPassword = "password";
+        // connection pool setup (can be overridden with environment variables)
+        minPoolSize = intFromEnvironment("DB_POOL_MIN_SIZE", 2);
+        maxPoolSize = intFromEnvironment("DB_POOL_MAX_SIZE", 10);
+        acquireTimeoutMillis = intFromEnvironment("DB_POOL_ACQUIRE_TIMEOUT_MS", 10_000);
+        idleTimeoutMillis = intFromEnvironment("DB_POOL_IDLE_TIMEOUT_MS", 60_000);
+        validationTimeoutSeconds = intFromEnvironment("DB_POOL_VALIDATION_TIMEOUT_S", 2);
+        statementCacheSize = intFromEnvironment("DB_STATEMENT_CACHE_SIZE", 64);
+        // query instrumentation setup
+        slowQueryThresholdMillis = intFromEnvironment("DB_SLOW_QUERY_THRESHOLD_MS", 100);
+        statisticsFile = System.getenv("DB_STATISTICS_FILE");
+        statisticsDumpIntervalSeconds = intFromEnvironment("DB_STATISTICS_INTERVAL_S", 60);
+        // read replica setup, ex. DB_REPLICA_HOSTS=replica-1:3306,replica-2:3306
+        String replicas = System.getenv("DB_REPLICA_HOSTS");
+        replicaHosts = replicas == null || replicas.isBlank()
+                ? List.of()
+                : Arrays.stream(replicas.split(",")).map(DatabaseHost::parse).toList();
+        replicaHealthCheckIntervalMillis = intFromEnvironment("DB_REPLICA_HEALTH_CHECK_MS", 5_000);
+        readYourWritesWindowMillis = intFromEnvironment("DB_READ_YOUR_WRITES_MS", 2_000);
         // table config
         tableNames = new HashMap<>();
         // class name -> table name
@@ -115,6 +184,111 @@ public class MySQLConfig implements IDatabaseConfig {
         return serviceAccountPassword;
     }
 
+    /**
+     * @return The number of connections the pool keeps open even when they are idle.
+     */
+    public int getMinPoolSize() {
+        return minPoolSize;
+    }
+
+    /**
+     * @return The maximum number of connections the pool may have open at once.
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * @return How long (in milliseconds) to wait for a pooled connection before giving up.
+     */
+    public long getAcquireTimeoutMillis() {
+        return acquireTimeoutMillis;
+    }
+
+    /**
+     * @return How long (in milliseconds) a connection may sit idle before it is closed.
+     */
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * @return How long (in seconds) to wait for the database to respond when validating a borrowed connection.
+     */
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    /**
+     * @return The maximum number of prepared statements each pooled connection keeps open.
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * @return Queries that take at least this long (in milliseconds) are added to the slow query log.
+     */
+    public long getSlowQueryThresholdMillis() {
+        return slowQueryThresholdMillis;
+    }
+
+    /**
+     * @return The file query statistics are periodically written to, or null if they are not written to a file.
+     */
+    public String getStatisticsFile() {
+        return statisticsFile;
+    }
+
+    /**
+     * @return How often (in seconds) query statistics are written to the statistics file.
+     */
+    public int getStatisticsDumpIntervalSeconds() {
+        return statisticsDumpIntervalSeconds;
+    }
+
+    /**
+     * @return The primary database server, which every write goes to.
+     */
+    public DatabaseHost getPrimaryHost() {
+        return new DatabaseHost(hostName, portNumber);
+    }
+
+    /**
+     * @return The read replicas selects are spread across, or an empty list if every query goes to the primary.
+     */
+    public List<DatabaseHost> getReplicaHosts() {
+        return replicaHosts;
+    }
+
+    /**
+     * @return How often (in milliseconds) replicas are checked, so failed ones are skipped
+     * and recovered ones are used again.
+     */
+    public int getReplicaHealthCheckIntervalMillis() {
+        return replicaHealthCheckIntervalMillis;
+    }
+
+    /**
+     * @return How long (in milliseconds) after a write reads go to the primary, so they see the write
+     * even if the replicas have not caught up yet.
+     */
+    public int getReadYourWritesWindowMillis() {
+        return readYourWritesWindowMillis;
+    }
+
+    /**
+     * Reads an integer setting from an environment variable.
+     *
+     * @param name         The name of the environment variable.
+     * @param defaultValue The value to use if the environment variable is not set.
+     * @return The value of the environment variable, or the default value if it is not set.
+     */
+    private static int intFromEnvironment(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
     @Override
     public String toString() {
         return "MySQLConfig()";
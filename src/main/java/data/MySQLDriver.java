@@ -1,89 +1,148 @@
 package data;
 
+import com.mysql.cj.jdbc.JdbcStatement;
+
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * An opinionated database driver for MySQL.
  * This class is a simplified interface wrapping the jdbc driver.
  * All operations on the MySQL database should go through this class.
+ * Queries borrow a connection from a bounded pool, so the driver can be shared safely between threads.
+ * Each query is compiled to parameterized SQL and executed as a prepared statement that is cached per connection,
+ * so queries with the same shape are only parsed once.
  */
-public class MySQLDriver implements IDatabaseDriver {
+public class MySQLDriver implements IDatabaseDriver, IBulkLoader {
     /**
      * Template for establishing a database connection.
+     * Server-side prepared statements let MySQL reuse the parsed statement across executions.
+     */
+    private static final String CONNECTION_STRING_TEMPLATE =
+            "jdbc:mysql://%s:%d/%s?user=%s&password=%s&useServerPrepStmts=true";
+    /**
+     * MySQL allows at most this many placeholders in a single prepared statement.
      */
-    private static final String CONNECTION_STRING_TEMPLATE = "jdbc:mysql://%s:%d/%s?user=%s&password=%s";
+    private static final int MAX_PLACEHOLDERS_PER_STATEMENT = 65_535;
     /**
-     * Template for INSERT statements.
+     * Creates the id sequence for a collection if it does not exist yet, starting after the largest existing id.
      */
-    private static final String INSERT_STATEMENT_TEMPLATE = "INSERT INTO %s %s VALUES %s";
+    private static final String INITIALIZE_SEQUENCE_TEMPLATE =
+            "INSERT IGNORE INTO id_sequences (name, next_value) SELECT ?, COALESCE(MAX(id), 0) + 1 FROM %s";
     /**
-     * Template for SELECT statements.
+     * Advances the id sequence of a collection, saving its previous value with LAST_INSERT_ID(expr)
+     * so the update and the read of the reserved block happen atomically.
      */
-    private static final String SELECT_STATEMENT_TEMPLATE = "SELECT * FROM %s";
+    private static final String RESERVE_IDS_STATEMENT =
+            "UPDATE id_sequences SET next_value = LAST_INSERT_ID(next_value) + ? WHERE name = ?";
     /**
-     * Template for UPDATE statements.
+     * Reads the value saved by the last LAST_INSERT_ID(expr) on the connection.
      */
-    private static final String UPDATE_STATEMENT_TEMPLATE = "UPDATE %s SET %s";
+    private static final String LAST_INSERT_ID_QUERY = "SELECT LAST_INSERT_ID()";
     /**
-     * Template for DELETE statements.
+     * Prefix that turns a select statement into a request for its query plan.
      */
-    private static final String DELETE_STATEMENT_TEMPLATE = "DELETE FROM %s";
+    private static final String EXPLAIN_PREFIX = "EXPLAIN ";
     /**
-     * Template for WHERE clause.
+     * Streams records into a table. The file name is ignored because the rows are sent from a stream
+     * set on the statement, in the default LOAD DATA format written by {@link LoadDataInputStream}.
      */
-    private static final String WHERE_CLAUSE_TEMPLATE = " WHERE %s %s %s";
+    private static final String LOAD_DATA_TEMPLATE =
+            "LOAD DATA LOCAL INFILE 'records' INTO TABLE %s CHARACTER SET utf8mb4 (%s)";
     /**
-     * Template for AND clauses.
+     * Reads whether the server accepts LOAD DATA LOCAL, which is off by default in MySQL 8.
      */
-    private static final String AND_CLAUSE_TEMPLATE = " AND %s %s %s";
+    private static final String LOCAL_INFILE_QUERY = "SELECT @@GLOBAL.local_infile";
     /**
-     * Constant representing a semicolon used to terminate SQL statements.
+     * Lets a connection send local data to the server. Only the connections opened for bulk loads use it,
+     * and they only send the stream set on their statement.
      */
-    private static final String SEMICOLON = ";";
+    private static final String ALLOW_LOCAL_INFILE_OPTION = "&allowLoadLocalInfile=true";
 
     /**
      * The configuration for the database.
      */
     private final MySQLConfig config;
     /**
-     * The connection to the database.
+     * The JDBC connection string for the server.
+     */
+    private final String connectionString;
+    /**
+     * True if the server accepts bulk loads, or null if it has not been asked yet.
+     */
+    private volatile Boolean bulkLoadAvailable;
+    /**
+     * The pool of connections to the database shared by all queries.
+     */
+    private final ConnectionPool pool;
+    /**
+     * The connection pinned to the current thread by {@link #runInTransaction(TransactionCallback)},
+     * or null if the thread is not in a transaction.
      */
-    private final Connection connection;
+    private final ThreadLocal<PooledConnection> transactionConnection = new ThreadLocal<>();
 
     /**
-     * Return type consisting of a list of columns and their corresponding values formatted correctly to be executed in MySQL.
+     * Work to perform using a prepared statement borrowed from a pooled connection.
      *
-     * @param columnNames  The column names.
-     * @param columnValues The column values formatted correctly to be executed in MySQL.
+     * @param <T> The type of the result.
      */
-    private record ColumnNamesAndValues(List<String> columnNames, List<String> columnValues) {
+    @FunctionalInterface
+    private interface StatementCallback<T> {
+        T apply(PreparedStatement statement) throws SQLException;
     }
 
     /**
+     * @param config The configuration for the database, including the connection pool settings.
      * @throws DatabaseException Thrown if a connection to the database cannot be established.
      */
     public MySQLDriver(MySQLConfig config) throws DatabaseException {
+        this(config, config.getPrimaryHost());
+    }
+
+    /**
+     * Connects to a specific server, such as a read replica, with the database and pool settings of the config.
+     *
+     * @param config The configuration for the database, including the connection pool settings.
+     * @param host   The server to connect to.
+     * @throws DatabaseException Thrown if a connection to the database cannot be established.
+     */
+    public MySQLDriver(MySQLConfig config, DatabaseHost host) throws DatabaseException {
         this.config = config;
-        String connectionString = CONNECTION_STRING_TEMPLATE.formatted(
-                config.getHostName(),
-                config.getPortNumber(),
+        connectionString = CONNECTION_STRING_TEMPLATE.formatted(
+                host.hostName(),
+                host.portNumber(),
                 config.getDatabaseName(),
                 config.getServiceAccount(),
                 config.getServiceAccountPassword()
         );
-        try {
-            connection = DriverManager.getConnection(connectionString);
-        } catch (SQLException e) {
-            throw new DatabaseException("Failed to connect to the database:\n" + e.getMessage());
-        }
+        pool = new ConnectionPool(
+                () -> DriverManager.getConnection(connectionString),
+                config.getMinPoolSize(),
+                config.getMaxPoolSize(),
+                config.getAcquireTimeoutMillis(),
+                config.getIdleTimeoutMillis(),
+                config.getValidationTimeoutSeconds(),
+                config.getStatementCacheSize()
+        );
     }
 
     @Override
@@ -92,185 +151,647 @@ public class MySQLDriver implements IDatabaseDriver {
     }
 
     @Override
-    public void execute(InsertQuery query) throws DatabaseException {
-        IRecord IRecord = query.getRecord();
-        ColumnNamesAndValues columnNamesAndValues = MySQLDriver.getColumnNamesAndFormattedValues(IRecord);
-        String columnNames = "(%s)".formatted(String.join(", ", columnNamesAndValues.columnNames));
-        String columnValues = "(%s)".formatted(String.join(", ", columnNamesAndValues.columnValues));
-        String insertStatement = INSERT_STATEMENT_TEMPLATE.formatted(query.getCollectionName(), columnNames, columnValues) + SEMICOLON;
+    public List<Long> execute(InsertQuery query) throws DatabaseException {
+        CompiledQuery compiledQuery = MySQLQueryCompiler.compile(query);
+        return executeStatement(query, compiledQuery,
+                statement -> executeInsert(statement, compiledQuery.returnGeneratedKeys()));
+    }
+
+    /**
+     * Inserts the records using multi-row INSERT statements of at most batchSize rows each.
+     * Each statement is committed on its own, so a batch costs one round trip and one commit per group of rows.
+     * If a group fails, that group is rolled back and the groups before it stay committed.
+     * Inside a transaction, the groups are committed with the rest of the transaction instead.
+     */
+    @Override
+    public List<Long> execute(InsertBatchQuery query) throws DatabaseException {
+        List<IRecord> records = query.getRecords();
+        if (records.isEmpty()) return new ArrayList<>();
+        List<String> columnNames = new ArrayList<>(records.getFirst().fieldNames());
+        int rowsPerStatement = Math.max(1, Math.min(
+                query.getBatchSize(), MAX_PLACEHOLDERS_PER_STATEMENT / Math.max(1, columnNames.size())));
+        PooledConnection transaction = transactionConnection.get();
+        if (transaction != null) {
+            try {
+                return insertRows(transaction, query, columnNames, rowsPerStatement, false);
+            } catch (SQLException e) {
+                throw new DatabaseException("An error occurred while executing %s:\n%s".formatted(query, e));
+            }
+        }
+        PooledConnection pooledConnection = pool.borrow();
         try {
-            connection.createStatement().execute(insertStatement);
+            Connection connection = pooledConnection.connection();
+            connection.setAutoCommit(false);
+            List<Long> ids;
+            try {
+                ids = insertRows(pooledConnection, query, columnNames, rowsPerStatement, true);
+            } catch (Throwable e) {
+                // restoring auto-commit before the rollback would commit the rows already inserted
+                rollback(connection, e);
+                restoreAutoCommit(connection, e);
+                throw e;
+            }
+            connection.setAutoCommit(true);
+            return ids;
         } catch (SQLException e) {
             throw new DatabaseException("An error occurred while executing %s:\n%s".formatted(query, e));
+        } finally {
+            pool.release(pooledConnection);
+        }
+    }
+
+    /**
+     * Inserts the records of a batch in groups of at most rowsPerStatement rows.
+     *
+     * @param pooledConnection    The connection to insert the rows with (auto-commit must be off).
+     * @param query               The batch to insert.
+     * @param columnNames         The columns to insert.
+     * @param rowsPerStatement    The maximum number of rows per statement.
+     * @param commitEachStatement True to commit after each statement, false to leave committing to the caller.
+     * @return The keys generated for the rows if the query requested them, else an empty list.
+     * @throws SQLException Thrown if a statement fails.
+     */
+    private static List<Long> insertRows(PooledConnection pooledConnection, InsertBatchQuery query,
+                                         List<String> columnNames, int rowsPerStatement,
+                                         boolean commitEachStatement) throws SQLException {
+        List<IRecord> records = query.getRecords();
+        List<Long> generatedKeys = new ArrayList<>();
+        for (int start = 0; start < records.size(); start += rowsPerStatement) {
+            List<IRecord> rows = records.subList(start, Math.min(start + rowsPerStatement, records.size()));
+            generatedKeys.addAll(runStatement(
+                    pooledConnection,
+                    MySQLQueryCompiler.compile(query, columnNames, rows),
+                    statement -> executeInsert(statement, query.isReturningGeneratedKeys())
+            ));
+            if (commitEachStatement) pooledConnection.connection().commit();
         }
+        return generatedKeys;
     }
 
+    /**
+     * Runs an INSERT statement.
+     *
+     * @param statement           The prepared INSERT statement with its parameters bound.
+     * @param returnGeneratedKeys True if the statement was prepared to return generated keys and they should be read.
+     * @return The keys generated for the inserted rows, in order, or an empty list if they were not requested.
+     * @throws SQLException Thrown if the statement fails.
+     */
+    private static List<Long> executeInsert(PreparedStatement statement, boolean returnGeneratedKeys)
+            throws SQLException {
+        statement.executeUpdate();
+        List<Long> generatedKeys = new ArrayList<>();
+        if (!returnGeneratedKeys) return generatedKeys;
+        try (ResultSet keys = statement.getGeneratedKeys()) {
+            while (keys.next()) generatedKeys.add(keys.getLong(1));
+        }
+        return generatedKeys;
+    }
+
+    /**
+     * Runs the query as a single statement, unless it has an IN list too large for one statement.
+     * In that case the list is split across several statements and the results are merged,
+     * re-applying the sort order and limit across the combined results.
+     */
     @Override
     public List<IRecord> execute(SelectQuery query) throws DatabaseException {
-        List<IRecord> IRecords = new ArrayList<>();
-        String tableName = query.getCollectionName();
-        StringBuilder selectStatement = new StringBuilder(SELECT_STATEMENT_TEMPLATE.formatted(tableName));
-        selectStatement.append(buildWhereClause(query.getFilters()));
-        
+        List<List<QueryFilter>> filterChunks = splitLargeInList(query.getFilters());
+        if (filterChunks.size() == 1) return executeSelect(query, MySQLQueryCompiler.compile(query));
+        List<IRecord> records = new ArrayList<>();
+        for (List<QueryFilter> filters : filterChunks) {
+            records.addAll(executeSelect(query, MySQLQueryCompiler.compile(query, filters)));
+        }
         if (query.getSortColumn() != null) {
-            selectStatement.append(" ORDER BY ").append(query.getSortColumn());
-            if (query.getSortOrder() != null) {
-                selectStatement.append(" ").append(query.getSortOrder() == SortOrder.ASCENDING ? "ASC" : "DESC");
+            Comparator<IRecord> comparator = Comparator.comparing(
+                    record -> asComparable(record.getValue(query.getSortColumn())),
+                    Comparator.nullsFirst(Comparator.naturalOrder())
+            );
+            if (query.getKeyColumn() != null) {
+                comparator = comparator.thenComparing(
+                        record -> asComparable(record.getValue(query.getKeyColumn())),
+                        Comparator.nullsFirst(Comparator.naturalOrder())
+                );
             }
+            records.sort(query.getSortOrder() == SortOrder.DESCENDING ? comparator.reversed() : comparator);
         }
-        
-        if (query.getLimit() != null) {
-            selectStatement.append(" LIMIT ").append(query.getLimit());
+        if (query.getLimit() != null && records.size() > query.getLimit()) {
+            return new ArrayList<>(records.subList(0, query.getLimit()));
         }
-        
-        selectStatement.append(SEMICOLON);
-        try {
-            ResultSet resultSet = connection.createStatement().executeQuery(selectStatement.toString());
-            ResultSetMetaData metadata = resultSet.getMetaData();
-            while (resultSet.next()) {
-                HashMap<String, Object> databaseValues = new HashMap<>();
-                for (int i = 1; i <= metadata.getColumnCount(); i++) {
-                    String columnName = metadata.getColumnLabel(i);
-                    Object columnValue = resultSet.getObject(columnName);
-                    databaseValues.put(columnName, columnValue);
+        return records;
+    }
+
+    /**
+     * Aggregates are computed by MySQL, so an IN list is never split (the partial results could not be combined);
+     * MySQL accepts far more parameters than a split statement would hold.
+     */
+    @Override
+    public List<IRecord> execute(AggregateQuery query) throws DatabaseException {
+        return executeStatement(query, MySQLQueryCompiler.compile(query), statement -> {
+            List<IRecord> records = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                RecordSchema schema = readSchema(resultSet.getMetaData(), false);
+                while (resultSet.next()) {
+                    records.add(readRecord(resultSet, schema));
+                }
+            }
+            return records;
+        });
+    }
+
+    /**
+     * Runs a compiled select statement and reads every row of the result.
+     *
+     * @param query         The query being executed (used in error messages).
+     * @param compiledQuery The parameterized SQL and parameters for the query.
+     * @return A list of database records.
+     * @throws DatabaseException Thrown if an error occurs while executing the query.
+     */
+    private List<IRecord> executeSelect(SelectQuery query, CompiledQuery compiledQuery) throws DatabaseException {
+        return executeStatement(query, compiledQuery, statement -> {
+            List<IRecord> records = new ArrayList<>();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                RecordSchema schema = readSchema(resultSet.getMetaData(), query.hasJoins());
+                while (resultSet.next()) {
+                    records.add(readRecord(resultSet, schema));
                 }
-                IRecords.add(new Record(databaseValues));
             }
-            return IRecords;
+            return records;
+        });
+    }
+
+    /**
+     * Streams the rows of the query from MySQL one at a time instead of buffering the whole result set.
+     * The stream keeps its pooled connection until it is closed.
+     */
+    @Override
+    public Stream<IRecord> stream(SelectQuery query) throws DatabaseException {
+        // results split across several statements have to be merged in memory before they can be ordered
+        if (splitLargeInList(query.getFilters()).size() > 1) return execute(query).stream();
+        // a streaming result blocks its connection until it is closed,
+        // so inside a transaction the rows are read in full to keep the pinned connection usable
+        if (transactionConnection.get() != null) return execute(query).stream();
+        CompiledQuery compiledQuery = MySQLQueryCompiler.compile(query);
+        PooledConnection pooledConnection = pool.borrow();
+        PreparedStatement statement = null;
+        try {
+            // streaming statements are not cached because the fetch size changes how the connection is used
+            statement = pooledConnection.connection().prepareStatement(
+                    compiledQuery.sql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            // tells MySQL Connector/J to stream rows one at a time rather than reading them all into memory
+            statement.setFetchSize(Integer.MIN_VALUE);
+            bindParameters(statement, compiledQuery.parameters());
+            ResultSet resultSet = statement.executeQuery();
+            PreparedStatement streamingStatement = statement;
+            Iterator<IRecord> iterator = new ResultSetIterator(query, resultSet);
+            return StreamSupport
+                    .stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                    .onClose(() -> {
+                        closeQuietly(resultSet, streamingStatement);
+                        pool.release(pooledConnection);
+                    });
         } catch (SQLException e) {
+            closeQuietly(null, statement);
+            pool.release(pooledConnection);
             throw new DatabaseException("An error occurred while executing %s:\n%s".formatted(query, e));
         }
     }
 
+    /**
+     * Runs EXPLAIN for the query. If a large IN list would be split across statements, the plan is for the first one.
+     */
+    @Override
+    public String explain(SelectQuery query) throws DatabaseException {
+        CompiledQuery compiledQuery = MySQLQueryCompiler.compile(query, splitLargeInList(query.getFilters()).getFirst());
+        CompiledQuery explainQuery = new CompiledQuery(EXPLAIN_PREFIX + compiledQuery.sql(), compiledQuery.parameters());
+        return executeStatement(query, explainQuery, statement -> {
+            try (ResultSet resultSet = statement.executeQuery()) {
+                ResultSetMetaData metadata = resultSet.getMetaData();
+                List<String> lines = new ArrayList<>();
+                List<String> labels = new ArrayList<>();
+                for (int i = 1; i <= metadata.getColumnCount(); i++) labels.add(metadata.getColumnLabel(i));
+                lines.add(String.join(" | ", labels));
+                while (resultSet.next()) {
+                    List<String> values = new ArrayList<>();
+                    for (int i = 1; i <= metadata.getColumnCount(); i++) values.add(String.valueOf(resultSet.getObject(i)));
+                    lines.add(String.join(" | ", values));
+                }
+                return String.join("\n", lines);
+            }
+        });
+    }
+
     @Override
     public void execute(UpdateQuery query) throws DatabaseException {
-        IRecord IRecord = query.getRecord();
-        ColumnNamesAndValues columnNamesAndValues = MySQLDriver.getColumnNamesAndFormattedValues(IRecord);
-        List<String> columnNameValuePairs = new ArrayList<>();
-        List<String> columnNames = columnNamesAndValues.columnNames;
-        List<String> columnValues = columnNamesAndValues.columnValues;
-        for (int i = 0; i < columnNames.size(); i++) {
-            columnNameValuePairs.add("%s = %s".formatted(columnNames.get(i), columnValues.get(i)));
+        executeStatement(query, MySQLQueryCompiler.compile(query), PreparedStatement::executeUpdate);
+    }
+
+    @Override
+    public void execute(DeleteQuery query) throws DatabaseException {
+        for (List<QueryFilter> filters : splitLargeInList(query.getFilters())) {
+            executeStatement(query, MySQLQueryCompiler.compile(query, filters), PreparedStatement::executeUpdate);
         }
-        StringBuilder updateStatement = new StringBuilder();
-        updateStatement.append(UPDATE_STATEMENT_TEMPLATE.formatted(
-                query.getCollectionName(),
-                String.join(", ", columnNameValuePairs)
-        ));
-        updateStatement.append(WHERE_CLAUSE_TEMPLATE.formatted("id", "=", IRecord.getValue("id")));
+    }
+
+    /**
+     * Pins one pooled connection to the current thread for the duration of the callback,
+     * so every query the callback executes on this thread runs in the same transaction.
+     */
+    @Override
+    public <T> T runInTransaction(TransactionCallback<T> callback) throws DatabaseException {
+        // a nested transaction joins the outer one, which commits or rolls back everything
+        if (transactionConnection.get() != null) return callback.run(this);
+        PooledConnection pooledConnection = pool.borrow();
+        transactionConnection.set(pooledConnection);
         try {
-            connection.createStatement().execute(updateStatement.toString());
+            Connection connection = pooledConnection.connection();
+            connection.setAutoCommit(false);
+            T result;
+            try {
+                result = callback.run(this);
+                connection.commit();
+            } catch (Throwable e) {
+                // anything the callback or the commit throws (including an Error) rolls back the whole unit of work;
+                // auto-commit is only restored afterwards, since restoring it first would commit the partial work
+                rollback(connection, e);
+                restoreAutoCommit(connection, e);
+                throw e;
+            }
+            connection.setAutoCommit(true);
+            return result;
         } catch (SQLException e) {
-            throw new DatabaseException("An error occurred while executing %s:\n%s".formatted(query, e));
+            throw new DatabaseException("An error occurred while committing a transaction:\n%s".formatted(e));
+        } finally {
+            transactionConnection.remove();
+            pool.release(pooledConnection);
         }
     }
 
+    /**
+     * Reserves the ids on a connection of its own in auto-commit mode, so the reservation is committed immediately
+     * even if the calling thread is in a transaction that later rolls back.
+     * The sequence for a collection starts after the largest id already in the collection.
+     */
     @Override
-    public void execute(DeleteQuery query) throws DatabaseException {
-        String tableName = query.getCollectionName();
-        StringBuilder deleteStatement = new StringBuilder();
-        deleteStatement.append(DELETE_STATEMENT_TEMPLATE.formatted(tableName));
-        deleteStatement.append(buildWhereClause(query.getFilters()));
-        deleteStatement.append(SEMICOLON);
+    public long reserveIds(String collectionName, int count) throws DatabaseException {
+        if (count < 1) throw new IllegalArgumentException("At least 1 id must be reserved.");
+        PooledConnection pooledConnection = pool.borrow();
+        try {
+            runStatement(pooledConnection,
+                    new CompiledQuery(INITIALIZE_SEQUENCE_TEMPLATE.formatted(collectionName), List.of(collectionName)),
+                    PreparedStatement::executeUpdate);
+            runStatement(pooledConnection,
+                    new CompiledQuery(RESERVE_IDS_STATEMENT, List.of(count, collectionName)),
+                    PreparedStatement::executeUpdate);
+            // LAST_INSERT_ID is per connection, so it holds the start of the block reserved by this connection
+            return runStatement(pooledConnection, new CompiledQuery(LAST_INSERT_ID_QUERY, List.of()), statement -> {
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    return resultSet.getLong(1);
+                }
+            });
+        } catch (SQLException e) {
+            throw new DatabaseException("An error occurred while reserving %d ids for %s:\n%s"
+                    .formatted(count, collectionName, e));
+        } finally {
+            pool.release(pooledConnection);
+        }
+    }
+
+    /**
+     * Schema changes use their own connection, since MySQL would commit the current transaction before running them.
+     * They are not prepared, so they never take a slot in a connection's statement cache.
+     */
+    @Override
+    public void executeSchemaChange(String statement) throws DatabaseException {
+        PooledConnection pooledConnection = pool.borrow();
+        try (Statement schemaChange = pooledConnection.connection().createStatement()) {
+            schemaChange.execute(statement);
+        } catch (SQLException e) {
+            throw new DatabaseException("An error occurred while executing %s:\n%s".formatted(statement, e));
+        } finally {
+            pool.release(pooledConnection);
+        }
+    }
+
+    /**
+     * Asks the server once whether it accepts LOAD DATA LOCAL; a server that cannot be asked is treated as not.
+     */
+    @Override
+    public boolean isBulkLoadAvailable() {
+        if (bulkLoadAvailable != null) return bulkLoadAvailable;
+        try {
+            PooledConnection pooledConnection = pool.borrow();
+            try (Statement statement = pooledConnection.connection().createStatement();
+                 ResultSet resultSet = statement.executeQuery(LOCAL_INFILE_QUERY)) {
+                bulkLoadAvailable = resultSet.next() && resultSet.getBoolean(1);
+            } finally {
+                pool.release(pooledConnection);
+            }
+        } catch (DatabaseException | SQLException e) {
+            bulkLoadAvailable = false;
+        }
+        return bulkLoadAvailable;
+    }
+
+    /**
+     * Streams the records with LOAD DATA LOCAL on a connection of its own, committed once every row is loaded.
+     * LOAD DATA LOCAL turns rejected rows into warnings, so any warning rolls the load back.
+     * The load is outside any transaction the calling thread is in.
+     */
+    @Override
+    public long bulkLoad(String collectionName, List<String> columnNames, Iterable<? extends IRecord> records)
+            throws DatabaseException {
+        String statementText = LOAD_DATA_TEMPLATE.formatted(collectionName, String.join(", ", columnNames));
+        LoadDataInputStream rows = new LoadDataInputStream(records.iterator(), columnNames);
+        try (Connection connection = DriverManager.getConnection(connectionString + ALLOW_LOCAL_INFILE_OPTION);
+             Statement statement = connection.createStatement()) {
+            connection.setAutoCommit(false);
+            try {
+                statement.unwrap(JdbcStatement.class).setLocalInfileInputStream(rows);
+                long loaded = statement.executeLargeUpdate(statementText);
+                SQLWarning warning = statement.getWarnings();
+                if (warning != null) throw new SQLException("A row was rejected: " + warning.getMessage(), warning);
+                connection.commit();
+                return loaded;
+            } catch (SQLException | RuntimeException e) {
+                rollback(connection, e);
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException("An error occurred while loading %s (after %d rows):\n%s"
+                    .formatted(collectionName, rows.getRowCount(), e));
+        }
+    }
+
+    /**
+     * Rolls back the current transaction of a connection after a failure.
+     * If the rollback also fails, its error is attached to the original failure rather than replacing it.
+     *
+     * @param connection The connection to roll back.
+     * @param failure    The failure that caused the rollback.
+     */
+    private static void rollback(Connection connection, Throwable failure) {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Puts a connection back in auto-commit mode after its transaction was rolled back.
+     * If that fails, its error is attached to the original failure rather than replacing it.
+     *
+     * @param connection The connection to restore.
+     * @param failure    The failure that caused the rollback.
+     */
+    private static void restoreAutoCommit(Connection connection, Throwable failure) {
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Closes every connection in the pool. The driver cannot be used afterwards.
+     */
+    public void close() {
+        pool.close();
+    }
+
+    /**
+     * @return The pool of connections used by the driver.
+     */
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * @return Hit and miss counts for the prepared statement caches of every pooled connection.
+     */
+    public StatementCacheStatistics getStatementCacheStatistics() {
+        return pool.getStatementCacheStatistics();
+    }
+
+    /**
+     * Borrows a connection from the pool (or uses the connection of the current transaction),
+     * prepares (or reuses) the statement for the compiled query, binds its parameters and performs the callback with it.
+     *
+     * @param query         The query being executed (used in error messages).
+     * @param compiledQuery The parameterized SQL and parameters for the query.
+     * @param callback      The work to perform with the prepared statement.
+     * @param <T>           The type of the result.
+     * @return The result of the callback.
+     * @throws DatabaseException Thrown if no connection is available or an error occurs while executing the query.
+     */
+    private <T> T executeStatement(Query query, CompiledQuery compiledQuery, StatementCallback<T> callback)
+            throws DatabaseException {
+        PooledConnection transaction = transactionConnection.get();
+        PooledConnection pooledConnection = transaction != null ? transaction : pool.borrow();
         try {
-            connection.createStatement().execute(deleteStatement.toString());
+            return runStatement(pooledConnection, compiledQuery, callback);
         } catch (SQLException e) {
             throw new DatabaseException("An error occurred while executing %s:\n%s".formatted(query, e));
+        } finally {
+            // the transaction's connection is released when the transaction ends
+            if (transaction == null) pool.release(pooledConnection);
+        }
+    }
+
+    /**
+     * Prepares (or reuses) the statement for the compiled query on a connection the caller already borrowed,
+     * binds its parameters and performs the callback with it.
+     *
+     * @param pooledConnection The connection to execute the statement on.
+     * @param compiledQuery    The parameterized SQL and parameters for the query.
+     * @param callback         The work to perform with the prepared statement.
+     * @param <T>              The type of the result.
+     * @return The result of the callback.
+     * @throws SQLException Thrown if an error occurs while executing the statement.
+     */
+    private static <T> T runStatement(
+            PooledConnection pooledConnection,
+            CompiledQuery compiledQuery,
+            StatementCallback<T> callback
+    ) throws SQLException {
+        PreparedStatement statement = pooledConnection.prepare(compiledQuery.sql(), compiledQuery.returnGeneratedKeys());
+        try {
+            bindParameters(statement, compiledQuery.parameters());
+            return callback.apply(statement);
+        } finally {
+            if (!pooledConnection.cachesStatements()) statement.close();
         }
     }
 
     /**
-     * Builds a String representation of the WHERE / AND clauses given the filters.
+     * Splits the largest IN filter with more values than fit in one statement into several lists of filters,
+     * each containing one chunk of the values. Running a query once per list and combining the results
+     * is equivalent to running it with the original filters, as each value appears in only one chunk.
+     * NOT IN lists are never split because every value must be excluded by the same statement.
      *
-     * @param filters The filters applied to the query.
-     * @return A String representation of the WHERE / AND clauses.
+     * @param filters The filters of the query.
+     * @return The lists of filters to run the query with (just the original filters if nothing needs splitting).
      */
-    private String buildWhereClause(List<QueryFilter> filters) {
-        StringBuilder whereClause = new StringBuilder();
+    private static List<List<QueryFilter>> splitLargeInList(List<QueryFilter> filters) {
+        int largestIndex = -1;
+        int largestSize = MySQLQueryCompiler.MAX_IN_LIST_SIZE;
         for (int i = 0; i < filters.size(); i++) {
             QueryFilter filter = filters.get(i);
-            String template = i == 0 ? WHERE_CLAUSE_TEMPLATE : AND_CLAUSE_TEMPLATE;
-            String operator = comparisonOperatorToString(filter.comparison());
-            String value;
-            
-            // Handle FUZZY_SEARCH specially to wrap value with %
-            if (filter.comparison() == Comparison.FUZZY_SEARCH) {
-                value = "'%" + filter.value() + "%'";
-            } else {
-                value = formatSQLValue(filter.value());
+            if (filter.comparison() == Comparison.IN && ((Collection<?>) filter.value()).size() > largestSize) {
+                largestIndex = i;
+                largestSize = ((Collection<?>) filter.value()).size();
             }
-            
-            whereClause.append(template.formatted(
-                    filter.field(),
-                    operator,
-                    value
-            ));
         }
-        return whereClause.toString();
+        if (largestIndex == -1) return List.of(filters);
+        QueryFilter largest = filters.get(largestIndex);
+        // a value repeated in two chunks would return its rows twice
+        List<?> values = List.copyOf(new LinkedHashSet<>((Collection<?>) largest.value()));
+        List<List<QueryFilter>> chunks = new ArrayList<>();
+        for (int start = 0; start < values.size(); start += MySQLQueryCompiler.MAX_IN_LIST_SIZE) {
+            List<?> chunk = values.subList(start, Math.min(start + MySQLQueryCompiler.MAX_IN_LIST_SIZE, values.size()));
+            List<QueryFilter> chunkFilters = new ArrayList<>(filters);
+            chunkFilters.set(largestIndex, new QueryFilter(largest.field(), Comparison.IN, chunk));
+            chunks.add(chunkFilters);
+        }
+        return chunks;
+    }
+
+    /**
+     * @param value A value read from the database.
+     * @return The value as a Comparable, so records can be sorted by it.
+     */
+    @SuppressWarnings("unchecked")
+    private static Comparable<Object> asComparable(Object value) {
+        return (Comparable<Object>) value;
     }
 
     /**
-     * @param IRecord The column names and their corresponding values formatted correctly to be executed in MySQL.
-     * @return a list of columns and their corresponding values formatted correctly to be executed in MySQL.
+     * Reads the field names of a result set once, so they can be shared by every row read from it.
+     *
+     * @param metadata  The metadata describing the columns of the result set.
+     * @param qualified True if field names should be qualified with their collection name (for join queries).
+     * @return The schema for the rows of the result set.
+     * @throws SQLException Thrown if the metadata cannot be read.
      */
-    private static ColumnNamesAndValues getColumnNamesAndFormattedValues(IRecord IRecord) {
-        List<String> formattedColumns = new ArrayList<>();
-        List<String> formattedValues = new ArrayList<>();
-        for (String columnName : IRecord.fieldNames()) {
-            formattedColumns.add(columnName);
-            formattedValues.add(formatSQLValue(IRecord.getValue(columnName)));
+    private static RecordSchema readSchema(ResultSetMetaData metadata, boolean qualified) throws SQLException {
+        List<String> fieldNames = new ArrayList<>(metadata.getColumnCount());
+        for (int i = 1; i <= metadata.getColumnCount(); i++) {
+            String columnName = metadata.getColumnLabel(i);
+            // computed columns do not belong to a collection, so they keep their plain label
+            if (qualified && !metadata.getTableName(i).isEmpty()) {
+                columnName = metadata.getTableName(i) + "." + columnName;
+            }
+            fieldNames.add(columnName);
         }
-        return new ColumnNamesAndValues(formattedColumns, formattedValues);
+        return new RecordSchema(fieldNames);
     }
 
     /**
-     * Formats an object as a String, so it can be used in a MySQL query.
-     * ex. String values need to wrapped in single quotes.
+     * Reads the current row of a result set into a record.
+     * Columns are read by position, since the same column name can appear in several joined collections.
      *
-     * @param value The value to format.
-     * @return The object formatted as a String, so it can be used in a MySQL query.
+     * @param resultSet The result set positioned on the row to read.
+     * @param schema    The schema of the result set.
+     * @return The record for the current row.
+     * @throws SQLException Thrown if the row cannot be read.
      */
-    private static String formatSQLValue(Object value) {
-       if (value instanceof String || value instanceof java.sql.Date || value instanceof java.sql.Timestamp) {
-         return "'%s'".formatted(value);
-       }
-        
-        return value.toString();
+    private static IRecord readRecord(ResultSet resultSet, RecordSchema schema) throws SQLException {
+        Object[] values = new Object[schema.size()];
+        for (int i = 0; i < values.length; i++) values[i] = resultSet.getObject(i + 1);
+        return new RowRecord(schema, values);
     }
 
     /**
-     * Gets a String representation of a comparison operator to insert into queries.
+     * Closes a result set and statement, ignoring errors since the resources are being discarded.
      *
-     * @param operator The comparison operator to get a String representation of.
-     * @return The String representation of the comparison operator.
+     * @param resultSet The result set to close (may be null).
+     * @param statement The statement to close (may be null).
      */
-    private String comparisonOperatorToString(Comparison operator) {
-        switch (operator) {
-            case EQUAL -> {
-                return "=";
-            }
-            case NOT_EQUAL -> {
-                return "!=";
-            }
-            case GREATER_THAN -> {
-                return ">";
-            }
-            case LESS_THAN -> {
-                return "<";
-            }
-            case GREATER_EQUAL -> {
-                return ">=";
-            }
-            case LESS_EQUAL -> {
-                return "<=";
-            }
-            case FUZZY_SEARCH -> {
-                return "LIKE";
-            }
-            default -> {
-                throw new RuntimeException("This operator is not supported by the MySQL driver.");
+    private static void closeQuietly(ResultSet resultSet, PreparedStatement statement) {
+        try {
+            if (resultSet != null) resultSet.close();
+        } catch (SQLException e) {
+            // the result set is being discarded, so there is nothing left to clean up
+        }
+        try {
+            if (statement != null) statement.close();
+        } catch (SQLException e) {
+            // the statement is being discarded, so there is nothing left to clean up
+        }
+    }
+
+    /**
+     * Adapts a result set to an iterator of records, reading one row ahead to answer hasNext.
+     */
+    private static class ResultSetIterator implements Iterator<IRecord> {
+        /**
+         * The query that produced the result set (used in error messages).
+         */
+        private final SelectQuery query;
+        /**
+         * The result set to read rows from.
+         */
+        private final ResultSet resultSet;
+        /**
+         * The schema shared by every row, read along with the first row.
+         */
+        private RecordSchema schema;
+        /**
+         * The next record to return, or null if it has not been read yet.
+         */
+        private IRecord next;
+        /**
+         * True once the last row has been read.
+         */
+        private boolean exhausted;
+
+        /**
+         * @param query     The query that produced the result set.
+         * @param resultSet The result set to read rows from.
+         */
+        private ResultSetIterator(SelectQuery query, ResultSet resultSet) {
+            this.query = query;
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) return true;
+            if (exhausted) return false;
+            try {
+                if (resultSet.next()) {
+                    if (schema == null) schema = readSchema(resultSet.getMetaData(), query.hasJoins());
+                    next = readRecord(resultSet, schema);
+                    return true;
+                }
+                exhausted = true;
+                return false;
+            } catch (SQLException e) {
+                throw new UncheckedDatabaseException(new DatabaseException(
+                        "An error occurred while reading the results of %s:\n%s".formatted(query, e)));
             }
         }
+
+        @Override
+        public IRecord next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            IRecord record = next;
+            next = null;
+            return record;
+        }
+    }
+
+    /**
+     * Binds the parameters to the placeholders of a prepared statement, in order.
+     *
+     * @param statement  The statement to bind the parameters to.
+     * @param parameters The values to bind.
+     * @throws SQLException Thrown if a value cannot be bound.
+     */
+    private static void bindParameters(PreparedStatement statement, List<Object> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            statement.setObject(i + 1, parameters.get(i));
+        }
     }
 
     @Override
@@ -333,5 +854,8 @@ public class MySQLDriver implements IDatabaseDriver {
                 "Number of students after inserting record: %d%n",
                 driver.execute(new SelectQuery(studentsTable)).size()
         );
+
+        // the SELECT statements above share one shape, so later executions reuse the prepared statement
+        System.out.println(((MySQLDriver) driver).getStatementCacheStatistics());
     }
 }
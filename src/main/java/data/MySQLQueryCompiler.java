@@ -0,0 +1,361 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compiles queries into parameterized MySQL statements.
+ * Values are never inlined into the SQL text; they are returned as parameters to bind to a prepared statement.
+ */
+class MySQLQueryCompiler {
+    /**
+     * Template for INSERT statements.
+     */
+    private static final String INSERT_STATEMENT_TEMPLATE = "INSERT INTO %s (%s) VALUES (%s)";
+    /**
+     * Suffix making an INSERT an upsert. The inserted row is named with an alias (MySQL 8.0.19+),
+     * since referring to it with VALUES() is deprecated.
+     */
+    private static final String ON_DUPLICATE_KEY_UPDATE_TEMPLATE = " AS new_row ON DUPLICATE KEY UPDATE %s";
+    /**
+     * Template for setting a column to its value in the inserted row of an upsert.
+     */
+    private static final String UPSERT_ASSIGNMENT_TEMPLATE = "%1$s = new_row.%1$s";
+    /**
+     * Template for SELECT statements.
+     */
+    private static final String SELECT_STATEMENT_TEMPLATE = "SELECT %s FROM %s";
+    /**
+     * Template for the JOIN clause of SELECT statements.
+     */
+    private static final String JOIN_CLAUSE_TEMPLATE = " %s JOIN %s ON %s = %s";
+    /**
+     * Template for UPDATE statements.
+     */
+    private static final String UPDATE_STATEMENT_TEMPLATE = "UPDATE %s SET %s WHERE id = ?";
+    /**
+     * Template for DELETE statements.
+     */
+    private static final String DELETE_STATEMENT_TEMPLATE = "DELETE FROM %s";
+    /**
+     * Template for a condition comparing a field to a single parameter.
+     */
+    private static final String CONDITION_TEMPLATE = "%s %s ?";
+    /**
+     * Template for a condition comparing a field to a list of parameters.
+     */
+    private static final String LIST_CONDITION_TEMPLATE = "%s %s (%s)";
+    /**
+     * Template for a grouping or aggregate named by its alias.
+     */
+    private static final String ALIAS_TEMPLATE = "%s AS %s";
+    /**
+     * Template for the condition selecting the records after a page position, ordered by a sort and key column.
+     * ex. created_on <= ? AND (created_on < ? OR id < ?)
+     */
+    private static final String KEYSET_CONDITION_TEMPLATE = "%s %s= ? AND (%s %s ? OR %s %s ?)";
+    /**
+     * The most values allowed in a single IN list. Larger lists must be split by the caller.
+     */
+    static final int MAX_IN_LIST_SIZE = 1024;
+
+    /**
+     * Prevent instantiation since the class only contains static helpers.
+     */
+    private MySQLQueryCompiler() {
+    }
+
+    /**
+     * @param query The query to compile.
+     * @return The parameterized INSERT statement.
+     */
+    static CompiledQuery compile(InsertQuery query) {
+        IRecord record = query.getRecord();
+        List<String> columnNames = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        List<Object> parameters = new ArrayList<>();
+        for (String columnName : record.fieldNames()) {
+            columnNames.add(columnName);
+            placeholders.add("?");
+            parameters.add(record.getValue(columnName));
+        }
+        String sql = INSERT_STATEMENT_TEMPLATE.formatted(
+                query.getCollectionName(),
+                String.join(", ", columnNames),
+                String.join(", ", placeholders)
+        );
+        return new CompiledQuery(sql, parameters, query.isReturningGeneratedKeys());
+    }
+
+    /**
+     * Compiles one group of rows from a batch insert into a multi-row INSERT statement.
+     * Groups with the same number of rows compile to the same SQL text.
+     *
+     * @param query       The batch the rows belong to.
+     * @param columnNames The columns to insert (shared by every record in the batch).
+     * @param rows        The records to insert in this statement.
+     * @return The parameterized multi-row INSERT statement.
+     */
+    static CompiledQuery compile(InsertBatchQuery query, List<String> columnNames, List<IRecord> rows) {
+        String rowPlaceholders = String.join(", ", Collections.nCopies(columnNames.size(), "?"));
+        List<Object> parameters = new ArrayList<>(columnNames.size() * rows.size());
+        for (IRecord row : rows) {
+            for (String columnName : columnNames) parameters.add(row.getValue(columnName));
+        }
+        // the template wraps the outermost parentheses, so rows are joined with the parentheses between them
+        String sql = INSERT_STATEMENT_TEMPLATE.formatted(
+                query.getCollectionName(),
+                String.join(", ", columnNames),
+                String.join("), (", Collections.nCopies(rows.size(), rowPlaceholders))
+        );
+        if (query.isUpdatingOnDuplicateKey()) {
+            List<String> assignments = columnNames.stream().map(UPSERT_ASSIGNMENT_TEMPLATE::formatted).toList();
+            sql += ON_DUPLICATE_KEY_UPDATE_TEMPLATE.formatted(String.join(", ", assignments));
+        }
+        return new CompiledQuery(sql, parameters, query.isReturningGeneratedKeys());
+    }
+
+    /**
+     * @param query The query to compile.
+     * @return The parameterized SELECT statement.
+     */
+    static CompiledQuery compile(SelectQuery query) {
+        return compile(query, query.getFilters());
+    }
+
+    /**
+     * Compiles a select query using a different set of filters,
+     * which lets the driver split a large IN list across several statements.
+     *
+     * @param query   The query to compile.
+     * @param filters The filters to use instead of the query's own filters.
+     * @return The parameterized SELECT statement.
+     */
+    static CompiledQuery compile(SelectQuery query, List<QueryFilter> filters) {
+        List<Object> parameters = new ArrayList<>();
+        String columns = query.getColumns().isEmpty() ? "*" : String.join(", ", query.getColumns());
+        StringBuilder sql = new StringBuilder(SELECT_STATEMENT_TEMPLATE.formatted(columns, query.getCollectionName()));
+        for (QueryJoin join : query.getJoins()) {
+            sql.append(JOIN_CLAUSE_TEMPLATE.formatted(
+                    join.type() == JoinType.LEFT ? "LEFT" : "INNER",
+                    join.collectionName(),
+                    join.leftField(),
+                    join.rightField()
+            ));
+        }
+        String where = buildWhereClause(filters, parameters);
+        if (query.getAfter() != null) {
+            String keyset = buildKeysetCondition(query.getAfter(), query.getSortOrder(), parameters);
+            where = where.isEmpty() ? " WHERE " + keyset : where + " AND " + keyset;
+        }
+        sql.append(where);
+        if (query.getSortColumn() != null) {
+            String direction = query.getSortOrder() == null ? ""
+                    : query.getSortOrder() == SortOrder.ASCENDING ? " ASC" : " DESC";
+            sql.append(" ORDER BY ").append(query.getSortColumn()).append(direction);
+            if (query.getKeyColumn() != null) sql.append(", ").append(query.getKeyColumn()).append(direction);
+        }
+        if (query.getLimit() != null) {
+            sql.append(" LIMIT ?");
+            parameters.add(query.getLimit());
+        }
+        return new CompiledQuery(sql.toString(), parameters);
+    }
+
+    /**
+     * @param query The query to compile.
+     * @return The parameterized SELECT ... GROUP BY statement, naming each grouping and aggregate by its alias.
+     */
+    static CompiledQuery compile(AggregateQuery query) {
+        List<Object> parameters = new ArrayList<>();
+        List<String> groupExpressions = new ArrayList<>();
+        List<String> selections = new ArrayList<>();
+        for (QueryGrouping grouping : query.getGroupings()) {
+            String expression = grouping.function() == GroupingFunction.DATE
+                    ? "DATE(%s)".formatted(grouping.field())
+                    : grouping.field();
+            groupExpressions.add(expression);
+            selections.add(ALIAS_TEMPLATE.formatted(expression, grouping.alias()));
+        }
+        for (QueryAggregate aggregate : query.getAggregates()) {
+            String expression = switch (aggregate.function()) {
+                case COUNT -> "COUNT(%s)".formatted(aggregate.field() == null ? "*" : aggregate.field());
+                case COUNT_DISTINCT -> "COUNT(DISTINCT %s)".formatted(aggregate.field());
+                case SUM -> "SUM(%s)".formatted(aggregate.field());
+                case MIN -> "MIN(%s)".formatted(aggregate.field());
+                case MAX -> "MAX(%s)".formatted(aggregate.field());
+            };
+            selections.add(ALIAS_TEMPLATE.formatted(expression, aggregate.alias()));
+        }
+        StringBuilder sql = new StringBuilder(SELECT_STATEMENT_TEMPLATE.formatted(
+                String.join(", ", selections), query.getCollectionName()));
+        sql.append(buildWhereClause(query.getFilters(), parameters));
+        if (!groupExpressions.isEmpty()) sql.append(" GROUP BY ").append(String.join(", ", groupExpressions));
+        if (query.getSortColumn() != null) {
+            sql.append(" ORDER BY ").append(query.getSortColumn());
+            if (query.getSortOrder() != null) {
+                sql.append(" ").append(query.getSortOrder() == SortOrder.ASCENDING ? "ASC" : "DESC");
+            }
+        }
+        if (query.getLimit() != null) {
+            sql.append(" LIMIT ?");
+            parameters.add(query.getLimit());
+        }
+        return new CompiledQuery(sql.toString(), parameters);
+    }
+
+    /**
+     * @param query The query to compile.
+     * @return The parameterized UPDATE statement, matching the record to update by its id.
+     */
+    static CompiledQuery compile(UpdateQuery query) {
+        IRecord record = query.getRecord();
+        List<String> assignments = new ArrayList<>();
+        List<Object> parameters = new ArrayList<>();
+        for (String columnName : record.fieldNames()) {
+            assignments.add("%s = ?".formatted(columnName));
+            parameters.add(record.getValue(columnName));
+        }
+        parameters.add(record.getValue("id"));
+        String sql = UPDATE_STATEMENT_TEMPLATE.formatted(query.getCollectionName(), String.join(", ", assignments));
+        return new CompiledQuery(sql, parameters);
+    }
+
+    /**
+     * @param query The query to compile.
+     * @return The parameterized DELETE statement.
+     */
+    static CompiledQuery compile(DeleteQuery query) {
+        return compile(query, query.getFilters());
+    }
+
+    /**
+     * Compiles a delete query using a different set of filters,
+     * which lets the driver split a large IN list across several statements.
+     *
+     * @param query   The query to compile.
+     * @param filters The filters to use instead of the query's own filters.
+     * @return The parameterized DELETE statement.
+     */
+    static CompiledQuery compile(DeleteQuery query, List<QueryFilter> filters) {
+        List<Object> parameters = new ArrayList<>();
+        String sql = DELETE_STATEMENT_TEMPLATE.formatted(query.getCollectionName())
+                + buildWhereClause(filters, parameters);
+        return new CompiledQuery(sql, parameters);
+    }
+
+    /**
+     * Builds the WHERE / AND clauses given the filters, adding the value of each filter to the parameters.
+     *
+     * @param filters    The filters applied to the query.
+     * @param parameters The list to add the parameters for the clauses to.
+     * @return A String representation of the WHERE / AND clauses.
+     */
+    private static String buildWhereClause(List<QueryFilter> filters, List<Object> parameters) {
+        if (filters.isEmpty()) return "";
+        List<String> conditions = new ArrayList<>();
+        for (QueryFilter filter : filters) {
+            String operator = comparisonOperatorToString(filter.comparison());
+            if (filter.hasCollectionValue()) {
+                conditions.add(buildListCondition(filter, operator, parameters));
+            } else {
+                conditions.add(CONDITION_TEMPLATE.formatted(filter.field(), operator));
+                // FUZZY_SEARCH matches the value anywhere in the field
+                parameters.add(filter.comparison() == Comparison.FUZZY_SEARCH
+                        ? "%" + filter.value() + "%"
+                        : filter.value());
+            }
+        }
+        return " WHERE " + String.join(" AND ", conditions);
+    }
+
+    /**
+     * Builds the condition selecting the records after a page position, adding its values to the parameters.
+     * With a key column, the condition is written as "sort >= ? AND (sort > ? OR key > ?)" rather than
+     * "sort > ? OR (sort = ? AND key > ?)", so MySQL can seek an index on the sort column to the first record.
+     *
+     * @param after      The position to start after.
+     * @param sortOrder  The order the results are sorted in (ascending if null).
+     * @param parameters The list to add the parameters for the condition to.
+     * @return The condition.
+     */
+    private static String buildKeysetCondition(PageToken after, SortOrder sortOrder, List<Object> parameters) {
+        boolean descending = sortOrder == SortOrder.DESCENDING;
+        String operator = descending ? "<" : ">";
+        if (after.keyColumn() == null) {
+            parameters.add(after.sortValue());
+            return CONDITION_TEMPLATE.formatted(after.sortColumn(), operator);
+        }
+        parameters.add(after.sortValue());
+        parameters.add(after.sortValue());
+        parameters.add(after.keyValue());
+        return KEYSET_CONDITION_TEMPLATE.formatted(
+                after.sortColumn(), operator, after.sortColumn(), operator, after.keyColumn(), operator);
+    }
+
+    /**
+     * Builds an IN / NOT IN condition, adding the values to the parameters.
+     * The list is padded to the next power of two by repeating its last value (which does not change the result),
+     * so lists of similar sizes share a statement shape and reuse the same prepared statement.
+     *
+     * @param filter     The filter with a collection value.
+     * @param operator   The SQL operator for the filter.
+     * @param parameters The list to add the parameters for the condition to.
+     * @return The condition.
+     */
+    private static String buildListCondition(QueryFilter filter, String operator, List<Object> parameters) {
+        List<?> values = List.copyOf((Collection<?>) filter.value());
+        if (values.isEmpty()) {
+            // nothing is IN an empty list and everything is NOT IN it
+            return filter.comparison() == Comparison.IN ? "1 = 0" : "1 = 1";
+        }
+        int paddedSize = Math.max(values.size(), Integer.highestOneBit(values.size() - 1) << 1);
+        parameters.addAll(values);
+        for (int i = values.size(); i < paddedSize; i++) parameters.add(values.getLast());
+        return LIST_CONDITION_TEMPLATE.formatted(
+                filter.field(), operator, String.join(", ", Collections.nCopies(paddedSize, "?")));
+    }
+
+    /**
+     * Gets a String representation of a comparison operator to insert into queries.
+     *
+     * @param operator The comparison operator to get a String representation of.
+     * @return The String representation of the comparison operator.
+     */
+    private static String comparisonOperatorToString(Comparison operator) {
+        switch (operator) {
+            case EQUAL -> {
+                return "=";
+            }
+            case NOT_EQUAL -> {
+                return "!=";
+            }
+            case GREATER_THAN -> {
+                return ">";
+            }
+            case LESS_THAN -> {
+                return "<";
+            }
+            case GREATER_EQUAL -> {
+                return ">=";
+            }
+            case LESS_EQUAL -> {
+                return "<=";
+            }
+            case FUZZY_SEARCH -> {
+                return "LIKE";
+            }
+            case IN -> {
+                return "IN";
+            }
+            case NOT_IN -> {
+                return "NOT IN";
+            }
+            default -> {
+                throw new RuntimeException("This operator is not supported by the MySQL driver.");
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package data;
+
+import java.util.List;
+
+/**
+ * One page of the records of a query, read with {@link IDatabaseDriver#page(SelectQuery, int)}.
+ *
+ * @param records       The records on the page, in sort order.
+ * @param nextPageToken The token to pass to {@link SelectQuery#after(String)} to read the next page,
+ *                      or null if this is the last page.
+ */
+public record Page(
+        List<IRecord> records,
+        String nextPageToken
+) {
+    /**
+     * @return True if there are more records after this page.
+     */
+    public boolean hasNextPage() {
+        return nextPageToken != null;
+    }
+}
@@ -0,0 +1,150 @@
+package data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * The position of the last record of a page, which the next page starts after.
+ * Tokens are passed to callers as opaque strings (see {@link #encode()}) and given back to
+ * {@link SelectQuery#after(String)} to read the next page.
+ *
+ * @param sortColumn The column the pages are sorted by.
+ * @param sortValue  The value of the sort column in the last record of the page.
+ * @param keyColumn  The unique column ordering records with the same sort value, or null if there is none.
+ * @param keyValue   The value of the key column in the last record of the page.
+ */
+public record PageToken(
+        String sortColumn,
+        Object sortValue,
+        String keyColumn,
+        Object keyValue
+) {
+    /**
+     * The version of the encoding, so tokens from an older format are rejected instead of misread.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    public PageToken {
+        if (sortColumn == null) throw new IllegalArgumentException("A page token needs a sort column.");
+        if (sortValue == null) {
+            throw new IllegalArgumentException("Records with a null %s cannot be paged past.".formatted(sortColumn));
+        }
+        if (keyColumn != null && keyValue == null) {
+            throw new IllegalArgumentException("Records with a null %s cannot be paged past.".formatted(keyColumn));
+        }
+    }
+
+    /**
+     * @return The token as a URL safe string.
+     */
+    public String encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(FORMAT_VERSION);
+            out.writeUTF(sortColumn);
+            writeValue(out, sortValue);
+            out.writeBoolean(keyColumn != null);
+            if (keyColumn != null) {
+                out.writeUTF(keyColumn);
+                writeValue(out, keyValue);
+            }
+        } catch (IOException e) {
+            // writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * @param token A token returned by {@link #encode()}.
+     * @return The position the token was encoded from.
+     * @throws IllegalArgumentException Thrown if the string is not a page token.
+     */
+    public static PageToken decode(String token) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(token)))) {
+            if (in.readByte() != FORMAT_VERSION) throw new IllegalArgumentException("Unsupported page token: " + token);
+            String sortColumn = in.readUTF();
+            Object sortValue = readValue(in);
+            if (!in.readBoolean()) return new PageToken(sortColumn, sortValue, null, null);
+            return new PageToken(sortColumn, sortValue, in.readUTF(), readValue(in));
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page token: " + token, e);
+        }
+    }
+
+    /**
+     * Writes a value with its type, so it is read back as the same type and compares the same way.
+     */
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        switch (value) {
+            case Integer integer -> {
+                out.writeChar('I');
+                out.writeInt(integer);
+            }
+            case Long number -> {
+                out.writeChar('J');
+                out.writeLong(number);
+            }
+            case Float number -> {
+                out.writeChar('F');
+                out.writeFloat(number);
+            }
+            case Double number -> {
+                out.writeChar('D');
+                out.writeDouble(number);
+            }
+            case BigDecimal number -> {
+                out.writeChar('N');
+                out.writeUTF(number.toString());
+            }
+            case String text -> {
+                out.writeChar('S');
+                out.writeUTF(text);
+            }
+            case java.sql.Date date -> {
+                out.writeChar('d');
+                out.writeUTF(date.toString());
+            }
+            case LocalDate date -> {
+                out.writeChar('L');
+                out.writeUTF(date.toString());
+            }
+            case LocalDateTime dateTime -> {
+                out.writeChar('T');
+                out.writeUTF(dateTime.toString());
+            }
+            case java.sql.Timestamp timestamp -> {
+                out.writeChar('T');
+                out.writeUTF(timestamp.toLocalDateTime().toString());
+            }
+            default -> throw new IllegalArgumentException(
+                    "Cannot page by a value of type " + value.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Reads a value written by {@link #writeValue(DataOutputStream, Object)}.
+     */
+    private static Object readValue(DataInputStream in) throws IOException {
+        char type = in.readChar();
+        return switch (type) {
+            case 'I' -> in.readInt();
+            case 'J' -> in.readLong();
+            case 'F' -> in.readFloat();
+            case 'D' -> in.readDouble();
+            case 'N' -> new BigDecimal(in.readUTF());
+            case 'S' -> in.readUTF();
+            case 'd' -> java.sql.Date.valueOf(in.readUTF());
+            case 'L' -> LocalDate.parse(in.readUTF());
+            case 'T' -> LocalDateTime.parse(in.readUTF());
+            default -> throw new IllegalArgumentException("Unknown value type " + type);
+        };
+    }
+}
@@ -0,0 +1,165 @@
+package data;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A database connection managed by a {@link ConnectionPool}.
+ * Tracks when the connection was last used so idle connections can be evicted,
+ * and keeps a least-recently-used cache of prepared statements keyed by their SQL text.
+ * A pooled connection is only ever used by one thread at a time, so the cache does not need to be synchronized.
+ */
+class PooledConnection {
+    /**
+     * Prefixed to the cache key of statements prepared to return generated keys.
+     */
+    private static final String GENERATED_KEYS_CACHE_PREFIX = "/* generated keys */ ";
+
+    /**
+     * The underlying jdbc connection.
+     */
+    private final Connection connection;
+    /**
+     * The time (in milliseconds since the epoch) the connection was last returned to the pool.
+     */
+    private long lastUsedAt;
+    /**
+     * Prepared statements for this connection keyed by their SQL text, least recently used first.
+     */
+    private final Map<String, PreparedStatement> statementCache;
+    /**
+     * The maximum number of prepared statements to keep open for this connection.
+     */
+    private final int statementCacheSize;
+    /**
+     * Statistics shared by every connection in the pool.
+     */
+    private final StatementCacheStatistics statistics;
+
+    /**
+     * @param connection         The underlying jdbc connection.
+     * @param statementCacheSize The maximum number of prepared statements to keep open for this connection.
+     * @param statistics         Statistics shared by every connection in the pool.
+     */
+    PooledConnection(Connection connection, int statementCacheSize, StatementCacheStatistics statistics) {
+        this.connection = connection;
+        this.lastUsedAt = System.currentTimeMillis();
+        this.statementCacheSize = statementCacheSize;
+        this.statistics = statistics;
+        statementCache = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @return The underlying jdbc connection.
+     */
+    Connection connection() {
+        return connection;
+    }
+
+    /**
+     * Returns a prepared statement for the SQL text, reusing a cached one if this connection already prepared it.
+     * Cached statements must not be closed by the caller.
+     *
+     * @param sql The parameterized SQL text.
+     * @return A prepared statement for the SQL text.
+     * @throws SQLException Thrown if the statement cannot be prepared.
+     */
+    PreparedStatement prepare(String sql) throws SQLException {
+        return prepare(sql, false);
+    }
+
+    /**
+     * Returns a prepared statement for the SQL text, reusing a cached one if this connection already prepared it.
+     * Cached statements must not be closed by the caller.
+     *
+     * @param sql                 The parameterized SQL text.
+     * @param returnGeneratedKeys True if the keys generated by the statement must be readable after it runs.
+     * @return A prepared statement for the SQL text.
+     * @throws SQLException Thrown if the statement cannot be prepared.
+     */
+    PreparedStatement prepare(String sql, boolean returnGeneratedKeys) throws SQLException {
+        // statements that return generated keys are prepared differently, so they are cached separately
+        String cacheKey = returnGeneratedKeys ? GENERATED_KEYS_CACHE_PREFIX + sql : sql;
+        PreparedStatement statement = statementCache.get(cacheKey);
+        if (statement != null && !statement.isClosed()) {
+            statistics.recordHit();
+            statement.clearParameters();
+            return statement;
+        }
+        statistics.recordMiss();
+        statement = returnGeneratedKeys
+                ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                : connection.prepareStatement(sql);
+        if (statementCacheSize > 0) {
+            statementCache.put(cacheKey, statement);
+            evictLeastRecentlyUsedStatements();
+        }
+        return statement;
+    }
+
+    /**
+     * @return True if prepared statements returned by {@link #prepare(String)} are cached and must not be closed.
+     */
+    boolean cachesStatements() {
+        return statementCacheSize > 0;
+    }
+
+    /**
+     * @return The time (in milliseconds since the epoch) the connection was last returned to the pool.
+     */
+    long lastUsedAt() {
+        return lastUsedAt;
+    }
+
+    /**
+     * Records that the connection was just used.
+     */
+    void touch() {
+        lastUsedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * @param timeoutSeconds The maximum number of seconds to wait for the database to respond.
+     * @return True if the connection is still open and the database responds, else false.
+     */
+    boolean isValid(int timeoutSeconds) {
+        try {
+            return !connection.isClosed() && connection.isValid(timeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Closes the underlying connection, ignoring any errors since the connection is being discarded.
+     */
+    void close() {
+        statementCache.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // the connection is being discarded, so there is nothing left to clean up
+        }
+    }
+
+    /**
+     * Closes the least recently used prepared statements until the cache fits within its maximum size.
+     */
+    private void evictLeastRecentlyUsedStatements() {
+        var leastRecentlyUsed = statementCache.entrySet().iterator();
+        while (statementCache.size() > statementCacheSize && leastRecentlyUsed.hasNext()) {
+            PreparedStatement statement = leastRecentlyUsed.next().getValue();
+            leastRecentlyUsed.remove();
+            statistics.recordEviction();
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // the statement is being discarded, so there is nothing left to clean up
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package data;
+
+/**
+ * Represents a value computed for each group of an aggregate query.
+ * ex. new QueryAggregate(AggregateFunction.SUM, "quantity", "total_quantity");
+ *
+ * @param function The function summarizing the field.
+ * @param field    The field to summarize, or null to count every record.
+ * @param alias    The name of the computed value in the returned records.
+ */
+public record QueryAggregate(
+        AggregateFunction function,
+        String field,
+        String alias
+) {
+    public QueryAggregate {
+        if (field == null && function != AggregateFunction.COUNT) {
+            throw new IllegalArgumentException("%s needs a field to summarize.".formatted(function));
+        }
+    }
+}
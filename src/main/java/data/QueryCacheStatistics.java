@@ -0,0 +1,145 @@
+package data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how often select results are served from a {@link CachingDatabaseDriver}
+ * and estimates how much memory the cached results use.
+ */
+public class QueryCacheStatistics {
+    /**
+     * The number of select queries answered from the cache.
+     */
+    private final AtomicLong hits = new AtomicLong();
+    /**
+     * The number of cacheable select queries that had to be sent to the database.
+     */
+    private final AtomicLong misses = new AtomicLong();
+    /**
+     * The number of results removed to make room for others.
+     */
+    private final AtomicLong evictions = new AtomicLong();
+    /**
+     * The number of results removed because they expired or a write touched one of their collections.
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+    /**
+     * The number of results currently cached.
+     */
+    private final AtomicLong entries = new AtomicLong();
+    /**
+     * The number of records across every cached result.
+     */
+    private final AtomicLong records = new AtomicLong();
+    /**
+     * The approximate number of bytes used by every cached result.
+     */
+    private final AtomicLong estimatedBytes = new AtomicLong();
+
+    /**
+     * Records that a select query was answered from the cache.
+     */
+    void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    /**
+     * Records that a cacheable select query had to be sent to the database.
+     */
+    void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    /**
+     * Records that a result was removed to make room for others.
+     */
+    void recordEviction() {
+        evictions.incrementAndGet();
+    }
+
+    /**
+     * Records that a result was removed because it expired or one of its collections changed.
+     */
+    void recordInvalidation() {
+        invalidations.incrementAndGet();
+    }
+
+    /**
+     * Updates the memory use after a result is added (positive counts) or removed (negative counts).
+     *
+     * @param entries        The change in the number of cached results.
+     * @param records        The change in the number of cached records.
+     * @param estimatedBytes The change in the approximate number of bytes used.
+     */
+    void recordSizeChange(long entries, long records, long estimatedBytes) {
+        this.entries.addAndGet(entries);
+        this.records.addAndGet(records);
+        this.estimatedBytes.addAndGet(estimatedBytes);
+    }
+
+    /**
+     * @return The number of select queries answered from the cache.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of cacheable select queries that had to be sent to the database.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of results removed to make room for others.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return The number of results removed because they expired or a write touched one of their collections.
+     */
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    /**
+     * @return The number of results currently cached.
+     */
+    public long getEntries() {
+        return entries.get();
+    }
+
+    /**
+     * @return The number of records across every cached result.
+     */
+    public long getRecords() {
+        return records.get();
+    }
+
+    /**
+     * @return The approximate number of bytes used by every cached result.
+     */
+    public long getEstimatedBytes() {
+        return estimatedBytes.get();
+    }
+
+    /**
+     * @return The fraction of cacheable select queries answered from the cache (0 if there have been none).
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return ("QueryCacheStatistics(hits: %d, misses: %d, evictions: %d, invalidations: %d, hitRate: %.2f, "
+                + "entries: %d, records: %d, estimatedBytes: %d)")
+                .formatted(getHits(), getMisses(), getEvictions(), getInvalidations(), getHitRate(),
+                        getEntries(), getRecords(), getEstimatedBytes());
+    }
+}
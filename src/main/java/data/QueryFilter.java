@@ -1,8 +1,12 @@
 package data;
 
+import java.util.Collection;
+
 /**
  * Represents a filter that can be applied to a database query.
  * ex. new QueryFilter("age", Comparison.GREATER_THAN_EQUAL, 65);
+ * For IN and NOT_IN comparisons, the value must be a collection.
+ * ex. new QueryFilter("meal_id", Comparison.IN, List.of(1, 2, 3));
  *
  * @param field      The field to use for the comparison.
  * @param comparison The operator to use for the comparison.
@@ -13,4 +17,17 @@ public record QueryFilter(
         Comparison comparison,
         Object value
 ) {
+    public QueryFilter {
+        boolean collectionComparison = comparison == Comparison.IN || comparison == Comparison.NOT_IN;
+        if (collectionComparison && !(value instanceof Collection<?>)) {
+            throw new IllegalArgumentException("%s filters on %s require a collection of values.".formatted(comparison, field));
+        }
+    }
+
+    /**
+     * @return True if the filter compares the field to a collection of values.
+     */
+    public boolean hasCollectionValue() {
+        return comparison == Comparison.IN || comparison == Comparison.NOT_IN;
+    }
 }
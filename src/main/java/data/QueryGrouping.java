@@ -0,0 +1,16 @@
+package data;
+
+/**
+ * Represents an expression the records of an aggregate query are grouped by.
+ * ex. new QueryGrouping("created_on", GroupingFunction.DATE, "day");
+ *
+ * @param field    The field to group by.
+ * @param function How the value of the field is turned into a group.
+ * @param alias    The name of the group's value in the returned records.
+ */
+public record QueryGrouping(
+        String field,
+        GroupingFunction function,
+        String alias
+) {
+}
@@ -0,0 +1,19 @@
+package data;
+
+/**
+ * Represents a join from the collection of a query to another collection.
+ * Fields are qualified with the name of their collection.
+ * ex. new QueryJoin("food_groups", "foods.food_group_id", "food_groups.id", JoinType.INNER);
+ *
+ * @param collectionName The name of the collection to join.
+ * @param leftField      The qualified field of a collection already in the query to match on.
+ * @param rightField     The qualified field of the joined collection to match on.
+ * @param type           The type of join to perform.
+ */
+public record QueryJoin(
+        String collectionName,
+        String leftField,
+        String rightField,
+        JoinType type
+) {
+}
@@ -0,0 +1,31 @@
+package data;
+
+import java.time.Duration;
+
+/**
+ * A snapshot of the statistics an {@link InstrumentedDatabaseDriver} recorded for one query shape.
+ * A shape is the operation, collection, joins and filtered fields of a query without its values,
+ * so every execution of the same call site in the app is counted together.
+ *
+ * @param shape   The normalized query shape (ex. "SELECT meals WHERE created_on GREATER_EQUAL, user_id EQUAL").
+ * @param count   The number of times a query with the shape ran.
+ * @param errors  The number of those runs that failed.
+ * @param rows    The number of records returned (for selects) or written (for inserts).
+ * @param total   The total time spent running queries with the shape.
+ * @param p50     The median latency.
+ * @param p95     The 95th percentile latency.
+ * @param p99     The 99th percentile latency.
+ * @param max     The largest latency.
+ */
+public record QueryShapeStatistics(
+        String shape,
+        long count,
+        long errors,
+        long rows,
+        Duration total,
+        Duration p50,
+        Duration p95,
+        Duration p99,
+        Duration max
+) {
+}
@@ -0,0 +1,54 @@
+package data;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The field names of a set of records that all have the same fields, such as the rows of one result set.
+ * The schema is built once and shared by every {@link RowRecord} it describes,
+ * so each record only has to store its values.
+ */
+public class RecordSchema {
+    /**
+     * The field names in the order their values are stored.
+     */
+    private final List<String> fieldNames;
+    /**
+     * Maps each field name to the position of its value.
+     */
+    private final Map<String, Integer> fieldIndexes;
+
+    /**
+     * @param fieldNames The field names in the order their values are stored.
+     */
+    public RecordSchema(List<String> fieldNames) {
+        this.fieldNames = List.copyOf(fieldNames);
+        fieldIndexes = new HashMap<>(fieldNames.size() * 2);
+        for (int i = 0; i < fieldNames.size(); i++) fieldIndexes.put(fieldNames.get(i), i);
+    }
+
+    /**
+     * @param field The field to find.
+     * @return The position of the value for the field, or -1 if the schema has no such field.
+     */
+    public int indexOf(String field) {
+        Integer index = fieldIndexes.get(field);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @return The number of fields in the schema.
+     */
+    public int size() {
+        return fieldNames.size();
+    }
+
+    /**
+     * @return The field names in the order their values are stored.
+     */
+    public Collection<String> fieldNames() {
+        return fieldNames;
+    }
+}
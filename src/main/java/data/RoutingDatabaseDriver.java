@@ -0,0 +1,358 @@
+package data;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Splits reads from writes: writes go to the primary (the wrapped driver), and reads are spread round-robin
+ * across read replicas so they do not compete with writes for the primary.
+ * <p>
+ * Replicas apply writes a little after the primary, so reads go to the primary when they must see the latest data:
+ * <ul>
+ *     <li>inside {@link #runInTransaction(TransactionCallback)} and {@link #runOnPrimary(TransactionCallback)},</li>
+ *     <li>for a short window after any write (read-your-writes). The app has a single user, so one window
+ *     shared by every thread costs little and also covers writes made on a background thread.</li>
+ * </ul>
+ * A replica that fails is skipped until a health check finds it working again. When no replica is healthy,
+ * reads fall back to the primary.
+ */
+public class RoutingDatabaseDriver extends DatabaseDriverDecorator {
+    /**
+     * A cheap read used to check that a replica is reachable and has the migrated schema.
+     */
+    private static final SelectQuery HEALTH_CHECK_QUERY = new SelectQuery(MigrationRunner.SCHEMA_VERSION_TABLE)
+            .columns("version")
+            .limit(1);
+
+    /**
+     * The read replicas and whether they are currently used.
+     */
+    private final List<Replica> replicas;
+    /**
+     * The position of the next replica to read from, so reads are spread round-robin.
+     */
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    /**
+     * How long after a write reads go to the primary.
+     */
+    private final long readYourWritesWindowNanos;
+    /**
+     * Reads the current time in nanoseconds (replaceable so tests do not depend on the real clock).
+     */
+    private final LongSupplier clock;
+    /**
+     * Reads go to the primary until this time (in nanoseconds of the clock).
+     */
+    private volatile long primaryReadsUntil;
+    /**
+     * The number of transactions and primary sessions the current thread is in; reads go to the primary while it is
+     * above zero.
+     */
+    private final ThreadLocal<Integer> primarySessionDepth = ThreadLocal.withInitial(() -> 0);
+    /**
+     * Runs the periodic health checks, or null if they have never been started.
+     */
+    private ScheduledExecutorService healthCheckExecutor;
+    /**
+     * The scheduled health checks, or null if they are not running.
+     */
+    private ScheduledFuture<?> healthCheckTask;
+
+    /**
+     * A read replica and whether reads are currently sent to it.
+     */
+    private static final class Replica {
+        /**
+         * The driver connected to the replica.
+         */
+        private final IDatabaseDriver driver;
+        /**
+         * The position of the replica in the configuration, used in log messages.
+         */
+        private final int number;
+        /**
+         * True if reads are sent to the replica, false if it failed and has not recovered yet.
+         */
+        private volatile boolean healthy = true;
+
+        /**
+         * @param driver The driver connected to the replica.
+         * @param number The position of the replica in the configuration.
+         */
+        private Replica(IDatabaseDriver driver, int number) {
+            this.driver = driver;
+            this.number = number;
+        }
+    }
+
+    /**
+     * A read that can run against either the primary or a replica.
+     *
+     * @param <T> The type of the result.
+     */
+    @FunctionalInterface
+    private interface ReadOperation<T> {
+        T run(IDatabaseDriver driver) throws DatabaseException;
+    }
+
+    /**
+     * @param primary             The driver connected to the primary, which every write goes to.
+     * @param replicas            The drivers connected to the read replicas.
+     * @param readYourWritesWindow How long after a write reads go to the primary.
+     */
+    public RoutingDatabaseDriver(IDatabaseDriver primary, List<? extends IDatabaseDriver> replicas,
+                                 Duration readYourWritesWindow) {
+        this(primary, replicas, readYourWritesWindow, System::nanoTime);
+    }
+
+    /**
+     * @param primary             The driver connected to the primary, which every write goes to.
+     * @param replicas            The drivers connected to the read replicas.
+     * @param readYourWritesWindow How long after a write reads go to the primary.
+     * @param clock               Reads the current time in nanoseconds.
+     */
+    RoutingDatabaseDriver(IDatabaseDriver primary, List<? extends IDatabaseDriver> replicas,
+                          Duration readYourWritesWindow, LongSupplier clock) {
+        super(primary);
+        this.replicas = IntStream.range(0, replicas.size())
+                .mapToObj(i -> new Replica(replicas.get(i), i + 1))
+                .toList();
+        this.readYourWritesWindowNanos = readYourWritesWindow.toNanos();
+        this.clock = clock;
+        this.primaryReadsUntil = clock.getAsLong();
+    }
+
+    @Override
+    public List<Long> execute(InsertQuery query) throws DatabaseException {
+        try {
+            return delegate.execute(query);
+        } finally {
+            readFromPrimaryAfterWrite();
+        }
+    }
+
+    @Override
+    public List<Long> execute(InsertBatchQuery query) throws DatabaseException {
+        try {
+            return delegate.execute(query);
+        } finally {
+            readFromPrimaryAfterWrite();
+        }
+    }
+
+    @Override
+    public void execute(DeleteQuery query) throws DatabaseException {
+        try {
+            delegate.execute(query);
+        } finally {
+            readFromPrimaryAfterWrite();
+        }
+    }
+
+    @Override
+    public void execute(UpdateQuery query) throws DatabaseException {
+        try {
+            delegate.execute(query);
+        } finally {
+            readFromPrimaryAfterWrite();
+        }
+    }
+
+    @Override
+    public List<IRecord> execute(SelectQuery query) throws DatabaseException {
+        return read(driver -> driver.execute(query));
+    }
+
+    @Override
+    public List<IRecord> execute(AggregateQuery query) throws DatabaseException {
+        return read(driver -> driver.execute(query));
+    }
+
+    /**
+     * Only opening the stream can fall back to the primary; a replica failing while the stream is read
+     * surfaces as an UncheckedDatabaseException like any other streaming error.
+     */
+    @Override
+    public Stream<IRecord> stream(SelectQuery query) throws DatabaseException {
+        return read(driver -> driver.stream(query));
+    }
+
+    /**
+     * The plan is read from the server the query would run on, since replicas may have different statistics.
+     */
+    @Override
+    public String explain(SelectQuery query) throws DatabaseException {
+        return read(driver -> driver.explain(query));
+    }
+
+    @Override
+    public void executeSchemaChange(String statement) throws DatabaseException {
+        try {
+            delegate.executeSchemaChange(statement);
+        } finally {
+            readFromPrimaryAfterWrite();
+        }
+    }
+
+    /**
+     * Every query in the transaction, including reads, runs on the primary.
+     */
+    @Override
+    public <T> T runInTransaction(TransactionCallback<T> callback) throws DatabaseException {
+        primarySessionDepth.set(primarySessionDepth.get() + 1);
+        try {
+            return super.runInTransaction(callback);
+        } finally {
+            leavePrimarySession();
+            readFromPrimaryAfterWrite();
+        }
+    }
+
+    /**
+     * Runs work whose reads must see every write committed so far (ex. reading back records written by another
+     * process), without opening a transaction. The callback is given this driver, and every read it makes on the
+     * current thread goes to the primary.
+     *
+     * @param callback The work to run.
+     * @param <T>      The type of the result of the work.
+     * @return The result returned by the callback.
+     * @throws DatabaseException Thrown if the callback throws.
+     */
+    public <T> T runOnPrimary(TransactionCallback<T> callback) throws DatabaseException {
+        primarySessionDepth.set(primarySessionDepth.get() + 1);
+        try {
+            return callback.run(this);
+        } finally {
+            leavePrimarySession();
+        }
+    }
+
+    /**
+     * Checks every replica with a cheap read, so failed replicas are skipped and recovered ones are used again.
+     *
+     * @return The number of healthy replicas.
+     */
+    public int checkReplicas() {
+        int healthy = 0;
+        for (Replica replica : replicas) {
+            boolean wasHealthy = replica.healthy;
+            replica.healthy = respondsToHealthCheck(replica);
+            if (replica.healthy && !wasHealthy) System.out.println("Read replica " + replica.number + " recovered.");
+            if (replica.healthy) healthy++;
+        }
+        return healthy;
+    }
+
+    /**
+     * @return The number of replicas reads are currently sent to.
+     */
+    public int getHealthyReplicaCount() {
+        return (int) replicas.stream().filter(replica -> replica.healthy).count();
+    }
+
+    /**
+     * Starts checking the replicas on a background thread at a fixed interval.
+     * Calling this again replaces the previous schedule.
+     *
+     * @param interval How often to check the replicas.
+     */
+    public synchronized void startHealthChecks(Duration interval) {
+        stopHealthChecks();
+        if (healthCheckExecutor == null) {
+            healthCheckExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "replica-health-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        healthCheckTask = healthCheckExecutor.scheduleAtFixedRate(
+                this::checkReplicas, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic health checks, if they are running.
+     */
+    public synchronized void stopHealthChecks() {
+        if (healthCheckTask != null) {
+            healthCheckTask.cancel(false);
+            healthCheckTask = null;
+        }
+    }
+
+    /**
+     * Runs a read on the next healthy replica, or on the primary if the read must see the latest writes
+     * or no replica is healthy. If the replica fails the health check after the read fails, it is skipped
+     * from then on and the read is retried on the primary; otherwise the error came from the query itself
+     * and is thrown.
+     */
+    private <T> T read(ReadOperation<T> operation) throws DatabaseException {
+        Replica replica = readsGoToPrimary() ? null : nextHealthyReplica();
+        if (replica == null) return operation.run(delegate);
+        try {
+            return operation.run(replica.driver);
+        } catch (DatabaseException e) {
+            if (respondsToHealthCheck(replica)) throw e;
+            replica.healthy = false;
+            System.out.println("Read replica " + replica.number + " failed, reading from the primary: "
+                    + e.getMessage());
+            return operation.run(delegate);
+        }
+    }
+
+    /**
+     * @return True if the current thread is in a transaction or primary session, or a write was made recently.
+     */
+    private boolean readsGoToPrimary() {
+        return primarySessionDepth.get() > 0 || clock.getAsLong() - primaryReadsUntil < 0;
+    }
+
+    /**
+     * @return The next healthy replica in round-robin order, or null if none is healthy.
+     */
+    private Replica nextHealthyReplica() {
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            Replica replica = replicas.get(Math.floorMod(nextReplica.getAndIncrement(), replicas.size()));
+            if (replica.healthy) return replica;
+        }
+        return null;
+    }
+
+    /**
+     * @return True if the replica answers the health check query.
+     */
+    private static boolean respondsToHealthCheck(Replica replica) {
+        try {
+            replica.driver.execute(HEALTH_CHECK_QUERY);
+            return true;
+        } catch (DatabaseException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Sends reads to the primary until the replicas have had time to apply the write.
+     */
+    private void readFromPrimaryAfterWrite() {
+        primaryReadsUntil = clock.getAsLong() + readYourWritesWindowNanos;
+    }
+
+    /**
+     * Leaves the innermost transaction or primary session of the current thread.
+     */
+    private void leavePrimarySession() {
+        int depth = primarySessionDepth.get() - 1;
+        if (depth == 0) {
+            primarySessionDepth.remove();
+        } else {
+            primarySessionDepth.set(depth);
+        }
+    }
+}
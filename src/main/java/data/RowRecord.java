@@ -0,0 +1,51 @@
+package data;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A compact record storing its values in an array, positioned by a schema shared with the other rows of its result.
+ * Unlike {@link Record}, no map is allocated per row.
+ */
+public class RowRecord implements IRecord {
+    /**
+     * The field names shared by every row of the result.
+     */
+    private final RecordSchema schema;
+    /**
+     * The values of the row, in the order of the schema's fields.
+     */
+    private final Object[] values;
+
+    /**
+     * @param schema The field names shared by every row of the result.
+     * @param values The values of the row, in the order of the schema's fields.
+     */
+    public RowRecord(RecordSchema schema, Object[] values) {
+        if (values.length != schema.size()) {
+            throw new IllegalArgumentException("Expected %d values but got %d.".formatted(schema.size(), values.length));
+        }
+        this.schema = schema;
+        this.values = values;
+    }
+
+    @Override
+    public Object getValue(String field) {
+        int index = schema.indexOf(field);
+        return index == -1 ? null : values[index];
+    }
+
+    @Override
+    public Collection<String> fieldNames() {
+        return schema.fieldNames();
+    }
+
+    @Override
+    public String toString() {
+        List<String> keyValuePairs = fieldNames()
+                .stream()
+                .map(field -> "%s: %s".formatted(field, this.getValue(field)))
+                .toList();
+        return "DatabaseRecord(%s)".formatted(String.join(", ", keyValuePairs));
+    }
+}
@@ -1,6 +1,7 @@
 package data;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -11,6 +12,16 @@ public class SelectQuery extends Query {
      * The filters applied to the query controlling which records are selected.
      */
     private final List<QueryFilter> filters;
+
+    /**
+     * The collections joined to the collection of the query, in the order they are joined.
+     */
+    private final List<QueryJoin> joins;
+
+    /**
+     * The columns to return for each record. If empty, every column is returned.
+     */
+    private final List<String> columns;
     
     /**
      * The maximum number of records to return.
@@ -27,12 +38,53 @@ public class SelectQuery extends Query {
      */
     private SortOrder sortOrder;
 
+    /**
+     * The unique column ordering records with the same sort value, so pages never skip or repeat them.
+     */
+    private String keyColumn;
+
+    /**
+     * The position the query starts after, or null if it starts from the first record.
+     */
+    private PageToken after;
+
     /**
      * @param collectionName The name of the database collection to select records from.
      */
     public SelectQuery(String collectionName) {
         super(collectionName);
         filters = new ArrayList<>();
+        joins = new ArrayList<>();
+        columns = new ArrayList<>();
+    }
+
+    /**
+     * Restricts the columns returned for each record, so only the data the caller needs is transferred.
+     * If no columns are specified, every column is returned.
+     *
+     * @param columns The columns to return.
+     * @return The same query instance after setting the columns.
+     */
+    public SelectQuery columns(String... columns) {
+        this.columns.addAll(Arrays.asList(columns));
+        return this;
+    }
+
+    /**
+     * Joins another collection to the query, so related records are read in a single round trip.
+     * Once a query has joins, every field (in columns, filters and the sort column) should be qualified
+     * with its collection name, and the fields of returned records are qualified the same way.
+     * ex. new SelectQuery("foods").join("food_groups", "foods.food_group_id", "food_groups.id", JoinType.INNER);
+     *
+     * @param collectionName The name of the collection to join.
+     * @param leftField      The qualified field of a collection already in the query to match on.
+     * @param rightField     The qualified field of the joined collection to match on.
+     * @param type           The type of join to perform.
+     * @return The same query instance after adding the join to it.
+     */
+    public SelectQuery join(String collectionName, String leftField, String rightField, JoinType type) {
+        joins.add(new QueryJoin(collectionName, leftField, rightField, type));
+        return this;
     }
 
     /**
@@ -81,6 +133,67 @@ public class SelectQuery extends Query {
         return this;
     }
 
+    /**
+     * Sets the unique column (usually the id) that orders records with the same sort value.
+     * The results are sorted by it after the sort column, in the same order.
+     *
+     * @param keyColumn The unique column.
+     * @return The same query instance after setting the key column.
+     */
+    public SelectQuery keyColumn(String keyColumn) {
+        this.keyColumn = keyColumn;
+        return this;
+    }
+
+    /**
+     * Starts the results after a record, so a page can be read by seeking the sort column's index
+     * instead of reading and skipping every earlier record.
+     * The sort column should be unique; otherwise use {@link #after(String, Object, String, Object)}.
+     * ex. new SelectQuery("meals").after("created_on", lastCreatedOn).sortOrder(SortOrder.DESCENDING).limit(20);
+     *
+     * @param sortColumn The column to sort by.
+     * @param lastValue  The value of the sort column in the last record already read.
+     * @return The same query instance after setting the sort column and position.
+     */
+    public SelectQuery after(String sortColumn, Object lastValue) {
+        return after(new PageToken(sortColumn, lastValue, null, null));
+    }
+
+    /**
+     * Starts the results after a record, ordering records with the same sort value by a unique key column.
+     *
+     * @param sortColumn The column to sort by.
+     * @param lastValue  The value of the sort column in the last record already read.
+     * @param keyColumn  The unique column ordering records with the same sort value.
+     * @param lastKey    The value of the key column in the last record already read.
+     * @return The same query instance after setting the sort column, key column and position.
+     */
+    public SelectQuery after(String sortColumn, Object lastValue, String keyColumn, Object lastKey) {
+        return after(new PageToken(sortColumn, lastValue, keyColumn, lastKey));
+    }
+
+    /**
+     * Starts the results after the last record of a page.
+     *
+     * @param pageToken The next page token of the previous page (see {@link Page#nextPageToken()}).
+     * @return The same query instance after setting the sort column, key column and position.
+     * @throws IllegalArgumentException Thrown if the token is invalid.
+     */
+    public SelectQuery after(String pageToken) {
+        return after(PageToken.decode(pageToken));
+    }
+
+    /**
+     * @param position The position to start after.
+     * @return The same query instance after setting the sort column, key column and position.
+     */
+    private SelectQuery after(PageToken position) {
+        this.after = position;
+        this.sortColumn = position.sortColumn();
+        this.keyColumn = position.keyColumn();
+        return this;
+    }
+
     /**
      * @return The list of filters applied to the query.
      */
@@ -88,6 +201,27 @@ public class SelectQuery extends Query {
         return filters;
     }
     
+    /**
+     * @return The collections joined to the collection of the query, in the order they are joined.
+     */
+    public List<QueryJoin> getJoins() {
+        return joins;
+    }
+
+    /**
+     * @return True if the query joins other collections, so the fields of its records are qualified.
+     */
+    public boolean hasJoins() {
+        return !joins.isEmpty();
+    }
+
+    /**
+     * @return The columns to return for each record (empty if every column is returned).
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
     /**
      * @return The maximum number of records to return.
      */
@@ -109,9 +243,23 @@ public class SelectQuery extends Query {
         return sortOrder;
     }
 
+    /**
+     * @return The unique column ordering records with the same sort value, or null if there is none.
+     */
+    public String getKeyColumn() {
+        return keyColumn;
+    }
+
+    /**
+     * @return The position the query starts after, or null if it starts from the first record.
+     */
+    public PageToken getAfter() {
+        return after;
+    }
+
     @Override
     public String toString() {
-        return "SelectQuery(collectionName: %s, filters: %s, limit: %s, sortColumn: %s, sortOrder: %s)"
-                .formatted(getCollectionName(), getFilters(), limit, sortColumn, sortOrder);
+        return "SelectQuery(collectionName: %s, joins: %s, columns: %s, filters: %s, limit: %s, sortColumn: %s, sortOrder: %s, keyColumn: %s, after: %s)"
+                .formatted(getCollectionName(), joins, columns, getFilters(), limit, sortColumn, sortOrder, keyColumn, after);
     }
 }
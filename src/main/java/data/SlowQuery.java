@@ -0,0 +1,16 @@
+package data;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * A query that took longer than the slow query threshold of an {@link InstrumentedDatabaseDriver}.
+ *
+ * @param shape      The normalized shape of the query.
+ * @param query      The query itself, including its values.
+ * @param latency    How long the query took.
+ * @param finishedAt When the query finished.
+ * @param plan       The database's plan for the query (ex. MySQL's EXPLAIN output), or null for writes.
+ */
+public record SlowQuery(String shape, String query, Duration latency, Instant finishedAt, String plan) {
+}
@@ -0,0 +1,383 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the SQL scripts used to set up MySQL (create-database.sql and seed-database.sql) against an
+ * {@link InMemoryDriver}, so both drivers start from the same schema and seed data.
+ * Only the subset of SQL those scripts use is understood.
+ */
+class SqlScriptLoader {
+    /**
+     * Matches a CREATE TABLE statement, capturing whether it has IF NOT EXISTS, the name and the column definitions.
+     */
+    private static final Pattern CREATE_TABLE = Pattern.compile(
+            "CREATE TABLE (IF NOT EXISTS )?`?(\\w+)`?\\s*\\((.*)\\)[^)]*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    /**
+     * Matches the keyword starting a key or constraint definition of a table, but not a column whose name
+     * starts with one (ex. "checksum" or "key_name").
+     */
+    private static final Pattern TABLE_KEYWORD = Pattern.compile(
+            "(?:PRIMARY KEY|FOREIGN KEY|KEY|INDEX|UNIQUE|CONSTRAINT|CHECK)(?![\\w`])");
+    /**
+     * Matches a column definition, capturing the name, the type and the rest of the definition.
+     */
+    private static final Pattern COLUMN = Pattern.compile("`?(\\w+)`?\\s+(\\w+)(?:\\s*\\([^)]*\\))?(.*)", Pattern.DOTALL);
+    /**
+     * Matches the column list of a key definition (ex. "PRIMARY KEY (food_id, nutrient_id)").
+     */
+    private static final Pattern KEY_COLUMNS = Pattern.compile("\\(([^)]*)\\)");
+    /**
+     * Matches a CREATE VIEW statement, capturing the name, the selected fields, the collection and its alias,
+     * and the joins.
+     */
+    private static final Pattern CREATE_VIEW = Pattern.compile(
+            "CREATE (?:OR REPLACE )?VIEW (\\w+) AS SELECT (.+?) FROM (\\w+)(?: (?:AS )?(?!JOIN\\b|INNER\\b|LEFT\\b)(\\w+))?"
+                    + "((?: (?:INNER |LEFT (?:OUTER )?)?JOIN .+?)*)",
+            Pattern.CASE_INSENSITIVE);
+    /**
+     * Matches one join of a view, capturing the join type, the collection, its alias and the two joined fields.
+     */
+    private static final Pattern VIEW_JOIN = Pattern.compile(
+            "(INNER |LEFT (?:OUTER )?)?JOIN (\\w+)(?: (?:AS )?(?!ON\\b)(\\w+))? ON ([\\w.]+) = ([\\w.]+)",
+            Pattern.CASE_INSENSITIVE);
+    /**
+     * Matches one selected field of a view, capturing the (optionally aliased) field and its column name.
+     */
+    private static final Pattern VIEW_FIELD = Pattern.compile("([\\w.]+)(?: AS (\\w+))?", Pattern.CASE_INSENSITIVE);
+    /**
+     * Matches an INSERT statement, capturing the collection, the optional column list and the rows.
+     */
+    private static final Pattern INSERT = Pattern.compile(
+            "INSERT (?:IGNORE )?INTO `?(\\w+)`?\\s*(?:\\(([^)]*)\\))?\\s*VALUES\\s*(.*)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    /**
+     * Matches a CREATE INDEX statement, capturing the collection and the indexed columns.
+     */
+    private static final Pattern CREATE_INDEX = Pattern.compile(
+            "CREATE (?:UNIQUE )?INDEX `?\\w+`? ON `?(\\w+)`?\\s*\\(([^)]*)\\)", Pattern.CASE_INSENSITIVE);
+    /**
+     * Matches a DROP TABLE / DROP VIEW statement, capturing the name.
+     */
+    private static final Pattern DROP = Pattern.compile(
+            "DROP (?:TABLE|VIEW) (?:IF EXISTS )?`?(\\w+)`?", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Prevent instantiation since the class only contains static helpers.
+     */
+    private SqlScriptLoader() {
+    }
+
+    /**
+     * Runs every statement of a script in order.
+     *
+     * @param driver The driver to run the script against.
+     * @param script The text of the script.
+     * @throws DatabaseException Thrown if a statement is not supported or fails.
+     */
+    static void run(InMemoryDriver driver, String script) throws DatabaseException {
+        for (String statement : splitStatements(script)) {
+            String keyword = statement.split("\\s+", 3)[0].toUpperCase(Locale.ROOT);
+            String normalized = statement.replaceAll("\\s+", " ");
+            String upper = normalized.toUpperCase(Locale.ROOT);
+            if (keyword.equals("USE") || upper.startsWith("CREATE DATABASE") || upper.startsWith("SET ")) continue;
+            if (upper.startsWith("DROP DATABASE")) {
+                driver.dropAll();
+            } else if (upper.startsWith("DROP ") && !upper.startsWith("DROP INDEX")) {
+                driver.drop(match(DROP, normalized).group(1));
+            } else if (upper.startsWith("CREATE TABLE")) {
+                createTable(driver, statement);
+            } else if (upper.startsWith("CREATE VIEW") || upper.startsWith("CREATE OR REPLACE VIEW")) {
+                createView(driver, normalized);
+            } else if (upper.startsWith("CREATE INDEX") || upper.startsWith("CREATE UNIQUE INDEX")) {
+                createIndex(driver, normalized);
+            } else if (upper.startsWith("DROP INDEX")) {
+                // indexes only make lookups faster, so a dropped index can be kept
+                continue;
+            } else if (keyword.equals("INSERT")) {
+                insert(driver, statement);
+            } else {
+                throw new DatabaseException("Unsupported statement: " + normalized);
+            }
+        }
+    }
+
+    /**
+     * Creates a collection from a CREATE TABLE statement, adding hash indexes on its foreign keys
+     * and sorted indexes on its date columns.
+     */
+    private static void createTable(InMemoryDriver driver, String statement) throws DatabaseException {
+        Matcher table = match(CREATE_TABLE, statement);
+        if (table.group(1) != null && driver.exists(table.group(2))) return;
+        List<String> columnNames = new ArrayList<>();
+        List<InMemoryTable.ColumnType> columnTypes = new ArrayList<>();
+        List<String> primaryKey = new ArrayList<>();
+        List<String> hashIndexes = new ArrayList<>();
+        boolean autoIncrement = false;
+        for (String definition : splitTopLevel(table.group(3), ',')) {
+            String upper = definition.toUpperCase(Locale.ROOT);
+            Matcher keyword = TABLE_KEYWORD.matcher(upper);
+            if (!keyword.lookingAt()) {
+                Matcher column = match(COLUMN, definition);
+                String modifiers = column.group(3).toUpperCase(Locale.ROOT);
+                columnNames.add(column.group(1));
+                columnTypes.add(InMemoryTable.ColumnType.fromSql(column.group(2)));
+                if (modifiers.contains("PRIMARY KEY")) primaryKey.add(column.group(1));
+                autoIncrement |= modifiers.contains("AUTO_INCREMENT");
+            } else if (keyword.group().equals("PRIMARY KEY")) {
+                primaryKey.addAll(keyColumns(definition));
+            } else if (!keyword.group().equals("CONSTRAINT") && !keyword.group().equals("CHECK")) {
+                hashIndexes.addAll(keyColumns(definition));
+            }
+        }
+        InMemoryTable created = new InMemoryTable(table.group(2), columnNames, columnTypes, primaryKey, autoIncrement);
+        for (String column : hashIndexes) created.addHashIndex(column);
+        for (int i = 0; i < columnNames.size(); i++) {
+            if (columnTypes.get(i) == InMemoryTable.ColumnType.DATE || columnTypes.get(i) == InMemoryTable.ColumnType.DATETIME) {
+                created.addRangeIndex(columnNames.get(i));
+            }
+        }
+        driver.createTable(created);
+    }
+
+    /**
+     * Adds a hash index on each column of a CREATE INDEX statement, so a lookup on any of them does not scan.
+     */
+    private static void createIndex(InMemoryDriver driver, String statement) throws DatabaseException {
+        Matcher index = match(CREATE_INDEX, statement);
+        for (String column : index.group(2).split(",")) {
+            driver.hashIndex(index.group(1), column.trim().replace("`", ""));
+        }
+    }
+
+    /**
+     * Creates a view from a CREATE VIEW statement whose SELECT only uses (optionally aliased) fields and joins.
+     */
+    private static void createView(InMemoryDriver driver, String statement) throws DatabaseException {
+        Matcher view = match(CREATE_VIEW, statement);
+        Map<String, String> collectionsByAlias = new HashMap<>();
+        String collection = view.group(3);
+        collectionsByAlias.put(collection, collection);
+        if (view.group(4) != null) collectionsByAlias.put(view.group(4), collection);
+
+        List<String[]> joins = new ArrayList<>();
+        Matcher join = VIEW_JOIN.matcher(view.group(5));
+        while (join.find()) {
+            collectionsByAlias.put(join.group(2), join.group(2));
+            if (join.group(3) != null) collectionsByAlias.put(join.group(3), join.group(2));
+            joins.add(new String[]{join.group(1), join.group(2), join.group(4), join.group(5)});
+        }
+        SelectQuery definition = new SelectQuery(collection);
+        for (String[] viewJoin : joins) {
+            JoinType type = viewJoin[0] != null && viewJoin[0].trim().toUpperCase(Locale.ROOT).startsWith("LEFT")
+                    ? JoinType.LEFT
+                    : JoinType.INNER;
+            definition.join(viewJoin[1],
+                    qualify(viewJoin[2], collection, collectionsByAlias),
+                    qualify(viewJoin[3], collection, collectionsByAlias),
+                    type);
+        }
+
+        List<String> columnNames = new ArrayList<>();
+        List<String> sourceFields = new ArrayList<>();
+        for (String field : splitTopLevel(view.group(2), ',')) {
+            Matcher selected = match(VIEW_FIELD, field);
+            String sourceField = qualify(selected.group(1), collection, collectionsByAlias);
+            sourceFields.add(sourceField);
+            columnNames.add(selected.group(2) != null ? selected.group(2) : sourceField.split("\\.", 2)[1]);
+        }
+        definition.columns(sourceFields.toArray(String[]::new));
+        driver.createView(new InMemoryView(view.group(1), definition, columnNames, sourceFields));
+    }
+
+    /**
+     * Inserts the rows of an INSERT statement, taking the column order from the collection if no columns are listed.
+     */
+    private static void insert(InMemoryDriver driver, String statement) throws DatabaseException {
+        Matcher insert = match(INSERT, statement);
+        String collectionName = insert.group(1);
+        List<String> columns = new ArrayList<>();
+        if (insert.group(2) != null) {
+            for (String column : insert.group(2).split(",")) columns.add(column.trim().replace("`", ""));
+        } else {
+            columns.addAll(driver.findTable(collectionName).getSchema().fieldNames());
+        }
+        InsertBatchQuery batch = new InsertBatchQuery(collectionName);
+        for (List<Object> values : parseRows(insert.group(3))) {
+            if (values.size() != columns.size()) {
+                throw new DatabaseException("Column count doesn't match value count in: " + statement);
+            }
+            Map<String, Object> fields = new LinkedHashMap<>();
+            for (int i = 0; i < values.size(); i++) fields.put(columns.get(i), values.get(i));
+            batch.add(new Record(fields));
+        }
+        driver.execute(batch);
+    }
+
+    /**
+     * Parses the rows of a VALUES clause (ex. "(1, 'Chris'), (2, NULL)").
+     * Quoted text becomes a String, NULL becomes null and any other value is kept as text for the column to convert.
+     */
+    private static List<List<Object>> parseRows(String valuesClause) throws DatabaseException {
+        List<List<Object>> rows = new ArrayList<>();
+        List<Object> row = null;
+        StringBuilder token = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < valuesClause.length(); i++) {
+            char c = valuesClause.charAt(i);
+            if (row == null) {
+                if (c == '(') row = new ArrayList<>();
+                else if (c != ',' && !Character.isWhitespace(c)) {
+                    throw new DatabaseException("Unexpected '%s' in VALUES clause".formatted(c));
+                }
+            } else if (c == '\'') {
+                int end = i + 1;
+                StringBuilder text = new StringBuilder();
+                while (true) {
+                    if (end >= valuesClause.length()) throw new DatabaseException("Unterminated string in VALUES clause");
+                    char next = valuesClause.charAt(end);
+                    if (next == '\\' && end + 1 < valuesClause.length()) {
+                        text.append(valuesClause.charAt(end + 1));
+                        end += 2;
+                    } else if (next == '\'' && end + 1 < valuesClause.length() && valuesClause.charAt(end + 1) == '\'') {
+                        text.append('\'');
+                        end += 2;
+                    } else if (next == '\'') {
+                        break;
+                    } else {
+                        text.append(next);
+                        end++;
+                    }
+                }
+                token.append(text);
+                quoted = true;
+                i = end;
+            } else if (c == ',' || c == ')') {
+                String value = token.toString();
+                row.add(quoted ? value : value.trim().equalsIgnoreCase("NULL") ? null : value.trim());
+                token.setLength(0);
+                quoted = false;
+                if (c == ')') {
+                    rows.add(row);
+                    row = null;
+                }
+            } else if (!Character.isWhitespace(c) || (!token.isEmpty() && !quoted)) {
+                token.append(c);
+            }
+        }
+        if (row != null) throw new DatabaseException("Unterminated row in VALUES clause");
+        return rows;
+    }
+
+    /**
+     * Splits a script into statements on semicolons, dropping comments and ignoring semicolons inside quotes.
+     */
+    static List<String> splitStatements(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder statement = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < script.length(); i++) {
+            char c = script.charAt(i);
+            if (quoted) {
+                statement.append(c);
+                if (c == '\\' && i + 1 < script.length()) statement.append(script.charAt(++i));
+                else if (c == '\'') quoted = false;
+            } else if (c == '\'') {
+                statement.append(c);
+                quoted = true;
+            } else if (c == '-' && script.startsWith("--", i) || c == '#') {
+                int end = script.indexOf('\n', i);
+                i = end < 0 ? script.length() : end - 1;
+            } else if (c == '/' && script.startsWith("/*", i)) {
+                int end = script.indexOf("*/", i + 2);
+                i = end < 0 ? script.length() : end + 1;
+            } else if (c == ';') {
+                addStatement(statements, statement);
+            } else {
+                statement.append(c);
+            }
+        }
+        addStatement(statements, statement);
+        return statements;
+    }
+
+    /**
+     * Adds a statement to the list if it is not blank, then clears the builder.
+     */
+    private static void addStatement(List<String> statements, StringBuilder statement) {
+        String text = statement.toString().trim();
+        if (!text.isEmpty()) statements.add(text);
+        statement.setLength(0);
+    }
+
+    /**
+     * Splits text on a separator, ignoring separators inside parentheses (ex. "DOUBLE(5, 2)").
+     */
+    private static List<String> splitTopLevel(String text, char separator) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '(') depth++;
+            else if (c == ')') depth--;
+            else if (c == separator && depth == 0) {
+                parts.add(text.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        if (!text.substring(start).isBlank()) parts.add(text.substring(start).trim());
+        return parts;
+    }
+
+    /**
+     * @return The column names listed in the first parentheses of a key definition.
+     */
+    private static List<String> keyColumns(String definition) throws DatabaseException {
+        List<String> columns = new ArrayList<>();
+        for (String column : match(KEY_COLUMNS, definition, false).group(1).split(",")) {
+            columns.add(column.trim().replace("`", ""));
+        }
+        return columns;
+    }
+
+    /**
+     * Replaces the alias of a field in a view with its collection name (ex. "cf.food_id" to "conversion_factors.food_id").
+     */
+    private static String qualify(String field, String defaultCollection, Map<String, String> collectionsByAlias)
+            throws DatabaseException {
+        String[] parts = field.split("\\.", 2);
+        if (parts.length == 1) return defaultCollection + "." + field;
+        String collection = collectionsByAlias.get(parts[0]);
+        if (collection == null) throw new DatabaseException("Unknown table '%s' in view".formatted(parts[0]));
+        return collection + "." + parts[1];
+    }
+
+    /**
+     * @return A matcher that matched the whole text.
+     * @throws DatabaseException Thrown if the text does not match.
+     */
+    private static Matcher match(Pattern pattern, String text) throws DatabaseException {
+        return match(pattern, text, true);
+    }
+
+    /**
+     * @param whole True if the pattern has to match the whole text, else it only has to be found in it.
+     * @return A matcher that matched the text.
+     * @throws DatabaseException Thrown if the text does not match.
+     */
+    private static Matcher match(Pattern pattern, String text, boolean whole) throws DatabaseException {
+        Matcher matcher = pattern.matcher(text.trim());
+        if (whole ? !matcher.matches() : !matcher.find()) {
+            throw new DatabaseException("Unsupported statement: " + text.replaceAll("\\s+", " "));
+        }
+        return matcher;
+    }
+}
@@ -0,0 +1,79 @@
+package data;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts how often prepared statements are reused from the per-connection statement caches.
+ * Shared by every connection in a pool, so the counts cover the whole driver.
+ */
+public class StatementCacheStatistics {
+    /**
+     * The number of times a cached prepared statement was reused.
+     */
+    private final AtomicLong hits = new AtomicLong();
+    /**
+     * The number of times a statement had to be prepared because it was not cached.
+     */
+    private final AtomicLong misses = new AtomicLong();
+    /**
+     * The number of prepared statements closed to make room for others.
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Records that a cached prepared statement was reused.
+     */
+    void recordHit() {
+        hits.incrementAndGet();
+    }
+
+    /**
+     * Records that a statement had to be prepared.
+     */
+    void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    /**
+     * Records that a prepared statement was closed to make room for others.
+     */
+    void recordEviction() {
+        evictions.incrementAndGet();
+    }
+
+    /**
+     * @return The number of times a cached prepared statement was reused.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of times a statement had to be prepared because it was not cached.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of prepared statements closed to make room for others.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return The fraction of statement lookups served from the cache (0 if there have been no lookups).
+     */
+    public double getHitRate() {
+        long hits = getHits();
+        long total = hits + getMisses();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "StatementCacheStatistics(hits: %d, misses: %d, evictions: %d, hitRate: %.2f)"
+                .formatted(getHits(), getMisses(), getEvictions(), getHitRate());
+    }
+}
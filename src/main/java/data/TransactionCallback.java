@@ -0,0 +1,17 @@
+package data;
+
+/**
+ * Work to run inside a database transaction.
+ * Every query must be executed through the driver passed to the callback so it uses the transaction's connection.
+ *
+ * @param <T> The type of the result of the work.
+ */
+@FunctionalInterface
+public interface TransactionCallback<T> {
+    /**
+     * @param driver The driver to execute the queries of the transaction with.
+     * @return The result of the work.
+     * @throws DatabaseException Thrown if a query fails, which rolls the transaction back.
+     */
+    T run(IDatabaseDriver driver) throws DatabaseException;
+}
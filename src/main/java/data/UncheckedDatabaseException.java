@@ -0,0 +1,19 @@
+package data;
+
+/**
+ * Wraps a DatabaseException raised where checked exceptions cannot be thrown,
+ * such as while advancing a stream of records.
+ */
+public class UncheckedDatabaseException extends RuntimeException {
+    /**
+     * @param cause The database error that occurred.
+     */
+    public UncheckedDatabaseException(DatabaseException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    @Override
+    public synchronized DatabaseException getCause() {
+        return (DatabaseException) super.getCause();
+    }
+}
@@ -49,6 +49,8 @@ CREATE TABLE meal_items
     -- FOREIGN KEY (food_id) REFERENCES foods(food_id)
 );
 
+-- Indexes and the id_sequences table are added by the migrations in data/migrations, which run when the app starts
+
 -- ======================================
 -- NUTRITION TABLES
 -- ======================================
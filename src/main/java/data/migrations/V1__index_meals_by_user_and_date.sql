@@ -0,0 +1,3 @@
+-- Every meal query filters a user's meals by created_on (and the meal history pages them newest first).
+-- InnoDB appends the id to the index, so it holds every column of meals and the queries never read the table.
+CREATE INDEX meals_user_created_on ON meals (user_id, created_on, meal_type);
@@ -0,0 +1,3 @@
+-- Meals are read joined with their items, so the items of a meal are found by meal_id.
+-- The index holds every column the join reads, so the items are read from the index alone.
+CREATE INDEX meal_items_meal_covering ON meal_items (meal_id, food_id, quantity, measure_id);
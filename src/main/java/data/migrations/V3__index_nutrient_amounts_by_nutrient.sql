@@ -0,0 +1,4 @@
+-- Amounts are looked up by food through the primary key (food_id, nutrient_id).
+-- Comparing foods by one nutrient (ex. for swaps) looks them up by nutrient instead; with the food_id appended
+-- from the primary key, the index answers those lookups in nutrient_value order without reading the table.
+CREATE INDEX nutrient_amounts_nutrient_value ON nutrient_amounts (nutrient_id, nutrient_value);
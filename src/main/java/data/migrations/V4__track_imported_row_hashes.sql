@@ -0,0 +1,9 @@
+-- Incremental nutrition imports keep a hash of every row they imported, by the row's primary key,
+-- so a refreshed CSV only sends the rows that changed and deletes the rows that disappeared.
+CREATE TABLE import_row_hashes
+(
+    collection_name VARCHAR(64)  NOT NULL,
+    row_key         VARCHAR(255) NOT NULL,
+    row_hash        CHAR(64)     NOT NULL,
+    PRIMARY KEY (collection_name, row_key)
+);
@@ -0,0 +1,8 @@
+-- Every import of the nutrition CSVs changes the catalogue version, so a binary snapshot compiled from an earlier
+-- import (which records the version it was compiled from) is never served in place of the current data.
+CREATE TABLE catalogue_version
+(
+    id      INT PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+INSERT INTO catalogue_version (id, version) VALUES (1, 0);
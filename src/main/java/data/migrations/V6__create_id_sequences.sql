@@ -0,0 +1,7 @@
+-- Next id to hand out for collections whose ids are reserved in blocks by the app (see IdAllocator).
+-- Databases created before id allocation have no such table, and meals cannot be logged without it.
+CREATE TABLE IF NOT EXISTS id_sequences
+(
+    name       VARCHAR(64) PRIMARY KEY,
+    next_value BIGINT NOT NULL
+);
@@ -65,11 +65,12 @@ public class CreateMealService {
             // validation
             List<ServiceError> validationErrors = validate(meal);
             if(!validationErrors.isEmpty()) return new CreateMealServiceOutput(validationErrors);
-            // persist values
-            AppBackend.db().execute(new InsertQuery(Meal.getTableName(), meal));
-            for (MealItem mealItem : meal.getMealItems()) {
-                createMealItem(meal, mealItem);
-            }
+            // persist the meal and its items in one transaction, so a failure never leaves a partial meal
+            AppBackend.db().runInTransaction(driver -> {
+                driver.execute(new InsertQuery(Meal.getTableName(), meal));
+                createMealItems(driver, meal);
+                return null;
+            });
         } catch (DatabaseException e) {
             ServiceError serviceError = new ServiceError(DATABASE_ERROR_MESSAGE + e.getMessage());
             return new CreateMealServiceOutput(List.of(serviceError));
@@ -143,31 +144,33 @@ public class CreateMealService {
         Date startOfDay = DateRangeUtils.getStartOfDay(date);
         Date endOfDay = DateRangeUtils.getEndOfDay(date);
         
-        List<IRecord> rawMeals = AppBackend.db().execute(
-                new SelectQuery("meals")
+        // the database counts the meals, so only a single number is transferred
+        List<IRecord> counts = AppBackend.db().execute(
+                new AggregateQuery("meals")
+                        .count("meal_count")
                         .filter("created_on", Comparison.GREATER_EQUAL, DateToString.call(startOfDay))
                         .filter("created_on", Comparison.LESS_EQUAL, DateToString.call(endOfDay))
                         .filter("user_id", Comparison.EQUAL, currentUserId)
+                        .filter("meal_type", Comparison.EQUAL, mealType.toString())
         );
-        String mealTypeString = mealType.toString();
-        long count = rawMeals
-                .stream()
-                .filter(rawMeal -> rawMeal.getValue("meal_type").toString().equals(mealTypeString))
-                .count();
-        return count == 0;
+        return ((Number) counts.getFirst().getValue("meal_count")).longValue() == 0;
     }
 
     /**
-     * Inserts a meal item into the database.
+     * Inserts all the items of a meal into the database in a single batch.
      *
-     * @param meal The meal that contains the meal item.
-     * @param mealItem The meal item to be inserted.
-     * @throws DatabaseException If a database error occurs when inserting the record.
+     * @param driver The driver of the transaction the meal is being saved in.
+     * @param meal   The meal that contains the meal items.
+     * @throws DatabaseException If a database error occurs when inserting the records.
      */
-    private void createMealItem(Meal meal, MealItem mealItem) throws DatabaseException {
-        // ensure we know which meal the meal items is part of, so we can save the meal_id as a foreign key
-        mealItem.setParentMeal(meal);
-        AppBackend.db().execute(new InsertQuery(MealItem.getTableName(), mealItem));
+    private void createMealItems(IDatabaseDriver driver, Meal meal) throws DatabaseException {
+        InsertBatchQuery batch = new InsertBatchQuery(MealItem.getTableName());
+        for (MealItem mealItem : meal.getMealItems()) {
+            // ensure we know which meal the meal items is part of, so we can save the meal_id as a foreign key
+            mealItem.setParentMeal(meal);
+            batch.add(mealItem);
+        }
+        driver.execute(batch);
     }
 
     /**
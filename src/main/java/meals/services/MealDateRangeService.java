@@ -1,15 +1,25 @@
 package meals.services;
 
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
+import data.AggregateQuery;
+import data.Comparison;
+import data.DatabaseException;
+import data.IRecord;
+import data.SelectQuery;
+import data.SortOrder;
+import meals.models.meal.Meal;
+import shared.AppBackend;
 import shared.service_output.ServiceError;
 import shared.service_output.ServiceOutput;
+import shared.utils.DateRangeUtils;
+import shared.utils.DateToString;
 
 /**
  * Service for querying date ranges with available meal logs.
@@ -75,24 +85,27 @@ public class MealDateRangeService {
             cal.add(Calendar.DAY_OF_MONTH, 1); // Tomorrow
             Date endDate = cal.getTime();
             
-            QueryMealsService.QueryMealsServiceOutput mealsOutput = 
-                    QueryMealsService.instance().getMealsByDate(startDate, endDate);
-            
-            if (!mealsOutput.ok()) {
-                List<ServiceError> errors = List.of(new ServiceError("Error getting meal logs: " + mealsOutput.errors()));
+            List<IRecord> dayRecords;
+            try {
+                // the database groups the meals by day, so only the distinct days are transferred
+                dayRecords = AppBackend.db().execute(new AggregateQuery(Meal.getTableName())
+                        .groupByDate("created_on", "day")
+                        .filter("created_on", Comparison.GREATER_EQUAL, DateToString.call(DateRangeUtils.getStartOfDay(startDate)))
+                        .filter("created_on", Comparison.LESS_EQUAL, DateToString.call(DateRangeUtils.getEndOfDay(endDate)))
+                        .filter("user_id", Comparison.EQUAL, shared.ServiceFactory.getCurrentUserId())
+                        .sortColumn("day")
+                        .sortOrder(SortOrder.ASCENDING));
+            } catch (DatabaseException e) {
+                List<ServiceError> errors = List.of(new ServiceError("Error getting meal logs: " + e.getMessage()));
                 return new DateRangeOutput(Collections.emptyList(), null, null, errors);
             }
             
-            // Extract unique dates from meals
-            Set<Date> uniqueDates = new HashSet<>();
-            for (var meal : mealsOutput.getMeals()) {
-                Date mealDate = truncateToDay(meal.getCreatedAt());
-                uniqueDates.add(mealDate);
+            List<Date> availableDates = new ArrayList<>(dayRecords.size());
+            for (IRecord dayRecord : dayRecords) {
+                LocalDate day = ((java.sql.Date) dayRecord.getValue("day")).toLocalDate();
+                availableDates.add(Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant()));
             }
             
-            List<Date> availableDates = new ArrayList<>(uniqueDates);
-            Collections.sort(availableDates);
-            
             Date earliestDate = availableDates.isEmpty() ? null : availableDates.get(0);
             Date latestDate = availableDates.isEmpty() ? null : availableDates.get(availableDates.size() - 1);
             
@@ -113,25 +126,26 @@ public class MealDateRangeService {
      */
     public boolean hasMealLogsInRange(Date fromDate, Date toDate) {
         try {
-            QueryMealsService.QueryMealsServiceOutput mealsOutput = 
-                    QueryMealsService.instance().getMealsByDate(fromDate, toDate);
-            
-            return mealsOutput.ok() && !mealsOutput.getMeals().isEmpty();
+            // a single id is enough to know whether any meal exists
+            List<IRecord> mealRecords = AppBackend.db().execute(
+                    buildMealsInRangeQuery(fromDate, toDate).columns("id").limit(1));
+            return !mealRecords.isEmpty();
         } catch (Exception e) {
             return false;
         }
     }
 
     /**
-     * Truncates a date to just the day (removes time component).
+     * Builds a query for the current user's meals logged within the date range.
+     *
+     * @param fromDate Start date (inclusive)
+     * @param toDate End date (inclusive)
+     * @return A query selecting the meals in the range.
      */
-    private Date truncateToDay(Date date) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(date);
-        cal.set(Calendar.HOUR_OF_DAY, 0);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND, 0);
-        return cal.getTime();
+    private SelectQuery buildMealsInRangeQuery(Date fromDate, Date toDate) {
+        return new SelectQuery(Meal.getTableName())
+                .filter("created_on", Comparison.GREATER_EQUAL, DateToString.call(DateRangeUtils.getStartOfDay(fromDate)))
+                .filter("created_on", Comparison.LESS_EQUAL, DateToString.call(DateRangeUtils.getEndOfDay(toDate)))
+                .filter("user_id", Comparison.EQUAL, shared.ServiceFactory.getCurrentUserId());
     }
 }
@@ -8,7 +8,7 @@ import shared.AppBackend;
 
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
  * Service that queries the database and builds food group instances.
@@ -20,7 +20,8 @@ public class QueryFoodGroupsService {
     private static final String QUERY_FOOD_GROUP_SERVICE_ERROR_MESSAGE = "An error occurred when fetching food groups";
 
     // use a tree map for caching to allow traversing records by ascending id as if returned form the database
-    private static final Map<Integer, FoodGroup> cache = new TreeMap<>();
+    // sorted like a TreeMap, but safe to fill from the background threads used by the async driver
+    private static final Map<Integer, FoodGroup> cache = new ConcurrentSkipListMap<>();
 
     /**
      * Exception raised if an error occurs while performing a service.
@@ -38,7 +39,7 @@ public class QueryFoodGroupsService {
     /**
      * @return The singleton instance representing the service.
      */
-    public static QueryFoodGroupsService instance() {
+    public static synchronized QueryFoodGroupsService instance() {
         if (instance == null) instance = new QueryFoodGroupsService();
         return instance;
     }
@@ -1,8 +1,10 @@
 package meals.services;
 
+import csv.NutritionSnapshot;
 import data.Comparison;
 import data.DatabaseException;
 import data.IRecord;
+import data.JoinType;
 import data.SelectQuery;
 import meals.models.food.Food;
 import meals.models.food.FoodGroup;
@@ -17,6 +19,10 @@ import java.util.*;
  */
 public class QueryFoodsService {
     private static final String QUERY_FOODS_SERVICE_ERROR_MESSAGE = "An error occurred when fetching foods.";
+    /**
+     * The number of foods built together when fetching all foods.
+     */
+    private static final int BUILD_GROUP_SIZE = 500;
 
     /**
      * Exception raised if an error occurs while executing the service.
@@ -29,27 +35,81 @@ public class QueryFoodsService {
 
     private static QueryFoodsService instance;
 
+    /**
+     * The snapshot of the nutrition data the foods are read from,
+     * or null if there is no snapshot of the data currently in the database and foods are read from the database.
+     */
+    private final NutritionSnapshot snapshot;
+    /**
+     * The food groups of the snapshot, by id.
+     */
+    private final Map<Integer, FoodGroup> snapshotFoodGroups = new HashMap<>();
+    /**
+     * The nutrients of the snapshot, by id.
+     */
+    private final Map<Integer, Nutrient> snapshotNutrients = new HashMap<>();
+
+    /**
+     * Maps the nutrition snapshot compiled by the last import, if it matches the database's catalogue version.
+     */
     private QueryFoodsService() {
+        snapshot = NutritionSnapshot.openIfCurrent(NutritionSnapshot.DEFAULT_PATH, AppBackend.db());
+        if (snapshot == null) return;
+        for (int i = 0; i < snapshot.foodGroupCount(); i++) {
+            snapshotFoodGroups.put(snapshot.foodGroupId(i), new FoodGroup(snapshot.foodGroupId(i), snapshot.foodGroupName(i)));
+        }
+        for (int i = 0; i < snapshot.nutrientCount(); i++) {
+            snapshotNutrients.put(snapshot.nutrientId(i), new Nutrient(snapshot.nutrientId(i),
+                    snapshot.nutrientSymbol(i), snapshot.nutrientUnit(i), snapshot.nutrientName(i)));
+        }
     }
 
     /**
      * @return Singleton instance of the service.
      */
-    public static QueryFoodsService instance() {
+    public static synchronized QueryFoodsService instance() {
         if (instance == null) instance = new QueryFoodsService();
         return instance;
     }
 
     /**
      * Returns a list of all foods.
+     * The foods are read from the nutrition snapshot if it is current, without querying the database.
+     * Otherwise, they are read from the database joined with their measures,
+     * and built in groups so the nutrient amounts for each group are loaded with one query.
      * @return A list of all foods in the database.
      * @throws QueryFoodsServiceException Thrown if an error occurs while executing the service.
      */
     public List<Food> fetchAll() throws QueryFoodsServiceException {
+        if (snapshot != null) {
+            List<Food> foods = new ArrayList<>(snapshot.foodCount());
+            for (int i = 0; i < snapshot.foodCount(); i++) foods.add(buildFoodFromSnapshot(i));
+            return foods;
+        }
+        SelectQuery query = buildFoodsWithMeasuresQuery().sortColumn(foodField("id"));
         try {
-            List<IRecord> records = AppBackend.db().execute(new SelectQuery(Food.getTableName()));
+            // the rows are read in full before the nutrients are loaded: a streamed result holds its pooled
+            // connection until it is closed, and loading nutrients while it is open would need a second connection
+            List<IRecord> records = AppBackend.db().execute(query);
             List<Food> foods = new ArrayList<>();
-            for (IRecord record : records) foods.add(buildFoodFromRecord(record));
+            // rows are sorted by food, so every row for a food is in the same group
+            List<IRecord> group = new ArrayList<>();
+            int foodsInGroup = 0;
+            Object currentFoodId = null;
+            for (IRecord record : records) {
+                Object foodId = record.getValue(foodField("id"));
+                if (!foodId.equals(currentFoodId)) {
+                    if (foodsInGroup == BUILD_GROUP_SIZE) {
+                        foods.addAll(buildFoodsFromRecords(group));
+                        group.clear();
+                        foodsInGroup = 0;
+                    }
+                    currentFoodId = foodId;
+                    foodsInGroup++;
+                }
+                group.add(record);
+            }
+            foods.addAll(buildFoodsFromRecords(group));
             return foods;
         } catch (DatabaseException | QueryFoodGroupsService.QueryFoodGroupServiceException |
                  QueryNutrientsService.QueryNutrientServiceException e) {
@@ -64,17 +124,34 @@ public class QueryFoodsService {
      * @throws QueryFoodsServiceException Thrown if an error occurs while executing the service.
      */
     public Food findById(int id) throws QueryFoodsServiceException {
-        try {
-            SelectQuery query = new SelectQuery(Food.getTableName()).filter("id", Comparison.EQUAL, id);
-            List<IRecord> records = AppBackend.db().execute(query);
-            
-            if (records.isEmpty()) {
-                System.out.println("⚠️ Food not found with ID: " + id);
-                throw new QueryFoodsServiceException("Food not found with ID: " + id);
+        Food food = findByIds(List.of(id)).get(id);
+        if (food == null) {
+            System.out.println("⚠️ Food not found with ID: " + id);
+            throw new QueryFoodsServiceException("Food not found with ID: " + id);
+        }
+        return food;
+    }
+
+    /**
+     * Queries for the foods with the specified ids using a fixed number of queries regardless of how many ids are given.
+     * @param ids The ids of the foods to query for.
+     * @return The foods keyed by id (ids that do not match a food are omitted).
+     * @throws QueryFoodsServiceException Thrown if an error occurs while executing the service.
+     */
+    public Map<Integer, Food> findByIds(Collection<Integer> ids) throws QueryFoodsServiceException {
+        Map<Integer, Food> foods = new HashMap<>();
+        if (ids.isEmpty()) return foods;
+        if (snapshot != null) {
+            for (int id : ids) {
+                int index = snapshot.findFood(id);
+                if (index >= 0) foods.put(id, buildFoodFromSnapshot(index));
             }
-            
-            IRecord record = records.getFirst();
-            return buildFoodFromRecord(record);
+            return foods;
+        }
+        try {
+            SelectQuery query = buildFoodsWithMeasuresQuery().filter(foodField("id"), Comparison.IN, Set.copyOf(ids));
+            for (Food food : buildFoodsFromRecords(AppBackend.db().execute(query))) foods.put(food.getFoodId(), food);
+            return foods;
         } catch (DatabaseException | QueryFoodGroupsService.QueryFoodGroupServiceException |
                  QueryNutrientsService.QueryNutrientServiceException e) {
             throw new QueryFoodsServiceException(QUERY_FOODS_SERVICE_ERROR_MESSAGE);
@@ -82,36 +159,81 @@ public class QueryFoodsService {
     }
 
     /**
-     * Builds a food instance from a database record.
-     * @param food The raw data of the food.
-     * @return The food instance corresponding to the record.
+     * @return A query selecting foods joined with their measures, with one row per food and measure
+     * (or a single row with null measure fields for a food without measures).
      */
-    private static Food buildFoodFromRecord(IRecord food) throws QueryFoodGroupsService.QueryFoodGroupServiceException, DatabaseException, QueryNutrientsService.QueryNutrientServiceException {
-        int foodId = (int) food.getValue("id");
-        String description = (String) food.getValue("description");
-        int foodGroupId = (int) food.getValue("food_group_id");
-        FoodGroup foodGroup = QueryFoodGroupsService.instance().findById(foodGroupId);
-        Map<Nutrient, Float> nutrientAmounts = QueryNutrientsService.instance().findNutrientQuantitiesForFood(foodId);
-        return new Food(foodId, description, foodGroup, nutrientAmounts, getMeasures(foodId));
+    private static SelectQuery buildFoodsWithMeasuresQuery() {
+        return new SelectQuery(Food.getTableName())
+                .join(Measure.getConversionFactorsMeasuresTableName(), foodField("id"), measureField("food_id"), JoinType.LEFT);
     }
 
     /**
-     * Returns a list of measures for the specified food.
-     * @param foodId The food to find the measures for.
-     * @return The measures used for the specified food.
+     * Builds food instances from rows of foods joined with their measures,
+     * loading the nutrient amounts of every food with a single query.
+     * @param records The raw data of the foods, with the rows for each food next to each other.
+     * @return The food instances corresponding to the records, in the order the foods first appear.
      */
-    private static List<Measure> getMeasures(int foodId) throws DatabaseException {
-        SelectQuery query = new SelectQuery(Measure.getConversionFactorsMeasuresTableName())
-                .filter("food_id", Comparison.EQUAL, foodId);
-        List<IRecord> records = AppBackend.db().execute(query);
-        List<Measure> measures = new ArrayList<>();
-        for (IRecord measureRecord : records) {
-            int measureId = (int) measureRecord.getValue("measure_id");
-            String measureName = (String) measureRecord.getValue("measure_name");
+    private static List<Food> buildFoodsFromRecords(List<IRecord> records) throws QueryFoodGroupsService.QueryFoodGroupServiceException, QueryNutrientsService.QueryNutrientServiceException {
+        Map<Integer, IRecord> foodRecords = new LinkedHashMap<>();
+        Map<Integer, List<Measure>> measures = new HashMap<>();
+        for (IRecord record : records) {
+            int foodId = record.getInt(foodField("id"));
+            foodRecords.putIfAbsent(foodId, record);
+            List<Measure> foodMeasures = measures.computeIfAbsent(foodId, id -> new ArrayList<>());
+            // a food without measures still has one row from the left join, with null measure fields
+            if (record.getValue(measureField("measure_id")) == null) continue;
+            int measureId = record.getInt(measureField("measure_id"));
+            String measureName = (String) record.getValue(measureField("measure_name"));
             // we are fine with losing precision because the value is constant and a small number of decimal places
-            Double conversionFactorValue = (Double) measureRecord.getValue("conversion_factor_value");
-            measures.add(new Measure(measureId, measureName, conversionFactorValue.floatValue()));
+            float conversionFactorValue = (float) record.getDouble(measureField("conversion_factor_value"));
+            foodMeasures.add(new Measure(measureId, measureName, conversionFactorValue));
+        }
+        Map<Integer, Map<Nutrient, Float>> nutrientAmounts =
+                QueryNutrientsService.instance().findNutrientQuantitiesForFoods(foodRecords.keySet());
+        List<Food> foods = new ArrayList<>(foodRecords.size());
+        for (Map.Entry<Integer, IRecord> entry : foodRecords.entrySet()) {
+            int foodId = entry.getKey();
+            String description = (String) entry.getValue().getValue(foodField("description"));
+            int foodGroupId = entry.getValue().getInt(foodField("food_group_id"));
+            FoodGroup foodGroup = QueryFoodGroupsService.instance().findById(foodGroupId);
+            foods.add(new Food(foodId, description, foodGroup,
+                    nutrientAmounts.getOrDefault(foodId, new HashMap<>()), measures.get(foodId)));
+        }
+        return foods;
+    }
+
+    /**
+     * Builds a food from the nutrition snapshot.
+     * @param index The index of the food in the snapshot.
+     * @return The food instance.
+     */
+    private Food buildFoodFromSnapshot(int index) {
+        Map<Nutrient, Float> nutrientAmounts = new HashMap<>();
+        for (int i = 0; i < snapshot.amountCount(index); i++) {
+            nutrientAmounts.put(snapshotNutrients.get(snapshot.amountNutrientId(index, i)), snapshot.amountValue(index, i));
+        }
+        List<Measure> measures = new ArrayList<>(snapshot.measureCount(index));
+        for (int i = 0; i < snapshot.measureCount(index); i++) {
+            measures.add(new Measure(snapshot.measureId(index, i), snapshot.measureName(index, i),
+                    snapshot.measureConversionFactor(index, i)));
         }
-        return measures;
+        return new Food(snapshot.foodId(index), snapshot.foodDescription(index),
+                snapshotFoodGroups.get(snapshot.foodGroupIdOfFood(index)), nutrientAmounts, measures);
+    }
+
+    /**
+     * @param field A field of the foods table.
+     * @return The field qualified with the foods table name.
+     */
+    private static String foodField(String field) {
+        return Food.getTableName() + "." + field;
+    }
+
+    /**
+     * @param field A field of the measures view.
+     * @return The field qualified with the measures view name.
+     */
+    private static String measureField(String field) {
+        return Measure.getConversionFactorsMeasuresTableName() + "." + field;
     }
 }
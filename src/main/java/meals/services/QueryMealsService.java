@@ -4,7 +4,10 @@ package meals.services;
 import data.Comparison;
 import data.DatabaseException;
 import data.IRecord;
+import data.JoinType;
+import data.Page;
 import data.SelectQuery;
+import data.SortOrder;
 import meals.models.food.Food;
 import meals.models.food.Measure;
 import meals.models.meal.Meal;
@@ -22,6 +25,10 @@ import java.util.*;
  */
 public class QueryMealsService {
     private static final String DATABASE_EXCEPTION_MESSAGE = "An error occurred when fetching meals from the database.";
+    /**
+     * The number of meals built together, so the foods of their items can be loaded with one query.
+     */
+    private static final int BUILD_GROUP_SIZE = 500;
     private static QueryMealsService instance;
 
     /**
@@ -40,6 +47,31 @@ public class QueryMealsService {
         }
     }
 
+    /**
+     * Output of the service consisting of one page of meals, the token for the next page and errors.
+     */
+    public static class QueryMealPageOutput extends ServiceOutput {
+        private final List<Meal> meals;
+        private final String nextPageToken;
+
+        public QueryMealPageOutput(List<Meal> meals, String nextPageToken, List<ServiceError> errors) {
+            super(errors);
+            this.meals = meals;
+            this.nextPageToken = nextPageToken;
+        }
+
+        public List<Meal> getMeals() {
+            return meals;
+        }
+
+        /**
+         * @return The token to pass back to read the next page, or null if this is the last page.
+         */
+        public String getNextPageToken() {
+            return nextPageToken;
+        }
+    }
+
     /**
      * @return Singleton instance of the service.
      */
@@ -63,34 +95,43 @@ public class QueryMealsService {
      */
     public QueryMealsServiceOutput getMealsByDate(Date fromDate, Date toDate) {
         try {
-            // Get current user ID
-            int currentUserId = 1; // Default fallback
-            try {
-                var currentUser = shared.ServiceFactory.getProfileService().getCurrentSession();
-                if (currentUser.isPresent()) {
-                    currentUserId = currentUser.get().getId();
-                    System.out.println("🔍 Querying meals for user ID: " + currentUserId);
-                } else {
-                    System.out.println("WARNING: No active user session, using default user ID: " + currentUserId);
-                }
-            } catch (Exception e) {
-                System.out.println("ERROR: Error getting current user: " + e.getMessage());
-            }
+            int currentUserId = shared.ServiceFactory.getCurrentUserId();
+            System.out.println("🔍 Querying meals for user ID: " + currentUserId);
             
             // Create proper datetime ranges for the query using utility methods
             Date startOfDay = DateRangeUtils.getStartOfDay(fromDate);
             Date endOfDay = DateRangeUtils.getEndOfDay(toDate);
             
-            List<IRecord> mealRecords = AppBackend.db().execute(
-                    new SelectQuery(Meal.getTableName())
-                            .filter("created_on", Comparison.GREATER_EQUAL, DateToString.call(startOfDay))
-                            .filter("created_on", Comparison.LESS_EQUAL, DateToString.call(endOfDay))
-                            .filter("user_id", Comparison.EQUAL, currentUserId)
-            );
+            // each meal is joined with its items, so the meal graph is read in a single query
+            SelectQuery mealsQuery = new SelectQuery(Meal.getTableName())
+                    .join(MealItem.getTableName(), mealField("id"), mealItemField("meal_id"), JoinType.LEFT)
+                    .filter(mealField("created_on"), Comparison.GREATER_EQUAL, DateToString.call(startOfDay))
+                    .filter(mealField("created_on"), Comparison.LESS_EQUAL, DateToString.call(endOfDay))
+                    .filter(mealField("user_id"), Comparison.EQUAL, currentUserId)
+                    .sortColumn(mealField("id"));
+            // the rows are read in full before the foods are loaded: a streamed result holds its pooled connection
+            // until it is closed, and loading foods while it is open would need a second connection per call
+            List<IRecord> records = AppBackend.db().execute(mealsQuery);
             List<Meal> meals = new ArrayList<>();
-            for (IRecord mealRecord: mealRecords) {
-                meals.add(buildMealForRecord(mealRecord));
+            // the meals are built in groups, so the foods of each group are loaded together;
+            // rows are sorted by meal, so every row for a meal is in the same group
+            List<IRecord> group = new ArrayList<>();
+            int mealsInGroup = 0;
+            Object currentMealId = null;
+            for (IRecord record : records) {
+                Object mealId = record.getValue(mealField("id"));
+                if (!mealId.equals(currentMealId)) {
+                    if (mealsInGroup == BUILD_GROUP_SIZE) {
+                        meals.addAll(buildMealsForRecords(group));
+                        group.clear();
+                        mealsInGroup = 0;
+                    }
+                    currentMealId = mealId;
+                    mealsInGroup++;
+                }
+                group.add(record);
             }
+            meals.addAll(buildMealsForRecords(group));
             return new QueryMealsServiceOutput(meals, Collections.emptyList());
         } catch (DatabaseException | QueryFoodsService.QueryFoodsServiceException e) {
             System.out.println("ERROR: Database/Service Exception in QueryMealsService:");
@@ -102,60 +143,110 @@ public class QueryMealsService {
         }
     }
 
+    /**
+     * Queries one page of the current user's meals, newest first.
+     * Each page seeks past the previous one using the (user_id, created_on) index,
+     * so reading a deep page costs the same as reading the first.
+     * @param pageToken The next page token of the previous page, or null to read the first page.
+     * @param pageSize The maximum number of meals on the page.
+     * @return The meals on the page and the token for the next page.
+     */
+    public QueryMealPageOutput getMealHistoryPage(String pageToken, int pageSize) {
+        try {
+            SelectQuery pageQuery = new SelectQuery(Meal.getTableName())
+                    .columns("id", "created_on")
+                    .filter("user_id", Comparison.EQUAL, shared.ServiceFactory.getCurrentUserId())
+                    .sortColumn("created_on")
+                    .keyColumn("id")
+                    .sortOrder(SortOrder.DESCENDING);
+            if (pageToken != null) pageQuery.after(pageToken);
+            Page page = AppBackend.db().page(pageQuery, pageSize);
+            List<Integer> mealIds = new ArrayList<>(page.records().size());
+            for (IRecord record : page.records()) mealIds.add((Integer) record.getValue("id"));
+            if (mealIds.isEmpty()) return new QueryMealPageOutput(Collections.emptyList(), null, Collections.emptyList());
+
+            // the page only holds meal ids, so the full meals on it are read in a single query
+            List<IRecord> records = AppBackend.db().execute(new SelectQuery(Meal.getTableName())
+                    .join(MealItem.getTableName(), mealField("id"), mealItemField("meal_id"), JoinType.LEFT)
+                    .filter(mealField("id"), Comparison.IN, mealIds)
+                    .sortColumn(mealField("id")));
+            Map<Integer, Meal> mealsById = new HashMap<>();
+            for (Meal meal : buildMealsForRecords(records)) mealsById.put(meal.getId(), meal);
+            List<Meal> meals = new ArrayList<>(mealIds.size());
+            for (Integer mealId : mealIds) meals.add(mealsById.get(mealId));
+            return new QueryMealPageOutput(meals, page.nextPageToken(), Collections.emptyList());
+        } catch (DatabaseException | QueryFoodsService.QueryFoodsServiceException | IllegalArgumentException e) {
+            List<ServiceError> errors = List.of(new ServiceError(DATABASE_EXCEPTION_MESSAGE + e.getMessage()));
+            return new QueryMealPageOutput(Collections.emptyList(), null, errors);
+        }
+    }
+
+    /**
+     * Builds meal objects given rows of meals joined with their items.
+     * The foods referred to by every meal item are loaded together.
+     * @param records The raw meal data, with the rows for each meal next to each other.
+     * @return The meal objects built using the raw data, in the order the meals first appear.
+     * @throws QueryFoodsService.QueryFoodsServiceException Thrown if the foods of the meal items cannot be loaded.
+     */
+    private static List<Meal> buildMealsForRecords(List<IRecord> records) throws QueryFoodsService.QueryFoodsServiceException {
+        Map<Integer, IRecord> mealRecords = new LinkedHashMap<>();
+        Set<Integer> foodIds = new HashSet<>();
+        for (IRecord record : records) {
+            mealRecords.putIfAbsent((Integer) record.getValue(mealField("id")), record);
+            // a meal without items still has one row from the left join, with null meal item fields
+            if (record.getValue(mealItemField("id")) != null) foodIds.add((Integer) record.getValue(mealItemField("food_id")));
+        }
+        Map<Integer, Food> foods = QueryFoodsService.instance().findByIds(foodIds);
+        Map<Integer, List<MealItem>> mealItemsByMeal = new HashMap<>();
+        for (IRecord record : records) {
+            List<MealItem> mealItems = mealItemsByMeal
+                    .computeIfAbsent((Integer) record.getValue(mealField("id")), mealId -> new ArrayList<>());
+            if (record.getValue(mealItemField("id")) != null) mealItems.add(buildMealItemForRecord(record, foods));
+        }
+        List<Meal> meals = new ArrayList<>(mealRecords.size());
+        for (Map.Entry<Integer, IRecord> entry : mealRecords.entrySet()) {
+            meals.add(buildMealForRecord(entry.getValue(), mealItemsByMeal.get(entry.getKey())));
+        }
+        return meals;
+    }
+
     /**
      * Builds a meal object given a record containing the raw data.
      * @param mealRecord The raw meal data.
+     * @param mealItems The items belonging to the meal.
      * @return A meal object built using the raw data.
-     * @throws DatabaseException Thrown if a database error occurs when querying the database.
      */
-    private static Meal buildMealForRecord(IRecord mealRecord) throws DatabaseException, QueryFoodsService.QueryFoodsServiceException {
-        Integer id = (Integer) mealRecord.getValue("id");
-        String mealTypeString = (String) mealRecord.getValue("meal_type");
+    private static Meal buildMealForRecord(IRecord mealRecord, List<MealItem> mealItems) {
+        Integer id = (Integer) mealRecord.getValue(mealField("id"));
+        String mealTypeString = (String) mealRecord.getValue(mealField("meal_type"));
         Meal.MealType mealType = Meal.MealType.fromString(mealTypeString);
         
         // Get created_on as LocalDateTime (DATETIME field)
-        java.time.LocalDateTime localDateTime = (java.time.LocalDateTime) mealRecord.getValue("created_on");
+        java.time.LocalDateTime localDateTime = (java.time.LocalDateTime) mealRecord.getValue(mealField("created_on"));
         Date createdAt = Date.from(localDateTime.atZone(java.time.ZoneId.systemDefault()).toInstant());
         
-        Integer userId = (Integer) mealRecord.getValue("user_id");
-        List<MealItem> mealItems = buildMealItemsForMeal(mealRecord);
+        Integer userId = (Integer) mealRecord.getValue(mealField("user_id"));
         return new Meal(id, mealType, mealItems, createdAt, userId);
     }
 
-    /**
-     * Builds a list of meal items for the given meal record.
-     * @param mealRecord The raw data for the meal item.
-     * @return A meal item built using the raw data.
-     * @throws DatabaseException Thrown if a database error occurs when querying the database.
-     */
-    private static List<MealItem> buildMealItemsForMeal(IRecord mealRecord) throws DatabaseException, QueryFoodsService.QueryFoodsServiceException {
-        List<IRecord> mealItemRecords = AppBackend.db().execute(
-                new SelectQuery(MealItem.getTableName())
-                        .filter("meal_id", Comparison.EQUAL, mealRecord.getValue("id"))
-        );
-        List<MealItem> mealItems = new ArrayList<>();
-        for (IRecord mealItemRecord: mealItemRecords) {
-            mealItems.add(buildMealItemForRecord(mealItemRecord));
-        }
-        return mealItems;
-    }
-
     /**
      * Builds a meal item for the given record.
      * @param mealItemRecord The raw data to use to build the meal item.
+     * @param foods The foods referred to by the meal items being built, keyed by id.
      * @return The meal item built using the raw data.
      */
-    private static MealItem buildMealItemForRecord(IRecord mealItemRecord) throws QueryFoodsService.QueryFoodsServiceException {
+    private static MealItem buildMealItemForRecord(IRecord mealItemRecord, Map<Integer, Food> foods) throws QueryFoodsService.QueryFoodsServiceException {
         try {
-            Integer id = (Integer) mealItemRecord.getValue("id");
-            Integer foodId = (Integer) mealItemRecord.getValue("food_id");
+            Integer id = (Integer) mealItemRecord.getValue(mealItemField("id"));
+            Integer foodId = (Integer) mealItemRecord.getValue(mealItemField("food_id"));
             System.out.println("Building meal item - ID: " + id + ", Food ID: " + foodId);
             
-            Food food = QueryFoodsService.instance().findById(foodId);
+            Food food = foods.get(foodId);
+            if (food == null) throw new QueryFoodsService.QueryFoodsServiceException("Food not found with ID: " + foodId);
             System.out.println("Found food: " + food.getFoodDescription());
             
-            Float quantity = (Float) mealItemRecord.getValue("quantity");
-            Integer measureId = (Integer) mealItemRecord.getValue("measure_id");
+            Float quantity = (Float) mealItemRecord.getValue(mealItemField("quantity"));
+            Integer measureId = (Integer) mealItemRecord.getValue(mealItemField("measure_id"));
             System.out.println("Looking for measure ID: " + measureId + " in food's possible measures");
             
             // we know the measure belonging to the meal item also belongs to the food,
@@ -188,6 +279,22 @@ public class QueryMealsService {
         }
     }
 
+    /**
+     * @param field A field of the meals table.
+     * @return The field qualified with the meals table name.
+     */
+    private static String mealField(String field) {
+        return Meal.getTableName() + "." + field;
+    }
+
+    /**
+     * @param field A field of the meal items table.
+     * @return The field qualified with the meal items table name.
+     */
+    private static String mealItemField(String field) {
+        return MealItem.getTableName() + "." + field;
+    }
+
     /**
      * Example script demonstrating usage of the service.
      * @param args Command line args (unused).
@@ -7,10 +7,11 @@ import data.SelectQuery;
 import meals.models.nutrient.Nutrient;
 import shared.AppBackend;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
  * Service that queries the database and constructs nutrients.
@@ -21,7 +22,8 @@ import java.util.TreeMap;
 public class QueryNutrientsService {
     private static final String QUERY_NUTRIENT_SERVICE_ERROR_MESSAGE = "An error occurred when fetching nutrients";
 
-    private static final Map<Integer, Nutrient> cache = new TreeMap<>();
+    // sorted like a TreeMap, but safe to fill from the background threads used by the async driver
+    private static final Map<Integer, Nutrient> cache = new ConcurrentSkipListMap<>();
 
     /**
      * Exception to be raised when an error occurs when executing the service.
@@ -40,7 +42,7 @@ public class QueryNutrientsService {
     /**
      * @return Singleton instance for the service.
      */
-    public static QueryNutrientsService instance() {
+    public static synchronized QueryNutrientsService instance() {
         if (instance == null) instance = new QueryNutrientsService();
         return instance;
     }
@@ -82,20 +84,32 @@ public class QueryNutrientsService {
      * @return The nutrients and their amounts for the specified food.
      */
     public Map<Nutrient, Float> findNutrientQuantitiesForFood(int foodId) throws QueryNutrientServiceException {
-        Map<Nutrient, Float> nutrientAmountsMap = new HashMap<>();
+        return findNutrientQuantitiesForFoods(List.of(foodId)).getOrDefault(foodId, new HashMap<>());
+    }
+
+    /**
+     * Queries for the nutrients and their quantities for several foods using a single query.
+     * @param foodIds The food IDs to query nutrient amounts for.
+     * @return The nutrients and their amounts keyed by food ID (foods without any nutrient amounts are omitted).
+     */
+    public Map<Integer, Map<Nutrient, Float>> findNutrientQuantitiesForFoods(Collection<Integer> foodIds)
+            throws QueryNutrientServiceException {
+        Map<Integer, Map<Nutrient, Float>> nutrientAmountsByFood = new HashMap<>();
+        if (foodIds.isEmpty()) return nutrientAmountsByFood;
         try {
             SelectQuery query = new SelectQuery(Nutrient.getNutrientAmountsTableName())
-                    .filter("food_id", Comparison.EQUAL, foodId);
+                    .filter("food_id", Comparison.IN, foodIds);
             List<IRecord> nutrientAmountRecords = AppBackend.db().execute(query);
             for (IRecord nutrientAmountRecord : nutrientAmountRecords) {
-                Float amount = ((Double) nutrientAmountRecord.getValue("nutrient_value")).floatValue();
+                int foodId = nutrientAmountRecord.getInt("food_id");
+                float amount = (float) nutrientAmountRecord.getDouble("nutrient_value");
                 Nutrient nutrient = QueryNutrientsService.instance()
-                        .findById((int) nutrientAmountRecord.getValue("nutrient_id"));
-                nutrientAmountsMap.put(nutrient, amount);
+                        .findById(nutrientAmountRecord.getInt("nutrient_id"));
+                nutrientAmountsByFood.computeIfAbsent(foodId, id -> new HashMap<>()).put(nutrient, amount);
             }
         } catch (DatabaseException e) {
             throw new QueryNutrientServiceException(QUERY_NUTRIENT_SERVICE_ERROR_MESSAGE);
         }
-        return nutrientAmountsMap;
+        return nutrientAmountsByFood;
     }
 }
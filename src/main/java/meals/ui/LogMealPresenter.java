@@ -7,7 +7,9 @@ import meals.models.food.Food;
 import meals.models.food.Measure;
 import meals.models.meal.Meal;
 import meals.models.meal.MealItem;
+import data.DatabaseException;
 import meals.services.CreateMealService;
+import shared.AppBackend;
 import shared.navigation.NavigationPresenter;
 
 import java.util.*;
@@ -19,7 +21,6 @@ import java.util.*;
 public class LogMealPresenter {
     private static final String INVALID_QUANTITY_MESSAGE = "Invalid quantity. Value must be a number > 0.";
     private static final String DUPLICATE_FOOD_MESSAGE = "Foods for a meal must be unique.";
-    private static final int MAX_RANDOM_ID = 10_000;
 
     private final LogMealView view;
 
@@ -48,9 +49,19 @@ public class LogMealPresenter {
     private void createMeal() {
         System.out.println("=== STARTING MEAL CREATION ===");
         
-        List<MealItem> mealItems = buildMealItemsFromForm();
+        List<MealItem> mealItems;
+        int mealId;
+        try {
+            // ids are reserved from the database in blocks, so they never collide and the meal items
+            // can reference the meal before either is inserted
+            mealItems = buildMealItemsFromForm();
+            mealId = AppBackend.ids().nextIntId(Meal.getTableName());
+        } catch (DatabaseException e) {
+            System.out.println("ERROR: Could not reserve ids for the meal: " + e.getMessage());
+            view.showErrorMessage("An error occurred when saving the meal: " + e.getMessage());
+            return;
+        }
         // only support logging meals for the current day
-        int randomId = new Random().nextInt(MAX_RANDOM_ID);
         Meal.MealType mealType = view.getSelectedMealType();
         Date today = new Date();
         
@@ -68,10 +79,10 @@ public class LogMealPresenter {
             System.out.println("ERROR: Error getting current user: " + e.getMessage());
         }
         
-        Meal meal = new Meal(randomId, mealType, mealItems, today, currentUserId);
+        Meal meal = new Meal(mealId, mealType, mealItems, today, currentUserId);
         
         System.out.println("Meal Details:");
-        System.out.println("   ID: " + randomId);
+        System.out.println("   ID: " + mealId);
         System.out.println("   Type: " + mealType);
         System.out.println("   Date: " + today);
         System.out.println("   Items: " + mealItems.size());
@@ -103,8 +114,9 @@ public class LogMealPresenter {
 
     /**
      * Builds a list of meal items from the form input.
+     * @throws DatabaseException Thrown if ids for the meal items cannot be reserved.
      */
-    private List<MealItem> buildMealItemsFromForm() {
+    private List<MealItem> buildMealItemsFromForm() throws DatabaseException {
         List<MealItem> mealItems = new ArrayList<>();
         System.out.println("Building meal items from form...");
         System.out.println("Selected items count: " + view.getSelectedItemsAddedToMeal().size());
@@ -122,7 +134,7 @@ public class LogMealPresenter {
             }
             
             MealItem mealItem = new MealItem(
-                new Random().nextInt(MAX_RANDOM_ID),
+                AppBackend.ids().nextIntId(MealItem.getTableName()),
                 selectedFoodListItem.food(),
                 selectedFoodListItem.quantity(),
                 selectedFoodListItem.measure()
@@ -1,10 +1,27 @@
 package shared;
 
+import csv.LoadNutritionDataService;
+import data.AsyncDatabaseDriver;
+import data.CachingDatabaseDriver;
+import data.DatabaseHost;
+import data.IAsyncDatabaseDriver;
+import data.IdAllocator;
 import data.IDatabaseDriver;
+import data.InMemoryDriver;
+import data.InstrumentedDatabaseDriver;
+import data.Migration;
+import data.MigrationRunner;
 import data.MySQLDriver;
 import data.MySQLConfig;
+import data.RoutingDatabaseDriver;
 import data.DatabaseException;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Represents the backend of the application.
  * Contains global data for the application.
@@ -18,6 +35,32 @@ public class AppBackend {
      * Constant denoting our CI environment.
      */
     public static final String CI = "CI";
+    /**
+     * Constant denoting the offline environment, where the app runs against an in-memory database
+     * loaded from the SQL scripts and nutrition CSVs instead of MySQL.
+     */
+    public static final String OFFLINE = "OFFLINE";
+    /**
+     * The script that creates the database schema.
+     */
+    private static final String CREATE_DATABASE_SCRIPT = "src/main/java/data/create-database.sql";
+    /**
+     * The script that seeds the database.
+     */
+    private static final String SEED_DATABASE_SCRIPT = "src/main/java/data/seed-database.sql";
+    /**
+     * The directory holding the schema migrations applied when the app starts.
+     */
+    private static final String MIGRATIONS_DIRECTORY = "src/main/java/data/migrations";
+    /**
+     * The maximum number of select results kept in the query cache.
+     */
+    private static final int QUERY_CACHE_SIZE = 256;
+    /**
+     * How long results for the nutrition reference tables stay in the query cache.
+     * The reference tables are only written by the CSV import, which runs as its own process before the app starts.
+     */
+    private static final Duration REFERENCE_DATA_TIME_TO_LIVE = Duration.ofHours(1);
     /**
      * The singleton instance of the app backend.
      */
@@ -26,11 +69,23 @@ public class AppBackend {
      * The database driver to use to execute queries.
      */
     private IDatabaseDriver db;
+    /**
+     * Records latency statistics for every query that reaches the database (the layer under the query cache).
+     */
+    private InstrumentedDatabaseDriver instrumentedDb;
+    /**
+     * Runs database operations in the background so the UI thread is never blocked.
+     */
+    private IAsyncDatabaseDriver asyncDb;
+    /**
+     * Hands out ids for new records from blocks reserved in the database.
+     */
+    private IdAllocator ids;
 
     /**
      * @return The instance representing the backend of the application.
      */
-    public static AppBackend instance() {
+    public static synchronized AppBackend instance() {
         if (instance == null) {
             instance = new AppBackend();
         }
@@ -42,8 +97,28 @@ public class AppBackend {
      */
     private AppBackend() {
         try {
-            db = new MySQLDriver(MySQLConfig.instance());
-        } catch (DatabaseException e) {
+            MySQLConfig config = MySQLConfig.instance();
+            // the instrumentation sits under the query cache, so it times the queries that reach the database
+            // and cache hits do not pull the latency of their shapes down
+            instrumentedDb = new InstrumentedDatabaseDriver(
+                    createDriver(), Duration.ofMillis(config.getSlowQueryThresholdMillis()));
+            if (config.getStatisticsFile() != null) {
+                instrumentedDb.startPeriodicDump(
+                        Path.of(config.getStatisticsFile()),
+                        Duration.ofSeconds(config.getStatisticsDumpIntervalSeconds()));
+            }
+            db = new CachingDatabaseDriver(instrumentedDb, QUERY_CACHE_SIZE)
+                    .cacheCollection("foods", REFERENCE_DATA_TIME_TO_LIVE)
+                    .cacheCollection("food_groups", REFERENCE_DATA_TIME_TO_LIVE)
+                    .cacheCollection("nutrients", REFERENCE_DATA_TIME_TO_LIVE)
+                    .cacheCollection("measures", REFERENCE_DATA_TIME_TO_LIVE)
+                    .cacheCollection("conversion_factors", REFERENCE_DATA_TIME_TO_LIVE)
+                    .cacheCollection("conversion_factors_with_measure_details", REFERENCE_DATA_TIME_TO_LIVE,
+                            "conversion_factors", "measures");
+            // at most one query per pooled connection runs at once
+            asyncDb = new AsyncDatabaseDriver(db, MySQLConfig.instance().getMaxPoolSize());
+            ids = new IdAllocator(db);
+        } catch (DatabaseException | IOException e) {
             // for now, crash on startup if the database connection cannot be established
             // in the future, we should handle this more gracefully in the UI
             System.out.println("Database crashed on startup:\n" + e.getMessage());
@@ -51,10 +126,78 @@ public class AppBackend {
         }
     }
 
+    /**
+     * Creates the driver for the environment: MySQL by default, or an in-memory database when APP_ENV is OFFLINE.
+     * Pending schema migrations are applied to the primary before the driver is returned.
+     * When read replicas are configured, selects are spread across them and writes go to the primary.
+     *
+     * @return The driver to wrap with the query cache.
+     * @throws DatabaseException Thrown if the database cannot be connected to or loaded.
+     * @throws IOException       Thrown if a script, migration or CSV for the database cannot be read.
+     */
+    private static IDatabaseDriver createDriver() throws DatabaseException, IOException {
+        MySQLConfig config = MySQLConfig.instance();
+        if (OFFLINE.equals(System.getenv(APP_ENV))) {
+            InMemoryDriver driver = new InMemoryDriver(config)
+                    .runScript(CREATE_DATABASE_SCRIPT)
+                    .runScript(SEED_DATABASE_SCRIPT);
+            // the import records its catalogue version in a table created by a migration
+            migrate(driver);
+            LoadNutritionDataService.load(driver);
+            return driver;
+        }
+        MySQLDriver primary = new MySQLDriver(config);
+        migrate(primary);
+        if (config.getReplicaHosts().isEmpty()) return primary;
+        List<MySQLDriver> replicas = new ArrayList<>();
+        for (DatabaseHost host : config.getReplicaHosts()) {
+            replicas.add(new MySQLDriver(config, host));
+        }
+        RoutingDatabaseDriver router = new RoutingDatabaseDriver(
+                primary, replicas, Duration.ofMillis(config.getReadYourWritesWindowMillis()));
+        System.out.println("Reading from " + router.checkReplicas() + " of " + replicas.size() + " read replicas");
+        router.startHealthChecks(Duration.ofMillis(config.getReplicaHealthCheckIntervalMillis()));
+        return router;
+    }
+
+    /**
+     * Applies the pending schema migrations.
+     *
+     * @param driver The driver for the database to migrate (the primary if there are read replicas).
+     * @throws DatabaseException Thrown if a migration fails or was changed after it was applied.
+     * @throws IOException       Thrown if the migrations cannot be read.
+     */
+    private static void migrate(IDatabaseDriver driver) throws DatabaseException, IOException {
+        for (Migration migration : new MigrationRunner(driver, Path.of(MIGRATIONS_DIRECTORY)).migrate()) {
+            System.out.println("Applied schema migration " + migration);
+        }
+    }
+
     /**
      * @return The database driver used to execute database queries for the app.
      */
     public static IDatabaseDriver db() {
         return instance().db;
     }
+
+    /**
+     * @return The driver recording latency statistics and slow queries for every query that reaches the database.
+     */
+    public static InstrumentedDatabaseDriver queryStatistics() {
+        return instance().instrumentedDb;
+    }
+
+    /**
+     * @return The driver used to run database operations in the background, such as from the Swing event thread.
+     */
+    public static IAsyncDatabaseDriver asyncDb() {
+        return instance().asyncDb;
+    }
+
+    /**
+     * @return The allocator used to give new records ids before they are inserted.
+     */
+    public static IdAllocator ids() {
+        return instance().ids;
+    }
 }
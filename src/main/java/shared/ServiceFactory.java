@@ -36,4 +36,24 @@ public class ServiceFactory {
     public static IProfileService getProfileService() {
         return PROFILE_SERVICE;
     }
+
+    /**
+     * Gets the ID of the logged-in user.
+     * 
+     * @return the ID of the logged-in user, or the default user if there is no active session
+     */
+    public static int getCurrentUserId() {
+        int currentUserId = 1; // Default fallback
+        try {
+            var currentUser = PROFILE_SERVICE.getCurrentSession();
+            if (currentUser.isPresent()) {
+                currentUserId = currentUser.get().getId();
+            } else {
+                System.out.println("WARNING: No active user session, using default user ID: " + currentUserId);
+            }
+        } catch (Exception e) {
+            System.out.println("ERROR: Error getting current user: " + e.getMessage());
+        }
+        return currentUserId;
+    }
 }
@@ -2,9 +2,11 @@ package statistics.presenter;
 
 import meals.models.meal.Meal;
 import meals.services.QueryMealsService;
+import shared.AppBackend;
 import statistics.service.StatisticsService;
 import statistics.view.INutrientBreakdownView;
 
+import javax.swing.SwingUtilities;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -26,12 +28,27 @@ public class NutrientBreakdownPresenter {
     }
     
     /**
-     * Handle chart generation requests from the view
+     * Handle chart generation requests from the view.
+     * The meals are queried in the background so the UI stays responsive, and the chart is built back on the UI thread.
      */
     private void handleGenerateChartRequest(Date startDate, Date endDate) {
+        AppBackend.asyncDb()
+                .submit(() -> QueryMealsService.instance().getMealsByDate(startDate, endDate))
+                .whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        System.err.println("❌ Error in NutrientBreakdownPresenter: " + error.getMessage());
+                        view.showError("Failed to generate nutrient breakdown: " + error.getMessage());
+                    } else {
+                        showNutrientBreakdown(result, startDate, endDate);
+                    }
+                }));
+    }
+
+    /**
+     * Builds the nutrient breakdown for the meals in the date range and passes it to the view.
+     */
+    private void showNutrientBreakdown(QueryMealsService.QueryMealsServiceOutput result, Date startDate, Date endDate) {
         try {
-            // Get meals for the date range
-            QueryMealsService.QueryMealsServiceOutput result = QueryMealsService.instance().getMealsByDate(startDate, endDate);
             List<Meal> meals = result.getMeals();
             
             if (meals.isEmpty()) {
@@ -5,6 +5,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 import meals.models.food.Food;
@@ -13,6 +14,7 @@ import meals.models.meal.MealItem;
 import meals.models.nutrient.Nutrient;
 import meals.services.QueryFoodsService;
 import meals.services.QueryMealsService;
+import shared.AppBackend;
 import swaps.models.Goal;
 import swaps.models.Swap;
 import swaps.models.SwapWithMealContext;
@@ -73,7 +75,7 @@ public class SwapGenerationService {
             }
             
             // Get all available foods for finding alternatives
-            List<Food> allFoods = QueryFoodsService.instance().fetchAll();
+            List<Food> allFoods = fetchAllFoods();
             
             // Generate potential swaps only for logged foods
             List<Swap> potentialSwaps = new ArrayList<>();
@@ -132,7 +134,7 @@ public class SwapGenerationService {
             }
             
             // Get all available foods for finding alternatives
-            List<Food> allFoods = QueryFoodsService.instance().fetchAll();
+            List<Food> allFoods = fetchAllFoods();
             
             // Generate potential swaps with meal context
             List<SwapWithMealContext> potentialSwaps = new ArrayList<>();
@@ -196,7 +198,7 @@ public class SwapGenerationService {
             }
             
             // Get all available foods for finding alternatives
-            List<Food> allFoods = QueryFoodsService.instance().fetchAll();
+            List<Food> allFoods = fetchAllFoods();
             
             // Generate potential swaps with meal context
             List<SwapWithMealContext> potentialSwaps = new ArrayList<>();
@@ -311,6 +313,21 @@ public class SwapGenerationService {
         }
     }
 
+    /**
+     * Loads every food on the asynchronous driver and waits for it.
+     * Only called once the user is known to have logged meals, so no load is left running unused.
+     * @return Every food in the database.
+     * @throws QueryFoodsService.QueryFoodsServiceException Thrown if the foods could not be loaded.
+     */
+    private static List<Food> fetchAllFoods() throws QueryFoodsService.QueryFoodsServiceException {
+        try {
+            return AppBackend.asyncDb().submit(() -> QueryFoodsService.instance().fetchAll()).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof QueryFoodsService.QueryFoodsServiceException cause) throw cause;
+            throw new QueryFoodsService.QueryFoodsServiceException(e.getCause().getMessage());
+        }
+    }
+
     /**
      * Helper method to get meals for a specific date with proper date range calculation.
      */
@@ -5,6 +5,9 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
+import javax.swing.SwingUtilities;
+
+import shared.AppBackend;
 import swaps.models.Goal;
 import swaps.models.SwapWithMealContext;
 import swaps.services.GoalValidationService;
@@ -488,29 +491,47 @@ public class SwapsPresenter {
 
     /**
      * Generates swaps based on current goals and loads them into the select swap view.
+     * The swaps are generated in the background so the UI stays responsive while the meals and foods are queried.
      */
     private void generateAndLoadSwaps() {
         try {
             List<Goal> goals = extractGoalsFromForm();
             
             // Use the selected date range from the first goal's form
-            Date fromDate = goal1Presenter.getFromDate();
-            Date toDate = goal1Presenter.getToDate();
+            Date selectedFromDate = goal1Presenter.getFromDate();
+            Date selectedToDate = goal1Presenter.getToDate();
             
-            if (fromDate == null || toDate == null) {
+            if (selectedFromDate == null || selectedToDate == null) {
                 // Fallback to today if no date range selected
-                fromDate = toDate = new Date();
-            }
-            
-            SwapGenerationService.SwapWithMealContextResult result;
-            if (fromDate.equals(toDate)) {
-                // Single date generation with meal context
-                result = SwapGenerationService.instance().generateSwapsWithMealContextForDate(goals, fromDate);
-            } else {
-                // Date range generation with meal context
-                result = SwapGenerationService.instance().generateSwapsWithMealContextForDateRange(goals, fromDate, toDate);
+                selectedFromDate = selectedToDate = new Date();
             }
+            Date fromDate = selectedFromDate;
+            Date toDate = selectedToDate;
+            
+            AppBackend.asyncDb()
+                    .submit(() -> fromDate.equals(toDate)
+                            // Single date generation with meal context
+                            ? SwapGenerationService.instance().generateSwapsWithMealContextForDate(goals, fromDate)
+                            // Date range generation with meal context
+                            : SwapGenerationService.instance().generateSwapsWithMealContextForDateRange(goals, fromDate, toDate))
+                    .whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+                        if (error != null) {
+                            showErrorDialog("Unexpected Error", "An error occurred while generating swaps: " + error.getMessage());
+                        } else {
+                            loadSwaps(result);
+                        }
+                    }));
             
+        } catch (Exception e) {
+            showErrorDialog("Unexpected Error", "An error occurred while generating swaps: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Loads generated swaps into the select swap view, or shows why none could be generated.
+     */
+    private void loadSwaps(SwapGenerationService.SwapWithMealContextResult result) {
+        try {
             if (result.hasErrors()) {
                 // Show error dialog
                 String errorMessage = String.join("\n", result.getErrors());
@@ -0,0 +1,235 @@
+package csv;
+
+import data.DatabaseException;
+import data.InMemoryDriver;
+import data.MySQLConfig;
+import data.SelectQuery;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SequencedMap;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CSVImportSchedulerTest {
+    @TempDir
+    private Path directory;
+
+    /**
+     * Records when each chunk starts and finishes loading, and the rows it was given.
+     * Fails every chunk after the first failAfterChunks, to simulate an import that dies part way through.
+     */
+    private static class RecordingImporter implements ICSVImportService {
+        private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        private final List<Long> chunkRows = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> loadedIds = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> upsertedIds = Collections.synchronizedList(new ArrayList<>());
+        private int failAfterChunks = Integer.MAX_VALUE;
+
+        @Override
+        public void load(String filePath, String collectionName) throws DatabaseException, IOException {
+            bulkLoad(filePath, collectionName);
+        }
+
+        @Override
+        public void bulkLoad(String filePath, String collectionName) throws DatabaseException, IOException {
+            if (chunkRows.size() >= failAfterChunks) throw new DatabaseException("Connection lost");
+            events.add("start " + collectionName);
+            List<String> lines = Files.readAllLines(Path.of(filePath));
+            // every line after the header is a row
+            chunkRows.add(lines.size() - 1L);
+            lines.stream().skip(1).map(line -> line.substring(0, line.indexOf(','))).forEach(loadedIds::add);
+            events.add("end " + collectionName);
+        }
+
+        @Override
+        public void upsertLoad(String filePath, String collectionName) throws DatabaseException, IOException {
+            bulkLoad(filePath, collectionName);
+            Files.readAllLines(Path.of(filePath)).stream().skip(1)
+                    .map(line -> line.substring(0, line.indexOf(','))).forEach(upsertedIds::add);
+        }
+
+        @Override
+        public ICSVImportService schema(String collectionName, CSVSchema schema) {
+            return this;
+        }
+
+        @Override
+        public List<ChangeSummary> incrementalLoad(SequencedMap<String, String> filePathsByCollection) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void addChangeListener(Consumer<ChangeSummary> listener) {
+        }
+    }
+
+    private String writeCsv(String name, int rows) throws IOException {
+        StringBuilder csv = new StringBuilder("id,name\n");
+        for (int i = 1; i <= rows; i++) csv.append(i).append(",\"row, ").append(i).append("\"\n");
+        Path file = directory.resolve(name + ".csv");
+        Files.writeString(file, csv);
+        return file.toString();
+    }
+
+    @Test
+    public void testTablesLoadAfterTheirDependencies() throws DatabaseException, IOException {
+        RecordingImporter importer = new RecordingImporter();
+        List<TableImportStatistics> statistics = new CSVImportScheduler(importer, 4)
+                .table("children", writeCsv("children", 3), "parents", "others")
+                .table("parents", writeCsv("parents", 2))
+                .table("others", writeCsv("others", 1))
+                .run();
+
+        List<String> events = importer.events;
+        assertTrue(events.indexOf("end parents") < events.indexOf("start children"), events.toString());
+        assertTrue(events.indexOf("end others") < events.indexOf("start children"), events.toString());
+        assertEquals(List.of("children", "parents", "others"),
+                statistics.stream().map(TableImportStatistics::collectionName).toList());
+        assertEquals(3, statistics.getFirst().rows());
+    }
+
+    @Test
+    public void testLargeFilesAreSplitIntoChunks() throws DatabaseException, IOException {
+        RecordingImporter importer = new RecordingImporter();
+        TableImportStatistics statistics = new CSVImportScheduler(importer, 2, 4)
+                .table("rows", writeCsv("rows", 10))
+                .run()
+                .getFirst();
+
+        assertEquals(10, statistics.rows());
+        assertEquals(3, statistics.chunks());
+        assertEquals(List.of(2L, 4L, 4L), importer.chunkRows.stream().sorted().toList());
+        assertTrue(statistics.rowsPerSecond() > 0);
+    }
+
+    @Test
+    public void testResumesAfterTheCommittedChunks() throws DatabaseException, IOException {
+        String file = writeCsv("rows", 10);
+        Path journalPath = directory.resolve("import.journal");
+        RecordingImporter failing = new RecordingImporter();
+        failing.failAfterChunks = 2;
+        assertThrows(DatabaseException.class, () -> new CSVImportScheduler(failing, 1, 3)
+                .journal(new ImportCheckpointJournal(journalPath))
+                .table("rows", file)
+                .run());
+        assertEquals(List.of("1", "2", "3", "4", "5", "6"), failing.loadedIds);
+
+        // a new process reads the journal left by the failed one
+        RecordingImporter importer = new RecordingImporter();
+        TableImportStatistics statistics = new CSVImportScheduler(importer, 1, 3)
+                .journal(new ImportCheckpointJournal(journalPath))
+                .table("rows", file)
+                .run()
+                .getFirst();
+        assertEquals(List.of("7", "8", "9", "10"), importer.loadedIds, "Committed rows should not load again");
+        assertEquals(List.of("7", "8", "9", "10"), importer.upsertedIds,
+                "Chunks the journal does not record may have committed, so they should be upserted");
+        assertEquals(4, statistics.rows());
+        assertEquals(6, statistics.resumedRows());
+        assertFalse(Files.exists(journalPath), "The journal should be cleared once the import finishes");
+    }
+
+    @Test
+    public void testSkipsChunksCommittedAfterAGap() throws DatabaseException, IOException {
+        String file = writeCsv("rows", 10);
+        ImportCheckpointJournal journal = new ImportCheckpointJournal(directory.resolve("import.journal"));
+        // rows 4 to 6 were committed by a concurrent chunk before an earlier chunk failed
+        String fingerprint = ImportCheckpointJournal.fingerprint(Path.of(file));
+        long startByte = Files.readString(Path.of(file)).indexOf("4,");
+        long endByte = Files.readString(Path.of(file)).indexOf("7,");
+        journal.commit(new ImportCheckpoint("rows", fingerprint, 4, 6, startByte, endByte));
+
+        RecordingImporter importer = new RecordingImporter();
+        TableImportStatistics statistics = new CSVImportScheduler(importer, 1, 3)
+                .journal(journal)
+                .table("rows", file)
+                .run()
+                .getFirst();
+        assertEquals(List.of("1", "2", "3", "7", "8", "9", "10"), importer.loadedIds);
+        assertEquals(List.of(3L, 3L, 1L), importer.chunkRows, "Chunks should not span the committed rows");
+        assertEquals(3, statistics.resumedRows());
+    }
+
+    @Test
+    public void testReportsProgressAsChunksCommit() throws DatabaseException, IOException {
+        List<ImportProgress> reports = new ArrayList<>();
+        new CSVImportScheduler(new RecordingImporter(), 1, 4)
+                .progressListener(reports::add)
+                .table("parents", writeCsv("parents", 2))
+                .table("children", writeCsv("children", 10), "parents")
+                .run();
+
+        assertEquals(4, reports.size(), "One report per chunk");
+        assertEquals(List.of(2L, 6L, 10L, 12L), reports.stream().map(ImportProgress::rows).toList());
+        ImportProgress last = reports.getLast();
+        assertEquals("children", last.collectionName());
+        assertEquals(last.totalBytes(), last.bytes(), "Every byte except the headers should be counted");
+        assertEquals(1.0, last.fractionDone());
+        assertEquals(java.time.Duration.ZERO, last.eta());
+        assertTrue(reports.getFirst().eta().compareTo(java.time.Duration.ZERO) > 0);
+    }
+
+    @Test
+    public void testRejectsCircularAndMissingDependencies() {
+        RecordingImporter importer = new RecordingImporter();
+        assertThrows(IllegalStateException.class, () -> new CSVImportScheduler(importer, 2)
+                .table("a", writeCsv("a", 1), "b")
+                .table("b", writeCsv("b", 1), "a")
+                .run());
+        assertThrows(IllegalStateException.class, () -> new CSVImportScheduler(importer, 2)
+                .table("a", writeCsv("a", 1), "missing")
+                .run());
+        assertTrue(importer.events.isEmpty(), "Nothing should load when the dependencies are invalid");
+    }
+
+    @Test
+    public void testReplaysAChunkCommittedButNotRecorded() throws DatabaseException, IOException {
+        InMemoryDriver driver = new InMemoryDriver(MySQLConfig.instance())
+                .runScript("src/main/java/data/create-database.sql");
+        CSVImportService importer = new CSVImportService(driver)
+                .schema("food_groups", new CSVSchema().column("id", CSVColumnType.INT));
+        ImportCheckpointJournal journal = new ImportCheckpointJournal(directory.resolve("import.journal"));
+        assertFalse(journal.begin(), "A new journal should not be resuming");
+        // the stopped import committed rows 1 to 3, but died before recording them
+        importer.bulkLoad(writeCsv("committed", 3), "food_groups");
+
+        assertTrue(journal.begin(), "The journal left by the stopped import should be resumed");
+        new CSVImportScheduler(importer, 2, 3)
+                .journal(journal)
+                .table("food_groups", writeCsv("food_groups", 7))
+                .run();
+        assertEquals(7, driver.execute(new SelectQuery("food_groups")).size());
+
+        // once the journal is cleared, chunks are bulk loaded again
+        assertThrows(DatabaseException.class, () -> new CSVImportScheduler(importer, 2, 3)
+                .journal(journal)
+                .table("food_groups", writeCsv("food_groups", 7))
+                .run());
+    }
+
+    @Test
+    public void testNutritionDataLoadsInChunks() throws DatabaseException, IOException {
+        InMemoryDriver driver = new InMemoryDriver(MySQLConfig.instance())
+                .runScript("src/main/java/data/create-database.sql");
+        long expectedRows = Files.readAllLines(Path.of("src/main/java/csv/nutrition_data/nutrient_amounts.csv")).size() - 1;
+
+        List<TableImportStatistics> statistics = new CSVImportScheduler(new CSVImportService(driver), 4, 500)
+                .table("nutrients", "src/main/java/csv/nutrition_data/nutrients.csv")
+                .table("food_groups", "src/main/java/csv/nutrition_data/food_groups.csv")
+                .table("foods", "src/main/java/csv/nutrition_data/foods.csv", "food_groups")
+                .table("nutrient_amounts", "src/main/java/csv/nutrition_data/nutrient_amounts.csv", "foods", "nutrients")
+                .run();
+
+        assertEquals(expectedRows, driver.execute(new SelectQuery("nutrient_amounts")).size());
+        assertEquals(expectedRows, statistics.getLast().rows());
+        assertTrue(statistics.getLast().chunks() > 1);
+    }
+}
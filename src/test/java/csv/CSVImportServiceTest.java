@@ -0,0 +1,126 @@
+package csv;
+
+import data.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.SequencedMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CSVImportServiceTest {
+    @TempDir
+    private Path directory;
+
+    private InMemoryDriver driver;
+    private CSVImportService importer;
+
+    @BeforeEach
+    public void setUp() throws DatabaseException, IOException {
+        driver = new InMemoryDriver(MySQLConfig.instance())
+                .runScript("src/main/java/data/create-database.sql");
+        new MigrationRunner(driver, Path.of("src/main/java/data/migrations")).migrate();
+        importer = new CSVImportService(driver, 2)
+                .schema("food_groups", new CSVSchema().column("id", CSVColumnType.INT).primaryKey("id"))
+                .schema("foods", new CSVSchema()
+                        .column("id", CSVColumnType.INT)
+                        .column("food_group_id", CSVColumnType.INT)
+                        .primaryKey("id"))
+                .schema("nutrients", new CSVSchema().column("id", CSVColumnType.INT).primaryKey("id"))
+                .schema("nutrient_amounts", new CSVSchema()
+                        .column("food_id", CSVColumnType.INT)
+                        .column("nutrient_id", CSVColumnType.INT)
+                        .column("nutrient_value", CSVColumnType.DOUBLE)
+                        .primaryKey("food_id", "nutrient_id"));
+    }
+
+    private SequencedMap<String, String> writeFiles(String foodGroups, String foods, String nutrients,
+                                                    String nutrientAmounts) throws IOException {
+        SequencedMap<String, String> files = new LinkedHashMap<>();
+        files.put("food_groups", writeCsv("food_groups", "id,name\n" + foodGroups));
+        files.put("foods", writeCsv("foods", "id,food_group_id,description\n" + foods));
+        files.put("nutrients", writeCsv("nutrients", "id,symbol,unit,name\n" + nutrients));
+        files.put("nutrient_amounts", writeCsv("nutrient_amounts", "food_id,nutrient_id,nutrient_value\n" + nutrientAmounts));
+        return files;
+    }
+
+    private String writeCsv(String name, String contents) throws IOException {
+        Path file = directory.resolve(name + ".csv");
+        Files.writeString(file, contents);
+        return file.toString();
+    }
+
+    private List<Object> column(String collectionName, String column) throws DatabaseException {
+        return driver.execute(new SelectQuery(collectionName).sortColumn(column)).stream()
+                .map(record -> record.getValue(column))
+                .toList();
+    }
+
+    @Test
+    public void testAppliesOnlyTheChangedRows() throws DatabaseException, IOException {
+        List<ChangeSummary> notified = new ArrayList<>();
+        importer.addChangeListener(notified::add);
+        List<ChangeSummary> first = importer.incrementalLoad(writeFiles(
+                "1,Dairy\n2,Spices\n",
+                "10,1,Milk\n11,1,Cheese\n12,2,Salt\n",
+                "100,PROT,g,Protein\n",
+                "10,100,3.4\n11,100,25\n12,100,0\n"));
+        assertEquals(List.of(2L, 3L, 1L, 3L), first.stream().map(ChangeSummary::inserted).toList());
+        assertEquals(4, notified.size());
+
+        // Salt and the Spices group are removed, Cheese changes and Butter is added
+        notified.clear();
+        List<ChangeSummary> second = importer.incrementalLoad(writeFiles(
+                "1,Dairy\n",
+                "10,1,Milk\n11,1,Aged cheese\n13,1,Butter\n",
+                "100,PROT,g,Protein\n",
+                "10,100,3.4\n11,100,25\n13,100,0.9\n"));
+        assertEquals(new ChangeSummary("food_groups", 0, 0, 1, 1), second.get(0));
+        assertEquals(new ChangeSummary("foods", 1, 1, 1, 1), second.get(1));
+        assertEquals(new ChangeSummary("nutrients", 0, 0, 0, 1), second.get(2));
+        assertEquals(new ChangeSummary("nutrient_amounts", 1, 0, 1, 2), second.get(3));
+        assertEquals(List.of("food_groups", "foods", "nutrient_amounts"),
+                notified.stream().map(ChangeSummary::collectionName).toList(),
+                "Only the collections that changed should be published");
+
+        assertEquals(List.of(1), column("food_groups", "id"));
+        assertEquals(List.of("Aged cheese", "Butter", "Milk"), column("foods", "description"));
+        assertEquals(List.of(10, 11, 13), column("nutrient_amounts", "food_id"));
+
+        notified.clear();
+        List<ChangeSummary> third = importer.incrementalLoad(writeFiles(
+                "1,Dairy\n",
+                "10,1,Milk\n11,1,Aged cheese\n13,1,Butter\n",
+                "100,PROT,g,Protein\n",
+                "10,100,3.4\n11,100,25\n13,100,0.9\n"));
+        assertTrue(third.stream().noneMatch(ChangeSummary::hasChanges), "Rerunning the same files should change nothing");
+        assertTrue(notified.isEmpty());
+    }
+
+    @Test
+    public void testFailedImportChangesNothing() throws DatabaseException, IOException {
+        importer.incrementalLoad(writeFiles("1,Dairy\n", "10,1,Milk\n", "100,PROT,g,Protein\n", "10,100,3.4\n"));
+
+        // the last file cannot be read after the others were applied
+        SequencedMap<String, String> files = writeFiles(
+                "1,Dairy products\n", "10,1,Milk\n", "100,PROT,g,Protein\n", "10,100,3.4\n");
+        files.put("nutrient_amounts", directory.resolve("missing.csv").toString());
+        assertThrows(IOException.class, () -> importer.incrementalLoad(files));
+        assertEquals(List.of("Dairy"), column("food_groups", "name"));
+        assertEquals(4, driver.execute(new SelectQuery(CSVImportService.ROW_HASHES_COLLECTION)).size());
+    }
+
+    @Test
+    public void testRequiresPrimaryKeys() throws IOException {
+        SequencedMap<String, String> files = new LinkedHashMap<>();
+        files.put("students", writeCsv("students", "id,name\n1,Chris\n"));
+        assertThrows(IllegalStateException.class, () -> importer.incrementalLoad(files));
+    }
+}
@@ -0,0 +1,57 @@
+package csv;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImportCheckpointJournalTest {
+    @TempDir
+    private Path directory;
+
+    @Test
+    public void testResumePointCoversTheRowsCommittedWithoutAGap() throws IOException {
+        Path path = directory.resolve("import.journal");
+        ImportCheckpointJournal journal = new ImportCheckpointJournal(path);
+        journal.commit(new ImportCheckpoint("foods", "v1", 4, 6, 40, 70));
+        journal.commit(new ImportCheckpoint("foods", "v1", 1, 3, 8, 40));
+        journal.commit(new ImportCheckpoint("foods", "v1", 10, 12, 100, 130));
+        journal.commit(new ImportCheckpoint("measures", "v1", 1, 5, 10, 60));
+
+        ImportCheckpointJournal reopened = new ImportCheckpointJournal(path);
+        assertEquals(new ImportCheckpoint("foods", "v1", 1, 6, 8, 70), reopened.resumePoint("foods", "v1"));
+        assertEquals(List.of(1L, 4L, 10L), reopened.committedChunks("foods", "v1").stream()
+                .map(ImportCheckpoint::firstRow).toList());
+        assertNull(reopened.resumePoint("foods", "v2"), "Checkpoints of a changed file should not apply");
+        assertNull(reopened.resumePoint("nutrients", "v1"));
+    }
+
+    @Test
+    public void testDropsALineCutShortByACrash() throws IOException {
+        Path path = directory.resolve("import.journal");
+        new ImportCheckpointJournal(path).commit(new ImportCheckpoint("foods", "v1", 1, 3, 8, 40));
+        Files.writeString(path, "foods\tv1\t4\t", StandardOpenOption.APPEND);
+
+        ImportCheckpointJournal journal = new ImportCheckpointJournal(path);
+        assertEquals(1, journal.committedChunks("foods", "v1").size());
+        journal.commit(new ImportCheckpoint("foods", "v1", 4, 6, 40, 70));
+        assertEquals(6, new ImportCheckpointJournal(path).resumePoint("foods", "v1").lastRow());
+
+        journal.clear();
+        assertFalse(Files.exists(path));
+        assertTrue(journal.committedChunks("foods", "v1").isEmpty());
+    }
+
+    @Test
+    public void testRejectsFilesThatAreNotJournals() throws IOException {
+        Path path = directory.resolve("notes.txt");
+        Files.writeString(path, "not a journal\n");
+        assertThrows(IOException.class, () -> new ImportCheckpointJournal(path));
+    }
+}
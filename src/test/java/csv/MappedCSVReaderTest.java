@@ -0,0 +1,114 @@
+package csv;
+
+import data.IRecord;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedCSVReaderTest {
+    @TempDir
+    private Path directory;
+
+    private Path writeCsv(String contents) throws IOException {
+        Path file = directory.resolve("file.csv");
+        Files.writeString(file, contents);
+        return file;
+    }
+
+    private static List<IRecord> readAll(MappedCSVReader reader) {
+        List<IRecord> records = new ArrayList<>();
+        reader.forEach(records::add);
+        return records;
+    }
+
+    @Test
+    public void testDecodesColumnsToTheirTypes() throws IOException {
+        Path file = writeCsv("id,amount,price,day,name,total\r\n"
+                + "1,6.76,19.99,2024-02-29,\"Chinese dish, chow mein\",9000000000\r\n"
+                + "\r\n"
+                + "-2,,0.5,,,-1\r\n");
+        CSVSchema schema = new CSVSchema()
+                .column("id", CSVColumnType.INT)
+                .column("amount", CSVColumnType.DOUBLE)
+                .column("price", CSVColumnType.DECIMAL)
+                .column("day", CSVColumnType.DATE)
+                .column("total", CSVColumnType.BIGINT);
+        MappedCSVReader reader = MappedCSVReader.open(file, schema);
+        assertNotNull(reader);
+        assertEquals(List.of("id", "amount", "price", "day", "name", "total"), reader.getHeaderNames());
+
+        List<IRecord> records = readAll(reader);
+        assertEquals(2, records.size(), "Empty lines should be skipped");
+        IRecord first = records.getFirst();
+        assertEquals(1, first.getValue("id"));
+        assertEquals(6.76, first.getValue("amount"));
+        assertEquals(new BigDecimal("19.99"), first.getValue("price"));
+        assertEquals(java.sql.Date.valueOf("2024-02-29"), first.getValue("day"));
+        assertEquals("Chinese dish, chow mein", first.getValue("name"));
+        assertEquals(9_000_000_000L, first.getValue("total"));
+
+        IRecord second = records.getLast();
+        assertEquals(-2, second.getValue("id"));
+        assertNull(second.getValue("amount"), "Empty numbers should be null");
+        assertNull(second.getValue("day"));
+        assertEquals("", second.getValue("name"), "Empty text should stay empty, as with commons-csv");
+    }
+
+    @Test
+    public void testOddQuotingIsLeftToCommonsCsv() throws IOException {
+        assertNull(MappedCSVReader.open(writeCsv("id,name\n1,\"The \"\"best\"\" soup\"\n"), new CSVSchema()));
+        assertNull(MappedCSVReader.open(writeCsv("id,name\n1,5\" plate\n"), new CSVSchema()));
+        assertNull(MappedCSVReader.open(writeCsv("id,name\n1,a,extra\n"), new CSVSchema()));
+    }
+
+    @Test
+    public void testInvalidValuesNameTheRowAndColumn() throws IOException {
+        MappedCSVReader reader = MappedCSVReader.open(writeCsv("id\n1\nx\n"),
+                new CSVSchema().column("id", CSVColumnType.INT));
+        Iterator<IRecord> records = reader.iterator();
+        records.next();
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, records::next);
+        assertTrue(e.getMessage().contains("row 2, column id"), e.getMessage());
+    }
+
+    @Test
+    public void testMatchesCommonsCsvOnTheNutritionFiles() throws IOException {
+        CSVSchema schema = new CSVSchema()
+                .column("id", CSVColumnType.INT)
+                .column("food_id", CSVColumnType.INT)
+                .column("nutrient_id", CSVColumnType.INT)
+                .column("food_group_id", CSVColumnType.INT)
+                .column("nutrient_value", CSVColumnType.DOUBLE);
+        CSVFormat format = CSVFormat.DEFAULT.builder().setHeader().setSkipHeaderRecord(true).build();
+        for (String name : List.of("foods", "nutrients", "nutrient_amounts")) {
+            Path file = Path.of("src/main/java/csv/nutrition_data/" + name + ".csv");
+            MappedCSVReader reader = MappedCSVReader.open(file, schema);
+            assertNotNull(reader, name + " should be readable in place");
+            Iterator<IRecord> mapped = reader.iterator();
+            try (Reader fileReader = new FileReader(file.toFile()); CSVParser parser = format.parse(fileReader)) {
+                for (CSVRecord expected : parser) {
+                    IRecord actual = mapped.next();
+                    for (String column : parser.getHeaderNames()) {
+                        assertEquals(schema.typeOf(column).decode(expected.get(column)), actual.getValue(column),
+                                "%s row %d, column %s".formatted(name, expected.getRecordNumber(), column));
+                    }
+                }
+            }
+            assertFalse(mapped.hasNext(), name + " should have no extra rows");
+        }
+    }
+}
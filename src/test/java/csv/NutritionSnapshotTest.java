@@ -0,0 +1,85 @@
+package csv;
+
+import data.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NutritionSnapshotTest {
+    @TempDir
+    private Path directory;
+
+    private InMemoryDriver driver;
+
+    @BeforeEach
+    public void setUp() throws DatabaseException, IOException {
+        driver = new InMemoryDriver(MySQLConfig.instance())
+                .runScript("src/main/java/data/create-database.sql");
+        new MigrationRunner(driver, Path.of("src/main/java/data/migrations")).migrate();
+        LoadNutritionDataService.load(driver);
+    }
+
+    @Test
+    public void testSnapshotMatchesTheDatabase() throws DatabaseException, IOException {
+        Path path = directory.resolve("nutrition.snapshot");
+        long version = NutritionSnapshot.compile(driver, path);
+        NutritionSnapshot snapshot = NutritionSnapshot.open(path);
+
+        assertEquals(CatalogueVersion.read(driver), version);
+        assertEquals(version, snapshot.getCatalogueVersion());
+        assertEquals(driver.execute(new SelectQuery("foods")).size(), snapshot.foodCount());
+        assertEquals(driver.execute(new SelectQuery("nutrients")).size(), snapshot.nutrientCount());
+        assertEquals(driver.execute(new SelectQuery("food_groups")).size(), snapshot.foodGroupCount());
+        int amounts = 0;
+        for (int i = 0; i < snapshot.foodCount(); i++) amounts += snapshot.amountCount(i);
+        assertEquals(driver.execute(new SelectQuery("nutrient_amounts")).size(), amounts);
+
+        // Chocolate flavour drink, whey and milk based
+        int food = snapshot.findFood(5589);
+        assertEquals(5589, snapshot.foodId(food));
+        assertEquals("Chocolate flavour drink, whey and milk based", snapshot.foodDescription(food));
+        assertEquals(14, snapshot.foodGroupIdOfFood(food));
+        assertEquals(2, snapshot.measureCount(food));
+        assertEquals(341, snapshot.measureId(food, 0));
+        assertEquals("100ml", snapshot.measureName(food, 0));
+        assertEquals(1.03128f, snapshot.measureConversionFactor(food, 0));
+        assertEquals("250ml (1 cup)", snapshot.measureName(food, 1));
+        int monounsaturatedFat = -1;
+        for (int i = 0; i < snapshot.amountCount(food); i++) {
+            if (snapshot.amountNutrientId(food, i) == 645) monounsaturatedFat = i;
+        }
+        assertEquals(0.049f, snapshot.amountValue(food, monounsaturatedFat), 0.0001f);
+        assertEquals(-1, snapshot.findFood(-1));
+    }
+
+    @Test
+    public void testOnlyTheSnapshotOfTheCurrentCatalogueIsUsed() throws DatabaseException, IOException {
+        Path path = directory.resolve("nutrition.snapshot");
+        assertNull(NutritionSnapshot.openIfCurrent(path, driver), "There is no snapshot yet");
+        NutritionSnapshot.compile(driver, path);
+        assertNotNull(NutritionSnapshot.openIfCurrent(path, driver));
+
+        CatalogueVersion.bump(driver);
+        assertNull(NutritionSnapshot.openIfCurrent(path, driver), "The catalogue changed since the snapshot");
+    }
+
+    @Test
+    public void testRejectsTruncatedSnapshots() throws DatabaseException, IOException {
+        Path path = directory.resolve("nutrition.snapshot");
+        NutritionSnapshot.compile(driver, path);
+        byte[] contents = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(contents, contents.length - 10));
+        assertThrows(IOException.class, () -> NutritionSnapshot.open(path));
+
+        Files.write(path, List.of("not a snapshot"));
+        assertThrows(IOException.class, () -> NutritionSnapshot.open(path));
+    }
+}
@@ -0,0 +1,83 @@
+package csv;
+
+import data.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SequencedMap;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntheticDatasetGeneratorTest {
+    @TempDir
+    private Path directory;
+
+    private static SyntheticDatasetGenerator smallDataset(long seed) {
+        return new SyntheticDatasetGenerator(seed).foods(200).nutrients(30).users(5).days(14)
+                .startDate(LocalDate.of(2025, 3, 1));
+    }
+
+    @Test
+    public void testSameSeedWritesTheSameFiles() throws IOException {
+        SequencedMap<String, Long> rowCounts = smallDataset(7).write(directory.resolve("first"));
+        assertEquals(rowCounts, smallDataset(7).write(directory.resolve("second")));
+        for (String table : rowCounts.keySet()) {
+            assertArrayEquals(Files.readAllBytes(directory.resolve("first").resolve(table + ".csv")),
+                    Files.readAllBytes(directory.resolve("second").resolve(table + ".csv")), table);
+        }
+
+        smallDataset(8).write(directory.resolve("other"));
+        assertFalse(Files.readString(directory.resolve("first").resolve("meal_items.csv"))
+                .equals(Files.readString(directory.resolve("other").resolve("meal_items.csv"))));
+
+        // the catalogue is drawn separately from the users, so it does not change with their number
+        smallDataset(7).users(9).write(directory.resolve("more-users"));
+        assertArrayEquals(Files.readAllBytes(directory.resolve("first").resolve("nutrient_amounts.csv")),
+                Files.readAllBytes(directory.resolve("more-users").resolve("nutrient_amounts.csv")));
+    }
+
+    @Test
+    public void testLoadsThroughTheImportPath() throws DatabaseException, IOException {
+        InMemoryDriver driver = new InMemoryDriver(MySQLConfig.instance())
+                .runScript("src/main/java/data/create-database.sql");
+        new MigrationRunner(driver, Path.of("src/main/java/data/migrations")).migrate();
+        SequencedMap<String, Long> rowCounts = smallDataset(7).write(directory);
+        List<TableImportStatistics> statistics = SyntheticDatasetGenerator.load(driver, directory, progress -> { });
+
+        assertEquals(rowCounts.size(), statistics.size());
+        for (Map.Entry<String, Long> rowCount : rowCounts.entrySet()) {
+            assertEquals(rowCount.getValue().intValue(), driver.execute(new SelectQuery(rowCount.getKey())).size(),
+                    rowCount.getKey());
+        }
+        assertEquals(5, rowCounts.get("profiles"));
+        assertTrue(rowCounts.get("meals") >= 5 * 14, "Most users should log several meals a day");
+
+        // breakfast, lunch and dinner are logged at most once a day, as logging a meal allows
+        Set<String> mealsOfTheDay = new HashSet<>();
+        for (IRecord meal : driver.execute(new SelectQuery("meals"))) {
+            String type = (String) meal.getValue("meal_type");
+            assertTrue(List.of("Breakfast", "Lunch", "Dinner", "Snack").contains(type), type);
+            String day = meal.getValue("created_on").toString().substring(0, 10);
+            if (!type.equals("Snack")) {
+                assertTrue(mealsOfTheDay.add(meal.getValue("user_id") + " " + day + " " + type), "Repeated " + type);
+            }
+        }
+
+        // every item is served in one of its food's measures
+        Set<String> conversionFactors = new HashSet<>();
+        for (IRecord factor : driver.execute(new SelectQuery("conversion_factors"))) {
+            conversionFactors.add(factor.getValue("food_id") + " " + factor.getValue("measure_id"));
+        }
+        for (IRecord item : driver.execute(new SelectQuery("meal_items"))) {
+            assertTrue(conversionFactors.contains(item.getValue("food_id") + " " + item.getValue("measure_id")));
+        }
+    }
+}
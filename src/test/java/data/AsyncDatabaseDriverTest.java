@@ -0,0 +1,101 @@
+package data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncDatabaseDriverTest {
+    /**
+     * Driver whose selects take a while and record how many run at once.
+     */
+    private static class SlowDriver implements IDatabaseDriver {
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+
+        @Override
+        public IDatabaseConfig config() {
+            return null;
+        }
+
+        @Override
+        public List<Long> execute(InsertQuery query) throws DatabaseException {
+            throw new DatabaseException("insert failed");
+        }
+
+        @Override
+        public List<Long> execute(InsertBatchQuery query) {
+            return List.of();
+        }
+
+        @Override
+        public void execute(DeleteQuery query) {
+        }
+
+        @Override
+        public void execute(UpdateQuery query) {
+        }
+
+        @Override
+        public void executeSchemaChange(String statement) {
+        }
+
+        @Override
+        public List<IRecord> execute(AggregateQuery query) {
+            return List.of();
+        }
+
+        @Override
+        public List<IRecord> execute(SelectQuery query) {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            return List.of();
+        }
+
+        @Override
+        public Stream<IRecord> stream(SelectQuery query) {
+            return execute(query).stream();
+        }
+
+        @Override
+        public long reserveIds(String collectionName, int count) {
+            return 1;
+        }
+
+        @Override
+        public <T> T runInTransaction(TransactionCallback<T> callback) throws DatabaseException {
+            return callback.run(this);
+        }
+    }
+
+    @Test
+    public void testConcurrencyIsBounded() {
+        SlowDriver delegate = new SlowDriver();
+        AsyncDatabaseDriver driver = new AsyncDatabaseDriver(delegate, 2);
+        List<CompletableFuture<List<IRecord>>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) futures.add(driver.execute(new SelectQuery("foods")));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        assertTrue(delegate.maxRunning.get() <= 2, "No more than 2 queries should run at once");
+        driver.close();
+    }
+
+    @Test
+    public void testFailuresCompleteExceptionally() {
+        AsyncDatabaseDriver driver = new AsyncDatabaseDriver(new SlowDriver(), 1);
+        CompletionException exception = assertThrows(
+                CompletionException.class, () -> driver.execute(new InsertQuery("foods", null)).join());
+        assertInstanceOf(DatabaseException.class, exception.getCause());
+        driver.close();
+    }
+}
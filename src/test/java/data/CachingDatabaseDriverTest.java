@@ -0,0 +1,150 @@
+package data;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingDatabaseDriverTest {
+    /**
+     * Driver that returns a single record for every select and counts the selects it runs.
+     */
+    private static class CountingDriver implements IDatabaseDriver {
+        private final List<SelectQuery> selects = new ArrayList<>();
+
+        @Override
+        public IDatabaseConfig config() {
+            return null;
+        }
+
+        @Override
+        public List<Long> execute(InsertQuery query) {
+            return List.of();
+        }
+
+        @Override
+        public List<Long> execute(InsertBatchQuery query) {
+            return List.of();
+        }
+
+        @Override
+        public void execute(DeleteQuery query) {
+        }
+
+        @Override
+        public void execute(UpdateQuery query) {
+        }
+
+        @Override
+        public void executeSchemaChange(String statement) {
+        }
+
+        @Override
+        public List<IRecord> execute(AggregateQuery query) {
+            return List.of();
+        }
+
+        @Override
+        public List<IRecord> execute(SelectQuery query) {
+            selects.add(query);
+            return List.of(new Record(Map.of("id", selects.size())));
+        }
+
+        @Override
+        public Stream<IRecord> stream(SelectQuery query) {
+            return execute(query).stream();
+        }
+
+        @Override
+        public long reserveIds(String collectionName, int count) {
+            return 1;
+        }
+
+        @Override
+        public <T> T runInTransaction(TransactionCallback<T> callback) throws DatabaseException {
+            return callback.run(this);
+        }
+    }
+
+    @Test
+    public void testEquivalentQueriesShareEntry() throws DatabaseException {
+        CountingDriver delegate = new CountingDriver();
+        CachingDatabaseDriver driver = new CachingDatabaseDriver(delegate, 10)
+                .cacheCollection("foods", Duration.ofMinutes(1));
+        driver.execute(new SelectQuery("foods")
+                .filter("food_group_id", Comparison.EQUAL, 1)
+                .filter("id", Comparison.IN, List.of(3, 2, 1)));
+        driver.execute(new SelectQuery("foods")
+                .filter("id", Comparison.IN, List.of(1, 2, 3, 3))
+                .filter("food_group_id", Comparison.EQUAL, 1));
+        assertEquals(1, delegate.selects.size(), "Filters in a different order should hit the cache");
+        assertEquals(1, driver.getStatistics().getHits());
+        assertEquals(1, driver.getStatistics().getMisses());
+    }
+
+    @Test
+    public void testUncachedCollectionsAreNotCached() throws DatabaseException {
+        CountingDriver delegate = new CountingDriver();
+        CachingDatabaseDriver driver = new CachingDatabaseDriver(delegate, 10)
+                .cacheCollection("foods", Duration.ofMinutes(1));
+        driver.execute(new SelectQuery("meals"));
+        driver.execute(new SelectQuery("meals"));
+        driver.execute(new SelectQuery("foods").join("meal_items", "foods.id", "meal_items.food_id", JoinType.INNER));
+        driver.execute(new SelectQuery("foods").join("meal_items", "foods.id", "meal_items.food_id", JoinType.INNER));
+        assertEquals(4, delegate.selects.size());
+    }
+
+    @Test
+    public void testWritesInvalidateCollection() throws DatabaseException {
+        CountingDriver delegate = new CountingDriver();
+        CachingDatabaseDriver driver = new CachingDatabaseDriver(delegate, 10)
+                .cacheCollection("measures", Duration.ofMinutes(1))
+                .cacheCollection("conversion_factors_with_measure_details", Duration.ofMinutes(1), "measures");
+        driver.execute(new SelectQuery("measures"));
+        driver.execute(new SelectQuery("conversion_factors_with_measure_details"));
+        driver.execute(new DeleteQuery("measures"));
+        driver.execute(new SelectQuery("measures"));
+        driver.execute(new SelectQuery("conversion_factors_with_measure_details"));
+        assertEquals(4, delegate.selects.size(), "Writing to a table should invalidate views that read it");
+        assertEquals(2, driver.getStatistics().getInvalidations());
+    }
+
+    @Test
+    public void testEntriesExpireAndEvict() throws DatabaseException {
+        CountingDriver delegate = new CountingDriver();
+        AtomicLong now = new AtomicLong();
+        CachingDatabaseDriver driver = new CachingDatabaseDriver(delegate, 2, now::get)
+                .cacheCollection("foods", Duration.ofMillis(100));
+        driver.execute(new SelectQuery("foods").limit(1));
+        driver.execute(new SelectQuery("foods").limit(2));
+        driver.execute(new SelectQuery("foods").limit(3));
+        assertEquals(1, driver.getStatistics().getEvictions());
+        assertEquals(2, driver.getStatistics().getEntries());
+        driver.execute(new SelectQuery("foods").limit(1));
+        assertEquals(4, delegate.selects.size(), "The least recently used entry should have been evicted");
+        now.set(200);
+        driver.execute(new SelectQuery("foods").limit(3));
+        assertEquals(5, delegate.selects.size(), "Expired entries should be queried again");
+        assertTrue(driver.getStatistics().getEstimatedBytes() > 0);
+    }
+
+    @Test
+    public void testTransactionWritesInvalidateAfterTransaction() throws DatabaseException {
+        CountingDriver delegate = new CountingDriver();
+        CachingDatabaseDriver driver = new CachingDatabaseDriver(delegate, 10)
+                .cacheCollection("foods", Duration.ofMinutes(1));
+        driver.runInTransaction(transaction -> {
+            transaction.execute(new DeleteQuery("foods"));
+            // read inside the transaction, so it may see the uncommitted delete
+            return transaction.execute(new SelectQuery("foods"));
+        });
+        driver.execute(new SelectQuery("foods"));
+        assertEquals(2, delegate.selects.size(), "Results read inside a transaction should not outlive it");
+    }
+}
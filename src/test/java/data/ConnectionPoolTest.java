@@ -0,0 +1,70 @@
+package data;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPoolTest {
+    /**
+     * Creates a fake connection that only supports the methods used by the pool.
+     */
+    private static Connection fakeConnection(AtomicBoolean valid) {
+        AtomicBoolean closed = new AtomicBoolean(false);
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "isValid" -> valid.get();
+                    case "isClosed" -> closed.get();
+                    case "close" -> {
+                        closed.set(true);
+                        yield null;
+                    }
+                    default -> throw new UnsupportedOperationException(method.getName());
+                }
+        );
+    }
+
+    @Test
+    public void testOpensMinimumConnectionsEagerly() throws DatabaseException {
+        AtomicInteger created = new AtomicInteger();
+        ConnectionPool pool = new ConnectionPool(
+                () -> {
+                    created.incrementAndGet();
+                    return fakeConnection(new AtomicBoolean(true));
+                }, 2, 4, 100, 60_000, 1, 0);
+        assertEquals(2, created.get());
+        assertEquals(2, pool.getIdleConnections());
+        pool.close();
+    }
+
+    @Test
+    public void testBorrowTimesOutWhenPoolIsExhausted() throws DatabaseException {
+        ConnectionPool pool = new ConnectionPool(() -> fakeConnection(new AtomicBoolean(true)), 0, 1, 50, 60_000, 1, 0);
+        PooledConnection borrowed = pool.borrow();
+        assertThrows(DatabaseException.class, pool::borrow);
+        pool.release(borrowed);
+        assertNotNull(pool.borrow(), "Connection should be available again after it is released");
+        pool.close();
+    }
+
+    @Test
+    public void testInvalidConnectionsAreReplacedOnBorrow() throws DatabaseException {
+        AtomicBoolean firstValid = new AtomicBoolean(true);
+        AtomicInteger created = new AtomicInteger();
+        ConnectionPool pool = new ConnectionPool(
+                () -> fakeConnection(created.getAndIncrement() == 0 ? firstValid : new AtomicBoolean(true)),
+                1, 2, 100, 60_000, 1, 0);
+        firstValid.set(false);
+        PooledConnection borrowed = pool.borrow();
+        assertTrue(borrowed.isValid(1));
+        assertEquals(1, pool.getOpenConnections(), "The invalid connection should have been discarded");
+        pool.release(borrowed);
+        pool.close();
+    }
+}
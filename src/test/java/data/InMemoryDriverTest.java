@@ -0,0 +1,182 @@
+package data;
+
+import csv.LoadNutritionDataService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InMemoryDriverTest {
+    private InMemoryDriver driver;
+
+    @BeforeEach
+    public void setUp() throws DatabaseException, IOException {
+        driver = new InMemoryDriver(MySQLConfig.instance())
+                .runScript("src/main/java/data/create-database.sql")
+                .runScript("src/main/java/data/seed-database.sql");
+    }
+
+    @Test
+    public void testSeedDataTypes() throws DatabaseException {
+        List<IRecord> profiles = driver.execute(new SelectQuery("profiles").filter("id", Comparison.EQUAL, 1));
+        assertEquals(1, profiles.size());
+        IRecord profile = profiles.getFirst();
+        assertEquals(1, profile.getValue("id"), "INT columns should be read as Integer");
+        assertEquals(java.sql.Date.valueOf("2000-10-03"), profile.getValue("dob"), "DATE columns should be read as java.sql.Date");
+        assertEquals(1.34, profile.getValue("height"), "DOUBLE columns should be read as Double");
+    }
+
+    @Test
+    public void testFuzzySearchIgnoresCase() throws DatabaseException {
+        List<IRecord> records = driver.execute(new SelectQuery("students").filter("name", Comparison.FUZZY_SEARCH, "CHR"));
+        assertEquals(1, records.size());
+        assertEquals("Chris", records.getFirst().getValue("name"));
+    }
+
+    @Test
+    public void testDateRangeUsesConvertedValues() throws DatabaseException {
+        for (int day = 1; day <= 5; day++) {
+            driver.execute(new InsertQuery("meals", new Record(Map.of(
+                    "meal_type", "LUNCH",
+                    "user_id", 1,
+                    "created_on", "2024-01-0%d 12:00:00".formatted(day)
+            ))));
+        }
+        List<IRecord> records = driver.execute(new SelectQuery("meals")
+                .filter("created_on", Comparison.GREATER_EQUAL, "2024-01-02 00:00:00")
+                .filter("created_on", Comparison.LESS_EQUAL, "2024-01-04 23:59:59")
+                .sortColumn("created_on")
+                .sortOrder(SortOrder.DESCENDING));
+        assertEquals(3, records.size());
+        assertEquals(LocalDateTime.of(2024, 1, 4, 12, 0), records.getFirst().getValue("created_on"));
+    }
+
+    @Test
+    public void testViewReflectsWrites() throws DatabaseException, IOException {
+        new MigrationRunner(driver, Path.of("src/main/java/data/migrations")).migrate();
+        LoadNutritionDataService.load(driver);
+        SelectQuery query = new SelectQuery("conversion_factors_with_measure_details").filter("food_id", Comparison.EQUAL, 5);
+        int before = driver.execute(query).size();
+        assertTrue(before > 0, "The view should join the imported conversion factors with their measures");
+        driver.execute(new DeleteQuery("conversion_factors").filter("food_id", Comparison.EQUAL, 5));
+        assertTrue(driver.execute(query).isEmpty(), "The view should be evaluated again after its collections change");
+    }
+
+    @Test
+    public void testTransactionRollsBackEveryWrite() throws DatabaseException {
+        assertThrows(DatabaseException.class, () -> driver.runInTransaction(transaction -> {
+            transaction.execute(new InsertQuery("students", new Record(Map.of("name", "Rolled Back"))));
+            transaction.execute(new DeleteQuery("students").filter("id", Comparison.EQUAL, 1));
+            // duplicate primary key
+            transaction.execute(new InsertQuery("students", new Record(Map.of("id", 2, "name", "Duplicate"))));
+            return null;
+        }));
+        List<IRecord> students = driver.execute(new SelectQuery("students").sortColumn("id"));
+        assertEquals(4, students.size(), "Every write in the transaction should be undone");
+        assertEquals(1, students.getFirst().getValue("id"));
+    }
+
+    @Test
+    public void testGeneratedKeysContinueAfterSeed() throws DatabaseException {
+        List<Long> keys = driver.execute(new InsertBatchQuery("students")
+                .add(new Record(Map.of("name", "First")))
+                .add(new Record(Map.of("name", "Second")))
+                .returnGeneratedKeys());
+        assertEquals(List.of(5L, 6L), keys);
+        assertEquals(7, driver.reserveIds("students", 10));
+        assertEquals(17, driver.reserveIds("students", 10));
+    }
+
+    @Test
+    public void testUpsertUpdatesExistingKeysAndRollsBack() throws DatabaseException {
+        InsertBatchQuery upsert = new InsertBatchQuery("students")
+                .add(new Record(Map.of("id", 1, "name", "Renamed")))
+                .add(new Record(Map.of("id", 20, "name", "New")))
+                .updateOnDuplicateKey();
+        assertThrows(DatabaseException.class, () -> driver.runInTransaction(transaction -> {
+            transaction.execute(upsert);
+            throw new DatabaseException("fail after the upsert");
+        }));
+        assertEquals("Chris", driver.execute(new SelectQuery("students").filter("id", Comparison.EQUAL, 1))
+                .getFirst().getValue("name"), "The update should be undone");
+
+        driver.execute(upsert);
+        List<IRecord> students = driver.execute(new SelectQuery("students").filter("id", Comparison.IN, List.of(1, 20)));
+        assertEquals(List.of("Renamed", "New"), students.stream().map(student -> student.getValue("name")).toList());
+        assertThrows(DatabaseException.class, () -> driver.execute(new InsertBatchQuery("students")
+                .add(new Record(Map.of("id", 1, "name", "Duplicate")))), "Plain batches should still reject duplicates");
+    }
+
+    @Test
+    public void testPagesSeekPastTiedSortValues() throws DatabaseException {
+        // three meals share each timestamp, so pages must split ties using the id
+        for (int i = 0; i < 9; i++) {
+            driver.execute(new InsertQuery("meals", new Record(Map.of(
+                    "meal_type", "SNACK",
+                    "user_id", 1,
+                    "created_on", "2024-02-0%d 08:00:00".formatted(i / 3 + 1)
+            ))));
+        }
+        List<Object> visited = new java.util.ArrayList<>();
+        String token = null;
+        do {
+            SelectQuery query = new SelectQuery("meals")
+                    .filter("user_id", Comparison.EQUAL, 1)
+                    .sortColumn("created_on")
+                    .keyColumn("id")
+                    .sortOrder(SortOrder.DESCENDING);
+            if (token != null) query.after(token);
+            Page page = driver.page(query, 2);
+            for (IRecord record : page.records()) visited.add(record.getValue("id"));
+            token = page.nextPageToken();
+        } while (token != null);
+        assertEquals(List.of(9, 8, 7, 6, 5, 4, 3, 2, 1), visited, "Every meal should be on one page, newest first");
+    }
+
+    @Test
+    public void testPageSizeMustBePositive() {
+        SelectQuery query = new SelectQuery("meals").sortColumn("created_on").keyColumn("id");
+        assertThrows(IllegalArgumentException.class, () -> driver.page(query, 0));
+    }
+
+    @Test
+    public void testAggregateGroupsByDay() throws DatabaseException {
+        String[] createdOn = {"2024-03-01 08:00:00", "2024-03-01 19:30:00", "2024-03-02 12:00:00"};
+        String[] mealTypes = {"BREAKFAST", "DINNER", "breakfast"};
+        for (int i = 0; i < createdOn.length; i++) {
+            driver.execute(new InsertQuery("meals", new Record(Map.of(
+                    "meal_type", mealTypes[i], "user_id", 1, "created_on", createdOn[i]))));
+        }
+        List<IRecord> days = driver.execute(new AggregateQuery("meals")
+                .groupByDate("created_on", "day")
+                .count("meals")
+                .aggregate(AggregateFunction.MAX, "id", "last_id")
+                .aggregate(AggregateFunction.SUM, "user_id", "user_total")
+                .filter("user_id", Comparison.EQUAL, 1)
+                .sortColumn("day")
+                .sortOrder(SortOrder.DESCENDING));
+        assertEquals(2, days.size());
+        assertEquals(java.sql.Date.valueOf("2024-03-02"), days.getFirst().getValue("day"));
+        assertEquals(1L, days.getFirst().getValue("meals"));
+        assertEquals(2L, days.getLast().getValue("meals"));
+        assertEquals(2, days.getLast().getValue("last_id"));
+        assertEquals(new java.math.BigDecimal(2), days.getLast().getValue("user_total"), "Whole numbers sum to a decimal like MySQL");
+
+        IRecord mealTypeCount = driver.execute(new AggregateQuery("meals")
+                .aggregate(AggregateFunction.COUNT_DISTINCT, "meal_type", "meal_types")).getFirst();
+        assertEquals(2L, mealTypeCount.getValue("meal_types"), "Text values should be compared ignoring case");
+
+        IRecord none = driver.execute(new AggregateQuery("meals")
+                .count("meals")
+                .aggregate(AggregateFunction.SUM, "id", "id_total")
+                .filter("user_id", Comparison.EQUAL, -1)).getFirst();
+        assertEquals(0L, none.getValue("meals"), "An aggregate without groups always returns one record");
+        assertNull(none.getValue("id_total"));
+    }
+}
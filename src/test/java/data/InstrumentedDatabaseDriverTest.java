@@ -0,0 +1,115 @@
+package data;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstrumentedDatabaseDriverTest {
+    private InMemoryDriver inMemoryDriver;
+    /**
+     * The current time in nanoseconds.
+     */
+    private AtomicLong clock;
+    /**
+     * How far the clock advances every time it is read, which is how long each query takes.
+     */
+    private AtomicLong tick;
+
+    @BeforeEach
+    public void setUp() throws DatabaseException, IOException {
+        inMemoryDriver = new InMemoryDriver(MySQLConfig.instance())
+                .runScript("src/main/java/data/create-database.sql")
+                .runScript("src/main/java/data/seed-database.sql");
+        clock = new AtomicLong();
+        tick = new AtomicLong(Duration.ofMillis(1).toNanos());
+    }
+
+    private InstrumentedDatabaseDriver instrument(Duration slowQueryThreshold) {
+        return new InstrumentedDatabaseDriver(inMemoryDriver, slowQueryThreshold, () -> clock.addAndGet(tick.get()));
+    }
+
+    @Test
+    public void testQueriesWithDifferentValuesShareAShape() throws DatabaseException {
+        InstrumentedDatabaseDriver driver = instrument(Duration.ofSeconds(1));
+        for (int id = 1; id <= 4; id++) {
+            driver.execute(new SelectQuery("students").filter("id", Comparison.EQUAL, id));
+        }
+        driver.execute(new SelectQuery("students"));
+
+        List<QueryShapeStatistics> statistics = driver.getStatistics();
+        assertEquals(2, statistics.size());
+        QueryShapeStatistics byId = statistics.getFirst();
+        assertEquals("SELECT students WHERE id EQUAL", byId.shape());
+        assertEquals(4, byId.count());
+        assertEquals(4, byId.rows());
+        assertEquals(0, byId.errors());
+        assertEquals(Duration.ofMillis(4), byId.total());
+        assertTrue(driver.getSlowQueries().isEmpty());
+    }
+
+    @Test
+    public void testPercentilesAreOrdered() throws DatabaseException {
+        InstrumentedDatabaseDriver driver = instrument(Duration.ofSeconds(1));
+        for (int i = 1; i <= 100; i++) {
+            // every tenth query takes 50 ms instead of 1 ms
+            tick.set(Duration.ofMillis(i % 10 == 0 ? 50 : 1).toNanos());
+            driver.execute(new SelectQuery("students").filter("name", Comparison.EQUAL, "Chris"));
+        }
+        QueryShapeStatistics statistics = driver.getStatistics().getFirst();
+        assertTrue(statistics.p50().compareTo(Duration.ofMillis(2)) < 0);
+        assertTrue(statistics.p50().compareTo(statistics.p95()) <= 0);
+        assertTrue(statistics.p95().compareTo(statistics.p99()) <= 0);
+        assertTrue(statistics.p99().compareTo(statistics.max()) <= 0);
+        assertEquals(Duration.ofMillis(50), statistics.max());
+        assertTrue(statistics.p95().compareTo(Duration.ofMillis(44)) >= 0, "p95 should be within a bucket of 50 ms");
+    }
+
+    @Test
+    public void testSlowQueriesIncludeThePlan() throws DatabaseException {
+        InstrumentedDatabaseDriver driver = instrument(Duration.ZERO);
+        driver.execute(new SelectQuery("meals").filter("user_id", Comparison.EQUAL, 1));
+        driver.execute(new InsertQuery("students", new Record(Map.of("name", "Slow"))));
+
+        List<SlowQuery> slowQueries = driver.getSlowQueries();
+        assertEquals(2, slowQueries.size());
+        assertEquals("SELECT meals WHERE user_id EQUAL", slowQueries.get(0).shape());
+        assertNotNull(slowQueries.get(0).plan());
+        assertTrue(slowQueries.get(0).plan().contains("user_id"), slowQueries.get(0).plan());
+        assertNull(slowQueries.get(1).plan(), "Only selects have a plan");
+    }
+
+    @Test
+    public void testErrorsAreCounted() {
+        InstrumentedDatabaseDriver driver = instrument(Duration.ofSeconds(1));
+        assertThrows(DatabaseException.class, () -> driver.execute(new InsertQuery("students",
+                new Record(Map.of("id", 1, "name", "Duplicate")))));
+        QueryShapeStatistics statistics = driver.getStatistics().getFirst();
+        assertEquals("INSERT students", statistics.shape());
+        assertEquals(1, statistics.errors());
+    }
+
+    @Test
+    public void testDumpWritesTheReport() throws DatabaseException, IOException {
+        InstrumentedDatabaseDriver driver = instrument(Duration.ofSeconds(1));
+        driver.execute(new SelectQuery("students"));
+        Path file = Files.createTempFile("query-statistics", ".txt");
+        try {
+            driver.dump(file);
+            String report = Files.readString(file);
+            assertTrue(report.contains("SELECT students"), report);
+            driver.reset();
+            assertTrue(driver.getStatistics().isEmpty());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
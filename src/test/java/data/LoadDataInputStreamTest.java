@@ -0,0 +1,73 @@
+package data;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadDataInputStreamTest {
+    @Test
+    public void testEncodesRowsInColumnOrder() throws IOException {
+        Map<String, Object> values = new HashMap<>();
+        values.put("id", 5);
+        values.put("description", "Chinese dish, chow mein");
+        values.put("food_group_id", null);
+        LoadDataInputStream stream = new LoadDataInputStream(
+                List.of(new Record(values), new Record(Map.of("id", 6, "description", "Tea", "food_group_id", 14)))
+                        .iterator(),
+                List.of("id", "food_group_id", "description"));
+
+        assertEquals("5\t\\N\tChinese dish, chow mein\n6\t14\tTea\n", readAll(stream));
+        assertEquals(2, stream.getRowCount());
+    }
+
+    @Test
+    public void testEscapesSeparators() throws IOException {
+        LoadDataInputStream stream = new LoadDataInputStream(
+                List.of(new Record(Map.of("name", "a\tb\nc\\d", "active", true))).iterator(),
+                List.of("name", "active"));
+        assertEquals("a\\tb\\nc\\\\d\t1\n", readAll(stream));
+    }
+
+    @Test
+    public void testReadsLargeRowsAcrossBuffers() throws IOException {
+        char[] longName = new char[10_000];
+        Arrays.fill(longName, 'x');
+        LoadDataInputStream stream = new LoadDataInputStream(
+                List.of(new Record(Map.of("name", new String(longName)))).iterator(), List.of("name"));
+        byte[] buffer = new byte[7];
+        int total = 0;
+        for (int read = stream.read(buffer); read != -1; read = stream.read(buffer)) total += read;
+        assertEquals(10_001, total);
+    }
+
+    @Test
+    public void testReadErrorsAreThrownAsIOExceptions() {
+        Iterator<IRecord> failing = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                throw new UncheckedIOException(new IOException("Malformed row"));
+            }
+
+            @Override
+            public IRecord next() {
+                throw new AssertionError();
+            }
+        };
+        InputStream stream = new LoadDataInputStream(failing, List.of("name"));
+        assertEquals("Malformed row", assertThrows(IOException.class, stream::read).getMessage());
+    }
+
+    private static String readAll(InputStream stream) throws IOException {
+        return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,68 @@
+package data;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MigrationRunnerTest {
+    private InMemoryDriver driver;
+
+    @TempDir
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() throws DatabaseException, IOException {
+        driver = new InMemoryDriver(MySQLConfig.instance())
+                .runScript("src/main/java/data/create-database.sql")
+                .runScript("src/main/java/data/seed-database.sql");
+    }
+
+    @Test
+    public void testAppliesPendingMigrationsInOrder() throws DatabaseException, IOException {
+        Files.writeString(directory.resolve("V2__add_courses.sql"), "CREATE TABLE courses (id INT PRIMARY KEY, name VARCHAR(20));");
+        Files.writeString(directory.resolve("V1__index_student_names.sql"), "CREATE INDEX students_name ON students (name);");
+        Files.writeString(directory.resolve("README.md"), "not a migration");
+        MigrationRunner runner = new MigrationRunner(driver, directory);
+
+        List<Migration> applied = runner.migrate();
+        assertEquals(List.of(1, 2), applied.stream().map(Migration::version).toList());
+        assertEquals("index student names", applied.getFirst().description());
+        assertTrue(driver.execute(new SelectQuery("courses")).isEmpty(), "The second migration should create courses");
+        assertEquals(2, driver.execute(new SelectQuery(MigrationRunner.SCHEMA_VERSION_TABLE)).size());
+
+        assertTrue(runner.migrate().isEmpty(), "Applied migrations should not run again");
+        Files.writeString(directory.resolve("V3__add_teachers.sql"), "CREATE TABLE teachers (id INT PRIMARY KEY);");
+        assertEquals(List.of(3), runner.migrate().stream().map(Migration::version).toList());
+    }
+
+    @Test
+    public void testRejectsMigrationChangedAfterItWasApplied() throws DatabaseException, IOException {
+        Path migration = directory.resolve("V1__index_student_names.sql");
+        Files.writeString(migration, "CREATE INDEX students_name ON students (name);");
+        new MigrationRunner(driver, directory).migrate();
+
+        Files.writeString(migration, "CREATE INDEX students_name ON students (id, name);");
+        DatabaseException e = assertThrows(DatabaseException.class, () -> new MigrationRunner(driver, directory).migrate());
+        assertTrue(e.getMessage().contains("V1"), e.getMessage());
+    }
+
+    @Test
+    public void testFailedMigrationIsNotRecorded() throws DatabaseException, IOException {
+        Files.writeString(directory.resolve("V1__index_missing_table.sql"), "CREATE INDEX missing ON no_such_table (id);");
+        assertThrows(DatabaseException.class, () -> new MigrationRunner(driver, directory).migrate());
+        assertTrue(driver.execute(new SelectQuery(MigrationRunner.SCHEMA_VERSION_TABLE)).isEmpty());
+    }
+
+    @Test
+    public void testShippedMigrationsApplyToTheCreatedSchema() throws DatabaseException, IOException {
+        List<Migration> applied = new MigrationRunner(driver, Path.of("src/main/java/data/migrations")).migrate();
+        assertFalse(applied.isEmpty());
+    }
+}
@@ -4,6 +4,8 @@ import org.junit.jupiter.api.Test;
 import shared.AppBackend;
 
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -74,4 +76,172 @@ class MySQLDriverTest {
             assertTrue(prevId >= currentId, "Records should be in descending order by id");
         }
     }
+
+    @Test
+    public void testInsertBatch() throws DatabaseException {
+        String name = "Batch Student";
+        InsertBatchQuery batch = new InsertBatchQuery("students").batchSize(2);
+        for (int i = 0; i < 5; i++) {
+            batch.add(new Record(Map.of("name", name)));
+        }
+        AppBackend.db().execute(batch);
+        List<IRecord> inserted = AppBackend.db().execute(
+            new SelectQuery("students").filter("name", Comparison.EQUAL, name)
+        );
+        assertEquals(5, inserted.size(), "Every record in the batch should be inserted");
+        AppBackend.db().execute(new DeleteQuery("students").filter("name", Comparison.EQUAL, name));
+    }
+
+    @Test
+    public void testStream() throws DatabaseException {
+        List<IRecord> buffered = AppBackend.db().execute(new SelectQuery("students"));
+        try (Stream<IRecord> streamed = AppBackend.db().stream(new SelectQuery("students"))) {
+            assertEquals(buffered.size(), streamed.count(), "Streaming should return the same records");
+        }
+    }
+
+    @Test
+    public void testSelectColumns() throws DatabaseException {
+        List<IRecord> records = AppBackend.db().execute(new SelectQuery("students").columns("name"));
+        assertFalse(records.isEmpty());
+        for (IRecord record : records) {
+            assertEquals(List.of("name"), List.copyOf(record.fieldNames()), "Only the projected column should be returned");
+        }
+    }
+
+    @Test
+    public void testInFilter() throws DatabaseException {
+        List<IRecord> records = AppBackend.db().execute(
+            new SelectQuery("students").filter("id", Comparison.IN, List.of(1, 2, 3))
+        );
+        assertEquals(3, records.size(), "Should return exactly the students with the listed ids");
+        List<IRecord> excluded = AppBackend.db().execute(
+            new SelectQuery("students").filter("id", Comparison.NOT_IN, List.of(1, 2, 3))
+        );
+        for (IRecord record : excluded) {
+            assertFalse(List.of(1, 2, 3).contains((Integer) record.getValue("id")), "Listed ids should be excluded");
+        }
+    }
+
+    @Test
+    public void testInFilterSplitAcrossStatements() throws DatabaseException {
+        // more values than fit in one IN list, so the driver has to split the query and merge the results
+        List<Integer> ids = java.util.stream.IntStream.rangeClosed(1, 3000).boxed().toList();
+        List<IRecord> records = AppBackend.db().execute(
+            new SelectQuery("students")
+                .filter("id", Comparison.IN, ids)
+                .sortColumn("id")
+                .sortOrder(SortOrder.DESCENDING)
+                .limit(2)
+        );
+        assertEquals(2, records.size(), "Limit should apply to the merged results");
+        assertTrue((Integer) records.get(0).getValue("id") > (Integer) records.get(1).getValue("id"),
+            "Sort order should apply to the merged results");
+
+        // a value listed on both sides of a chunk boundary should still return its rows once
+        int id = (Integer) records.get(0).getValue("id");
+        List<Integer> repeated = new java.util.ArrayList<>(List.of(id));
+        java.util.stream.IntStream.rangeClosed(1, 1023).forEach(i -> repeated.add(-i));
+        repeated.add(id);
+        List<IRecord> once = AppBackend.db().execute(
+            new SelectQuery("students").filter("id", Comparison.IN, repeated)
+        );
+        assertEquals(1, once.size(), "Repeated values should not duplicate rows");
+    }
+
+    @Test
+    public void testJoin() throws DatabaseException {
+        List<IRecord> records = AppBackend.db().execute(
+            new SelectQuery("foods")
+                .join("food_groups", "foods.food_group_id", "food_groups.id", JoinType.INNER)
+                .columns("foods.id", "foods.food_group_id", "food_groups.id")
+                .limit(5)
+        );
+        assertFalse(records.isEmpty(), "Join should return foods with their food groups");
+        for (IRecord record : records) {
+            assertEquals(record.getValue("foods.food_group_id"), record.getValue("food_groups.id"),
+                "Fields should be qualified with their table and match on the join condition");
+        }
+    }
+
+    @Test
+    public void testTransactionRollsBackOnFailure() throws DatabaseException {
+        String name = "Transaction Student";
+        assertThrows(DatabaseException.class, () -> AppBackend.db().runInTransaction(driver -> {
+            driver.execute(new InsertQuery("students", new Record(Map.of("name", name))));
+            // fails because the table does not exist, so the insert above must be rolled back
+            driver.execute(new InsertQuery("missing_table", new Record(Map.of("name", name))));
+            return null;
+        }));
+        List<IRecord> records = AppBackend.db().execute(
+            new SelectQuery("students").filter("name", Comparison.EQUAL, name)
+        );
+        assertTrue(records.isEmpty(), "The insert should have been rolled back with the transaction");
+    }
+
+    @Test
+    public void testTransactionRollsBackOnError() throws DatabaseException {
+        String name = "Error Student";
+        assertThrows(StackOverflowError.class, () -> AppBackend.db().runInTransaction(driver -> {
+            driver.execute(new InsertQuery("students", new Record(Map.of("name", name))));
+            throw new StackOverflowError();
+        }));
+        List<IRecord> records = AppBackend.db().execute(
+            new SelectQuery("students").filter("name", Comparison.EQUAL, name)
+        );
+        assertTrue(records.isEmpty(), "An Error should roll back the transaction as an exception does");
+    }
+
+    @Test
+    public void testInsertReturnsGeneratedKeys() throws DatabaseException {
+        String name = "Generated Key Student";
+        InsertBatchQuery batch = new InsertBatchQuery("students").batchSize(2).returnGeneratedKeys();
+        for (int i = 0; i < 3; i++) {
+            batch.add(new Record(Map.of("name", name)));
+        }
+        List<Long> keys = AppBackend.db().execute(batch);
+        assertEquals(3, keys.size(), "Every inserted row should have a key");
+        List<IRecord> inserted = AppBackend.db().execute(
+            new SelectQuery("students").filter("id", Comparison.IN, keys)
+        );
+        assertEquals(3, inserted.size(), "The keys should identify the inserted rows");
+        AppBackend.db().execute(new DeleteQuery("students").filter("name", Comparison.EQUAL, name));
+    }
+
+    @Test
+    public void testReserveIdsDoesNotOverlap() throws DatabaseException {
+        long first = AppBackend.db().reserveIds("students", 10);
+        long second = AppBackend.db().reserveIds("students", 10);
+        assertTrue(second >= first + 10, "Reserved blocks should not overlap");
+    }
+
+    @Test
+    public void testPagesVisitEveryRecordOnce() throws DatabaseException {
+        List<Object> expected = AppBackend.db().execute(new SelectQuery("students").sortColumn("id"))
+            .stream().map(record -> record.getValue("id")).toList();
+        // names are not unique, so the id settles the order of students with the same name
+        List<Object> visited = new java.util.ArrayList<>();
+        String token = null;
+        do {
+            SelectQuery query = new SelectQuery("students").sortColumn("name").keyColumn("id");
+            if (token != null) query.after(token);
+            Page page = AppBackend.db().page(query, 3);
+            assertTrue(page.records().size() <= 3, "A page should hold at most the page size");
+            for (IRecord record : page.records()) visited.add(record.getValue("id"));
+            token = page.nextPageToken();
+        } while (token != null);
+        assertEquals(expected.size(), visited.size(), "Every student should be on exactly one page");
+        assertTrue(visited.containsAll(expected));
+    }
+
+    @Test
+    public void testAggregateCount() throws DatabaseException {
+        int students = AppBackend.db().execute(new SelectQuery("students")).size();
+        List<IRecord> counts = AppBackend.db().execute(new AggregateQuery("students")
+            .count("student_count")
+            .aggregate(AggregateFunction.MIN, "id", "first_id"));
+        assertEquals(1, counts.size(), "An aggregate without groups should return one record");
+        assertEquals(students, ((Number) counts.getFirst().getValue("student_count")).intValue());
+        assertNotNull(counts.getFirst().getValue("first_id"));
+    }
 }
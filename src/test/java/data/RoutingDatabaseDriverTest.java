@@ -0,0 +1,123 @@
+package data;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingDatabaseDriverTest {
+    /**
+     * How long after a write reads go to the primary.
+     */
+    private static final Duration WINDOW = Duration.ofSeconds(2);
+
+    private CountingDriver primary;
+    private CountingDriver firstReplica;
+    private CountingDriver secondReplica;
+    /**
+     * The current time in nanoseconds.
+     */
+    private AtomicLong clock;
+    private RoutingDatabaseDriver driver;
+
+    /**
+     * Counts the selects sent to a database, and can be made to fail like a server that went down.
+     */
+    private static class CountingDriver extends DatabaseDriverDecorator {
+        private int selects;
+        private boolean down;
+
+        private CountingDriver(IDatabaseDriver delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public List<IRecord> execute(SelectQuery query) throws DatabaseException {
+            if (down) throw new DatabaseException("Communications link failure");
+            selects++;
+            return delegate.execute(query);
+        }
+    }
+
+    @BeforeEach
+    public void setUp() throws DatabaseException, IOException {
+        primary = new CountingDriver(createDatabase());
+        firstReplica = new CountingDriver(createDatabase());
+        secondReplica = new CountingDriver(createDatabase());
+        clock = new AtomicLong();
+        driver = new RoutingDatabaseDriver(primary, List.of(firstReplica, secondReplica), WINDOW, clock::get);
+    }
+
+    private static IDatabaseDriver createDatabase() throws DatabaseException, IOException {
+        InMemoryDriver database = new InMemoryDriver(MySQLConfig.instance())
+                .runScript("src/main/java/data/create-database.sql")
+                .runScript("src/main/java/data/seed-database.sql");
+        new MigrationRunner(database, Path.of("src/main/java/data/migrations")).migrate();
+        return database;
+    }
+
+    @Test
+    public void testSelectsAreSpreadAcrossReplicas() throws DatabaseException {
+        for (int i = 0; i < 4; i++) {
+            driver.execute(new SelectQuery("students"));
+        }
+        assertEquals(0, primary.selects);
+        assertEquals(2, firstReplica.selects);
+        assertEquals(2, secondReplica.selects);
+    }
+
+    @Test
+    public void testReadsAfterAWriteGoToThePrimaryUntilTheWindowPasses() throws DatabaseException {
+        driver.execute(new InsertQuery("students", new Record(Map.of("name", "Routed"))));
+        // the replicas are separate databases here, so only the primary has the new student
+        List<IRecord> students = driver.execute(new SelectQuery("students").filter("name", Comparison.EQUAL, "Routed"));
+        assertEquals(1, students.size(), "The write should be visible to the next read");
+        assertEquals(1, primary.selects);
+
+        clock.addAndGet(WINDOW.toNanos());
+        driver.execute(new SelectQuery("students"));
+        assertEquals(1, primary.selects);
+        assertEquals(1, firstReplica.selects);
+    }
+
+    @Test
+    public void testTransactionsAndPrimarySessionsReadFromThePrimary() throws DatabaseException {
+        driver.runInTransaction(transaction -> transaction.execute(new SelectQuery("students")));
+        driver.runOnPrimary(session -> session.execute(new SelectQuery("students")));
+        assertEquals(2, primary.selects);
+
+        clock.addAndGet(WINDOW.toNanos());
+        driver.execute(new SelectQuery("students"));
+        assertEquals(2, primary.selects, "Reads outside a session should go back to the replicas");
+    }
+
+    @Test
+    public void testFailedReplicaIsSkippedUntilItRecovers() throws DatabaseException {
+        firstReplica.down = true;
+        assertFalse(driver.execute(new SelectQuery("students")).isEmpty(), "The read should fall back to the primary");
+        assertEquals(1, primary.selects);
+        assertEquals(1, driver.getHealthyReplicaCount());
+
+        for (int i = 0; i < 2; i++) {
+            driver.execute(new SelectQuery("students"));
+        }
+        assertEquals(2, secondReplica.selects);
+
+        firstReplica.down = false;
+        assertEquals(2, driver.checkReplicas());
+    }
+
+    @Test
+    public void testQueryErrorsDoNotMarkTheReplicaDown() {
+        assertThrows(DatabaseException.class, () -> driver.execute(new SelectQuery("no_such_table")));
+        assertEquals(2, driver.getHealthyReplicaCount());
+        assertEquals(0, primary.selects);
+    }
+}
@@ -0,0 +1,33 @@
+package data;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RowRecordTest {
+    @Test
+    public void testRowsShareSchema() {
+        RecordSchema schema = new RecordSchema(List.of("id", "nutrient_value"));
+        IRecord first = new RowRecord(schema, new Object[]{1, 2.5});
+        IRecord second = new RowRecord(schema, new Object[]{2, 4.0});
+        assertEquals(1, first.getValue("id"));
+        assertEquals(4.0, second.getValue("nutrient_value"));
+        assertEquals(List.of("id", "nutrient_value"), List.copyOf(first.fieldNames()));
+        assertNull(first.getValue("missing"), "Fields outside the schema should have no value");
+    }
+
+    @Test
+    public void testTypedAccessors() {
+        IRecord record = new RowRecord(new RecordSchema(List.of("id", "nutrient_value")), new Object[]{7L, 1.25});
+        assertEquals(7, record.getInt("id"));
+        assertEquals(1.25, record.getDouble("nutrient_value"));
+    }
+
+    @Test
+    public void testValuesMustMatchSchema() {
+        RecordSchema schema = new RecordSchema(List.of("id"));
+        assertThrows(IllegalArgumentException.class, () -> new RowRecord(schema, new Object[]{1, 2}));
+    }
+}